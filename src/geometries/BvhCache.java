@@ -0,0 +1,136 @@
+package geometries;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Persistent cache of BVH topologies built by {@link Geometries#buildBVH()}.
+ * <p>
+ * The SAH construction depends only on the bounding boxes of the bounded geometries and
+ * on their order, so the cache key is a SHA-256 hash of these boxes. Identical content
+ * (e.g. the same static scene loaded by another process) therefore gets the same key,
+ * and the stored topology (node bounds, child indices and primitive order) is reused
+ * instead of building the BVH again.
+ * <p>
+ * Cache entries are written atomically, so several processes may share the cache directory.
+ * A missing, stale or corrupted entry is ignored and the BVH is built as usual, and an entry
+ * which can't be written (e.g. a read-only or full disk) is skipped.
+ */
+final class BvhCache {
+
+    /**
+     * Cache file signature ("BVHC")
+     */
+    private static final int MAGIC = 0x42564843;
+    /**
+     * Cache format version - part of the key, so entries of older builds are not reused
+     */
+    private static final int VERSION = 2;
+    /**
+     * Cache file name extension
+     */
+    private static final String EXTENSION = ".bvh";
+
+    /**
+     * Don't let anyone instantiate this class.
+     */
+    private BvhCache() {
+    }
+
+    /**
+     * Computes the cache key of the bounded geometries
+     *
+     * @param bounded the bounded geometries in their insertion order
+     * @return the key (hexadecimal hash)
+     */
+    static String key(List<Intersectable> bounded) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(6 * Double.BYTES);
+        buffer.putInt(VERSION).putInt(bounded.size());
+        digest.update(buffer.flip());
+        for (Intersectable item : bounded) {
+            AABB box = item.getBoundingBox();
+            buffer.clear();
+            for (int axis = 0; axis < 3; ++axis) {
+                buffer.putDouble(box.getMin().get(axis));
+                buffer.putDouble(box.getMax().get(axis));
+            }
+            digest.update(buffer.flip());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Restores the BVH of a root from the cache
+     *
+     * @param directory the cache directory
+     * @param key       the cache key of the bounded geometries
+     * @param root      the root to restore the BVH into
+     * @param bounded   the bounded geometries in their insertion order
+     * @return true if the BVH has been restored, false if there is no valid cache entry
+     */
+    static boolean restore(Path directory, String key, Geometries root, List<Intersectable> bounded) {
+        Path file = directory.resolve(key + EXTENSION);
+        if (!Files.isRegularFile(file)) return false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION || in.getInt() != bounded.size()) return false;
+
+            List<Intersectable> ordered = new ArrayList<>(bounded.size());
+            for (int i = 0; i < bounded.size(); ++i) ordered.add(bounded.get(in.getInt()));
+            root.importBvh(BvhTopology.read(in), ordered, root.getInfinite());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false; // unreadable entry - the BVH will be rebuilt
+        }
+    }
+
+    /**
+     * Stores the BVH of a root in the cache - at best effort: if the entry can't be written,
+     * the partial file is deleted and the cache is left as it was
+     *
+     * @param directory the cache directory
+     * @param key       the cache key of the bounded geometries
+     * @param root      the root with a built BVH
+     * @param bounded   the bounded geometries in their insertion order
+     */
+    static void store(Path directory, String key, Geometries root, List<Intersectable> bounded) {
+        Map<Intersectable, Integer> indices = new IdentityHashMap<>();
+        for (int i = 0; i < bounded.size(); ++i) indices.put(bounded.get(i), i);
+        if (indices.size() != bounded.size()) return; // the same object was added twice - can't be indexed
+
+        List<Intersectable> primitives = new ArrayList<>(bounded.size());
+        BvhTopology topology = root.exportBvh(primitives);
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, key, ".tmp");
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(primitives.size());
+                for (Intersectable item : primitives) out.writeInt(indices.get(item));
+                topology.write(out);
+            }
+            Files.move(temp, directory.resolve(key + EXTENSION),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the BVH has been built anyway - only the reuse is lost
+            if (temp != null) try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // nothing else can be done about the partial file
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package geometries;
+
+import primitives.Point;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Flat (array based) representation of the topology of a BVH built by {@link Geometries#buildBVH()}.
+ * <p>
+ * Node 0 is the root. Every node holds its bounds, and either two child node indices
+ * (internal node) or a range in the list of the primitives (leaf node).
+ * The representation allows storing a built BVH and restoring it without rebuilding.
+ */
+final class BvhTopology {
+
+    /**
+     * Child index value marking a leaf node
+     */
+    private static final int NO_CHILD = -1;
+
+    /**
+     * Amount of nodes
+     */
+    private int size = 0;
+
+    /**
+     * Node bounds - 6 values per node (min x,y,z and max x,y,z), NaN for a node without a box
+     */
+    private double[] bounds = new double[6 * 16];
+
+    /**
+     * Left child index of each node (or first primitive index for a leaf)
+     */
+    private int[] left = new int[16];
+
+    /**
+     * Right child index of each node (or {@link #NO_CHILD} for a leaf)
+     */
+    private int[] right = new int[16];
+
+    /**
+     * Primitive count of each leaf node
+     */
+    private int[] count = new int[16];
+
+    /**
+     * Adds a node with the given bounds
+     *
+     * @param box the bounding box of the node (may be null)
+     * @return the index of the new node
+     */
+    int addNode(AABB box) {
+        if (size == left.length) {
+            int capacity = size * 2;
+            bounds = Arrays.copyOf(bounds, 6 * capacity);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            count = Arrays.copyOf(count, capacity);
+        }
+        int base = 6 * size;
+        if (box == null)
+            Arrays.fill(bounds, base, base + 6, Double.NaN);
+        else
+            for (int axis = 0; axis < 3; ++axis) {
+                bounds[base + axis] = box.getMin().get(axis);
+                bounds[base + 3 + axis] = box.getMax().get(axis);
+            }
+        return size++;
+    }
+
+    /**
+     * Marks a node as an internal node
+     *
+     * @param node       the node index
+     * @param leftChild  the index of the left child node
+     * @param rightChild the index of the right child node
+     */
+    void setChildren(int node, int leftChild, int rightChild) {
+        left[node] = leftChild;
+        right[node] = rightChild;
+    }
+
+    /**
+     * Marks a node as a leaf node
+     *
+     * @param node           the node index
+     * @param firstPrimitive index of the first primitive of the leaf
+     * @param primitives     amount of primitives in the leaf
+     */
+    void setLeaf(int node, int firstPrimitive, int primitives) {
+        left[node] = firstPrimitive;
+        right[node] = NO_CHILD;
+        count[node] = primitives;
+    }
+
+    /**
+     * Amount of nodes
+     *
+     * @return amount of nodes
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether a node is a leaf
+     *
+     * @param node the node index
+     * @return true for a leaf node
+     */
+    boolean isLeaf(int node) {
+        return right[node] == NO_CHILD;
+    }
+
+    /**
+     * Left child index of an internal node
+     *
+     * @param node the node index
+     * @return the left child index
+     */
+    int left(int node) {
+        return left[node];
+    }
+
+    /**
+     * Right child index of an internal node
+     *
+     * @param node the node index
+     * @return the right child index
+     */
+    int right(int node) {
+        return right[node];
+    }
+
+    /**
+     * Index of the first primitive of a leaf node
+     *
+     * @param node the node index
+     * @return the first primitive index
+     */
+    int firstPrimitive(int node) {
+        return left[node];
+    }
+
+    /**
+     * Amount of primitives of a leaf node
+     *
+     * @param node the node index
+     * @return the amount of primitives
+     */
+    int primitiveCount(int node) {
+        return count[node];
+    }
+
+    /**
+     * Bounding box of a node
+     *
+     * @param node the node index
+     * @return the bounding box or null if the node has no box
+     */
+    AABB box(int node) {
+        int base = 6 * node;
+        if (Double.isNaN(bounds[base])) return null;
+        return new AABB(new Point(bounds[base], bounds[base + 1], bounds[base + 2]),
+                new Point(bounds[base + 3], bounds[base + 4], bounds[base + 5]));
+    }
+
+    /**
+     * Writes the topology in binary form
+     *
+     * @param out the output
+     * @throws IOException in case of I/O error
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int node = 0; node < size; ++node) {
+            for (int i = 0; i < 6; ++i) out.writeDouble(bounds[6 * node + i]);
+            out.writeInt(left[node]);
+            out.writeInt(right[node]);
+            out.writeInt(count[node]);
+        }
+    }
+
+    /**
+     * Reads a topology written by {@link #write(DataOutput)}
+     *
+     * @param in the input buffer
+     * @return the topology
+     */
+    static BvhTopology read(ByteBuffer in) {
+        int nodes = in.getInt();
+        BvhTopology topology = new BvhTopology();
+        topology.size = nodes;
+        topology.bounds = new double[6 * Math.max(nodes, 1)];
+        topology.left = new int[Math.max(nodes, 1)];
+        topology.right = new int[Math.max(nodes, 1)];
+        topology.count = new int[Math.max(nodes, 1)];
+        for (int node = 0; node < nodes; ++node) {
+            for (int i = 0; i < 6; ++i) topology.bounds[6 * node + i] = in.getDouble();
+            topology.left[node] = in.getInt();
+            topology.right[node] = in.getInt();
+            topology.count[node] = in.getInt();
+        }
+        return topology;
+    }
+}
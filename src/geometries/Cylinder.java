@@ -3,9 +3,10 @@ package geometries;
 import primitives.*;
 import primitives.Vector;
 
-import java.util.*;
+import java.util.List;
 
 import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
 
 /**
  * Represents a cylinder, which extends a Tube and has a specific height.
@@ -17,16 +18,6 @@ public class Cylinder extends Tube {
      */
     private final double height;  // Cylinder's height – unique to Cylinder, not present in Tube
 
-    /**
-     * To represent bottomPlane of the cylinder.
-     */
-    private final Plane bottomPlane;
-
-    /**
-     * To represent topPlane of the cylinder.
-     */
-    private final Plane topPlane;
-
     /**
      * Constructs a Cylinder with a given radius, axis, and height.
      *
@@ -37,8 +28,15 @@ public class Cylinder extends Tube {
     public Cylinder(double radius, Ray axis, double height) {
         super(radius, axis);     // Call the Tube constructor to set radius and axis
         this.height = height;    // Set the height specific to Cylinder
-        this.bottomPlane = new Plane(axis.getHead(), axis.getDirection());
-        this.topPlane = new Plane(axis.getPoint(height), axis.getDirection());
+    }
+
+    /**
+     * Getter for the height of the cylinder.
+     *
+     * @return the height
+     */
+    public double getHeight() {
+        return height;
     }
 
     @Override
@@ -63,50 +61,98 @@ public class Cylinder extends Tube {
         return super.getNormal(point);
     }
 
+    /**
+     * Analytic finite cylinder intersection: the side (tube) hits within the height and the
+     * cap hits strictly inside the radius are computed in one pass on primitive values,
+     * and the two nearest of them are returned in order without sorting.
+     */
     @Override
     protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
-        final List<Intersection> intersections = new LinkedList<>();
-        final Vector axisDir = axis.getDirection();
-        final Point baseCenter = axis.getHead();
-        final Point topCenter = axis.getPoint(height);
-        final Point rayOrigin = ray.getHead();
-
-        // 1. Tube intersections
-        var tubeIntersections = super.calculateIntersectionsHelper(ray, maxDistance);
-        if (tubeIntersections != null) {
-            for (Intersection p : tubeIntersections) {
-                double axisProjection = axisDir.dotProduct(p.point.subtract(baseCenter));
-                if (alignZero(axisProjection) >= 0 && alignZero(axisProjection - height) <= 0) {
-                    intersections.add(new Intersection(this, p.point));
-                }
-            }
+        final Point origin = ray.getHead(), base = axis.getHead();
+        final Vector rayDir = ray.getDirection(), axisDir = axis.getDirection();
+        final double dx = rayDir.getX(), dy = rayDir.getY(), dz = rayDir.getZ();
+        final double ax = axisDir.getX(), ay = axisDir.getY(), az = axisDir.getZ();
+        // delta = origin - base
+        final double px = origin.getX() - base.getX(), py = origin.getY() - base.getY(), pz = origin.getZ() - base.getZ();
+
+        final double rayDirDotAxis = dx * ax + dy * ay + dz * az;
+        final double deltaDotAxis = px * ax + py * ay + pz * az;
+
+        // 1. Side (tube) intersections within the height - candidates tSide1, tSide2
+        double tSide1 = Double.POSITIVE_INFINITY, tSide2 = Double.POSITIVE_INFINITY;
+        double a = dx * dx + dy * dy + dz * dz - rayDirDotAxis * rayDirDotAxis;
+        double b = 2 * (dx * px + dy * py + dz * pz - rayDirDotAxis * deltaDotAxis);
+        double c = px * px + py * py + pz * pz - deltaDotAxis * deltaDotAxis - radiusSquared;
+        double discriminant = alignZero(b * b - 4 * a * c);
+        if (discriminant > 0) {
+            double sqrtDiscriminant = Math.sqrt(discriminant);
+            double t1 = alignZero((-b - sqrtDiscriminant) / (2 * a));
+            double t2 = alignZero((-b + sqrtDiscriminant) / (2 * a));
+            if (isSideHit(t1, maxDistance, deltaDotAxis + t1 * rayDirDotAxis)) tSide1 = t1;
+            if (isSideHit(t2, maxDistance, deltaDotAxis + t2 * rayDirDotAxis)) tSide2 = t2;
         }
 
-        // 2. Bottom cap
-        var bottom = bottomPlane.calculateIntersections(ray, maxDistance);
-        if (bottom != null) {
-            Point p = bottom.getFirst().point;
-            if (alignZero(p.distanceSquared(baseCenter) - radiusSquared) < 0) {
-                intersections.add(new Intersection(this, p));
-            }
+        // 2. Caps intersections strictly inside the radius - candidates tBottom, tTop
+        double tBottom = Double.POSITIVE_INFINITY, tTop = Double.POSITIVE_INFINITY;
+        if (!isZero(rayDirDotAxis)) {
+            double t = alignZero(-deltaDotAxis / rayDirDotAxis);
+            if (isCapHit(t, maxDistance, px + t * dx, py + t * dy, pz + t * dz)) tBottom = t;
+            t = alignZero((height - deltaDotAxis) / rayDirDotAxis);
+            if (isCapHit(t, maxDistance, px + t * dx - height * ax, py + t * dy - height * ay, pz + t * dz - height * az))
+                tTop = t;
         }
 
-        // 3. Top cap
-        var top = topPlane.calculateIntersections(ray, maxDistance);
-        if (top != null) {
-            Point p = top.getFirst().point;
-            if (alignZero(p.distanceSquared(topCenter) - radiusSquared) < 0) {
-                intersections.add(new Intersection(this, p));
-            }
-        }
+        // 3. The two nearest candidates
+        double low1 = Math.min(tSide1, tSide2), high1 = Math.max(tSide1, tSide2);
+        double low2 = Math.min(tBottom, tTop), high2 = Math.max(tBottom, tTop);
+        double first = Math.min(low1, low2);
+        double second = Math.min(Math.max(low1, low2), Math.min(high1, high2));
+        if (first == Double.POSITIVE_INFINITY) return null;
 
-        // 4. Sort by distance
-//        intersections.sort(Comparator.comparingDouble(p ->
-//                p.point.subtract(rayOrigin).dotProduct(ray.getDirection())));
-        intersections.sort(Comparator.comparingDouble(
-                p -> p.point.distanceSquared(ray.getHead())));
+        Intersection near = new Intersection(this, pointAt(origin, dx, dy, dz, first));
+        return second == Double.POSITIVE_INFINITY ? List.of(near)
+                : List.of(near, new Intersection(this, pointAt(origin, dx, dy, dz, second)));
+    }
+
+    /**
+     * Checks whether a tube intersection is a hit of the cylinder side
+     *
+     * @param t           the ray parameter of the intersection
+     * @param maxDistance maximum distance
+     * @param projection  the projection of the intersection point on the axis (from the base)
+     * @return true if the intersection is in front of the ray, within the distance and the height
+     */
+    private boolean isSideHit(double t, double maxDistance, double projection) {
+        return t > 0 && alignZero(t - maxDistance) < 0
+                && alignZero(projection) >= 0 && alignZero(projection - height) <= 0;
+    }
+
+    /**
+     * Checks whether a cap plane intersection is a hit of the cap
+     *
+     * @param t           the ray parameter of the intersection
+     * @param maxDistance maximum distance
+     * @param x           the x coordinate of the intersection point relative to the cap center
+     * @param y           the y coordinate of the intersection point relative to the cap center
+     * @param z           the z coordinate of the intersection point relative to the cap center
+     * @return true if the intersection is in front of the ray, within the distance and strictly inside the cap
+     */
+    private boolean isCapHit(double t, double maxDistance, double x, double y, double z) {
+        return t > 0 && alignZero(t - maxDistance) < 0 && alignZero(x * x + y * y + z * z - radiusSquared) < 0;
+    }
 
-        return intersections.isEmpty() ? null : intersections;
+    /**
+     * Computes a point on a ray
+     *
+     * @param origin the ray head
+     * @param dx     the x coordinate of the ray direction
+     * @param dy     the y coordinate of the ray direction
+     * @param dz     the z coordinate of the ray direction
+     * @param t      the ray parameter
+     * @return the point
+     */
+    private static Point pointAt(Point origin, double dx, double dy, double dz, double t) {
+        return new Point(origin.getX() + t * dx, origin.getY() + t * dy, origin.getZ() + t * dz);
     }
 
     @Override
@@ -1,8 +1,10 @@
 package geometries;
 
+import primitives.MaterialRegistry;
 import primitives.Point;
 import primitives.Ray;
 
+import java.nio.file.Path;
 import java.util.*;
 
 /**
@@ -64,6 +66,47 @@ public class Geometries extends Intersectable {
      */
     private static final int MAX_LEAF_SIZE = 6;
 
+    /**
+     * Whether {@link #buildBVH()} triangulates the polygons (except triangles) before the construction.
+     */
+    private boolean triangulatePolygons = false;
+
+    /**
+     * Finite region which clips the unbounded geometries in {@link #buildBVH()} (null - no clipping).
+     */
+    private AABB clipBounds = null;
+
+    /**
+     * SAH cost of the BVH when it was built - the reference of the refit quality.
+     */
+    private double buildCost = 0;
+
+    /**
+     * Ratio of the refitted BVH cost to its build cost which triggers a rebuild in {@link #refit()}.
+     */
+    private double refitThreshold = 1.5;
+
+    /**
+     * Branching factor of the BVH traversal: 2 - the binary tree, 4 or 8 - the tree collapsed
+     * into a {@link WideBvh}.
+     */
+    private int bvhWidth = 2;
+
+    /**
+     * The wide BVH of a root (null - the binary tree is traversed).
+     */
+    private WideBvh wide = null;
+
+    /**
+     * The registry of the interned materials of the geometries (null - not interned)
+     */
+    private MaterialRegistry materials = null;
+
+    /**
+     * Directory of the persistent BVH cache (null - the cache is not used).
+     */
+    private static volatile Path bvhCacheDirectory = null;
+
     /**
      * Precomputed comparators for sorting by each axis.
      */
@@ -137,6 +180,7 @@ public class Geometries extends Intersectable {
                 }
             }
         }
+        if (wide != null) return wide.intersect(ray, maxDistance, result);
         // If this is a BVH internal node
         if (leftChild != null && rightChild != null) {
             List<Intersection> leftResult = leftChild.calculateIntersections(ray, maxDistance);
@@ -165,6 +209,103 @@ public class Geometries extends Intersectable {
         return result;
     }
 
+    /**
+     * Finds the intersections of a packet of coherent rays (e.g. the primary rays of a tile).
+     * The packet traverses the binary BVH once: a node is culled for the whole packet by an
+     * interval test of its box, otherwise the rays which hit the box continue together, and a
+     * single remaining ray continues by the usual ray traversal. The results are the same as
+     * {@link #calculateIntersections(Ray, double)} of every ray.
+     *
+     * @param rays        the rays of the packet
+     * @param maxDistance the maximum distance
+     * @return the intersections of every ray (null for a ray without intersections)
+     */
+    public List<List<Intersection>> calculatePacketIntersections(Ray[] rays, double maxDistance) {
+        List<List<Intersection>> hits = new ArrayList<>(Collections.nCopies(rays.length, null));
+        if (!isRoot || rays.length == 1) {
+            for (int r = 0; r < rays.length; ++r) hits.set(r, calculateIntersections(rays[r], maxDistance));
+            return hits;
+        }
+
+        int[] active = new int[rays.length];
+        for (int r = 0; r < rays.length; ++r) {
+            active[r] = r;
+            for (Intersectable item : infinite) addPacketHits(hits, r, item.calculateIntersections(rays[r], maxDistance));
+        }
+        RayPacket packet = new RayPacket(rays);
+        if (isInternalNode()) {
+            traversePacket(leftChild, packet, active, rays.length, maxDistance, hits);
+            traversePacket(rightChild, packet, active, rays.length, maxDistance, hits);
+        } else intersectPacketLeaf(leafItems(), packet, active, rays.length, maxDistance, hits);
+        return hits;
+    }
+
+    /**
+     * Traverses a BVH subtree by the active rays of a packet
+     *
+     * @param node        the subtree root
+     * @param packet      the packet
+     * @param active      the indices of the active rays
+     * @param count       the amount of the active rays
+     * @param maxDistance the maximum distance
+     * @param hits        receives the intersections of every ray
+     */
+    private static void traversePacket(Geometries node, RayPacket packet, int[] active, int count,
+                                       double maxDistance, List<List<Intersection>> hits) {
+        if (node.box != null) {
+            if (!packet.mayHit(node.box, maxDistance)) return;
+            int[] hitting = new int[count];
+            int hitCount = 0;
+            for (int k = 0; k < count; ++k)
+                if (node.box.intersect(packet.rays[active[k]], maxDistance)) hitting[hitCount++] = active[k];
+            if (hitCount == 0) return;
+            // a diverged packet continues by the single ray traversal
+            if (hitCount == 1) {
+                int r = hitting[0];
+                addPacketHits(hits, r, node.calculateIntersectionsHelper(packet.rays[r], maxDistance));
+                return;
+            }
+            active = hitting;
+            count = hitCount;
+        }
+        if (node.isInternalNode()) {
+            traversePacket(node.leftChild, packet, active, count, maxDistance, hits);
+            traversePacket(node.rightChild, packet, active, count, maxDistance, hits);
+        } else intersectPacketLeaf(node.leafItems(), packet, active, count, maxDistance, hits);
+    }
+
+    /**
+     * Intersects the active rays of a packet with the geometries of a BVH leaf
+     *
+     * @param items       the geometries of the leaf
+     * @param packet      the packet
+     * @param active      the indices of the active rays
+     * @param count       the amount of the active rays
+     * @param maxDistance the maximum distance
+     * @param hits        receives the intersections of every ray
+     */
+    private static void intersectPacketLeaf(List<Intersectable> items, RayPacket packet, int[] active, int count,
+                                            double maxDistance, List<List<Intersection>> hits) {
+        for (Intersectable item : items) {
+            if (item.box != null && !packet.mayHit(item.box, maxDistance)) continue;
+            for (int k = 0; k < count; ++k)
+                addPacketHits(hits, active[k], item.calculateIntersections(packet.rays[active[k]], maxDistance));
+        }
+    }
+
+    /**
+     * Adds intersections of a ray of a packet to its results
+     *
+     * @param hits  the intersections of every ray
+     * @param r     the index of the ray
+     * @param found the intersections found (or null)
+     */
+    private static void addPacketHits(List<List<Intersection>> hits, int r, List<Intersection> found) {
+        if (found == null) return;
+        if (hits.get(r) == null) hits.set(r, new ArrayList<>(found));
+        else hits.get(r).addAll(found);
+    }
+
     @Override
     public void setBoundingBox() {
         if (isLeaf) {
@@ -197,17 +338,151 @@ public class Geometries extends Intersectable {
         this.box = new AABB(new Point(minX, minY, minZ), new Point(maxX, maxY, maxZ));
     }
 
+    /**
+     * Sets the directory of the persistent BVH cache for all the following BVH constructions.
+     * When it is set, {@link #buildBVH()} reuses a BVH stored for geometries of identical
+     * content (by any process) instead of building it, and stores every BVH it builds.
+     *
+     * @param directory the cache directory (null - don't use the cache)
+     */
+    public static void setBvhCacheDirectory(Path directory) {
+        bvhCacheDirectory = directory;
+    }
+
+    /**
+     * Sets whether {@link #buildBVH()} fan-triangulates the polygons (of this collection and
+     * of its nested collections) before the construction - a polygon of n vertices is replaced
+     * by n-2 triangles sharing its vertices. The triangles keep the material
+     * and the emission of their polygon; they give tighter bounding boxes for the SAH splits
+     * and are intersected by the specialised triangle test.
+     *
+     * @param triangulate true - triangulate the polygons
+     * @return this object (for chaining)
+     */
+    public Geometries setPolygonTriangulation(boolean triangulate) {
+        this.triangulatePolygons = triangulate;
+        return this;
+    }
+
+    /**
+     * Sets the finite region of the scene which clips the unbounded geometries (planes and tubes)
+     * in {@link #buildBVH()}. A clipped geometry gets the bounding box of its part within the
+     * region and is put in the BVH instead of being tested by every ray, and a geometry which
+     * is entirely out of the region is removed. Only the parts of these geometries within the
+     * region are intersected afterward - the region must contain everything that may be seen.
+     *
+     * @param bounds the scene region (null - don't clip)
+     * @return this object (for chaining)
+     */
+    public Geometries setClipBounds(AABB bounds) {
+        this.clipBounds = bounds;
+        return this;
+    }
+
+    /**
+     * Sets the branching factor of the BVH traversal. A width of 4 or 8 collapses the binary
+     * SAH tree built by {@link #buildBVH()} into a wide tree: every node tests the boxes of all
+     * its children together and the traversal visits about half (4) or a third (8) of the levels.
+     *
+     * @param width the node width - 2 (binary), 4 or 8
+     * @return this object (for chaining)
+     * @throws IllegalArgumentException if the width is not 2, 4 or 8
+     */
+    public Geometries setBvhWidth(int width) {
+        if (width != 2 && width != 4 && width != 8)
+            throw new IllegalArgumentException("BVH width must be 2, 4 or 8");
+        this.bvhWidth = width;
+        return this;
+    }
+
+    /**
+     * Interns the materials of the geometries (of this collection, its nested collections and
+     * instances) into the material registry of this collection - the geometries of materials
+     * of equal values share one copy of the material. The shared materials must not be
+     * changed afterward (give a geometry a new material instead).
+     *
+     * @return the material registry of this collection
+     */
+    public MaterialRegistry internMaterials() {
+        if (materials == null) materials = new MaterialRegistry();
+        internMaterials(List.of(this), materials);
+        return materials;
+    }
+
+    /**
+     * Interns the materials of the geometries of a list (and of its nested collections and instances)
+     *
+     * @param list     the geometries
+     * @param registry the material registry
+     */
+    private static void internMaterials(List<Intersectable> list, MaterialRegistry registry) {
+        for (Intersectable item : list)
+            switch (item) {
+                case Geometry geometry -> geometry.internMaterial(registry);
+                case Geometries nested -> {
+                    internMaterials(nested.geometries, registry);
+                    internMaterials(nested.infinite, registry);
+                    if (nested.leafGeometries != null) internMaterials(nested.leafGeometries, registry);
+                    if (nested.leftChild != null) internMaterials(List.of(nested.leftChild, nested.rightChild), registry);
+                }
+                case Instance instance -> internMaterials(List.of(instance.getPrototype()), registry);
+                default -> {
+                }
+            }
+    }
+
+    /**
+     * Replaces the polygons of a list (and of the nested collections) by their triangle fans
+     *
+     * @param list the list of the geometries
+     */
+    private static void triangulate(List<Intersectable> list) {
+        for (ListIterator<Intersectable> iterator = list.listIterator(); iterator.hasNext(); ) {
+            Intersectable item = iterator.next();
+            if (item instanceof Geometries nested && !nested.isRoot) triangulate(nested.geometries);
+            if (!(item instanceof Polygon polygon) || item instanceof Triangle) continue;
+
+            List<Point> vertices = polygon.vertices;
+            Point first = vertices.getFirst();
+            var normal = polygon.getNormal(first);
+            iterator.remove();
+            // every diagonal belongs to the triangle before it
+            for (int i = 1; i < vertices.size() - 1; ++i)
+                iterator.add(new Triangle(List.of(first, vertices.get(i), vertices.get(i + 1)), normal,
+                        i < vertices.size() - 2)
+                        .setEmission(polygon.getEmission()).setMaterial(polygon.getMaterial()));
+        }
+    }
+
     /**
      * Builds a BVH acceleration structure from the current geometries.
      * Transforms this Geometries instance into a BVH root node.
+     * If the BVH cache is used (see {@link #setBvhCacheDirectory(Path)}) and holds a BVH of
+     * identical geometries, the BVH is restored from the cache instead.
+     * The polygons are triangulated first if it has been requested by
+     * {@link #setPolygonTriangulation(boolean)}, and the unbounded geometries are clipped
+     * if clipping bounds have been set by {@link #setClipBounds(AABB)}.
      */
     public void buildBVH() {
         isLeaf = false;
+        if (triangulatePolygons) triangulate(geometries);
         setBoundingBox();
+        if (clipBounds != null)
+            geometries.removeIf(g -> g.getBoundingBox() == null && !g.clipBoundingBox(clipBounds));
         for (Intersectable g : geometries)
             if (g.getBoundingBox() == null) infinite.add(g);
         geometries.removeIf(g -> g.getBoundingBox() == null);
-        Geometries root = buildBVHFrom(geometries);
+
+        Path cacheDirectory = bvhCacheDirectory;
+        String cacheKey = cacheDirectory == null ? null : BvhCache.key(geometries);
+        if (cacheKey != null && BvhCache.restore(cacheDirectory, cacheKey, this, geometries)) {
+            buildCost = sahCost();
+            buildWide();
+            return;
+        }
+        List<Intersectable> bounded = cacheKey == null ? null : new ArrayList<>(geometries);
+
+        Geometries root = buildBVHFrom(new ArrayList<>(geometries)); // a root leaf must not share the cleared list
 
         if (root.isLeaf) {
             this.leafGeometries = root.leafGeometries;
@@ -224,6 +499,296 @@ public class Geometries extends Intersectable {
         }
         this.isRoot = true; // Mark this as the root node of the BVH
         this.geometries.clear(); // Clear the original geometries list
+        buildCost = sahCost();
+        buildWide();
+
+        if (cacheKey != null) BvhCache.store(cacheDirectory, cacheKey, this, bounded);
+    }
+
+    /**
+     * Sets the quality threshold of {@link #refit()}: the BVH is rebuilt when its SAH cost after
+     * the refit exceeds its cost when it was built by this ratio.
+     *
+     * @param threshold the cost ratio (at least 1)
+     * @return this object (for chaining)
+     * @throws IllegalArgumentException if the ratio is less than 1
+     */
+    public Geometries setRefitThreshold(double threshold) {
+        if (threshold < 1) throw new IllegalArgumentException("Refit threshold must be at least 1");
+        this.refitThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * Updates the BVH after geometries have moved (e.g. instances got new transformations
+     * between animation frames). The node bounds are recomputed bottom-up keeping the tree
+     * topology. If the refitted tree got much worse than the built one (see
+     * {@link #setRefitThreshold(double)}), or a geometry became unbounded, the BVH is rebuilt.
+     *
+     * @return true if the BVH has been rebuilt, false if it has been refitted
+     * @throws IllegalStateException if the BVH has not been built
+     */
+    public boolean refit() {
+        if (!isRoot) throw new IllegalStateException("Cannot refit before building the BVH");
+        for (Intersectable item : infinite) item.setBoundingBox();
+        boolean bounded = refitNode(this, clipBounds);
+        box = null; // the box of the root is not kept
+        if (bounded && infinite.stream().allMatch(item -> item.getBoundingBox() == null)
+                && sahCost() <= buildCost * refitThreshold) {
+            buildWide(); // the wide nodes hold copies of the boxes
+            return false;
+        }
+
+        List<Intersectable> items = new ArrayList<>(infinite);
+        collectPrimitives(this, items);
+        infinite.clear();
+        leftChild = rightChild = null;
+        leafGeometries = null;
+        wide = null;
+        isRoot = false;
+        geometries.clear();
+        geometries.addAll(items);
+        buildBVH();
+        return true;
+    }
+
+    /**
+     * Collapses the built binary BVH into the wide BVH if a wide traversal has been requested
+     * (see {@link #setBvhWidth(int)}); a root leaf stays as is.
+     */
+    private void buildWide() {
+        wide = bvhWidth > 2 && isInternalNode() ? new WideBvh(this, bvhWidth) : null;
+    }
+
+    /**
+     * Recomputes the bounds of a BVH node and its subtree
+     *
+     * @param node       the node
+     * @param clipBounds the bounds of clipping unbounded geometries (or null)
+     * @return false if a geometry of the subtree became unbounded
+     */
+    private static boolean refitNode(Geometries node, AABB clipBounds) {
+        if (node.leftChild != null && node.rightChild != null) {
+            boolean bounded = refitNode(node.leftChild, clipBounds) & refitNode(node.rightChild, clipBounds);
+            node.box = AABB.combine(node.leftChild.box, node.rightChild.box);
+            return bounded;
+        }
+
+        boolean bounded = true;
+        List<Intersectable> items = node.leafGeometries != null ? node.leafGeometries : node.geometries;
+        for (Intersectable item : items) {
+            item.setBoundingBox();
+            if (item.getBoundingBox() == null && clipBounds != null) item.clipBoundingBox(clipBounds);
+            if (item.getBoundingBox() == null) bounded = false;
+        }
+        node.box = computeBoundingBox(items);
+        return bounded;
+    }
+
+    /**
+     * Collects the geometries of the leaves of a BVH subtree
+     *
+     * @param node  the subtree root
+     * @param items receives the geometries
+     */
+    private static void collectPrimitives(Geometries node, List<Intersectable> items) {
+        if (node.leftChild != null && node.rightChild != null) {
+            collectPrimitives(node.leftChild, items);
+            collectPrimitives(node.rightChild, items);
+        } else items.addAll(node.leafGeometries != null ? node.leafGeometries : node.geometries);
+    }
+
+    /**
+     * Computes the SAH cost of the BVH: the traversal of every node and the intersection
+     * of every leaf geometry, weighted by the surface areas of the node boxes. The cost is
+     * relative to the total area of the geometries boxes (the cost of ideally tight nodes),
+     * so it doesn't depend on the extent of the scene and grows when the nodes get loose.
+     *
+     * @return the cost
+     */
+    private double sahCost() {
+        AABB bounds = leftChild != null && rightChild != null
+                ? AABB.combine(leftChild.box, rightChild.box) : computeBoundingBox(leafGeometries);
+        List<Intersectable> items = new ArrayList<>();
+        collectPrimitives(this, items);
+        double area = 0;
+        for (Intersectable item : items)
+            if (item.getBoundingBox() != null) area += item.getBoundingBox().surfaceArea();
+        return area <= 0 ? 0 : nodeCost(this, bounds) / area;
+    }
+
+    /**
+     * Computes the unnormalized SAH cost of a BVH subtree
+     *
+     * @param node the subtree root
+     * @param box  the bounds of the subtree root
+     * @return the cost - surface areas weighted by the traversal and intersection counts
+     */
+    private static double nodeCost(Geometries node, AABB box) {
+        double area = box == null ? 0 : box.surfaceArea();
+        if (node.leftChild != null && node.rightChild != null)
+            return area + nodeCost(node.leftChild, node.leftChild.box) + nodeCost(node.rightChild, node.rightChild.box);
+        return area * (node.leafGeometries != null ? node.leafGeometries : node.geometries).size();
+    }
+
+    /**
+     * Returns the bounds of all the geometries of this object, before or after the BVH
+     * construction (the box of a BVH root itself is not kept).
+     *
+     * @return the bounds, or null if there are no geometries or there is an unbounded geometry
+     */
+    AABB getBounds() {
+        if (!isRoot) {
+            setBoundingBox();
+            for (Intersectable item : isLeaf && leafGeometries != null ? leafGeometries : geometries)
+                if (item.getBoundingBox() == null) return null;
+            return box;
+        }
+        if (!infinite.isEmpty()) return null;
+        if (leftChild != null && rightChild != null) return AABB.combine(leftChild.box, rightChild.box);
+        return computeBoundingBox(leafGeometries);
+    }
+
+    /**
+     * Checks whether a BVH has been built on this object by {@link #buildBVH()}.
+     *
+     * @return true if this is a BVH root
+     */
+    boolean isBvhRoot() {
+        return isRoot;
+    }
+
+    /**
+     * Checks whether this is an internal node of the BVH.
+     *
+     * @return true if the node has two children
+     */
+    boolean isInternalNode() {
+        return leftChild != null && rightChild != null;
+    }
+
+    /**
+     * Returns the left child of a BVH internal node.
+     *
+     * @return the left child
+     */
+    Geometries left() {
+        return leftChild;
+    }
+
+    /**
+     * Returns the right child of a BVH internal node.
+     *
+     * @return the right child
+     */
+    Geometries right() {
+        return rightChild;
+    }
+
+    /**
+     * Returns the geometries of a BVH leaf.
+     *
+     * @return the geometries of the leaf
+     */
+    List<Intersectable> leafItems() {
+        return leafGeometries != null ? leafGeometries : geometries;
+    }
+
+    /**
+     * Returns the geometries added to this object (before BVH construction).
+     *
+     * @return the list of the geometries
+     */
+    List<Intersectable> getGeometries() {
+        return geometries;
+    }
+
+    /**
+     * Returns the infinite geometries of a BVH root (the ones that do not have bounding boxes).
+     *
+     * @return the list of the infinite geometries
+     */
+    List<Intersectable> getInfinite() {
+        return infinite;
+    }
+
+    /**
+     * Flattens the BVH built by {@link #buildBVH()} into its topology.
+     *
+     * @param primitives receives the bounded geometries in the order of the BVH leaves
+     * @return the topology of the BVH, or null if the BVH has not been built
+     */
+    BvhTopology exportBvh(List<Intersectable> primitives) {
+        if (!isRoot) return null;
+        BvhTopology topology = new BvhTopology();
+        exportNode(this, topology, primitives);
+        return topology;
+    }
+
+    /**
+     * Adds a BVH node (with its subtree) to the topology.
+     *
+     * @param node       the BVH node
+     * @param topology   the topology
+     * @param primitives receives the bounded geometries of the leaves
+     * @return the index of the node in the topology
+     */
+    private static int exportNode(Geometries node, BvhTopology topology, List<Intersectable> primitives) {
+        int index = topology.addNode(node.box);
+        if (node.leftChild != null && node.rightChild != null) {
+            int left = exportNode(node.leftChild, topology, primitives);
+            int right = exportNode(node.rightChild, topology, primitives);
+            topology.setChildren(index, left, right);
+        } else {
+            List<Intersectable> items = node.leafGeometries != null ? node.leafGeometries : node.geometries;
+            topology.setLeaf(index, primitives.size(), items.size());
+            primitives.addAll(items);
+        }
+        return index;
+    }
+
+    /**
+     * Restores a BVH from its topology, without running the SAH construction.
+     * The node bounds are taken from the topology as is.
+     *
+     * @param topology           the topology of the BVH
+     * @param primitives         the bounded geometries, indexed by the topology leaves
+     * @param infiniteGeometries the geometries without bounding boxes
+     */
+    void importBvh(BvhTopology topology, List<Intersectable> primitives, List<Intersectable> infiniteGeometries) {
+        Geometries root = importNode(topology, 0, primitives);
+        List<Intersectable> infiniteCopy = new ArrayList<>(infiniteGeometries);
+        this.geometries.clear();
+        this.infinite.clear();
+        this.infinite.addAll(infiniteCopy);
+        this.leftChild = root.leftChild;
+        this.rightChild = root.rightChild;
+        this.leafGeometries = root.leafGeometries;
+        this.isLeaf = root.isLeaf;
+        this.box = null;
+        this.isRoot = true;
+    }
+
+    /**
+     * Creates a BVH node (with its subtree) from the topology.
+     *
+     * @param topology   the topology of the BVH
+     * @param index      the index of the node in the topology
+     * @param primitives the bounded geometries, indexed by the topology leaves
+     * @return the BVH node
+     */
+    private static Geometries importNode(BvhTopology topology, int index, List<Intersectable> primitives) {
+        Geometries node = new Geometries();
+        if (topology.isLeaf(index)) {
+            int first = topology.firstPrimitive(index);
+            node.leafGeometries = new ArrayList<>(primitives.subList(first, first + topology.primitiveCount(index)));
+            node.isLeaf = true;
+        } else {
+            node.leftChild = importNode(topology, topology.left(index), primitives);
+            node.rightChild = importNode(topology, topology.right(index), primitives);
+        }
+        node.box = topology.box(index);
+        return node;
     }
 
     /**
@@ -64,4 +64,13 @@ abstract public class Geometry extends Intersectable {
         this.material = material;
         return this;
     }
+
+    /**
+     * Replaces the material by the shared material of the same values of a registry
+     *
+     * @param registry the material registry
+     */
+    void internMaterial(MaterialRegistry registry) {
+        material = registry.intern(material);
+    }
 }
\ No newline at end of file
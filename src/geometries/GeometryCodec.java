@@ -0,0 +1,401 @@
+package geometries;
+
+import primitives.*;
+import primitives.Vector;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Binary encoder/decoder of geometries for compact scene files.
+ * <p>
+ * Materials are not written with the geometries - each geometry refers to its material
+ * by an index in a material table. When writing, the codec collects the table (materials
+ * shared by several geometries are stored once); when reading, the table is given to the codec.
+ * <p>
+ * A {@link Geometries} object is written with its BVH (if it has been built), so reading it
+ * restores the BVH without rebuilding. Polygons are restored without re-validation.
+ * All the values are big-endian, as written by {@link DataOutput} and read by {@link ByteBuffer}.
+ */
+public final class GeometryCodec {
+
+    /**
+     * Geometry type tags
+     */
+    private static final byte SPHERE = 1, PLANE = 2, TRIANGLE = 3, POLYGON = 4, TUBE = 5, CYLINDER = 6, GEOMETRIES = 7,
+            FAN_TRIANGLE = 8, CLIPPED_PLANE = 9, CLIPPED_TUBE = 10;
+
+    /**
+     * Material table indices of the written materials
+     */
+    private final Map<Material, Integer> materialIds = new IdentityHashMap<>();
+
+    /**
+     * The material table
+     */
+    private final List<Material> materials;
+
+    /**
+     * Constructs a codec for writing geometries - the material table is collected while writing.
+     */
+    public GeometryCodec() {
+        materials = new ArrayList<>();
+    }
+
+    /**
+     * Constructs a codec for reading geometries with the given material table.
+     *
+     * @param materials the material table
+     */
+    public GeometryCodec(List<Material> materials) {
+        this.materials = materials;
+    }
+
+    /**
+     * Returns the material table (collected while writing or given for reading).
+     *
+     * @return the material table
+     */
+    public List<Material> getMaterials() {
+        return materials;
+    }
+
+    /**
+     * Writes a geometry (a composite geometry is written with all its content).
+     *
+     * @param out  the output
+     * @param item the geometry
+     * @throws IOException              in case of I/O error
+     * @throws IllegalArgumentException for an unsupported geometry type
+     */
+    public void write(DataOutput out, Intersectable item) throws IOException {
+        if (item instanceof Geometries group) {
+            out.writeByte(GEOMETRIES);
+            writeGeometries(out, group);
+            return;
+        }
+        if (!(item instanceof Geometry geometry))
+            throw new IllegalArgumentException("Unsupported geometry type: " + item.getClass().getName());
+
+        switch (geometry) {
+            case Sphere sphere -> {
+                writeHeader(out, SPHERE, geometry);
+                out.writeDouble(sphere.radius);
+                writePoint(out, sphere.getCenter());
+            }
+            case Plane plane -> {
+                writeHeader(out, plane.getBoundingBox() == null ? PLANE : CLIPPED_PLANE, geometry);
+                writePoint(out, plane.getPoint());
+                writePoint(out, plane.getNormal(plane.getPoint()));
+                if (plane.getBoundingBox() != null) writeBox(out, plane.getBoundingBox());
+            }
+            case Polygon polygon -> {
+                writeHeader(out, !(polygon instanceof Triangle triangle) ? POLYGON
+                        : triangle.hasClosedDiagonal() ? FAN_TRIANGLE : TRIANGLE, geometry);
+                writePoint(out, polygon.plane.getNormal(polygon.plane.getPoint()));
+                out.writeInt(polygon.vertices.size());
+                for (Point vertex : polygon.vertices) writePoint(out, vertex);
+            }
+            case Cylinder cylinder -> {
+                writeHeader(out, CYLINDER, geometry);
+                writeTube(out, cylinder);
+                out.writeDouble(cylinder.getHeight());
+            }
+            case Tube tube -> {
+                writeHeader(out, tube.getBoundingBox() == null ? TUBE : CLIPPED_TUBE, geometry);
+                writeTube(out, tube);
+                if (tube.getBoundingBox() != null) writeBox(out, tube.getBoundingBox());
+            }
+            default -> throw new IllegalArgumentException("Unsupported geometry type: " + item.getClass().getName());
+        }
+    }
+
+    /**
+     * Reads a geometry written by {@link #write(DataOutput, Intersectable)}.
+     * The bounding boxes of the geometries are set - the clipped planes and tubes get their
+     * written boxes.
+     *
+     * @param in the input buffer
+     * @return the geometry
+     * @throws IllegalArgumentException for corrupted data
+     */
+    public Intersectable read(ByteBuffer in) {
+        byte tag = in.get();
+        if (tag == GEOMETRIES) return readGeometries(in);
+
+        Material material = materials.get(in.getInt());
+        Color emission = readColor(in);
+        Geometry geometry = switch (tag) {
+            case SPHERE -> {
+                double radius = in.getDouble();
+                yield new Sphere(radius, readPoint(in));
+            }
+            case PLANE, CLIPPED_PLANE -> new Plane(readPoint(in), readVector(in));
+            case TRIANGLE, FAN_TRIANGLE, POLYGON -> {
+                Vector normal = readVector(in);
+                Point[] vertices = new Point[in.getInt()];
+                for (int i = 0; i < vertices.length; ++i) vertices[i] = readPoint(in);
+                yield tag == POLYGON ? new Polygon(List.of(vertices), normal)
+                        : new Triangle(List.of(vertices), normal, tag == FAN_TRIANGLE);
+            }
+            case TUBE, CLIPPED_TUBE -> {
+                double radius = in.getDouble();
+                yield new Tube(radius, new Ray(readPoint(in), readVector(in)));
+            }
+            case CYLINDER -> {
+                double radius = in.getDouble();
+                Ray axis = new Ray(readPoint(in), readVector(in));
+                yield new Cylinder(radius, axis, in.getDouble());
+            }
+            default -> throw new IllegalArgumentException("Unknown geometry type tag: " + tag);
+        };
+        geometry.setMaterial(material).setEmission(emission);
+        geometry.setBoundingBox();
+        // an unbounded geometry clipped by the scene region keeps the box of its clipped part
+        if (tag == CLIPPED_PLANE || tag == CLIPPED_TUBE) geometry.box = readBox(in);
+        return geometry;
+    }
+
+    /**
+     * Writes a composite geometry. A BVH root is written with its infinite geometries,
+     * its bounded geometries in leaf order and the BVH topology.
+     *
+     * @param out   the output
+     * @param group the composite geometry
+     * @throws IOException in case of I/O error
+     */
+    private void writeGeometries(DataOutput out, Geometries group) throws IOException {
+        List<Intersectable> primitives = new ArrayList<>();
+        BvhTopology topology = group.exportBvh(primitives);
+        out.writeBoolean(topology != null);
+        if (topology == null) {
+            writeList(out, group.getGeometries());
+            return;
+        }
+        writeList(out, group.getInfinite());
+        writeList(out, primitives);
+        topology.write(out);
+    }
+
+    /**
+     * Reads a composite geometry written by {@link #writeGeometries(DataOutput, Geometries)}.
+     *
+     * @param in the input buffer
+     * @return the composite geometry
+     */
+    private Geometries readGeometries(ByteBuffer in) {
+        Geometries group = new Geometries();
+        if (in.get() == 0) {
+            group.getGeometries().addAll(readList(in));
+            group.setBoundingBox();
+            return group;
+        }
+        List<Intersectable> infinite = readList(in);
+        List<Intersectable> primitives = readList(in);
+        group.importBvh(BvhTopology.read(in), primitives, infinite);
+        return group;
+    }
+
+    /**
+     * Writes a list of geometries
+     *
+     * @param out   the output
+     * @param items the geometries
+     * @throws IOException in case of I/O error
+     */
+    private void writeList(DataOutput out, List<Intersectable> items) throws IOException {
+        out.writeInt(items.size());
+        for (Intersectable item : items) write(out, item);
+    }
+
+    /**
+     * Reads a list of geometries
+     *
+     * @param in the input buffer
+     * @return the geometries
+     */
+    private List<Intersectable> readList(ByteBuffer in) {
+        int size = in.getInt();
+        List<Intersectable> items = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) items.add(read(in));
+        return items;
+    }
+
+    /**
+     * Writes the common data of a geometry - its type, material index and emission
+     *
+     * @param out      the output
+     * @param tag      the geometry type tag
+     * @param geometry the geometry
+     * @throws IOException in case of I/O error
+     */
+    private void writeHeader(DataOutput out, byte tag, Geometry geometry) throws IOException {
+        out.writeByte(tag);
+        Material material = geometry.getMaterial();
+        Integer id = materialIds.get(material);
+        if (id == null) {
+            id = materials.size();
+            materials.add(material);
+            materialIds.put(material, id);
+        }
+        out.writeInt(id);
+        writeColor(out, geometry.getEmission());
+    }
+
+    /**
+     * Writes the radius and the axis of a tube
+     *
+     * @param out  the output
+     * @param tube the tube
+     * @throws IOException in case of I/O error
+     */
+    private static void writeTube(DataOutput out, Tube tube) throws IOException {
+        out.writeDouble(tube.radius);
+        writePoint(out, tube.axis.getHead());
+        writePoint(out, tube.axis.getDirection());
+    }
+
+    /**
+     * Writes a material
+     *
+     * @param out      the output
+     * @param material the material
+     * @throws IOException in case of I/O error
+     */
+    public static void writeMaterial(DataOutput out, Material material) throws IOException {
+        writeDouble3(out, material.kA);
+        writeDouble3(out, material.kD);
+        writeDouble3(out, material.kS);
+        writeDouble3(out, material.kT);
+        writeDouble3(out, material.kR);
+        out.writeInt(material.nSh);
+        out.writeDouble(material.glossinessRadius);
+        out.writeDouble(material.glossinessDistance);
+        out.writeInt(material.glossinessRays);
+        out.writeDouble(material.glossinessRefrerectedtRadius);
+        out.writeDouble(material.glossinessRefrerectedtDistance);
+        out.writeInt(material.glossinessRefrerectedtRays);
+        out.writeInt(material.maxDepth);
+    }
+
+    /**
+     * Reads a material written by {@link #writeMaterial(DataOutput, Material)}
+     *
+     * @param in the input buffer
+     * @return the material
+     */
+    public static Material readMaterial(ByteBuffer in) {
+        Material material = new Material()
+                .setKA(readDouble3(in)).setKD(readDouble3(in)).setKS(readDouble3(in))
+                .setKT(readDouble3(in)).setKR(readDouble3(in)).setShininess(in.getInt());
+        material.glossinessRadius = in.getDouble();
+        material.glossinessDistance = in.getDouble();
+        material.glossinessRays = in.getInt();
+        material.glossinessRefrerectedtRadius = in.getDouble();
+        material.glossinessRefrerectedtDistance = in.getDouble();
+        material.glossinessRefrerectedtRays = in.getInt();
+        material.maxDepth = in.getInt();
+        return material;
+    }
+
+    /**
+     * Writes a triad of numbers
+     *
+     * @param out the output
+     * @param d   the triad
+     * @throws IOException in case of I/O error
+     */
+    public static void writeDouble3(DataOutput out, Double3 d) throws IOException {
+        out.writeDouble(d.d1());
+        out.writeDouble(d.d2());
+        out.writeDouble(d.d3());
+    }
+
+    /**
+     * Reads a triad of numbers
+     *
+     * @param in the input buffer
+     * @return the triad
+     */
+    public static Double3 readDouble3(ByteBuffer in) {
+        return new Double3(in.getDouble(), in.getDouble(), in.getDouble());
+    }
+
+    /**
+     * Writes a point (or a vector)
+     *
+     * @param out the output
+     * @param p   the point
+     * @throws IOException in case of I/O error
+     */
+    public static void writePoint(DataOutput out, Point p) throws IOException {
+        out.writeDouble(p.getX());
+        out.writeDouble(p.getY());
+        out.writeDouble(p.getZ());
+    }
+
+    /**
+     * Writes a bounding box
+     *
+     * @param out the output
+     * @param box the box
+     * @throws IOException in case of I/O error
+     */
+    private static void writeBox(DataOutput out, AABB box) throws IOException {
+        writePoint(out, box.getMin());
+        writePoint(out, box.getMax());
+    }
+
+    /**
+     * Reads a bounding box
+     *
+     * @param in the input buffer
+     * @return the box
+     */
+    private static AABB readBox(ByteBuffer in) {
+        return new AABB(readPoint(in), readPoint(in));
+    }
+
+    /**
+     * Reads a point
+     *
+     * @param in the input buffer
+     * @return the point
+     */
+    public static Point readPoint(ByteBuffer in) {
+        return new Point(in.getDouble(), in.getDouble(), in.getDouble());
+    }
+
+    /**
+     * Reads a vector
+     *
+     * @param in the input buffer
+     * @return the vector
+     */
+    public static Vector readVector(ByteBuffer in) {
+        return new Vector(in.getDouble(), in.getDouble(), in.getDouble());
+    }
+
+    /**
+     * Writes a color
+     *
+     * @param out   the output
+     * @param color the color
+     * @throws IOException in case of I/O error
+     */
+    public static void writeColor(DataOutput out, Color color) throws IOException {
+        writeDouble3(out, color.getRgb());
+    }
+
+    /**
+     * Reads a color
+     *
+     * @param in the input buffer
+     * @return the color
+     */
+    public static Color readColor(ByteBuffer in) {
+        return new Color(in.getDouble(), in.getDouble(), in.getDouble());
+    }
+}
@@ -0,0 +1,131 @@
+package geometries;
+
+import primitives.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An instance of a shared geometry (typically a {@link Geometries} with its own BVH)
+ * placed in the scene by an affine transformation.<br>
+ * Rays are transformed into the object space of the shared geometry, and the intersection
+ * points and normals are transformed back, so any number of instances cost the memory of
+ * one geometry plus a transformation each. A BVH built over the instances (by their
+ * bounding boxes) together with the BVH of the shared geometry forms a two-level BVH.
+ * <p>
+ * Build the BVH of the shared geometry before creating its instances.
+ */
+public class Instance extends Intersectable {
+
+    /**
+     * The shared geometry
+     */
+    private final Intersectable prototype;
+
+    /**
+     * The transformation from the object space of the shared geometry to the scene
+     */
+    private Transform transform;
+
+    /**
+     * Constructs an instance of a shared geometry
+     *
+     * @param prototype the shared geometry
+     * @param transform the transformation from the object space of the geometry to the scene
+     */
+    public Instance(Intersectable prototype, Transform transform) {
+        this.prototype = prototype;
+        this.transform = transform;
+    }
+
+    /**
+     * Getter for the shared geometry
+     *
+     * @return the shared geometry
+     */
+    public Intersectable getPrototype() {
+        return prototype;
+    }
+
+    /**
+     * Getter for the transformation
+     *
+     * @return the transformation from the object space of the shared geometry to the scene
+     */
+    public Transform getTransform() {
+        return transform;
+    }
+
+    /**
+     * Setter for the transformation - moves the instance (e.g. between animation frames).
+     * The bounding box is updated by {@link #setBoundingBox()}, which is done by
+     * {@link Geometries#refit()} of the BVH containing the instance.
+     *
+     * @param transform the transformation from the object space of the shared geometry to the scene
+     * @return this instance (for chaining)
+     */
+    public Instance setTransform(Transform transform) {
+        this.transform = transform;
+        return this;
+    }
+
+    /**
+     * The intersections are found in the object space - the distance limit is scaled
+     * by the length of the transformed direction. The intersections have the transformed
+     * normals set.
+     */
+    @Override
+    protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
+        Vector direction = transform.inverseTransform(ray.getDirection());
+        double scale = direction.length();
+        Ray local = new Ray(transform.inverseTransform(ray.getHead()), direction);
+
+        var intersections = prototype.calculateIntersections(local, maxDistance * scale);
+        if (intersections == null) return null;
+
+        List<Intersection> result = new ArrayList<>(intersections.size());
+        for (Intersection intersection : intersections) {
+            Intersection global = new Intersection(intersection.geometry, transform.transform(intersection.point));
+            global.normal = transform.transformNormal(intersection.normal != null ? intersection.normal
+                    : intersection.geometry.getNormal(intersection.point));
+            global.instanced = true;
+            result.add(global);
+        }
+        return result;
+    }
+
+    /**
+     * The bounding box of the instance is the box of the transformed corners of the
+     * shared geometry bounds. An instance of an unbounded geometry is unbounded.
+     */
+    @Override
+    public void setBoundingBox() {
+        AABB local;
+        if (prototype instanceof Geometries geometries) local = geometries.getBounds();
+        else {
+            prototype.setBoundingBox();
+            local = prototype.getBoundingBox();
+        }
+        if (local == null) {
+            box = null;
+            return;
+        }
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        Point min = local.getMin(), max = local.getMax();
+        for (int corner = 0; corner < 8; ++corner) {
+            Point p = transform.transform(new Point(
+                    (corner & 1) == 0 ? min.getX() : max.getX(),
+                    (corner & 2) == 0 ? min.getY() : max.getY(),
+                    (corner & 4) == 0 ? min.getZ() : max.getZ()));
+            minX = Math.min(minX, p.getX());
+            minY = Math.min(minY, p.getY());
+            minZ = Math.min(minZ, p.getZ());
+            maxX = Math.max(maxX, p.getX());
+            maxY = Math.max(maxY, p.getY());
+            maxZ = Math.max(maxZ, p.getZ());
+        }
+        box = new AABB(new Point(minX, minY, minZ), new Point(maxX, maxY, maxZ));
+    }
+}
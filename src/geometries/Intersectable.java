@@ -70,6 +70,12 @@ public abstract class Intersectable {
          */
         public LightSource lightSource;
 
+        /**
+         * Whether the geometry has been hit through an {@link Instance} - the geometry itself is
+         * in the object space of the instance (not final)
+         */
+        public boolean instanced;
+
         /**
          * Constructor to initialize all fields.
          *
@@ -153,4 +159,16 @@ public abstract class Intersectable {
      * This method must be implemented by subclasses to define their bounding box.
      */
     public abstract void setBoundingBox();
+
+    /**
+     * Clips an unbounded geometry by a finite region: sets its bounding box to the box of the
+     * part of the geometry within the region. Geometries which are bounded, or can't be
+     * clipped, keep their bounding box.
+     *
+     * @param bounds the finite region
+     * @return false if the geometry has no part within the region (it may be culled), true otherwise
+     */
+    boolean clipBoundingBox(AABB bounds) {
+        return true;
+    }
 }
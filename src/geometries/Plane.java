@@ -21,6 +21,11 @@ public class Plane extends Geometry {
      */
     final private Vector normal;
 
+    /**
+     * Padding of a clipped bounding box, so that the box of an axis aligned plane is not flat
+     */
+    private static final double CLIP_PADDING = 1e-6;
+
     /**
      * Constructs a plane using three points in space.
      *
@@ -47,6 +52,15 @@ public class Plane extends Geometry {
         this.normal = normal.normalize();
     }
 
+    /**
+     * Getter for the reference point of the plane.
+     *
+     * @return a point on the plane
+     */
+    public Point getPoint() {
+        return p;
+    }
+
     @Override
     public Vector getNormal(Point p) {
         return normal;
@@ -75,4 +89,44 @@ public class Plane extends Geometry {
     public void setBoundingBox() {
         this.box = null;
     }
-}
\ No newline at end of file
+
+    /**
+     * The plane is clipped by the box of its slice within the bounds - the points where
+     * the box edges cross the plane.
+     */
+    @Override
+    boolean clipBoundingBox(AABB bounds) {
+        double[] lo = {bounds.getMin().getX(), bounds.getMin().getY(), bounds.getMin().getZ()};
+        double[] hi = {bounds.getMax().getX(), bounds.getMax().getY(), bounds.getMax().getZ()};
+        double nx = normal.getX(), ny = normal.getY(), nz = normal.getZ();
+        double offset = nx * p.getX() + ny * p.getY() + nz * p.getZ();
+
+        // signed distances of the 8 corners (corner bits: x - 1, y - 2, z - 4)
+        double[] distance = new double[8];
+        for (int corner = 0; corner < 8; ++corner)
+            distance[corner] = nx * ((corner & 1) == 0 ? lo[0] : hi[0]) + ny * ((corner & 2) == 0 ? lo[1] : hi[1])
+                    + nz * ((corner & 4) == 0 ? lo[2] : hi[2]) - offset;
+
+        double[] min = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] max = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int a = 0; a < 8; ++a)
+            for (int axis = 0; axis < 3; ++axis) {
+                int b = a | (1 << axis); // the other end of the edge along the axis
+                if (b == a) continue;
+                double da = distance[a], db = distance[b];
+                if (da * db > 0) continue; // the edge doesn't cross the plane
+                double f = da == db ? 0 : da / (da - db);
+                for (int k = 0; k < 3; ++k) {
+                    double ca = (a >> k & 1) == 0 ? lo[k] : hi[k], cb = (b >> k & 1) == 0 ? lo[k] : hi[k];
+                    double c = ca + (cb - ca) * f;
+                    if (c < min[k]) min[k] = c;
+                    if (c > max[k]) max[k] = c;
+                }
+            }
+        if (min[0] > max[0]) return false;
+
+        box = new AABB(new Point(min[0] - CLIP_PADDING, min[1] - CLIP_PADDING, min[2] - CLIP_PADDING),
+                new Point(max[0] + CLIP_PADDING, max[1] + CLIP_PADDING, max[2] + CLIP_PADDING));
+        return true;
+    }
+}
@@ -4,6 +4,7 @@ import primitives.*;
 
 import java.util.List;
 
+import static primitives.Util.alignZero;
 import static primitives.Util.isZero;
 
 /**
@@ -25,6 +26,16 @@ public class Polygon extends Geometry {
      * The size of the polygon - the amount of the vertices in the polygon
      */
     private final int size;
+    /**
+     * Plane normal coordinates - precomputed for the intersection test
+     */
+    private double nx, ny, nz;
+    /**
+     * Edge planes - for each edge the inward edge normal (polygon normal x edge, pointing
+     * into the polygon) and its offset: {mx, my, mz, d} - a point q of the plane is inside
+     * the polygon iff m&#183;q - d &gt; 0 for all the edges
+     */
+    private double[] edgePlanes;
 
     /**
      * Polygon constructor based on vertices list. The list must be ordered by edge
@@ -58,6 +69,7 @@ public class Polygon extends Geometry {
         // polygon with this plane.
         // The plane holds the invariant normal (orthogonal unit) vector to the polygon
         plane = new Plane(vertices[0], vertices[1], vertices[2]);
+        precompute();
         if (size == 3) return; // no need for more tests for a Triangle
 
         Vector n = plane.getNormal(vertices[0]);
@@ -86,6 +98,48 @@ public class Polygon extends Geometry {
         }
     }
 
+    /**
+     * Polygon constructor for vertices that have already been validated (e.g. loaded
+     * from a scene file). No validation is performed.
+     *
+     * @param vertices list of vertices according to their order by edge path
+     * @param normal   the normal of the polygon plane
+     */
+    Polygon(List<Point> vertices, Vector normal) {
+        this.vertices = vertices;
+        size = vertices.size();
+        plane = new Plane(vertices.getFirst(), normal);
+        precompute();
+    }
+
+    /**
+     * Precomputes the plane normal and the edge planes as primitive values, so the
+     * intersection test is a few dot products without allocations. A {@link Triangle}
+     * has its own intersection test and does not need the edge planes.
+     */
+    private void precompute() {
+        Vector n = plane.getNormal(vertices.getFirst());
+        nx = n.getX();
+        ny = n.getY();
+        nz = n.getZ();
+        if (this instanceof Triangle) return;
+
+        edgePlanes = new double[4 * size];
+        for (int i = 0; i < size; ++i) {
+            Point p1 = vertices.get(i), p2 = vertices.get((i + 1) % size);
+            double ex = p2.getX() - p1.getX(), ey = p2.getY() - p1.getY(), ez = p2.getZ() - p1.getZ();
+            double mx = ny * ez - nz * ey, my = nz * ex - nx * ez, mz = nx * ey - ny * ex;
+            edgePlanes[4 * i] = mx;
+            edgePlanes[4 * i + 1] = my;
+            edgePlanes[4 * i + 2] = mz;
+            edgePlanes[4 * i + 3] = mx * p1.getX() + my * p1.getY() + mz * p1.getZ();
+        }
+        // orient the edge normals inwards - a convex polygon's third vertex is inside the first edge
+        Point p3 = vertices.get(2);
+        if (edgePlanes[0] * p3.getX() + edgePlanes[1] * p3.getY() + edgePlanes[2] * p3.getZ() < edgePlanes[3])
+            for (int i = 0; i < edgePlanes.length; ++i) edgePlanes[i] = -edgePlanes[i];
+    }
+
     @Override
     public Vector getNormal(Point point) {
         return plane.getNormal(point);
@@ -93,40 +147,25 @@ public class Polygon extends Geometry {
 
     @Override
     protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
-        var intersection = plane.calculateIntersections(ray, maxDistance);
-        if (intersection == null) return null;
-
-        Point q = intersection.getFirst().point; // Intersection point
-        Vector n = plane.getNormal(q);     // Normal vector to the plane
-
-        Vector edge1, edge2;
-        double sign = 0;
-
-        for (int i = 0; i < size; i++) {
-            Point p1 = vertices.get(i);
-            Point p2 = vertices.get((i + 1) % size); // wrap around at the end
-
-            edge1 = p2.subtract(p1); // Edge vector
-
-            double currentSign;
-            try {
-                edge2 = q.subtract(p1); // Vector from vertex to intersection point
-                currentSign = n.dotProduct(edge1.crossProduct(edge2));
-            } catch (IllegalArgumentException e) {
-                return null; // If q equals p1 ➔ zero vector ➔ point on vertex ➔ no intersection
-            }
-
-            if (isZero(currentSign)) {
-                return null; // point is exactly on an edge
-            }
-
-            if (sign == 0) {
-                sign = currentSign;
-            } else if (sign * currentSign < 0) {
-                return null; // sign changed, point is outside polygon
-            }
+        final Point origin = ray.getHead();
+        final Vector direction = ray.getDirection();
+        final double dx = direction.getX(), dy = direction.getY(), dz = direction.getZ();
+
+        // intersection with the plane
+        double vn = dx * nx + dy * ny + dz * nz;
+        if (isZero(vn)) return null;
+        final double ox = origin.getX(), oy = origin.getY(), oz = origin.getZ();
+        Point p0 = vertices.getFirst();
+        double t = ((p0.getX() - ox) * nx + (p0.getY() - oy) * ny + (p0.getZ() - oz) * nz) / vn;
+        if (alignZero(t) <= 0 || alignZero(t - maxDistance) >= 0) return null;
+
+        final double qx = ox + t * dx, qy = oy + t * dy, qz = oz + t * dz;
+        for (int i = 0; i < edgePlanes.length; i += 4) {
+            double side = edgePlanes[i] * qx + edgePlanes[i + 1] * qy + edgePlanes[i + 2] * qz - edgePlanes[i + 3];
+            // on an edge (or a vertex), or outside
+            if (isZero(side) || side < 0) return null;
         }
-        return List.of(new Intersection(this, q)); // point is inside polygon
+        return List.of(new Intersection(this, new Point(qx, qy, qz))); // point is inside polygon
     }
 
     @Override
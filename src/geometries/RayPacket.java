@@ -0,0 +1,129 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+/**
+ * A packet of coherent rays (e.g. the primary rays of a tile) traversing the BVH together.<br>
+ * The packet keeps the interval bounds of the ray origins and inverse directions, so a box
+ * can be culled for the whole packet by one interval-arithmetic slab test: the entry and exit
+ * distances of every ray of the packet lie within the computed bounds. An axis on which the
+ * directions change sign (or are near zero) gives no bounds and is not tested.
+ */
+final class RayPacket {
+
+    /**
+     * Directions components below this are treated as parallel (as in {@link AABB#intersect(Ray, double)})
+     */
+    private static final double PARALLEL = 1e-15;
+    /**
+     * Tolerance of the slab test - the one of {@link AABB#intersect(Ray, double)} and a relative
+     * slack for the rounding of the interval products
+     */
+    private static final double SLAB_TOLERANCE = 1e-9;
+
+    /**
+     * The rays of the packet
+     */
+    final Ray[] rays;
+    /**
+     * Lower bounds of the origin coordinates
+     */
+    private final double[] originLow = new double[3];
+    /**
+     * Upper bounds of the origin coordinates
+     */
+    private final double[] originHigh = new double[3];
+    /**
+     * Lower bounds of the inverse direction components
+     */
+    private final double[] inverseLow = new double[3];
+    /**
+     * Upper bounds of the inverse direction components
+     */
+    private final double[] inverseHigh = new double[3];
+    /**
+     * Whether the directions of the packet keep their sign along an axis
+     */
+    private final boolean[] coherent = new boolean[3];
+
+    /**
+     * Constructs a packet of rays and computes its bounds
+     *
+     * @param rays the rays (at least one)
+     */
+    RayPacket(Ray[] rays) {
+        this.rays = rays;
+        for (int axis = 0; axis < 3; ++axis) {
+            originLow[axis] = inverseLow[axis] = Double.POSITIVE_INFINITY;
+            originHigh[axis] = inverseHigh[axis] = Double.NEGATIVE_INFINITY;
+            coherent[axis] = true;
+        }
+        double[] signs = new double[3];
+        for (Ray ray : rays) {
+            Point head = ray.getHead();
+            Vector direction = ray.getDirection();
+            for (int axis = 0; axis < 3; ++axis) {
+                double o = head.get(axis), d = direction.get(axis);
+                originLow[axis] = Math.min(originLow[axis], o);
+                originHigh[axis] = Math.max(originHigh[axis], o);
+                if (Math.abs(d) < PARALLEL || signs[axis] * d < 0) {
+                    coherent[axis] = false;
+                    continue;
+                }
+                signs[axis] = Math.signum(d);
+                inverseLow[axis] = Math.min(inverseLow[axis], 1 / d);
+                inverseHigh[axis] = Math.max(inverseHigh[axis], 1 / d);
+            }
+        }
+    }
+
+    /**
+     * Checks whether any ray of the packet may hit a box - a conservative test:
+     * false means that no ray of the packet hits the box
+     *
+     * @param box         the box
+     * @param maxDistance the maximum distance
+     * @return false if the box is missed by the whole packet
+     */
+    boolean mayHit(AABB box, double maxDistance) {
+        double near = Double.NEGATIVE_INFINITY, far = Double.POSITIVE_INFINITY;
+        for (int axis = 0; axis < 3; ++axis) {
+            if (!coherent[axis]) continue;
+            double min = box.getMin().get(axis), max = box.getMax().get(axis);
+            // positive directions enter through the min slab, negative ones through the max slab
+            boolean positive = inverseLow[axis] > 0;
+            near = Math.max(near, lowerProduct(positive ? min : max, axis));
+            far = Math.min(far, upperProduct(positive ? max : min, axis));
+        }
+        double slack = SLAB_TOLERANCE * (1 + Math.abs(near) + Math.abs(far == Double.POSITIVE_INFINITY ? 0 : far));
+        return near <= far + slack && near <= maxDistance + slack && far >= -slack;
+    }
+
+    /**
+     * Computes the lower bound of the slab distance (plane - origin) * inverse over the packet
+     *
+     * @param plane the slab plane coordinate
+     * @param axis  the axis
+     * @return the lower bound of the distance
+     */
+    private double lowerProduct(double plane, int axis) {
+        double a = plane - originHigh[axis], b = plane - originLow[axis];
+        return Math.min(Math.min(a * inverseLow[axis], a * inverseHigh[axis]),
+                Math.min(b * inverseLow[axis], b * inverseHigh[axis]));
+    }
+
+    /**
+     * Computes the upper bound of the slab distance (plane - origin) * inverse over the packet
+     *
+     * @param plane the slab plane coordinate
+     * @param axis  the axis
+     * @return the upper bound of the distance
+     */
+    private double upperProduct(double plane, int axis) {
+        double a = plane - originHigh[axis], b = plane - originLow[axis];
+        return Math.max(Math.max(a * inverseLow[axis], a * inverseHigh[axis]),
+                Math.max(b * inverseLow[axis], b * inverseHigh[axis]));
+    }
+}
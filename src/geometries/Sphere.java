@@ -27,6 +27,15 @@ public class Sphere extends RadialGeometry {
         this.center = center;
     }
 
+    /**
+     * Getter for the center point of the sphere.
+     *
+     * @return the center point
+     */
+    public Point getCenter() {
+        return center;
+    }
+
     @Override
     public Vector getNormal(Point point) {
         return point.subtract(center).normalize();
@@ -11,6 +11,24 @@ import static primitives.Util.*;
  */
 public class Triangle extends Polygon {
 
+    /**
+     * First vertex coordinates - precomputed for the intersection test
+     */
+    private double v0x, v0y, v0z;
+    /**
+     * First edge (v1 - v0) coordinates - precomputed for the intersection test
+     */
+    private double e1x, e1y, e1z;
+    /**
+     * Second edge (v2 - v0) coordinates - precomputed for the intersection test
+     */
+    private double e2x, e2y, e2z;
+    /**
+     * Whether the edge from the first vertex to the third one belongs to the triangle -
+     * the diagonal of a fan shared with the next triangle, which excludes it
+     */
+    private final boolean closedDiagonal;
+
     /**
      * Constructs a triangle from three points.
      *
@@ -20,50 +38,100 @@ public class Triangle extends Polygon {
      */
     public Triangle(Point p1, Point p2, Point p3) {
         super(p1, p2, p3);
+        closedDiagonal = false;
+        precompute();
+    }
+
+    /**
+     * Constructs a triangle from already validated vertices (no validation is performed).
+     *
+     * @param vertices the three vertices of the triangle
+     * @param normal   the normal of the triangle plane
+     */
+    Triangle(List<Point> vertices, Vector normal) {
+        this(vertices, normal, false);
+    }
+
+    /**
+     * Constructs a triangle of a fan from already validated vertices (no validation is performed).
+     * A point of a diagonal shared by two triangles of the fan must belong to exactly one of them,
+     * otherwise a ray through the diagonal misses the both.
+     *
+     * @param vertices       the three vertices of the triangle
+     * @param normal         the normal of the triangle plane
+     * @param closedDiagonal whether the inner points of the edge from the first vertex to the
+     *                       third one belong to the triangle
+     */
+    Triangle(List<Point> vertices, Vector normal, boolean closedDiagonal) {
+        super(vertices, normal);
+        this.closedDiagonal = closedDiagonal;
+        precompute();
     }
 
+    /**
+     * Checks whether the edge from the first vertex to the third one belongs to the triangle
+     *
+     * @return true if the diagonal is closed
+     */
+    boolean hasClosedDiagonal() {
+        return closedDiagonal;
+    }
+
+    /**
+     * Stores the first vertex and the edges as primitive values,
+     * so the intersection test runs without allocations
+     */
+    private void precompute() {
+        Point v0 = vertices.get(0), v1 = vertices.get(1), v2 = vertices.get(2);
+        v0x = v0.getX();
+        v0y = v0.getY();
+        v0z = v0.getZ();
+        e1x = v1.getX() - v0x;
+        e1y = v1.getY() - v0y;
+        e1z = v1.getZ() - v0z;
+        e2x = v2.getX() - v0x;
+        e2y = v2.getY() - v0y;
+        e2z = v2.getZ() - v0z;
+    }
+
+    /**
+     * Möller–Trumbore intersection on the precomputed edges - only the intersection point
+     * of a hit is allocated.
+     */
     @Override
     protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
         final Point origin = ray.getHead();
         final Vector direction = ray.getDirection();
+        final double dx = direction.getX(), dy = direction.getY(), dz = direction.getZ();
 
-        final Point v0 = vertices.get(0);
-        final Point v1 = vertices.get(1);
-        final Point v2 = vertices.get(2);
+        // h = direction x edge2
+        final double hx = dy * e2z - dz * e2y;
+        final double hy = dz * e2x - dx * e2z;
+        final double hz = dx * e2y - dy * e2x;
 
-        final Vector edge1, edge2, h, s, q;
+        final double a = e1x * hx + e1y * hy + e1z * hz;
+        if (isZero(a)) return null;
+        final double f = 1.0 / a;
 
-        try {
-            edge1 = v1.subtract(v0);
-            edge2 = v2.subtract(v0);
-            h = direction.crossProduct(edge2);
-        } catch (IllegalArgumentException e) {
-            return null;
-        }
+        // s = origin - v0
+        final double sx = origin.getX() - v0x, sy = origin.getY() - v0y, sz = origin.getZ() - v0z;
+        final double u = f * (sx * hx + sy * hy + sz * hz);
+        // Strict inside only: u, v strictly > 0 and < 1 - except of u = 0 on a closed diagonal
+        final double uu = alignZero(u);
+        if ((closedDiagonal ? uu < 0 : uu <= 0) || alignZero(u - 1) >= 0) return null;
 
-        final double a = edge1.dotProduct(h);
-        if (isZero(a)) return null;
+        // q = s x edge1
+        final double qx = sy * e1z - sz * e1y;
+        final double qy = sz * e1x - sx * e1z;
+        final double qz = sx * e1y - sy * e1x;
 
-        final double f = 1.0 / a;
-        try {
-            s = origin.subtract(v0);
-            q = s.crossProduct(edge1);
-        } catch (IllegalArgumentException e) {
-            return null;
-        }
-
-        final double u = f * s.dotProduct(h);
-        final double v = f * direction.dotProduct(q);
-
-        // Strict inside only: u, v strictly > 0 and < 1
-        if (alignZero(u) <= 0 || alignZero(u - 1) >= 0) return null;
+        final double v = f * (dx * qx + dy * qy + dz * qz);
         if (alignZero(v) <= 0 || alignZero(v - 1) >= 0) return null;
         if (alignZero(u + v - 1) >= 0) return null;
 
-        final double t = alignZero(f * edge2.dotProduct(q));
+        final double t = alignZero(f * (e2x * qx + e2y * qy + e2z * qz));
         if (t <= 0 || alignZero(t - maxDistance) >= 0) return null;
 
-        final Point intersectionPoint = origin.add(direction.scale(t));
-        return List.of(new Intersection(this, intersectionPoint));
+        return List.of(new Intersection(this, new Point(origin.getX() + t * dx, origin.getY() + t * dy, origin.getZ() + t * dz)));
     }
-}
\ No newline at end of file
+}
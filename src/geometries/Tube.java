@@ -5,6 +5,7 @@ import primitives.*;
 import java.util.List;
 
 import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
 
 /**
  * Represents an infinite tube in 3D space, defined by a radius and an axis.
@@ -91,5 +92,41 @@ public class Tube extends RadialGeometry {
     public void setBoundingBox() {
         this.box = null;
     }
-}
 
+    /**
+     * The tube is clipped by the box of the axis segment within the bounds (expanded by the
+     * radius), expanded by the extent of the tube cross-section, and intersected with the bounds.
+     * A bounded tube (a cylinder) keeps its bounding box.
+     */
+    @Override
+    boolean clipBoundingBox(AABB bounds) {
+        if (box != null) return true;
+        Point head = axis.getHead();
+        Vector direction = axis.getDirection();
+        double tMin = Double.NEGATIVE_INFINITY, tMax = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < 3; ++k) {
+            double o = head.get(k), d = direction.get(k);
+            double lo = bounds.getMin().get(k) - radius, hi = bounds.getMax().get(k) + radius;
+            if (isZero(d)) {
+                if (o < lo || o > hi) return false;
+                continue;
+            }
+            double t1 = (lo - o) / d, t2 = (hi - o) / d;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+        if (tMin > tMax) return false;
+
+        double[] min = new double[3], max = new double[3];
+        for (int k = 0; k < 3; ++k) {
+            double o = head.get(k), d = direction.get(k);
+            double extent = radius * Math.sqrt(Math.max(0, 1 - d * d)); // cross-section extent along the axis k
+            double a = o + tMin * d, b = o + tMax * d;
+            min[k] = Math.max(Math.min(a, b) - extent, bounds.getMin().get(k));
+            max[k] = Math.min(Math.max(a, b) + extent, bounds.getMax().get(k));
+            if (min[k] > max[k]) return false;
+        }
+        box = new AABB(new Point(min[0], min[1], min[2]), new Point(max[0], max[1], max[2]));
+        return true;
+    }
+}
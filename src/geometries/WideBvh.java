@@ -0,0 +1,236 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+import java.util.*;
+
+import static geometries.Intersectable.Intersection;
+
+/**
+ * Wide (4-ary or 8-ary) BVH collapsed from the binary SAH tree of {@link Geometries}.<br>
+ * Every node holds the boxes of all its children in structure-of-arrays form (a slot of
+ * each array per child), so a traversal step tests all the children boxes in one tight
+ * loop over primitive arrays - the loop has no branches and no allocations, so the JIT
+ * may vectorize it - and the tree depth is halved (4-ary) or divided by 3 (8-ary).
+ * The implementation is scalar only: there is no explicit SIMD path (the
+ * {@code jdk.incubator.vector} module is not used), any vectorization is up to the JIT.
+ * <p>
+ * The traversal stack is a per-thread scratch array, so tracing a ray allocates nothing
+ * but the intersections it finds.
+ * <p>
+ * Children slots: an internal child holds the node index, a leaf child holds
+ * -(leaf index + 1); the boxes of the unused slots are NaN, so they are never hit.
+ */
+final class WideBvh {
+
+    /**
+     * Tolerance of the slab test (as in {@link AABB#intersect(Ray, double)})
+     */
+    private static final double SLAB_TOLERANCE = 1e-10;
+    /**
+     * Replacement of zero direction components - keeps the slab test free of NaN
+     * (a ray parallel to a slab gets a conservative result)
+     */
+    private static final double TINY = 1e-300;
+
+    /**
+     * The node width (children per node)
+     */
+    private final int width;
+    /**
+     * Children boxes, a slot per child of every node: index = node * width + child
+     */
+    private final double[] minX, minY, minZ, maxX, maxY, maxZ;
+    /**
+     * Children references, a slot per child of every node
+     */
+    private final int[] child;
+    /**
+     * Primitives of the leaves, stored contiguously
+     */
+    private final Intersectable[] primitives;
+    /**
+     * First primitive of every leaf
+     */
+    private final int[] leafStart;
+    /**
+     * Amount of primitives of every leaf
+     */
+    private final int[] leafCount;
+    /**
+     * Maximal tree depth (the traversal stack size)
+     */
+    private final int depth;
+    /**
+     * Per-thread traversal stack - every tree has its own, so the traversal of a nested tree
+     * (of an instanced prototype) doesn't overwrite it
+     */
+    private final ThreadLocal<int[]> stacks;
+
+    /**
+     * Collapses a binary BVH into a wide BVH
+     *
+     * @param root  the binary BVH root (an internal node)
+     * @param width the node width - 4 or 8
+     */
+    WideBvh(Geometries root, int width) {
+        this.width = width;
+        // the binary nodes which become wide nodes (breadth-first, the root first), their
+        // children and the leaves
+        List<Geometries> nodes = new ArrayList<>();
+        List<List<Geometries>> nodesChildren = new ArrayList<>();
+        Map<Geometries, Integer> nodeIndex = new IdentityHashMap<>();
+        Map<Geometries, Integer> leafIndex = new IdentityHashMap<>();
+        List<Intersectable> items = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>(), counts = new ArrayList<>();
+        nodes.add(root);
+        nodeIndex.put(root, 0);
+        for (int node = 0; node < nodes.size(); ++node) {
+            List<Geometries> children = collapse(nodes.get(node));
+            nodesChildren.add(children);
+            for (Geometries c : children)
+                if (c.isInternalNode()) {
+                    nodeIndex.put(c, nodes.size());
+                    nodes.add(c);
+                } else {
+                    leafIndex.put(c, starts.size());
+                    starts.add(items.size());
+                    counts.add(c.leafItems().size());
+                    items.addAll(c.leafItems());
+                }
+        }
+        primitives = items.toArray(new Intersectable[0]);
+        leafStart = starts.stream().mapToInt(Integer::intValue).toArray();
+        leafCount = counts.stream().mapToInt(Integer::intValue).toArray();
+
+        int slots = nodes.size() * width;
+        minX = new double[slots];
+        minY = new double[slots];
+        minZ = new double[slots];
+        maxX = new double[slots];
+        maxY = new double[slots];
+        maxZ = new double[slots];
+        child = new int[slots];
+        for (double[] bound : new double[][]{minX, minY, minZ, maxX, maxY, maxZ}) Arrays.fill(bound, Double.NaN);
+
+        int maxDepth = 1;
+        int[] nodeDepth = new int[nodes.size()];
+        nodeDepth[0] = 1;
+        for (int node = 0; node < nodes.size(); ++node) {
+            List<Geometries> children = nodesChildren.get(node);
+            for (int k = 0; k < children.size(); ++k) {
+                Geometries c = children.get(k);
+                int slot = node * width + k;
+                AABB box = c.getBoundingBox();
+                if (box != null) {
+                    minX[slot] = box.getMin().getX();
+                    minY[slot] = box.getMin().getY();
+                    minZ[slot] = box.getMin().getZ();
+                    maxX[slot] = box.getMax().getX();
+                    maxY[slot] = box.getMax().getY();
+                    maxZ[slot] = box.getMax().getZ();
+                }
+                if (c.isInternalNode()) {
+                    int index = nodeIndex.get(c);
+                    child[slot] = index;
+                    nodeDepth[index] = nodeDepth[node] + 1;
+                    maxDepth = Math.max(maxDepth, nodeDepth[index]);
+                } else child[slot] = -(leafIndex.get(c) + 1);
+            }
+        }
+        depth = maxDepth;
+        stacks = ThreadLocal.withInitial(() -> new int[depth * width]);
+    }
+
+    /**
+     * Collapses the subtree of a binary node into at most {@link #width} children - the
+     * internal child of the largest box is replaced by its two children while possible
+     *
+     * @param node the binary node
+     * @return the children of the wide node
+     */
+    private List<Geometries> collapse(Geometries node) {
+        List<Geometries> children = new ArrayList<>(width);
+        children.add(node.left());
+        children.add(node.right());
+        while (children.size() < width) {
+            int best = -1;
+            double bestArea = -1;
+            for (int k = 0; k < children.size(); ++k) {
+                Geometries c = children.get(k);
+                if (!c.isInternalNode()) continue;
+                double area = c.getBoundingBox() == null ? Double.POSITIVE_INFINITY : c.getBoundingBox().surfaceArea();
+                if (area > bestArea) {
+                    bestArea = area;
+                    best = k;
+                }
+            }
+            if (best < 0) break;
+            Geometries expanded = children.remove(best);
+            children.add(expanded.left());
+            children.add(expanded.right());
+        }
+        return children;
+    }
+
+    /**
+     * Finds the intersections of a ray with the primitives of the wide BVH
+     *
+     * @param ray         the ray
+     * @param maxDistance the maximum distance
+     * @param result      the intersections found so far (or null)
+     * @return the intersections (or null if there are none)
+     */
+    List<Intersection> intersect(Ray ray, double maxDistance, List<Intersection> result) {
+        Point head = ray.getHead();
+        Vector direction = ray.getDirection();
+        double ox = head.getX(), oy = head.getY(), oz = head.getZ();
+        double ix = 1 / nonZero(direction.getX()), iy = 1 / nonZero(direction.getY()), iz = 1 / nonZero(direction.getZ());
+
+        int[] stack = stacks.get();
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int base = stack[--top] * width;
+            // test all the children boxes of the node - a bit of the mask per child
+            int hit = 0;
+            for (int k = 0; k < width; ++k) {
+                int slot = base + k;
+                double x1 = (minX[slot] - ox) * ix, x2 = (maxX[slot] - ox) * ix;
+                double y1 = (minY[slot] - oy) * iy, y2 = (maxY[slot] - oy) * iy;
+                double z1 = (minZ[slot] - oz) * iz, z2 = (maxZ[slot] - oz) * iz;
+                double tMin = Math.max(Math.max(Math.min(x1, x2), Math.min(y1, y2)), Math.min(z1, z2));
+                double tMax = Math.min(Math.min(Math.max(x1, x2), Math.max(y1, y2)), Math.max(z1, z2));
+                hit |= (tMin <= tMax + SLAB_TOLERANCE && tMin <= maxDistance && tMax >= 0 ? 1 : 0) << k;
+            }
+            for (int k = 0; k < width; ++k) {
+                if ((hit & 1 << k) == 0) continue;
+                int c = child[base + k];
+                if (c >= 0) {
+                    stack[top++] = c;
+                    continue;
+                }
+                int leaf = -c - 1;
+                for (int p = leafStart[leaf], end = p + leafCount[leaf]; p < end; ++p) {
+                    List<Intersection> found = primitives[p].calculateIntersections(ray, maxDistance);
+                    if (found == null) continue;
+                    if (result == null) result = new ArrayList<>(found);
+                    else result.addAll(found);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replaces a zero direction component by a tiny value
+     *
+     * @param d the direction component
+     * @return the component, or a tiny value if it is zero
+     */
+    private static double nonZero(double d) {
+        return d == 0 ? TINY : d;
+    }
+}
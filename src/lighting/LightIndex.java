@@ -0,0 +1,192 @@
+package lighting;
+
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.*;
+
+/**
+ * Spatial index of the lights of a scene by their regions of influence.<br>
+ * Every point or spot light has an influence radius derived from its attenuation (see
+ * {@link PointLight#getInfluenceRadius(double)}) and a spot light also has an influence cone
+ * (see {@link SpotLight#getInfluenceAngle(double)}): beyond them its intensity is below the
+ * threshold and it is culled. The lights of finite radii are put in a uniform grid over their
+ * influence spheres, so the lights reaching a point are found by one cell lookup and no shadow
+ * ray is cast towards a light that cannot contribute. Directional lights, lights without
+ * attenuation and lights of unknown kinds reach every point.
+ */
+public class LightIndex {
+
+    /**
+     * Maximal amount of cells along an axis of the grid
+     */
+    private static final int MAX_CELLS = 64;
+
+    /**
+     * Lights that reach every point
+     */
+    private final List<LightSource> global = new ArrayList<>();
+    /**
+     * Lights of finite influence
+     */
+    private final PointLight[] local;
+    /**
+     * Squared influence radii of the local lights
+     */
+    private final double[] radius2;
+    /**
+     * Cosines of the influence cones of the local lights (-1 - no cone)
+     */
+    private final double[] coneCos;
+    /**
+     * The index of every local light (in {@link #local})
+     */
+    private final Map<LightSource, Integer> localIndex = new IdentityHashMap<>();
+    /**
+     * The grid origin
+     */
+    private final double[] origin = new double[3];
+    /**
+     * The grid cell size
+     */
+    private final double cellSize;
+    /**
+     * The amount of cells along every axis
+     */
+    private final int[] dims = new int[3];
+    /**
+     * The local lights overlapping every cell (null - no light)
+     */
+    private final int[][] cells;
+
+    /**
+     * Builds the light index
+     *
+     * @param lights    the lights
+     * @param threshold the intensity threshold below which a light is culled
+     */
+    public LightIndex(List<LightSource> lights, double threshold) {
+        List<PointLight> bounded = new ArrayList<>();
+        List<Double> radii = new ArrayList<>();
+        for (LightSource light : lights) {
+            double r = light instanceof PointLight pointLight ? pointLight.getInfluenceRadius(threshold)
+                    : Double.POSITIVE_INFINITY;
+            if (r == Double.POSITIVE_INFINITY) global.add(light);
+            else if (r > 0) {
+                bounded.add((PointLight) light);
+                radii.add(r);
+            } // a light of zero radius never reaches the threshold
+        }
+        local = bounded.toArray(new PointLight[0]);
+        radius2 = new double[local.length];
+        coneCos = new double[local.length];
+        double[] lo = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] hi = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        double radiusSum = 0;
+        for (int i = 0; i < local.length; ++i) {
+            double r = radii.get(i);
+            radius2[i] = r * r;
+            coneCos[i] = local[i] instanceof SpotLight spot ? Math.cos(spot.getInfluenceAngle(threshold)) : -1;
+            localIndex.put(local[i], i);
+            radiusSum += r;
+            for (int a = 0; a < 3; ++a) {
+                lo[a] = Math.min(lo[a], local[i].getPosition().get(a) - r);
+                hi[a] = Math.max(hi[a], local[i].getPosition().get(a) + r);
+            }
+        }
+        if (local.length == 0) {
+            cellSize = 1;
+            cells = new int[0][];
+            return;
+        }
+
+        // cells of about the average influence radius, bounded in number
+        double extent = Math.max(hi[0] - lo[0], Math.max(hi[1] - lo[1], hi[2] - lo[2]));
+        cellSize = Math.max(radiusSum / local.length, extent / MAX_CELLS);
+        for (int a = 0; a < 3; ++a) {
+            origin[a] = lo[a];
+            dims[a] = Math.max(1, Math.min(MAX_CELLS, (int) Math.ceil((hi[a] - lo[a]) / cellSize)));
+        }
+        List<List<Integer>> lists = new ArrayList<>(Collections.nCopies(dims[0] * dims[1] * dims[2], null));
+        for (int i = 0; i < local.length; ++i) {
+            double r = radii.get(i);
+            int[] from = new int[3], to = new int[3];
+            for (int a = 0; a < 3; ++a) {
+                from[a] = cell(local[i].getPosition().get(a) - r, a);
+                to[a] = cell(local[i].getPosition().get(a) + r, a);
+            }
+            for (int x = from[0]; x <= to[0]; ++x)
+                for (int y = from[1]; y <= to[1]; ++y)
+                    for (int z = from[2]; z <= to[2]; ++z) {
+                        int c = (z * dims[1] + y) * dims[0] + x;
+                        if (lists.get(c) == null) lists.set(c, new ArrayList<>());
+                        lists.get(c).add(i);
+                    }
+        }
+        cells = new int[lists.size()][];
+        for (int c = 0; c < cells.length; ++c)
+            if (lists.get(c) != null) cells[c] = lists.get(c).stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Finds the lights which reach a point
+     *
+     * @param p the point
+     * @return the lights whose intensity at the point may be above the threshold
+     */
+    public List<LightSource> lightsAt(Point p) {
+        int[] candidates = null;
+        if (cells.length > 0) {
+            double x = (p.getX() - origin[0]) / cellSize, y = (p.getY() - origin[1]) / cellSize;
+            double z = (p.getZ() - origin[2]) / cellSize;
+            if (x >= 0 && y >= 0 && z >= 0 && x < dims[0] && y < dims[1] && z < dims[2])
+                candidates = cells[((int) z * dims[1] + (int) y) * dims[0] + (int) x];
+        }
+        if (candidates == null) return global;
+
+        List<LightSource> result = new ArrayList<>(global.size() + candidates.length);
+        result.addAll(global);
+        for (int i : candidates) if (reaches(i, p)) result.add(local[i]);
+        return result;
+    }
+
+    /**
+     * Checks whether a light reaches a point
+     *
+     * @param light the light
+     * @param p     the point
+     * @return false if the intensity of the light at the point is below the threshold
+     */
+    public boolean reaches(LightSource light, Point p) {
+        Integer i = localIndex.get(light);
+        return i != null ? reaches(i, p) : global.contains(light);
+    }
+
+    /**
+     * Checks whether a local light reaches a point
+     *
+     * @param i the index of the light
+     * @param p the point
+     * @return false if the point is out of the influence sphere or cone of the light
+     */
+    private boolean reaches(int i, Point p) {
+        PointLight light = local[i];
+        double distance2 = light.getPosition().distanceSquared(p);
+        if (distance2 >= radius2[i]) return false;
+        if (coneCos[i] <= -1 || distance2 == 0) return true;
+        Vector direction = ((SpotLight) light).getDirection();
+        return direction.dotProduct(p.subtract(light.getPosition())) >= coneCos[i] * Math.sqrt(distance2);
+    }
+
+    /**
+     * Returns the cell of a coordinate along an axis, clamped to the grid
+     *
+     * @param coordinate the coordinate
+     * @param axis       the axis
+     * @return the cell index
+     */
+    private int cell(double coordinate, int axis) {
+        int c = (int) ((coordinate - origin[axis]) / cellSize);
+        return Math.max(0, Math.min(dims[axis] - 1, c));
+    }
+}
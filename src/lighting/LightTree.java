@@ -0,0 +1,346 @@
+package lighting;
+
+import primitives.Double3;
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.*;
+
+/**
+ * Hierarchy of the light sources of a scene for stochastic many-light sampling.<br>
+ * The point and spot lights are organized in a binary tree (split at the median of the
+ * longest axis of the positions); every node keeps the bounds of its lights, their total
+ * power, their average attenuation factors and a cone bounding their emission directions.
+ * A light is sampled for a shading point by descending the tree and choosing a child with
+ * probability proportional to its estimated contribution at the point, so sampling costs
+ * O(log L). The probability of every light that may light the point is positive, so
+ * dividing the sampled contribution by the probability gives an unbiased estimate.
+ * <p>
+ * The other lights (directional ones and lights of unknown kinds) are not in the tree
+ * (see {@link #getUnbounded()}) - they are few and are evaluated at every point.
+ */
+public class LightTree {
+
+    /**
+     * A sampled light
+     *
+     * @param light the light
+     * @param pdf   the probability the light has been sampled with
+     */
+    public record Sample(LightSource light, double pdf) {
+    }
+
+    /**
+     * The lights of the tree, in the order of the leaves
+     */
+    private final PointLight[] lights;
+    /**
+     * The lights which are not in the tree
+     */
+    private final List<LightSource> unbounded = new ArrayList<>();
+
+    /**
+     * Node bounds, 3 per node
+     */
+    private final double[] min, max;
+    /**
+     * Node power (the sum of the average intensity components of the lights)
+     */
+    private final double[] power;
+    /**
+     * Power-weighted average attenuation factors of the node lights, 3 per node (kC, kL, kQ)
+     */
+    private final double[] attenuation;
+    /**
+     * Emission cone axis of a node, 3 per node
+     */
+    private final double[] coneAxis;
+    /**
+     * Emission cone half-angle of a node (PI - emission in all directions)
+     */
+    private final double[] coneAngle;
+    /**
+     * Node children (-1 for a leaf)
+     */
+    private final int[] left, right;
+    /**
+     * Node parents (-1 for the root)
+     */
+    private final int[] parent;
+    /**
+     * The light of a leaf node (-1 for an internal node)
+     */
+    private final int[] leafLight;
+    /**
+     * The leaf node of every light of the tree
+     */
+    private final int[] lightLeaf;
+    /**
+     * The index of every light of the tree (in {@link #lights})
+     */
+    private final Map<LightSource, Integer> lightIndex = new IdentityHashMap<>();
+    /**
+     * Amount of nodes built so far
+     */
+    private int nodes = 0;
+
+    /**
+     * Builds the light tree of lights
+     *
+     * @param sources the lights
+     */
+    public LightTree(List<LightSource> sources) {
+        List<PointLight> bounded = new ArrayList<>();
+        for (LightSource light : sources)
+            if (light instanceof PointLight pointLight) bounded.add(pointLight);
+            else unbounded.add(light);
+        lights = bounded.toArray(new PointLight[0]);
+
+        int capacity = Math.max(1, 2 * lights.length - 1);
+        min = new double[3 * capacity];
+        max = new double[3 * capacity];
+        power = new double[capacity];
+        attenuation = new double[3 * capacity];
+        coneAxis = new double[3 * capacity];
+        coneAngle = new double[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        parent = new int[capacity];
+        leafLight = new int[capacity];
+        lightLeaf = new int[lights.length];
+        if (lights.length > 0) build(0, lights.length, -1);
+        for (int i = 0; i < lights.length; ++i) lightIndex.put(lights[i], i);
+    }
+
+    /**
+     * Returns the amount of lights in the tree
+     *
+     * @return the amount of point and spot lights
+     */
+    public int size() {
+        return lights.length;
+    }
+
+    /**
+     * Returns the lights which are not in the tree (directional lights and lights of other kinds)
+     *
+     * @return the unbounded lights
+     */
+    public List<LightSource> getUnbounded() {
+        return unbounded;
+    }
+
+    /**
+     * Samples a light of the tree for a shading point
+     *
+     * @param p the shading point
+     * @param u a uniform random number in [0, 1)
+     * @return the sampled light, or null if the tree is empty or no light can light the point
+     */
+    public Sample sample(Point p, double u) {
+        if (lights.length == 0) return null;
+        int node = 0;
+        double pdf = 1;
+        while (leafLight[node] < 0) {
+            double l = importance(left[node], p), r = importance(right[node], p);
+            if (l + r <= 0) return null;
+            double pLeft = l / (l + r);
+            if (u < pLeft) {
+                node = left[node];
+                pdf *= pLeft;
+                u /= pLeft;
+            } else {
+                node = right[node];
+                pdf *= 1 - pLeft;
+                u = (u - pLeft) / (1 - pLeft);
+            }
+            u = Math.min(u, Math.nextDown(1.0)); // reuse of the number may round up to 1
+        }
+        return new Sample(lights[leafLight[node]], pdf);
+    }
+
+    /**
+     * Computes the probability of sampling a light for a shading point
+     * (see {@link #sample(Point, double)})
+     *
+     * @param p     the shading point
+     * @param light the light
+     * @return the probability, 0 if the light is not in the tree or cannot be sampled
+     */
+    public double pdf(Point p, LightSource light) {
+        Integer index = lightIndex.get(light);
+        if (index == null) return 0;
+        double pdf = 1;
+        for (int node = lightLeaf[index]; parent[node] >= 0; node = parent[node]) {
+            int up = parent[node];
+            double l = importance(left[up], p), r = importance(right[up], p);
+            if (l + r <= 0) return 0;
+            pdf *= (node == left[up] ? l : r) / (l + r);
+        }
+        return pdf;
+    }
+
+    /**
+     * Builds a subtree of a range of the lights
+     *
+     * @param from the first light (inclusive)
+     * @param to   the last light (exclusive)
+     * @param up   the parent node
+     * @return the subtree root node
+     */
+    private int build(int from, int to, int up) {
+        int node = nodes++;
+        parent[node] = up;
+        if (to - from == 1) {
+            setLeaf(node, from);
+            return node;
+        }
+
+        double[] lo = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] hi = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int i = from; i < to; ++i)
+            for (int a = 0; a < 3; ++a) {
+                double c = lights[i].getPosition().get(a);
+                lo[a] = Math.min(lo[a], c);
+                hi[a] = Math.max(hi[a], c);
+            }
+        int axis = 0;
+        for (int a = 1; a < 3; ++a) if (hi[a] - lo[a] > hi[axis] - lo[axis]) axis = a;
+        int splitAxis = axis;
+        Arrays.sort(lights, from, to, Comparator.comparingDouble(l -> l.getPosition().get(splitAxis)));
+
+        int middle = (from + to) >>> 1;
+        left[node] = build(from, middle, node);
+        right[node] = build(middle, to, node);
+        leafLight[node] = -1;
+        combine(node, left[node], right[node]);
+        return node;
+    }
+
+    /**
+     * Sets a leaf node of a light
+     *
+     * @param node  the node
+     * @param index the light
+     */
+    private void setLeaf(int node, int index) {
+        PointLight light = lights[index];
+        left[node] = right[node] = -1;
+        leafLight[node] = index;
+        lightLeaf[index] = node;
+        for (int a = 0; a < 3; ++a) min[3 * node + a] = max[3 * node + a] = light.getPosition().get(a);
+        Double3 rgb = light.getIntensity().getRgb();
+        power[node] = (rgb.d1() + rgb.d2() + rgb.d3()) / 3;
+        attenuation[3 * node] = light.getKc();
+        attenuation[3 * node + 1] = light.getKl();
+        attenuation[3 * node + 2] = light.getKq();
+        if (light instanceof SpotLight spot) {
+            Vector direction = spot.getDirection();
+            coneAxis[3 * node] = direction.getX();
+            coneAxis[3 * node + 1] = direction.getY();
+            coneAxis[3 * node + 2] = direction.getZ();
+            coneAngle[node] = 0;
+        } else coneAngle[node] = Math.PI;
+    }
+
+    /**
+     * Combines the data of two child nodes into their parent node
+     *
+     * @param node the parent node
+     * @param a    the first child
+     * @param b    the second child
+     */
+    private void combine(int node, int a, int b) {
+        for (int i = 0; i < 3; ++i) {
+            min[3 * node + i] = Math.min(min[3 * a + i], min[3 * b + i]);
+            max[3 * node + i] = Math.max(max[3 * a + i], max[3 * b + i]);
+        }
+        power[node] = power[a] + power[b];
+        double wa = power[node] > 0 ? power[a] / power[node] : 0.5;
+        for (int i = 0; i < 3; ++i)
+            attenuation[3 * node + i] = wa * attenuation[3 * a + i] + (1 - wa) * attenuation[3 * b + i];
+        combineCones(node, a, b);
+    }
+
+    /**
+     * Computes the cone bounding the emission cones of two child nodes
+     *
+     * @param node the parent node
+     * @param a    the first child
+     * @param b    the second child
+     */
+    private void combineCones(int node, int a, int b) {
+        double thetaA = coneAngle[a], thetaB = coneAngle[b];
+        if (thetaA >= Math.PI || thetaB >= Math.PI) {
+            coneAngle[node] = Math.PI;
+            return;
+        }
+        double ax = coneAxis[3 * a], ay = coneAxis[3 * a + 1], az = coneAxis[3 * a + 2];
+        double bx = coneAxis[3 * b], by = coneAxis[3 * b + 1], bz = coneAxis[3 * b + 2];
+        double cos = Math.max(-1, Math.min(1, ax * bx + ay * by + az * bz));
+        double between = Math.acos(cos);
+        if (thetaA >= between + thetaB) {
+            copyCone(node, a);
+            return;
+        }
+        if (thetaB >= between + thetaA) {
+            copyCone(node, b);
+            return;
+        }
+        double theta = (thetaA + between + thetaB) / 2;
+        if (theta >= Math.PI) {
+            coneAngle[node] = Math.PI;
+            return;
+        }
+        // rotate the axis of a towards the axis of b
+        double px = bx - ax * cos, py = by - ay * cos, pz = bz - az * cos;
+        double length = Math.sqrt(px * px + py * py + pz * pz);
+        double rotation = theta - thetaA, c = Math.cos(rotation), s = Math.sin(rotation) / length;
+        coneAxis[3 * node] = ax * c + px * s;
+        coneAxis[3 * node + 1] = ay * c + py * s;
+        coneAxis[3 * node + 2] = az * c + pz * s;
+        coneAngle[node] = theta;
+    }
+
+    /**
+     * Copies the cone of a node
+     *
+     * @param node   the target node
+     * @param source the source node
+     */
+    private void copyCone(int node, int source) {
+        System.arraycopy(coneAxis, 3 * source, coneAxis, 3 * node, 3);
+        coneAngle[node] = coneAngle[source];
+    }
+
+    /**
+     * Estimates the contribution of the lights of a node at a shading point: the node power,
+     * attenuated at the distance of the node, and bounded by the emission cone of the node
+     * (spot lights emit only to their front hemisphere)
+     *
+     * @param node the node
+     * @param p    the shading point
+     * @return the importance (0 - no light of the node can light the point)
+     */
+    private double importance(int node, Point p) {
+        double dx = p.getX() - (min[3 * node] + max[3 * node]) / 2;
+        double dy = p.getY() - (min[3 * node + 1] + max[3 * node + 1]) / 2;
+        double dz = p.getZ() - (min[3 * node + 2] + max[3 * node + 2]) / 2;
+        double ex = max[3 * node] - min[3 * node], ey = max[3 * node + 1] - min[3 * node + 1];
+        double ez = max[3 * node + 2] - min[3 * node + 2];
+        double radius = Math.sqrt(ex * ex + ey * ey + ez * ez) / 2;
+        double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+        double d = Math.max(distance, radius);
+        double falloff = attenuation[3 * node] + attenuation[3 * node + 1] * d + attenuation[3 * node + 2] * d * d;
+        double importance = falloff > 0 ? power[node] / falloff : power[node];
+        if (coneAngle[node] >= Math.PI || distance <= radius) return importance;
+
+        // the angle between the cone axis and the point, less the cone and the node extent
+        double cos = (coneAxis[3 * node] * dx + coneAxis[3 * node + 1] * dy + coneAxis[3 * node + 2] * dz) / distance;
+        double theta = Math.acos(Math.max(-1, Math.min(1, cos)));
+        double extent = Math.asin(radius / distance);
+        double outside = Math.max(0, theta - coneAngle[node] - extent);
+        return outside >= Math.PI / 2 ? 0 : importance * Math.cos(outside);
+    }
+}
@@ -83,6 +83,61 @@ public class PointLight extends Light implements LightSource, AreaLight {
         return this;
     }
 
+    /**
+     * Getter for the position of the light.
+     *
+     * @return the light position
+     */
+    public Point getPosition() {
+        return position;
+    }
+
+    /**
+     * Getter for the constant attenuation.
+     *
+     * @return constant factor
+     */
+    public double getKc() {
+        return kC;
+    }
+
+    /**
+     * Getter for the linear attenuation.
+     *
+     * @return linear factor
+     */
+    public double getKl() {
+        return kL;
+    }
+
+    /**
+     * Getter for the quadratic attenuation.
+     *
+     * @return quadratic factor
+     */
+    public double getKq() {
+        return kQ;
+    }
+
+    /**
+     * Computes the influence radius of the light - the distance beyond which the attenuated
+     * intensity (its largest color component) is below a threshold
+     *
+     * @param threshold the intensity threshold
+     * @return the radius (0 - the light never reaches the threshold, infinity - the light
+     * is not attenuated below the threshold at any distance)
+     */
+    public double getInfluenceRadius(double threshold) {
+        if (threshold <= 0) return Double.POSITIVE_INFINITY;
+        Double3 rgb = intensity.getRgb();
+        double peak = Math.max(rgb.d1(), Math.max(rgb.d2(), rgb.d3()));
+        // the distance of peak / (kC + kL * d + kQ * d^2) = threshold
+        double c = kC - peak / threshold;
+        if (c >= 0) return 0;
+        if (kQ > 0) return (-kL + Math.sqrt(kL * kL - 4 * kQ * c)) / (2 * kQ);
+        return kL > 0 ? -c / kL : Double.POSITIVE_INFINITY;
+    }
+
     @Override
     public Color getIntensity(Point p) {
         double d = position.distance(p);
@@ -45,6 +45,41 @@ public class SpotLight extends PointLight {
         return this;
     }
 
+    /**
+     * Getter for the direction of the light beam.
+     *
+     * @return the beam direction
+     */
+    public Vector getDirection() {
+        return direction;
+    }
+
+    /**
+     * Getter for the narrow beam factor.
+     *
+     * @return the narrow beam factor
+     */
+    public double getNarrowBeam() {
+        return narrowBeam;
+    }
+
+    /**
+     * Computes the influence cone of the light - the half-angle around the light direction
+     * beyond which the intensity (its largest color component) is below a threshold at any
+     * distance
+     *
+     * @param threshold the intensity threshold
+     * @return the cone half-angle in radians (at most PI/2 - the spot light lights its front only)
+     */
+    public double getInfluenceAngle(double threshold) {
+        if (threshold <= 0 || getKc() <= 0) return Math.PI / 2;
+        Double3 rgb = intensity.getRgb();
+        double peak = Math.max(rgb.d1(), Math.max(rgb.d2(), rgb.d3())) / getKc();
+        // the angle of peak * cos^narrowBeam = threshold
+        double cos = Math.pow(threshold / peak, 1 / narrowBeam);
+        return cos >= 1 ? 0 : Math.acos(cos);
+    }
+
     @Override
     public SpotLight setKc(double kC) {
         super.setKc(kC);
@@ -128,6 +128,15 @@ public class Color {
         return new Color(rgb.reduce(k));
     }
 
+    /**
+     * Getter for the RGB components of the color (without any limit)
+     *
+     * @return triad of Red/Green/Blue components
+     */
+    public Double3 getRgb() {
+        return rgb;
+    }
+
     @Override
     public String toString() {
         return "rgb:" + rgb;
@@ -75,6 +75,13 @@ public class Material {
      */
     public int nSh = 0;
 
+    /**
+     * Maximal depth of the paths reflected or refracted by the material: reflection and
+     * refraction rays are traced from the material only while the path has made fewer bounces
+     * (0 - limited by the ray tracer only).
+     */
+    public int maxDepth = 0;
+
     /**
      * Empty default constructor.
      */
@@ -232,4 +239,15 @@ public class Material {
         return this;
     }
 
+    /**
+     * Sets the maximal depth of the paths reflected or refracted by the material.
+     *
+     * @param maxDepth the maximal amount of bounces before the material (0 - unlimited)
+     * @return the current material object
+     */
+    public Material setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth <= 0 ? 0 : maxDepth;
+        return this;
+    }
+
 }
\ No newline at end of file
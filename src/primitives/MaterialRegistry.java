@@ -0,0 +1,130 @@
+package primitives;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of interned materials (flyweights) of a scene.<br>
+ * Materials of identical values are interned into a single shared copy. Interning is opt-in: {@link geometries.Geometries#internMaterials()}
+ * interns the materials of the geometries of a scene into the registry of the scene, so
+ * thousands of primitives created with equal materials share one material object, and the
+ * registry is released with the scene.
+ * <p>
+ * An interned material is shared - it must not be changed; give a geometry a new material
+ * by {@link geometries.Geometry#setMaterial(Material)} instead.
+ */
+public final class MaterialRegistry {
+
+    /**
+     * Value of a material - the interning key. The triads are compared exactly
+     * (the equality of {@link Double3} has a tolerance and does not match its hash code)
+     *
+     * @param kA                   ambient coefficient
+     * @param kD                   diffuse coefficient
+     * @param kS                   specular coefficient
+     * @param kT                   transparency coefficient
+     * @param kR                   reflection coefficient
+     * @param nSh                  shininess
+     * @param glossinessRadius     reflection glossiness radius
+     * @param glossinessDistance   reflection glossiness distance
+     * @param glossinessRays       reflection glossiness rays
+     * @param refractedRadius      refraction glossiness radius
+     * @param refractedDistance    refraction glossiness distance
+     * @param refractedRays        refraction glossiness rays
+     * @param maxDepth             maximal depth of the reflected and refracted paths
+     */
+    private record Key(Double3 kA, Double3 kD, Double3 kS, Double3 kT, Double3 kR, int nSh,
+                       double glossinessRadius, double glossinessDistance, int glossinessRays,
+                       double refractedRadius, double refractedDistance, int refractedRays, int maxDepth) {
+        /**
+         * Creates the key of a material
+         *
+         * @param material the material
+         */
+        Key(Material material) {
+            this(material.kA, material.kD, material.kS, material.kT, material.kR,
+                    material.nSh, material.glossinessRadius, material.glossinessDistance, material.glossinessRays,
+                    material.glossinessRefrerectedtRadius, material.glossinessRefrerectedtDistance,
+                    material.glossinessRefrerectedtRays, material.maxDepth);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return this == obj || obj instanceof Key other
+                    && same(kA, other.kA) && same(kD, other.kD) && same(kS, other.kS)
+                    && same(kT, other.kT) && same(kR, other.kR) && nSh == other.nSh
+                    && Double.compare(glossinessRadius, other.glossinessRadius) == 0
+                    && Double.compare(glossinessDistance, other.glossinessDistance) == 0
+                    && glossinessRays == other.glossinessRays
+                    && Double.compare(refractedRadius, other.refractedRadius) == 0
+                    && Double.compare(refractedDistance, other.refractedDistance) == 0
+                    && refractedRays == other.refractedRays && maxDepth == other.maxDepth;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = nSh;
+            for (Double3 d : new Double3[]{kA, kD, kS, kT, kR})
+                hash = 31 * (31 * (31 * hash + Double.hashCode(d.d1())) + Double.hashCode(d.d2())) + Double.hashCode(d.d3());
+            hash = 31 * hash + Double.hashCode(glossinessRadius) + 7 * Double.hashCode(glossinessDistance) + glossinessRays;
+            hash = 31 * hash + Double.hashCode(refractedRadius) + 7 * Double.hashCode(refractedDistance) + refractedRays;
+            return 31 * hash + maxDepth;
+        }
+
+        /**
+         * Compares two triads exactly
+         *
+         * @param a first triad
+         * @param b second triad
+         * @return true if the triads are identical
+         */
+        private static boolean same(Double3 a, Double3 b) {
+            return Double.compare(a.d1(), b.d1()) == 0 && Double.compare(a.d2(), b.d2()) == 0
+                    && Double.compare(a.d3(), b.d3()) == 0;
+        }
+    }
+
+    /**
+     * Interned materials by their values
+     */
+    private final Map<Key, Material> interned = new HashMap<>();
+
+    /**
+     * Interns a material - returns the shared material of the same values. The registry
+     * keeps a copy of the material, so the given material may still be changed by its owner
+     * afterward without affecting the shared one.
+     *
+     * @param material the material
+     * @return the interned material
+     */
+    public synchronized Material intern(Material material) {
+        // a shared material is found by its own values
+        return interned.computeIfAbsent(new Key(material), key -> copy(material));
+    }
+
+    /**
+     * Returns the amount of interned materials
+     *
+     * @return the amount of interned materials
+     */
+    public synchronized int size() {
+        return interned.size();
+    }
+
+    /**
+     * Copies a material
+     *
+     * @param material the material
+     * @return a new material of the same values
+     */
+    private static Material copy(Material material) {
+        Material copy = new Material()
+                .setKA(material.kA).setKD(material.kD).setKS(material.kS).setShininess(material.nSh)
+                .setKT(material.kT).setKR(material.kR)
+                .setGlossinessReflacted(material.glossinessRadius, material.glossinessDistance, material.glossinessRays)
+                .setGlossinessRefracted(material.glossinessRefrerectedtRadius, material.glossinessRefrerectedtDistance,
+                        material.glossinessRefrerectedtRays);
+        copy.maxDepth = material.maxDepth;
+        return copy;
+    }
+}
@@ -0,0 +1,282 @@
+package primitives;
+
+import static primitives.Util.isZero;
+
+/**
+ * Immutable affine transformation of the 3D space - a 3x3 linear part and a translation
+ * (the upper 3x4 rows of a 4x4 homogeneous matrix). The inverse is computed once on creation.
+ */
+public final class Transform {
+
+    /**
+     * The identity transformation
+     */
+    public static final Transform IDENTITY = new Transform(new double[]{1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0});
+
+    /**
+     * The matrix rows (row-major 3x4): m[4*r + c], the translation in column 3
+     */
+    private final double[] m;
+
+    /**
+     * The inverse matrix rows (row-major 3x4)
+     */
+    private final double[] inv;
+
+    /**
+     * Constructs a transformation by its matrix
+     *
+     * @param m the matrix rows (row-major 3x4)
+     * @throws IllegalArgumentException if the matrix is singular
+     */
+    private Transform(double[] m) {
+        this.m = m;
+        this.inv = invert(m);
+    }
+
+    /**
+     * Constructs a transformation by its matrix and its inverse
+     *
+     * @param m   the matrix rows (row-major 3x4)
+     * @param inv the inverse matrix rows (row-major 3x4)
+     */
+    private Transform(double[] m, double[] inv) {
+        this.m = m;
+        this.inv = inv;
+    }
+
+    /**
+     * Creates a transformation by the rows of its 3x4 matrix
+     *
+     * @param m00 row 0, column 0
+     * @param m01 row 0, column 1
+     * @param m02 row 0, column 2
+     * @param m03 row 0, translation
+     * @param m10 row 1, column 0
+     * @param m11 row 1, column 1
+     * @param m12 row 1, column 2
+     * @param m13 row 1, translation
+     * @param m20 row 2, column 0
+     * @param m21 row 2, column 1
+     * @param m22 row 2, column 2
+     * @param m23 row 2, translation
+     * @return the transformation
+     * @throws IllegalArgumentException if the matrix is singular
+     */
+    public static Transform of(double m00, double m01, double m02, double m03,
+                               double m10, double m11, double m12, double m13,
+                               double m20, double m21, double m22, double m23) {
+        return new Transform(new double[]{m00, m01, m02, m03, m10, m11, m12, m13, m20, m21, m22, m23});
+    }
+
+    /**
+     * Creates a translation
+     *
+     * @param offset the translation vector
+     * @return the transformation
+     */
+    public static Transform translation(Vector offset) {
+        return translation(offset.getX(), offset.getY(), offset.getZ());
+    }
+
+    /**
+     * Creates a translation
+     *
+     * @param x the translation along x
+     * @param y the translation along y
+     * @param z the translation along z
+     * @return the transformation
+     */
+    public static Transform translation(double x, double y, double z) {
+        return new Transform(new double[]{1, 0, 0, x, 0, 1, 0, y, 0, 0, 1, z},
+                new double[]{1, 0, 0, -x, 0, 1, 0, -y, 0, 0, 1, -z});
+    }
+
+    /**
+     * Creates a uniform scaling
+     *
+     * @param factor the scaling factor
+     * @return the transformation
+     * @throws IllegalArgumentException if the factor is zero
+     */
+    public static Transform scaling(double factor) {
+        return scaling(factor, factor, factor);
+    }
+
+    /**
+     * Creates a scaling
+     *
+     * @param x the scaling factor along x
+     * @param y the scaling factor along y
+     * @param z the scaling factor along z
+     * @return the transformation
+     * @throws IllegalArgumentException if a factor is zero
+     */
+    public static Transform scaling(double x, double y, double z) {
+        if (isZero(x) || isZero(y) || isZero(z))
+            throw new IllegalArgumentException("Scaling factors must not be zero");
+        return new Transform(new double[]{x, 0, 0, 0, 0, y, 0, 0, 0, 0, z, 0},
+                new double[]{1 / x, 0, 0, 0, 0, 1 / y, 0, 0, 0, 0, 1 / z, 0});
+    }
+
+    /**
+     * Creates a rotation around an axis through the origin (right-hand rule)
+     *
+     * @param axis  the rotation axis
+     * @param angle the rotation angle in degrees
+     * @return the transformation
+     */
+    public static Transform rotation(Vector axis, double angle) {
+        Vector u = axis.normalize();
+        double x = u.getX(), y = u.getY(), z = u.getZ();
+        double radians = Math.toRadians(angle), c = Math.cos(radians), s = Math.sin(radians), t = 1 - c;
+        double[] r = {
+                t * x * x + c, t * x * y - s * z, t * x * z + s * y, 0,
+                t * x * y + s * z, t * y * y + c, t * y * z - s * x, 0,
+                t * x * z - s * y, t * y * z + s * x, t * z * z + c, 0};
+        // the inverse of a rotation is its transpose
+        double[] inverse = {r[0], r[4], r[8], 0, r[1], r[5], r[9], 0, r[2], r[6], r[10], 0};
+        return new Transform(r, inverse);
+    }
+
+    /**
+     * Composes this transformation with a following one
+     *
+     * @param next the transformation applied after this one
+     * @return the transformation which applies this one and then the next one
+     */
+    public Transform then(Transform next) {
+        return new Transform(multiply(next.m, m), multiply(inv, next.inv));
+    }
+
+    /**
+     * Returns the inverse transformation
+     *
+     * @return the inverse transformation
+     */
+    public Transform inverse() {
+        return new Transform(inv, m);
+    }
+
+    /**
+     * Transforms a point
+     *
+     * @param p the point
+     * @return the transformed point
+     */
+    public Point transform(Point p) {
+        return transformPoint(m, p);
+    }
+
+    /**
+     * Transforms a point by the inverse transformation
+     *
+     * @param p the point
+     * @return the point transformed by the inverse
+     */
+    public Point inverseTransform(Point p) {
+        return transformPoint(inv, p);
+    }
+
+    /**
+     * Transforms a direction (without translation and without normalization)
+     *
+     * @param v the direction vector
+     * @return the transformed vector
+     */
+    public Vector transform(Vector v) {
+        return transformVector(m, v);
+    }
+
+    /**
+     * Transforms a direction by the inverse transformation (without translation and
+     * without normalization)
+     *
+     * @param v the direction vector
+     * @return the vector transformed by the inverse
+     */
+    public Vector inverseTransform(Vector v) {
+        return transformVector(inv, v);
+    }
+
+    /**
+     * Transforms a surface normal - by the transposed inverse of the linear part
+     *
+     * @param n the normal
+     * @return the transformed unit normal
+     */
+    public Vector transformNormal(Vector n) {
+        double x = n.getX(), y = n.getY(), z = n.getZ();
+        return new Vector(inv[0] * x + inv[4] * y + inv[8] * z,
+                inv[1] * x + inv[5] * y + inv[9] * z,
+                inv[2] * x + inv[6] * y + inv[10] * z).normalize();
+    }
+
+    /**
+     * Transforms a point by a matrix
+     *
+     * @param a the matrix rows (row-major 3x4)
+     * @param p the point
+     * @return the transformed point
+     */
+    private static Point transformPoint(double[] a, Point p) {
+        double x = p.getX(), y = p.getY(), z = p.getZ();
+        return new Point(a[0] * x + a[1] * y + a[2] * z + a[3],
+                a[4] * x + a[5] * y + a[6] * z + a[7],
+                a[8] * x + a[9] * y + a[10] * z + a[11]);
+    }
+
+    /**
+     * Transforms a direction by the linear part of a matrix
+     *
+     * @param a the matrix rows (row-major 3x4)
+     * @param v the direction
+     * @return the transformed direction
+     */
+    private static Vector transformVector(double[] a, Vector v) {
+        double x = v.getX(), y = v.getY(), z = v.getZ();
+        return new Vector(a[0] * x + a[1] * y + a[2] * z,
+                a[4] * x + a[5] * y + a[6] * z,
+                a[8] * x + a[9] * y + a[10] * z);
+    }
+
+    /**
+     * Multiplies two affine matrices
+     *
+     * @param a the left matrix
+     * @param b the right matrix
+     * @return a * b (b applied first)
+     */
+    private static double[] multiply(double[] a, double[] b) {
+        double[] r = new double[12];
+        for (int row = 0; row < 3; ++row) {
+            for (int col = 0; col < 4; ++col)
+                r[4 * row + col] = a[4 * row] * b[col] + a[4 * row + 1] * b[4 + col] + a[4 * row + 2] * b[8 + col];
+            r[4 * row + 3] += a[4 * row + 3];
+        }
+        return r;
+    }
+
+    /**
+     * Inverts an affine matrix
+     *
+     * @param a the matrix rows (row-major 3x4)
+     * @return the inverse matrix rows
+     * @throws IllegalArgumentException if the matrix is singular
+     */
+    private static double[] invert(double[] a) {
+        // cofactors of the linear part
+        double c00 = a[5] * a[10] - a[6] * a[9], c01 = a[6] * a[8] - a[4] * a[10], c02 = a[4] * a[9] - a[5] * a[8];
+        double det = a[0] * c00 + a[1] * c01 + a[2] * c02;
+        if (isZero(det)) throw new IllegalArgumentException("The transformation matrix is singular");
+        double f = 1 / det;
+        double[] r = {
+                c00 * f, (a[2] * a[9] - a[1] * a[10]) * f, (a[1] * a[6] - a[2] * a[5]) * f, 0,
+                c01 * f, (a[0] * a[10] - a[2] * a[8]) * f, (a[2] * a[4] - a[0] * a[6]) * f, 0,
+                c02 * f, (a[1] * a[8] - a[0] * a[9]) * f, (a[0] * a[5] - a[1] * a[4]) * f, 0};
+        // the inverse translation: -inverse(linear) * translation
+        for (int row = 0; row < 3; ++row)
+            r[4 * row + 3] = -(r[4 * row] * a[3] + r[4 * row + 1] * a[7] + r[4 * row + 2] * a[11]);
+        return r;
+    }
+}
@@ -0,0 +1,236 @@
+package renderer;
+
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Renderer of animation sequences.<br>
+ * The camera follows a path given by keyframes (location, look-at target and roll angle),
+ * linearly interpolated between the keyframes, and the scene may be updated before every
+ * frame (e.g. moving instances and refitting the BVH). Every frame is rendered by a camera
+ * built from a template camera, and the image of a frame is written by a separate writer
+ * thread while the next frame is rendered. The frames are written as a numbered image
+ * sequence: {@code <name>_0000.png}, {@code <name>_0001.png}, ...
+ * <p>
+ * The template camera holds the view plane, resolution, ray tracer and rendering options;
+ * it is not rendered itself.
+ */
+public class AnimationRenderer {
+
+    /**
+     * A keyframe of the camera path
+     *
+     * @param time     the time of the keyframe
+     * @param location the camera location
+     * @param target   the point the camera looks at
+     * @param roll     the rotation angle (in degrees) of the camera around its direction
+     */
+    public record Keyframe(double time, Point location, Point target, double roll) {
+    }
+
+    /**
+     * Timing statistics of a frame (in nanoseconds)
+     *
+     * @param frame  the frame number
+     * @param update the scene update time
+     * @param render the render time
+     * @param write  the image write time (overlapped with the render of the next frame)
+     */
+    public record FrameStats(int frame, long update, long render, long write) {
+    }
+
+    /**
+     * Scene update performed before rendering a frame
+     */
+    @FunctionalInterface
+    public interface SceneUpdate {
+        /**
+         * Updates the scene for a frame
+         *
+         * @param frame the frame number
+         * @param time  the time of the frame
+         */
+        void update(int frame, double time);
+    }
+
+    /**
+     * The template camera of the frames
+     */
+    private final Camera template;
+    /**
+     * The keyframes of the camera path, ordered by time
+     */
+    private final List<Keyframe> keyframes = new ArrayList<>();
+    /**
+     * The amount of frames
+     */
+    private int frames = 1;
+    /**
+     * The scene update (null - static scene)
+     */
+    private SceneUpdate sceneUpdate = null;
+    /**
+     * The name of the image sequence
+     */
+    private String name = "animation";
+
+    /**
+     * Constructs an animation renderer
+     *
+     * @param template the template camera of the frames (with the ray tracer)
+     */
+    public AnimationRenderer(Camera template) {
+        if (template == null) throw new IllegalArgumentException("Template camera cannot be null");
+        this.template = template;
+    }
+
+    /**
+     * Adds a keyframe of the camera path
+     *
+     * @param time     the time of the keyframe
+     * @param location the camera location
+     * @param target   the point the camera looks at
+     * @param roll     the rotation angle (in degrees) of the camera around its direction
+     * @return this object (for chaining)
+     */
+    public AnimationRenderer addKeyframe(double time, Point location, Point target, double roll) {
+        if (location.equals(target)) throw new IllegalArgumentException("Camera cannot look at its location");
+        keyframes.add(new Keyframe(time, location, target, roll));
+        keyframes.sort(Comparator.comparingDouble(Keyframe::time));
+        return this;
+    }
+
+    /**
+     * Sets the amount of frames - spread evenly from the first keyframe time to the last one
+     *
+     * @param frames the amount of frames
+     * @return this object (for chaining)
+     */
+    public AnimationRenderer setFrames(int frames) {
+        if (frames <= 0) throw new IllegalArgumentException("Amount of frames must be positive");
+        this.frames = frames;
+        return this;
+    }
+
+    /**
+     * Sets the scene update performed before rendering every frame
+     *
+     * @param sceneUpdate the scene update
+     * @return this object (for chaining)
+     */
+    public AnimationRenderer setSceneUpdate(SceneUpdate sceneUpdate) {
+        this.sceneUpdate = sceneUpdate;
+        return this;
+    }
+
+    /**
+     * Sets the name of the image sequence
+     *
+     * @param name the name (without the frame number and extension)
+     * @return this object (for chaining)
+     */
+    public AnimationRenderer setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    /**
+     * Returns the time of a frame
+     *
+     * @param frame the frame number
+     * @return the time
+     */
+    double frameTime(int frame) {
+        double start = keyframes.getFirst().time(), end = keyframes.getLast().time();
+        return frames == 1 ? start : start + (end - start) * frame / (frames - 1);
+    }
+
+    /**
+     * Builds the camera of a time on the camera path, by moving the template camera
+     * (see {@link Camera.Builder#move(Vector, Point)}) and rotating it
+     * (see {@link Camera.Builder#rotateAroundTo(double)})
+     *
+     * @param time the time
+     * @return the camera
+     */
+    Camera cameraAt(double time) {
+        int next = 0;
+        while (next < keyframes.size() - 1 && keyframes.get(next).time() < time) ++next;
+        Keyframe b = keyframes.get(next), a = next == 0 ? b : keyframes.get(next - 1);
+        double f = b.time() == a.time() ? 1 : (time - a.time()) / (b.time() - a.time());
+        Point location = interpolate(a.location(), b.location(), f);
+        Point target = interpolate(a.target(), b.target(), f);
+        double roll = a.roll() + (b.roll() - a.roll()) * f;
+
+        Camera.Builder builder = Camera.getBuilder(template);
+        if (location.equals(template.getLocation())) builder.setDirection(target, template.getUp());
+        else builder.move(location.subtract(template.getLocation()), target);
+        if (roll != 0) builder.rotateAroundTo(roll);
+        return builder.build();
+    }
+
+    /**
+     * Interpolates linearly between two points
+     *
+     * @param a the first point
+     * @param b the second point
+     * @param f the fraction (0 - a, 1 - b)
+     * @return the interpolated point
+     */
+    private static Point interpolate(Point a, Point b, double f) {
+        return new Point(a.getX() + (b.getX() - a.getX()) * f, a.getY() + (b.getY() - a.getY()) * f,
+                a.getZ() + (b.getZ() - a.getZ()) * f);
+    }
+
+    /**
+     * Renders the animation - the image of every frame is written while the next frame is rendered
+     *
+     * @return the timing statistics of the frames
+     * @throws IllegalStateException if there are no keyframes, or writing an image failed
+     */
+    public List<FrameStats> render() {
+        if (keyframes.isEmpty()) throw new IllegalStateException("Animation has no keyframes");
+
+        List<FrameStats> stats = new ArrayList<>(frames);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            Future<FrameStats> pending = null;
+            for (int frame = 0; frame < frames; ++frame) {
+                double time = frameTime(frame);
+                long start = System.nanoTime();
+                if (sceneUpdate != null) {
+                    sceneUpdate.update(frame, time);
+                    // the ray tracer is shared by the frames - its data of the previous frame is stale
+                    template.getRayTracer().sceneChanged();
+                }
+                long updated = System.nanoTime();
+                Camera camera = cameraAt(time).renderImage();
+                long rendered = System.nanoTime();
+
+                // at most one image waits for writing, so the memory doesn't grow with the sequence
+                if (pending != null) stats.add(pending.get());
+                String fileName = String.format("%s_%04d", name, frame);
+                int number = frame;
+                pending = writer.submit(() -> {
+                    long writeStart = System.nanoTime();
+                    camera.writeToImage(fileName);
+                    return new FrameStats(number, updated - start, rendered - updated, System.nanoTime() - writeStart);
+                });
+            }
+            if (pending != null) stats.add(pending.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Animation rendering was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed writing an animation frame", e.getCause());
+        } finally {
+            writer.shutdown();
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,27 @@
+package renderer;
+
+/**
+ * Auxiliary buffers (AOVs) of an image - the features of the first hits of the rays through
+ * the pixel centers, which guide the {@link Denoiser}. Every buffer holds the pixels row by row.
+ *
+ * @param width  the amount of columns
+ * @param height the amount of rows
+ * @param normal the normals at the first hits facing the camera, 3 per pixel (zero - no hit)
+ * @param albedo the albedos of the first hits, 3 per pixel - kD plus the emission relative to
+ *               the full color intensity 255, at most 1 (the relative background color - no hit)
+ * @param depth  the distances of the first hits from the camera, 1 per pixel (infinity - no hit)
+ */
+public record AuxiliaryBuffers(int width, int height, double[] normal, double[] albedo, double[] depth) {
+
+    /**
+     * Validates the buffer sizes
+     *
+     * @throws IllegalArgumentException if a buffer doesn't fit the resolution
+     */
+    public AuxiliaryBuffers {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Resolution must be positive");
+        int pixels = width * height;
+        if (normal.length != 3 * pixels || albedo.length != 3 * pixels || depth.length != pixels)
+            throw new IllegalArgumentException("Auxiliary buffers don't fit the resolution");
+    }
+}
@@ -1,9 +1,15 @@
 package renderer;
 
+import geometries.GeometryCodec;
 import primitives.*;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.LinkedList;
 import java.util.MissingResourceException;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.IntStream;
 
 import static primitives.Util.*;
@@ -102,6 +108,49 @@ public class Camera implements Cloneable {
      */
     private boolean useBoundingBox = false;
 
+    /**
+     * Side of the square packets of primary rays traced together (0 - every ray is traced alone).
+     */
+    private int packetSize = 0;
+
+    /**
+     * Amount of samples traced through every pixel by a rendering (at random points of the pixel)
+     */
+    private int samplesPerPixel = 1;
+
+    /**
+     * The accumulation buffer of the progressive rendering - the sums of the samples of the
+     * pixels (3 per pixel, row by row), kept between the renderings
+     */
+    private double[] accumulation = null;
+
+    /**
+     * The sums of the squared luminances of the pixel samples (1 per pixel) - for the variances
+     * of the pixels which guide the denoiser
+     */
+    private double[] moments = null;
+
+    /**
+     * Amount of samples of every pixel in the accumulation buffer
+     */
+    private int accumulatedSamples = 0;
+
+    /**
+     * The denoiser of the progressive renderings (null - no denoising)
+     */
+    private Denoiser denoiser = null;
+
+    /**
+     * The auxiliary buffers of the image (computed on demand)
+     */
+    private AuxiliaryBuffers auxiliaryBuffers = null;
+
+    /**
+     * The floating point framebuffer of the last progressive rendering - the averages of the
+     * pixel samples, denoised if there is a denoiser (3 per pixel, row by row)
+     */
+    private double[] framebuffer = null;
+
     /**
      * Private constructor to prevent instantiation from outside the builder.
      */
@@ -260,6 +309,52 @@ public class Camera implements Cloneable {
             return this;
         }
 
+        /**
+         * Sets packet tracing of the primary rays: the rays of every square of pixels
+         * traverse the BVH together (see {@link RayTracerBase#traceRays(Ray[])}), and
+         * every ray is shaded alone.
+         *
+         * @param size the side of the pixel squares - 0 (no packets) or 2 to 16
+         * @return this Builder instance for method chaining
+         */
+        public Builder setPacketSize(int size) {
+            if (size != 0 && (size < 2 || size > 16))
+                throw new IllegalArgumentException("Packet size must be 0 or between 2 and 16");
+            camera.packetSize = size;
+            return this;
+        }
+
+        /**
+         * Sets the amount of samples traced through every pixel by a rendering. With more than
+         * one sample (or with a {@link PathTracer}) the rendering is progressive: the samples
+         * are traced through random points of the pixels and accumulated, and every rendering
+         * adds its samples to the ones of the previous renderings (see
+         * {@link Camera#resetAccumulation()}).
+         *
+         * @param samples the amount of samples per pixel (at least 1)
+         * @return this Builder instance for method chaining
+         */
+        public Builder setSamplesPerPixel(int samples) {
+            if (samples < 1) throw new IllegalArgumentException("Samples per pixel must be positive");
+            camera.samplesPerPixel = samples;
+            return this;
+        }
+
+        /**
+         * Sets a denoiser of the rendered image. The rendering becomes progressive (see
+         * {@link #setSamplesPerPixel(int)}) and the average of the accumulated samples is
+         * denoised, guided by the auxiliary buffers of the image (see
+         * {@link Camera#getAuxiliaryBuffers()}) and by the variances of the pixel samples - the
+         * noise of a single sample per pixel is unknown, so accumulate a few samples at least.
+         *
+         * @param denoiser the denoiser (null - no denoising)
+         * @return this Builder instance for method chaining
+         */
+        public Builder setDenoiser(Denoiser denoiser) {
+            camera.denoiser = denoiser;
+            return this;
+        }
+
         /**
          * Finalizes and returns the constructed Camera object after validating its configuration.
          *
@@ -360,11 +455,128 @@ public class Camera implements Cloneable {
         public Builder setRayTracer(scene.Scene scene, RayTracerType type) {
             switch (type) {
                 case SIMPLE -> camera.rayTracer = new SimpleRayTracer(scene);
+                case WAVEFRONT -> camera.rayTracer = new WavefrontRayTracer(scene);
+                case PATH -> camera.rayTracer = new PathTracer(scene);
                 default -> camera.rayTracer = null;
             }
             return this;
         }
 
+        /**
+         * Sets the ray tracer of the camera (e.g. a ray tracer configured by its own setters).
+         *
+         * @param rayTracer the ray tracer
+         * @return the builder (for method chaining)
+         */
+        public Builder setRayTracer(RayTracerBase rayTracer) {
+            camera.rayTracer = rayTracer;
+            return this;
+        }
+
+        /**
+         * Sets the maximum recursion level of the ray tracer
+         * (see {@link SimpleRayTracer#setMaxLevel(int)} and {@link PathTracer#setMaxLevel(int)}).
+         *
+         * @param level the maximum level - 1 traces no reflections and refractions
+         * @return the builder (for method chaining)
+         * @throws IllegalStateException if the ray tracer doesn't trace recursively
+         */
+        public Builder setMaxRecursionLevel(int level) {
+            if (camera.rayTracer instanceof PathTracer pathTracer) pathTracer.setMaxLevel(level);
+            else recursiveRayTracer().setMaxLevel(level);
+            return this;
+        }
+
+        /**
+         * Sets Russian roulette termination of the ray tracer paths
+         * (see {@link SimpleRayTracer#setRussianRoulette(double)}).
+         *
+         * @param threshold the attenuation threshold (0 to 1), 0 - no Russian roulette
+         * @return the builder (for method chaining)
+         * @throws IllegalStateException if the ray tracer doesn't trace recursively
+         */
+        public Builder setRussianRoulette(double threshold) {
+            recursiveRayTracer().setRussianRoulette(threshold);
+            return this;
+        }
+
+        /**
+         * Sets stochastic many-light sampling of the ray tracer
+         * (see {@link SimpleRayTracer#setLightSampling(int)}).
+         *
+         * @param samples the amount of sampled lights per shading point (0 - evaluate all the lights)
+         * @return the builder (for method chaining)
+         * @throws IllegalStateException if the ray tracer doesn't trace recursively
+         */
+        public Builder setLightSampling(int samples) {
+            recursiveRayTracer().setLightSampling(samples);
+            return this;
+        }
+
+        /**
+         * Sets culling of the lights by their regions of influence
+         * (see {@link SimpleRayTracer#setLightCulling(double)}).
+         *
+         * @param threshold the intensity (color component) threshold, 0 - no culling
+         * @return the builder (for method chaining)
+         * @throws IllegalStateException if the ray tracer doesn't trace recursively
+         */
+        public Builder setLightCulling(double threshold) {
+            recursiveRayTracer().setLightCulling(threshold);
+            return this;
+        }
+
+        /**
+         * Sets adaptive soft shadow sampling (see {@link SimpleRayTracer#setAdaptiveShadows(int)}).
+         *
+         * @param probes the amount of probe rays (at least 2), 0 - always cast all the shadow rays
+         * @return the builder (for method chaining)
+         * @throws IllegalStateException if the ray tracer doesn't trace recursively
+         */
+        public Builder setAdaptiveShadows(int probes) {
+            recursiveRayTracer().setAdaptiveShadows(probes);
+            return this;
+        }
+
+        /**
+         * Sets caching of the irradiance of the diffuse surfaces
+         * (see {@link SimpleRayTracer#setShadingCache(double)}).
+         *
+         * @param radius the error radius of the cache, 0 - no caching
+         * @return the builder (for method chaining)
+         * @throws IllegalStateException if the ray tracer doesn't trace recursively
+         */
+        public Builder setShadingCache(double radius) {
+            recursiveRayTracer().setShadingCache(radius);
+            return this;
+        }
+
+        /**
+         * Sets caustics by photon mapping (see {@link SimpleRayTracer#setCaustics(int, int, double)}).
+         *
+         * @param photons the amount of emitted photons, 0 - no caustics
+         * @param nearest the amount of nearest photons gathered for an estimate
+         * @param radius  the maximal distance of a gathered photon
+         * @return the builder (for method chaining)
+         * @throws IllegalStateException if the ray tracer doesn't trace recursively
+         */
+        public Builder setCaustics(int photons, int nearest, double radius) {
+            recursiveRayTracer().setCaustics(photons, nearest, radius);
+            return this;
+        }
+
+        /**
+         * Returns the ray tracer of the camera as a recursive ray tracer
+         *
+         * @return the ray tracer
+         * @throws IllegalStateException if the ray tracer has not been set or doesn't trace recursively
+         */
+        private SimpleRayTracer recursiveRayTracer() {
+            if (!(camera.rayTracer instanceof SimpleRayTracer rayTracer))
+                throw new IllegalStateException("The setting requires a simple or wavefront ray tracer");
+            return rayTracer;
+        }
+
         /**
          * Moves the camera by a specified offset vector and updates the focus point.
          *
@@ -437,9 +649,121 @@ public class Camera implements Cloneable {
             camera.imageWriter = original.imageWriter;
             camera.rayTracer = original.rayTracer;
             camera.viewPlaneCenter = original.viewPlaneCenter;
+            camera.threadsCount = original.threadsCount;
+            camera.printInterval = original.printInterval;
+            camera.useBoundingBox = original.useBoundingBox;
+            camera.packetSize = original.packetSize;
+            camera.samplesPerPixel = original.samplesPerPixel;
+            camera.denoiser = original.denoiser;
         }
     }
 
+    /**
+     * Getter for the camera location
+     *
+     * @return the location
+     */
+    Point getLocation() {
+        return location;
+    }
+
+    /**
+     * Getter for the camera up direction
+     *
+     * @return the up direction
+     */
+    Vector getUp() {
+        return up;
+    }
+
+    /**
+     * Getter for the camera ray tracer
+     *
+     * @return the ray tracer
+     */
+    RayTracerBase getRayTracer() {
+        return rayTracer;
+    }
+
+    /**
+     * Getter for the camera denoiser
+     *
+     * @return the denoiser (null - no denoising)
+     */
+    Denoiser getDenoiser() {
+        return denoiser;
+    }
+
+    /**
+     * Finds the type of the camera ray tracer
+     *
+     * @return the ray tracer type (GRID - no ray tracer)
+     */
+    private RayTracerType rayTracerType() {
+        return switch (rayTracer) {
+            case null -> RayTracerType.GRID;
+            case PathTracer ignored -> RayTracerType.PATH;
+            case WavefrontRayTracer ignored -> RayTracerType.WAVEFRONT;
+            default -> RayTracerType.SIMPLE;
+        };
+    }
+
+    /**
+     * Writes the camera settings (location, direction, view plane, resolution,
+     * rendering options, the ray tracer type and options, and the denoiser) in binary form
+     *
+     * @param out the output
+     * @throws IOException in case of I/O error
+     */
+    void writeSettings(DataOutput out) throws IOException {
+        GeometryCodec.writePoint(out, location);
+        GeometryCodec.writePoint(out, to);
+        GeometryCodec.writePoint(out, up);
+        out.writeDouble(vpWidth);
+        out.writeDouble(vpHeight);
+        out.writeDouble(vpDistance);
+        out.writeInt(nX);
+        out.writeInt(nY);
+        out.writeInt(threadsCount);
+        out.writeDouble(printInterval);
+        out.writeBoolean(useBoundingBox);
+        out.writeInt(packetSize);
+        out.writeInt(samplesPerPixel);
+        out.writeByte(rayTracerType().ordinal());
+        if (rayTracer != null) rayTracer.writeSettings(out);
+        out.writeBoolean(denoiser != null);
+        if (denoiser != null) denoiser.writeSettings(out);
+    }
+
+    /**
+     * Reads camera settings written by {@link #writeSettings(DataOutput)} into a new builder
+     *
+     * @param in    the input buffer
+     * @param scene the scene of the ray tracer
+     * @return the builder initialized with the settings, a ray tracer of the written type and
+     * options, and the written denoiser
+     * @throws IllegalArgumentException for an unknown ray tracer type, or invalid ray tracer or denoiser settings
+     */
+    static Builder readSettings(ByteBuffer in, scene.Scene scene) {
+        Builder builder = getBuilder()
+                .setLocation(GeometryCodec.readPoint(in))
+                .setDirection(GeometryCodec.readVector(in), GeometryCodec.readVector(in))
+                .setVpSize(in.getDouble(), in.getDouble())
+                .setVpDistance(in.getDouble())
+                .setResolution(in.getInt(), in.getInt())
+                .setMultithreading(in.getInt())
+                .setDebugPrint(in.getDouble())
+                .setBoundingBoxUsage(in.get() != 0)
+                .setPacketSize(in.getInt())
+                .setSamplesPerPixel(in.getInt());
+        RayTracerType[] types = RayTracerType.values();
+        int type = in.get();
+        if (type < 0 || type >= types.length) throw new IllegalArgumentException("Unknown ray tracer type " + type);
+        builder.setRayTracer(scene, types[type]);
+        if (builder.camera.rayTracer != null) builder.camera.rayTracer.readSettings(in);
+        return in.get() == 0 ? builder : builder.setDenoiser(Denoiser.readSettings(in));
+    }
+
     /**
      * Constructs ray from camera's location to the center of a given pixel in the view plane.
      *
@@ -468,32 +792,430 @@ public class Camera implements Cloneable {
     }
 
     /**
-     * Casts a ray through the center of a given pixel, traces it using the ray tracer,
+     * Constructs ray from camera's location through a random point of a given pixel in the view plane.
+     *
+     * @param j pixel's x index (column)
+     * @param i pixel's y index (row)
+     * @return resulting Ray
+     */
+    private Ray constructJitteredRay(int j, int i) {
+        Random random = ThreadLocalRandom.current();
+        double xJ = (j + random.nextDouble() - nX * 0.5) * vpWidth / nX;
+        double yI = -(i + random.nextDouble() - nY * 0.5) * vpHeight / nY;
+        // the components are summed directly - a random offset may be zero
+        Point pixelPoint = viewPlaneCenter;
+        if (!isZero(xJ)) pixelPoint = pixelPoint.add(right.scale(xJ));
+        if (!isZero(yI)) pixelPoint = pixelPoint.add(up.scale(yI));
+        return new Ray(location, pixelPoint.subtract(location));
+    }
+
+    /**
+     * Constructs the ray of a pixel - through its center, or through a random point of it in a
+     * progressive rendering
+     *
+     * @param j pixel's x index (column)
+     * @param i pixel's y index (row)
+     * @return resulting Ray
+     */
+    private Ray pixelRay(int j, int i) {
+        return accumulation == null ? constructRay(nX, nY, j, i) : constructJitteredRay(j, i);
+    }
+
+    /**
+     * Writes a traced color of a pixel into the image - in a progressive rendering the color is
+     * accumulated and the pixel gets the average of its samples
+     *
+     * @param j     pixel column index (X)
+     * @param i     pixel row index (Y)
+     * @param color the traced color
+     */
+    private void writeSample(int j, int i, Color color) {
+        if (accumulation == null) {
+            imageWriter.writePixel(j, i, color);
+            return;
+        }
+        int index = 3 * (i * nX + j);
+        Double3 rgb = color.getRgb();
+        double luminance = 0.2126 * rgb.d1() + 0.7152 * rgb.d2() + 0.0722 * rgb.d3();
+        moments[i * nX + j] += luminance * luminance;
+        double scale = 1.0 / (accumulatedSamples + 1);
+        imageWriter.writePixel(j, i, new Color((accumulation[index] += rgb.d1()) * scale,
+                (accumulation[index + 1] += rgb.d2()) * scale, (accumulation[index + 2] += rgb.d3()) * scale));
+    }
+
+    /**
+     * Casts a ray through a given pixel, traces it using the ray tracer,
      * and writes the resulting color to the image.
      *
      * @param j pixel column index (X)
      * @param i pixel row index (Y)
      */
     private void castRay(int j, int i) {
-        Ray ray = constructRay(nX, nY, j, i);
+        Ray ray = pixelRay(j, i);
         Color color = rayTracer.traceRay(ray);
-        imageWriter.writePixel(j, i, color);
+        writeSample(j, i, color);
         pixelManager.pixelDone();
     }
 
+    /**
+     * Casts the rays through the centers of a square of pixels as a packet, traces them
+     * together and writes the resulting colors to the image.
+     *
+     * @param x0 first column of the square
+     * @param y0 first row of the square
+     */
+    private void castPacket(int x0, int y0) {
+        int width = Math.min(packetSize, nX - x0), height = Math.min(packetSize, nY - y0);
+        Color[] colors = tracePacket(x0, y0, width, height, accumulation != null);
+        for (int i = 0; i < height; ++i)
+            for (int j = 0; j < width; ++j) {
+                writeSample(x0 + j, y0 + i, colors[i * width + j]);
+                pixelManager.pixelDone();
+            }
+    }
+
+    /**
+     * Traces the rays of a rectangle of pixels as a packet
+     *
+     * @param x0       first column of the rectangle
+     * @param y0       first row of the rectangle
+     * @param width    number of columns in the rectangle
+     * @param height   number of rows in the rectangle
+     * @param jittered whether the rays pass through random points of the pixels (or through their centers)
+     * @return the colors of the pixels, row by row
+     */
+    private Color[] tracePacket(int x0, int y0, int width, int height, boolean jittered) {
+        Ray[] rays = new Ray[width * height];
+        for (int i = 0; i < height; ++i)
+            for (int j = 0; j < width; ++j)
+                rays[i * width + j] = jittered ? constructJitteredRay(x0 + j, y0 + i) : constructRay(nX, nY, x0 + j, y0 + i);
+        return rayTracer.traceRays(rays);
+    }
+
+    /**
+     * Checks whether the image is rendered progressively - by jittered samples averaged per pixel
+     * (see {@link Builder#setSamplesPerPixel(int)}), rather than by a single ray through every pixel center
+     *
+     * @return true if the rendering is progressive
+     */
+    private boolean isProgressive() {
+        return samplesPerPixel > 1 || rayTracer instanceof PathTracer || denoiser != null;
+    }
+
+    /**
+     * Renders a rectangular tile of the image into an array of packed RGB values - the pixels
+     * are the averages of the samples per pixel of a progressive rendering, as in
+     * {@link #renderImage()}. The tile is traced in the calling thread and is not written into the image.
+     *
+     * @param x0     first column of the tile
+     * @param y0     first row of the tile
+     * @param width  number of columns in the tile
+     * @param height number of rows in the tile
+     * @return packed RGB values of the tile pixels, row by row
+     */
+    int[] renderTile(int x0, int y0, int width, int height) {
+        double[] colors = traceTile(x0, y0, width, height, null);
+        int[] rgb = new int[width * height];
+        for (int p = 0; p < rgb.length; ++p)
+            rgb[p] = new Color(colors[3 * p], colors[3 * p + 1], colors[3 * p + 2]).getColor().getRGB();
+        return rgb;
+    }
+
+    /**
+     * Traces a rectangular tile of the image in the calling thread - a ray through every pixel
+     * center, or the samples per pixel of a progressive rendering through random points of the pixels
+     *
+     * @param x0      first column of the tile
+     * @param y0      first row of the tile
+     * @param width   number of columns in the tile
+     * @param height  number of rows in the tile
+     * @param moments receives the sums of the squared luminances of the samples, 1 per pixel (null - not needed)
+     * @return the average colors of the pixels, 3 per pixel (row by row)
+     */
+    private double[] traceTile(int x0, int y0, int width, int height, double[] moments) {
+        boolean progressive = isProgressive();
+        int samples = progressive ? samplesPerPixel : 1;
+        double[] colors = new double[3 * width * height];
+        for (int sample = 0; sample < samples; ++sample) {
+            if (packetSize > 0) {
+                for (int py = 0; py < height; py += packetSize)
+                    for (int px = 0; px < width; px += packetSize) {
+                        int w = Math.min(packetSize, width - px), h = Math.min(packetSize, height - py);
+                        Color[] packet = tracePacket(x0 + px, y0 + py, w, h, progressive);
+                        for (int i = 0; i < h; ++i)
+                            for (int j = 0; j < w; ++j)
+                                addColor(colors, moments, (py + i) * width + px + j, packet[i * w + j]);
+                    }
+                continue;
+            }
+            for (int i = 0; i < height; ++i)
+                for (int j = 0; j < width; ++j) {
+                    Ray ray = progressive ? constructJitteredRay(x0 + j, y0 + i) : constructRay(nX, nY, x0 + j, y0 + i);
+                    addColor(colors, moments, i * width + j, rayTracer.traceRay(ray));
+                }
+        }
+        for (int k = 0; k < colors.length; ++k) colors[k] /= samples;
+        return colors;
+    }
+
+    /**
+     * Adds a sample color of a pixel to the sums of the pixel
+     *
+     * @param colors  the sums of the colors, 3 per pixel
+     * @param moments the sums of the squared luminances, 1 per pixel (null - not needed)
+     * @param p       the pixel
+     * @param color   the color
+     */
+    private static void addColor(double[] colors, double[] moments, int p, Color color) {
+        Double3 rgb = color.getRgb();
+        colors[3 * p] += rgb.d1();
+        colors[3 * p + 1] += rgb.d2();
+        colors[3 * p + 2] += rgb.d3();
+        if (moments == null) return;
+        double luminance = 0.2126 * rgb.d1() + 0.7152 * rgb.d2() + 0.0722 * rgb.d3();
+        moments[p] += luminance * luminance;
+    }
+
+    /**
+     * Renders a rectangular tile of the image for denoising (see {@link #writeDenoised(double[], double[])})
+     * - the average colors of the samples per pixel and the variances of the average luminances.
+     * The tile is traced in the calling thread and is not written into the image.
+     *
+     * @param x0     first column of the tile
+     * @param y0     first row of the tile
+     * @param width  number of columns in the tile
+     * @param height number of rows in the tile
+     * @return 4 values per pixel (row by row) - the average color and the variance of its luminance
+     */
+    double[] renderDenoisingTile(int x0, int y0, int width, int height) {
+        double[] moments = new double[width * height];
+        double[] colors = traceTile(x0, y0, width, height, moments);
+        double[] samples = new double[4 * width * height];
+        for (int p = 0; p < moments.length; ++p) {
+            System.arraycopy(colors, 3 * p, samples, 4 * p, 3);
+            samples[4 * p + 3] = variance(moments[p], Denoiser.luminance(colors, 3 * p), samplesPerPixel);
+        }
+        return samples;
+    }
+
+    /**
+     * Computes the variance of the average luminance of a pixel
+     *
+     * @param moment the sum of the squared luminances of the samples
+     * @param mean   the average luminance
+     * @param n      the amount of samples
+     * @return the variance - unknown (0) of a single sample
+     */
+    private static double variance(double moment, double mean, int n) {
+        return n > 1 ? Math.max(0, moment / n - mean * mean) / (n - 1) : 0;
+    }
+
+    /**
+     * Denoises an image of average pixel colors by the denoiser of the camera and writes it into
+     * the image - the floating point framebuffer gets the denoised colors
+     *
+     * @param colors   the average colors of the pixels, 3 per pixel (row by row)
+     * @param variance the variances of the average luminances of the pixels, 1 per pixel
+     */
+    void writeDenoised(double[] colors, double[] variance) {
+        framebuffer = denoiser.denoise(colors, variance, getAuxiliaryBuffers());
+        for (int i = 0; i < nY; ++i)
+            for (int j = 0; j < nX; ++j) {
+                int index = 3 * (i * nX + j);
+                imageWriter.writePixel(j, i, new Color(framebuffer[index], framebuffer[index + 1], framebuffer[index + 2]));
+            }
+    }
+
+    /**
+     * Writes a rendered tile of packed RGB values into the image.
+     *
+     * @param x0     first column of the tile
+     * @param y0     first row of the tile
+     * @param width  number of columns in the tile
+     * @param height number of rows in the tile
+     * @param rgb    packed RGB values of the tile pixels, row by row
+     */
+    void writeTile(int x0, int y0, int width, int height, int[] rgb) {
+        for (int i = 0; i < height; ++i)
+            for (int j = 0; j < width; ++j)
+                imageWriter.writeRGB(x0 + j, y0 + i, rgb[i * width + j]);
+    }
+
+    /**
+     * Reads a tile of the image as packed RGB values.
+     *
+     * @param x0     first column of the tile
+     * @param y0     first row of the tile
+     * @param width  number of columns in the tile
+     * @param height number of rows in the tile
+     * @return packed RGB values of the tile pixels, row by row
+     */
+    int[] readTile(int x0, int y0, int width, int height) {
+        int[] rgb = new int[width * height];
+        for (int i = 0; i < height; ++i)
+            for (int j = 0; j < width; ++j)
+                rgb[i * width + j] = imageWriter.readRGB(x0 + j, y0 + i);
+        return rgb;
+    }
+
     /**
      * This function renders image's pixel color map from the scene
-     * included in the ray tracer object
+     * included in the ray tracer object. A progressive rendering (see
+     * {@link Builder#setSamplesPerPixel(int)}) adds its samples to the accumulation buffer
+     * and writes the averages of the pixels - denoised if the camera has a denoiser.
      *
      * @return the camera object itself
      */
     public Camera renderImage() {
+        if (!isProgressive()) {
+            renderPass();
+            return this;
+        }
+        if (accumulation == null) {
+            accumulation = new double[3 * nX * nY];
+            moments = new double[nX * nY];
+        }
+        for (int sample = 0; sample < samplesPerPixel; ++sample) {
+            renderPass();
+            ++accumulatedSamples;
+        }
+
+        framebuffer = new double[accumulation.length];
+        for (int k = 0; k < accumulation.length; ++k) framebuffer[k] = accumulation[k] / accumulatedSamples;
+        if (denoiser != null) {
+            double[] variance = new double[nX * nY];
+            for (int p = 0; p < variance.length; ++p)
+                variance[p] = variance(moments[p], Denoiser.luminance(framebuffer, 3 * p), accumulatedSamples);
+            writeDenoised(framebuffer, variance);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the floating point framebuffer of the last progressive rendering
+     *
+     * @return the pixel colors, 3 per pixel (row by row), or null before a progressive rendering
+     */
+    double[] getFramebuffer() {
+        return framebuffer;
+    }
+
+    /**
+     * Returns the auxiliary buffers of the image - the normals, the albedos and the depths of
+     * the first hits of the rays through the pixel centers. They are computed on the first call.
+     *
+     * @return the auxiliary buffers
+     */
+    public AuxiliaryBuffers getAuxiliaryBuffers() {
+        if (auxiliaryBuffers == null) {
+            int pixels = nX * nY;
+            double[] normal = new double[3 * pixels], albedo = new double[3 * pixels], depth = new double[pixels];
+            IntStream.range(0, nY).parallel().forEach(i -> {
+                for (int j = 0; j < nX; ++j) writeFeatures(j, i, normal, albedo, depth);
+            });
+            auxiliaryBuffers = new AuxiliaryBuffers(nX, nY, normal, albedo, depth);
+        }
+        return auxiliaryBuffers;
+    }
+
+    /**
+     * Computes the features of the first hit of the ray through the center of a pixel
+     *
+     * @param j      pixel column index (X)
+     * @param i      pixel row index (Y)
+     * @param normal receives the normal facing the camera
+     * @param albedo receives the albedo
+     * @param depth  receives the distance of the hit
+     */
+    private void writeFeatures(int j, int i, double[] normal, double[] albedo, double[] depth) {
+        int p = i * nX + j, p3 = 3 * p;
+        scene.Scene scene = rayTracer.scene;
+        Ray ray = constructRay(nX, nY, j, i);
+        var hit = ray.findClosestIntersection(scene.geometries.calculateIntersections(ray));
+        if (hit == null) {
+            Double3 background = scene.background.getRgb();
+            albedo[p3] = Math.min(1, background.d1() / 255);
+            albedo[p3 + 1] = Math.min(1, background.d2() / 255);
+            albedo[p3 + 2] = Math.min(1, background.d3() / 255);
+            depth[p] = Double.POSITIVE_INFINITY;
+            return;
+        }
+        Vector n = hit.normal != null ? hit.normal : hit.geometry.getNormal(hit.point);
+        if (n.dotProduct(ray.getDirection()) > 0) n = n.scale(-1);
+        normal[p3] = n.getX();
+        normal[p3 + 1] = n.getY();
+        normal[p3 + 2] = n.getZ();
+        Double3 kD = hit.material.kD, emission = hit.geometry.getEmission().getRgb();
+        albedo[p3] = Math.min(1, kD.d1() + emission.d1() / 255);
+        albedo[p3 + 1] = Math.min(1, kD.d2() + emission.d2() / 255);
+        albedo[p3 + 2] = Math.min(1, kD.d3() + emission.d3() / 255);
+        depth[p] = hit.point.distance(location);
+    }
+
+    /**
+     * Writes the auxiliary buffers into images (with the given name and suffixes "_normal",
+     * "_albedo" and "_depth"): the normal components are mapped from [-1, 1], the depths are
+     * scaled by the farthest hit (the pixels of no hit are black)
+     *
+     * @param filename the name of the image files (without the suffixes and the extension)
+     * @return this camera object (for chaining)
+     */
+    public Camera writeAuxiliaryImages(String filename) {
+        AuxiliaryBuffers buffers = getAuxiliaryBuffers();
+        double farthest = 0;
+        for (double d : buffers.depth()) if (d < Double.POSITIVE_INFINITY) farthest = Math.max(farthest, d);
+        ImageWriter normalImage = new ImageWriter(nX, nY), albedoImage = new ImageWriter(nX, nY);
+        ImageWriter depthImage = new ImageWriter(nX, nY);
+        for (int i = 0; i < nY; ++i)
+            for (int j = 0; j < nX; ++j) {
+                int p = i * nX + j, p3 = 3 * p;
+                double[] n = buffers.normal(), a = buffers.albedo();
+                boolean hit = buffers.depth()[p] < Double.POSITIVE_INFINITY;
+                normalImage.writePixel(j, i, hit ? new Color(127.5 * (n[p3] + 1), 127.5 * (n[p3 + 1] + 1),
+                        127.5 * (n[p3 + 2] + 1)) : Color.BLACK);
+                albedoImage.writePixel(j, i, new Color(255 * a[p3], 255 * a[p3 + 1], 255 * a[p3 + 2]));
+                double shade = hit && farthest > 0 ? 255 * (1 - buffers.depth()[p] / farthest) : 0;
+                depthImage.writePixel(j, i, new Color(shade, shade, shade));
+            }
+        normalImage.writeToImage(filename + "_normal");
+        albedoImage.writeToImage(filename + "_albedo");
+        depthImage.writeToImage(filename + "_depth");
+        return this;
+    }
+
+    /**
+     * Returns the amount of samples of every pixel accumulated by the progressive renderings
+     *
+     * @return the amount of accumulated samples (0 - no progressive rendering yet)
+     */
+    public int getAccumulatedSamples() {
+        return accumulatedSamples;
+    }
+
+    /**
+     * Discards the accumulated samples and the auxiliary buffers - the next progressive
+     * rendering starts over (e.g. after the scene has been changed)
+     *
+     * @return the camera object itself
+     */
+    public Camera resetAccumulation() {
+        accumulation = null;
+        moments = null;
+        accumulatedSamples = 0;
+        auxiliaryBuffers = null;
+        return this;
+    }
+
+    /**
+     * Traces a sample of every pixel of the image
+     */
+    private void renderPass() {
         pixelManager = new PixelManager(nX, nY, printInterval);
-        return switch (threadsCount) {
+        switch (threadsCount) {
             case 0 -> renderImageNoThreads();
             case -1 -> renderImageStream();
             default -> renderImageRawThreads();
-        };
+        }
     }
 
     /**
@@ -531,6 +1253,12 @@ public class Camera implements Cloneable {
      * @return the camera object itself
      */
     private Camera renderImageStream() {
+        if (packetSize > 0) {
+            IntStream.range(0, (nY + packetSize - 1) / packetSize).parallel()
+                    .forEach(i -> IntStream.range(0, (nX + packetSize - 1) / packetSize).parallel()
+                            .forEach(j -> castPacket(j * packetSize, i * packetSize)));
+            return this;
+        }
         IntStream.range(0, nY).parallel()
                 .forEach(i -> IntStream.range(0, nX).parallel()
                         .forEach(j -> castRay(j, i)));
@@ -543,6 +1271,12 @@ public class Camera implements Cloneable {
      * @return the camera object itself
      */
     private Camera renderImageNoThreads() {
+        if (packetSize > 0) {
+            for (int i = 0; i < nY; i += packetSize)
+                for (int j = 0; j < nX; j += packetSize)
+                    castPacket(j, i);
+            return this;
+        }
         for (int i = 0; i < nY; ++i)
             for (int j = 0; j < nX; ++j) {
                 if (i == 400 && j == 400) {
@@ -559,12 +1293,19 @@ public class Camera implements Cloneable {
      * @return the camera object itself
      */
     private Camera renderImageRawThreads() {
+        // with packet tracing the threads are allocated whole packets - "pixels" of a grid of packets
+        PixelManager packetManager = packetSize == 0 ? null
+                : new PixelManager((nY + packetSize - 1) / packetSize, (nX + packetSize - 1) / packetSize, 0);
         var threads = new LinkedList<Thread>();
-        while (threadsCount-- > 0)
+        for (int t = 0; t < threadsCount; ++t)
             threads.add(new Thread(() -> {
                 PixelManager.Pixel pixel;
-                while ((pixel = pixelManager.nextPixel()) != null)
-                    castRay(pixel.col(), pixel.row());
+                if (packetManager != null)
+                    while ((pixel = packetManager.nextPixel()) != null)
+                        castPacket(pixel.col() * packetSize, pixel.row() * packetSize);
+                else
+                    while ((pixel = pixelManager.nextPixel()) != null)
+                        castRay(pixel.col(), pixel.row());
             }));
         for (var thread : threads) thread.start();
         try {
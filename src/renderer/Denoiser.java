@@ -0,0 +1,264 @@
+package renderer;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+
+/**
+ * Edge-aware denoiser of rendered images - a variance-guided à-trous wavelet filter (as SVGF).<br>
+ * Every iteration blurs the image by a 5x5 B3-spline kernel whose taps are spread 2<sup>i</sup>
+ * pixels apart, so a few iterations cover a wide footprint cheaply. The weight of every tap is
+ * the kernel weight times edge-stopping functions of the differences between the pixels in the
+ * guide features of {@link AuxiliaryBuffers} (the normal, the albedo and the depth) and in the
+ * luminance, so the noise of the shading is smoothed while the geometric and texture edges are
+ * kept. The luminance differences are measured against the standard deviation of the pixel
+ * estimate: a noisy pixel is blurred widely, a converged one (or a shadow edge which is larger
+ * than the noise) is kept. The variance is filtered along with the colors, so it decreases from
+ * iteration to iteration.
+ * <p>
+ * The filter works on the floating point framebuffer (3 values per pixel, row by row), and
+ * every iteration is parallelized over tiles of the image.
+ */
+public class Denoiser {
+
+    /**
+     * Side of the square tiles of pixels filtered by one task
+     */
+    private static final int TILE_SIZE = 32;
+    /**
+     * The B3-spline kernel
+     */
+    private static final double[] KERNEL = {1.0 / 16, 1.0 / 4, 3.0 / 8, 1.0 / 4, 1.0 / 16};
+
+    /**
+     * Amount of filter iterations
+     */
+    private int iterations = 3;
+    /**
+     * Tolerance of the luminance differences - in standard deviations of the pixel estimate
+     */
+    private double colorSigma = 4;
+    /**
+     * Tolerance of the normal differences
+     */
+    private double normalSigma = 0.3;
+    /**
+     * Tolerance of the depth differences - relative to the nearer depth, per pixel of distance
+     */
+    private double depthSigma = 0.1;
+    /**
+     * Tolerance of the albedo differences
+     */
+    private double albedoSigma = 0.1;
+
+    /**
+     * Sets the amount of filter iterations - the filter reaches 2 (2<sup>n</sup> - 1) pixels away
+     *
+     * @param iterations the amount of iterations
+     * @return this denoiser (for chaining)
+     * @throws IllegalArgumentException if the amount is not positive
+     */
+    public Denoiser setIterations(int iterations) {
+        if (iterations < 1) throw new IllegalArgumentException("Amount of denoising iterations must be positive");
+        this.iterations = iterations;
+        return this;
+    }
+
+    /**
+     * Sets the tolerance of the luminance differences
+     *
+     * @param sigma the tolerance - in standard deviations of the pixel estimate
+     * @return this denoiser (for chaining)
+     * @throws IllegalArgumentException if the tolerance is not positive
+     */
+    public Denoiser setColorSigma(double sigma) {
+        if (!(sigma > 0)) throw new IllegalArgumentException("Color tolerance must be positive");
+        this.colorSigma = sigma;
+        return this;
+    }
+
+    /**
+     * Sets the tolerances of the differences of the guide features
+     *
+     * @param normal the tolerance of the normal differences
+     * @param depth  the tolerance of the depth differences - relative to the nearer depth, per pixel of distance
+     * @param albedo the tolerance of the albedo differences
+     * @return this denoiser (for chaining)
+     * @throws IllegalArgumentException if a tolerance is not positive
+     */
+    public Denoiser setGuideSigmas(double normal, double depth, double albedo) {
+        if (!(normal > 0 && depth > 0 && albedo > 0))
+            throw new IllegalArgumentException("Guide tolerances must be positive");
+        this.normalSigma = normal;
+        this.depthSigma = depth;
+        this.albedoSigma = albedo;
+        return this;
+    }
+
+    /**
+     * Writes the denoiser settings (the iterations and the tolerances) in binary form
+     *
+     * @param out the output
+     * @throws IOException in case of I/O error
+     */
+    void writeSettings(DataOutput out) throws IOException {
+        out.writeInt(iterations);
+        out.writeDouble(colorSigma);
+        out.writeDouble(normalSigma);
+        out.writeDouble(depthSigma);
+        out.writeDouble(albedoSigma);
+    }
+
+    /**
+     * Reads denoiser settings written by {@link #writeSettings(DataOutput)} into a new denoiser
+     *
+     * @param in the input buffer
+     * @return the denoiser
+     * @throws IllegalArgumentException for invalid settings
+     */
+    static Denoiser readSettings(ByteBuffer in) {
+        return new Denoiser().setIterations(in.getInt()).setColorSigma(in.getDouble())
+                .setGuideSigmas(in.getDouble(), in.getDouble(), in.getDouble());
+    }
+
+    /**
+     * Denoises an image
+     *
+     * @param color     the colors of the pixels, 3 per pixel (row by row) - it is not changed
+     * @param variance  the variances of the luminance estimates of the pixels, 1 per pixel
+     * @param auxiliary the guide features of the pixels
+     * @return the denoised colors, 3 per pixel
+     * @throws IllegalArgumentException if the colors or the variances don't fit the auxiliary buffers
+     */
+    public double[] denoise(double[] color, double[] variance, AuxiliaryBuffers auxiliary) {
+        int width = auxiliary.width(), height = auxiliary.height();
+        if (color.length != 3 * width * height || variance.length != width * height)
+            throw new IllegalArgumentException("Image doesn't fit the auxiliary buffers");
+        int tilesX = (width + TILE_SIZE - 1) / TILE_SIZE, tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+        double[] in = color.clone(), out = new double[color.length];
+        double[] varianceIn = variance.clone(), varianceOut = new double[variance.length];
+        double[] deviation = new double[variance.length];
+        for (int i = 0; i < iterations; ++i) {
+            int step = 1 << i;
+            double[] source = in, target = out, sourceVariance = varianceIn, targetVariance = varianceOut;
+            IntStream.range(0, tilesX * tilesY).parallel().forEach(t -> {
+                int x0 = t % tilesX * TILE_SIZE, y0 = t / tilesX * TILE_SIZE;
+                for (int y = y0; y < Math.min(height, y0 + TILE_SIZE); ++y)
+                    for (int x = x0; x < Math.min(width, x0 + TILE_SIZE); ++x)
+                        deviation[y * width + x] = deviation(sourceVariance, width, height, x, y);
+            });
+            IntStream.range(0, tilesX * tilesY).parallel().forEach(t -> {
+                int x0 = t % tilesX * TILE_SIZE, y0 = t / tilesX * TILE_SIZE;
+                for (int y = y0; y < Math.min(height, y0 + TILE_SIZE); ++y)
+                    for (int x = x0; x < Math.min(width, x0 + TILE_SIZE); ++x)
+                        filter(source, sourceVariance, deviation, target, targetVariance, auxiliary, x, y, step);
+            });
+            out = in;
+            in = target;
+            varianceOut = varianceIn;
+            varianceIn = targetVariance;
+        }
+        return in;
+    }
+
+    /**
+     * Computes the standard deviation of a pixel from its variance smoothed by a 3x3 Gaussian -
+     * the variance estimate of a pixel of a few samples is noisy by itself
+     *
+     * @param variance the variances of the pixels
+     * @param width    the amount of columns
+     * @param height   the amount of rows
+     * @param x        the pixel column
+     * @param y        the pixel row
+     * @return the standard deviation
+     */
+    private static double deviation(double[] variance, int width, int height, int x, int y) {
+        double sum = 0, total = 0;
+        for (int qy = Math.max(0, y - 1); qy <= Math.min(height - 1, y + 1); ++qy)
+            for (int qx = Math.max(0, x - 1); qx <= Math.min(width - 1, x + 1); ++qx) {
+                double weight = (qx == x ? 2 : 1) * (qy == y ? 2 : 1);
+                sum += weight * variance[qy * width + qx];
+                total += weight;
+            }
+        return Math.sqrt(sum / total);
+    }
+
+    /**
+     * Filters a pixel by one iteration
+     *
+     * @param source         the colors of the previous iteration
+     * @param variance       the variances of the previous iteration
+     * @param deviation      the smoothed standard deviations of the previous iteration
+     * @param target         receives the filtered colors
+     * @param targetVariance receives the variances of the filtered colors
+     * @param auxiliary      the guide features
+     * @param x              the pixel column
+     * @param y              the pixel row
+     * @param step           the distance between the kernel taps
+     */
+    private void filter(double[] source, double[] variance, double[] deviation, double[] target,
+                        double[] targetVariance, AuxiliaryBuffers auxiliary, int x, int y, int step) {
+        int width = auxiliary.width(), height = auxiliary.height();
+        double[] normal = auxiliary.normal(), albedo = auxiliary.albedo(), depth = auxiliary.depth();
+        int p = y * width + x, p3 = 3 * p;
+        double luminance = luminance(source, p3);
+        // a converged pixel still accepts differences of a color unit
+        double tolerance = colorSigma * deviation[p] + 1;
+        double r = 0, g = 0, b = 0, v = 0, total = 0;
+        for (int ky = -2; ky <= 2; ++ky) {
+            int qy = y + ky * step;
+            if (qy < 0 || qy >= height) continue;
+            for (int kx = -2; kx <= 2; ++kx) {
+                int qx = x + kx * step;
+                if (qx < 0 || qx >= width) continue;
+                int q = qy * width + qx, q3 = 3 * q;
+
+                boolean hitP = depth[p] < Double.POSITIVE_INFINITY, hitQ = depth[q] < Double.POSITIVE_INFINITY;
+                if (hitP != hitQ) continue; // a silhouette
+                double dz = 0;
+                if (hitP && q != p) // the depth tolerance grows with the distance of the tap
+                    dz = Math.abs(depth[p] - depth[q])
+                            / (depthSigma * Math.min(depth[p], depth[q]) * step * Math.max(Math.abs(kx), Math.abs(ky)));
+                double dl = Math.abs(luminance - luminance(source, q3)) / tolerance;
+                double dn = distance2(normal, p3, q3) / (normalSigma * normalSigma);
+                double da = distance2(albedo, p3, q3) / (albedoSigma * albedoSigma);
+                double weight = KERNEL[kx + 2] * KERNEL[ky + 2] * Math.exp(-dl - dn - da - dz);
+                r += weight * source[q3];
+                g += weight * source[q3 + 1];
+                b += weight * source[q3 + 2];
+                v += weight * weight * variance[q];
+                total += weight;
+            }
+        }
+        // the center tap has weight - the total is positive
+        target[p3] = r / total;
+        target[p3 + 1] = g / total;
+        target[p3 + 2] = b / total;
+        targetVariance[p] = v / (total * total);
+    }
+
+    /**
+     * Computes the luminance of a color (Rec. 709 weights)
+     *
+     * @param color the colors buffer
+     * @param i     the color triad
+     * @return the luminance
+     */
+    static double luminance(double[] color, int i) {
+        return 0.2126 * color[i] + 0.7152 * color[i + 1] + 0.0722 * color[i + 2];
+    }
+
+    /**
+     * Squared distance of two triads of a buffer
+     *
+     * @param buffer the buffer
+     * @param i      the first triad
+     * @param j      the second triad
+     * @return the squared distance
+     */
+    private static double distance2(double[] buffer, int i, int j) {
+        double d1 = buffer[i] - buffer[j], d2 = buffer[i + 1] - buffer[j + 1], d3 = buffer[i + 2] - buffer[j + 2];
+        return d1 * d1 + d2 * d2 + d3 * d3;
+    }
+}
@@ -100,5 +100,29 @@ final class ImageWriter {
         image.setRGB(xIndex, yIndex, color.getColor().getRGB());
     }
 
+    /**
+     * The function writeRGB writes an already packed RGB value of a specific pixel
+     * into pixel color matrix
+     *
+     * @param xIndex X axis index of the pixel
+     * @param yIndex Y axis index of the pixel
+     * @param rgb    packed RGB value of the pixel (as in java.awt.Color#getRGB)
+     */
+    void writeRGB(int xIndex, int yIndex, int rgb) {
+        image.setRGB(xIndex, yIndex, rgb);
+    }
+
+    /**
+     * The function readRGB reads the packed RGB value of a specific pixel
+     * from pixel color matrix
+     *
+     * @param xIndex X axis index of the pixel
+     * @param yIndex Y axis index of the pixel
+     * @return packed RGB value of the pixel (as in java.awt.Color#getRGB)
+     */
+    int readRGB(int xIndex, int yIndex) {
+        return image.getRGB(xIndex, yIndex);
+    }
+
 }
 
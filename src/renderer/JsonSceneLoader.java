@@ -0,0 +1,616 @@
+package renderer;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import primitives.Vector;
+import scene.Scene;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Loader of JSON scene descriptions.<br>
+ * The file is parsed by Gson's streaming {@link JsonReader}: every geometry is constructed as soon
+ * as its object is read, so the parsing needs constant memory (besides the scene itself) and
+ * the load time is linear in the file size. Example:
+ * <pre>
+ * {
+ *   "name": "My scene",
+ *   "background": [0, 0, 30],
+ *   "ambient": [25, 25, 25],
+ *   "materials": { "wood": { "kD": 0.5, "kS": 0.2, "shininess": 40 }, "glass": { "kT": 0.8, "maxDepth": 4 } },
+ *   "lights": [
+ *     { "type": "directional", "intensity": [200, 200, 200], "direction": [1, -1, -1] },
+ *     { "type": "point", "intensity": [500, 300, 0], "position": [0, 50, 0], "kL": 0.001, "radius": 5, "shadowRays": 9 },
+ *     { "type": "spot", "intensity": [800, 800, 800], "position": [0, 100, 0], "direction": [0, -1, 0], "narrowBeam": 8 }
+ *   ],
+ *   "geometries": [
+ *     { "type": "sphere", "center": [0, 0, -100], "radius": 50, "material": "wood", "emission": [40, 0, 0] },
+ *     { "type": "triangle", "vertices": [[0, 0, 0], [1, 0, 0], [0, 1, 0]], "material": { "kD": 0.8 } },
+ *     { "type": "polygon", "vertices": [[0, 0, 0], [1, 0, 0], [1, 1, 0], [0, 1, 0]] },
+ *     { "type": "plane", "point": [0, -50, 0], "normal": [0, 1, 0] },
+ *     { "type": "tube", "radius": 2, "axis": { "head": [0, 0, 0], "direction": [0, 1, 0] } },
+ *     { "type": "cylinder", "radius": 2, "height": 10, "axis": { "head": [0, 0, 0], "direction": [0, 1, 0] } },
+ *     { "type": "group", "geometries": [ ... ] }
+ *   ],
+ *   "bvh": true,
+ *   "camera": { "location": [0, 0, 1000], "lookAt": [0, 0, 0], "up": [0, 1, 0], "vpDistance": 1000,
+ *               "vpSize": [200, 200], "resolution": [800, 800], "multithreading": -2, "debugPrint": 0.5,
+ *               "rayTracer": "SIMPLE", "maxLevel": 6, "russianRoulette": 0.1,
+ *               "lightSamples": 4, "lightCulling": 0.5, "shadowProbes": 8,
+ *               "shadingCache": 0.5, "causticPhotons": 200000, "causticNearest": 100, "causticRadius": 2,
+ *               "samplesPerPixel": 4, "denoise": 3 }
+ * }
+ * </pre>
+ * Coefficients of a material may be a single number or a triad. A named material must be
+ * defined (in "materials") before it is referred by a geometry. Instead of "lookAt" the camera
+ * may be given the "to" direction vector.
+ */
+public final class JsonSceneLoader {
+
+    /**
+     * Default name of a scene without a name
+     */
+    private static final String DEFAULT_NAME = "JSON scene";
+
+    /**
+     * Named materials defined so far
+     */
+    private final Map<String, Material> materials = new HashMap<>();
+
+    /**
+     * The JSON reader
+     */
+    private final JsonReader reader;
+
+    /**
+     * Constructs a loader for the given reader
+     *
+     * @param reader the JSON reader
+     */
+    private JsonSceneLoader(JsonReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Loads a JSON scene description file
+     *
+     * @param file the file path
+     * @return the scene, and the camera builder if the description has a camera
+     * @throws UncheckedIOException     in case of I/O error
+     * @throws IllegalArgumentException for an illegal or a malformed scene description
+     */
+    public static LoadedScene load(Path file) {
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed reading scene description " + file, e);
+        }
+    }
+
+    /**
+     * Loads a JSON scene description
+     *
+     * @param in the source of the description
+     * @return the scene, and the camera builder if the description has a camera
+     * @throws UncheckedIOException     in case of I/O error
+     * @throws IllegalArgumentException for an illegal or a malformed scene description
+     */
+    public static LoadedScene load(Reader in) {
+        JsonReader reader = new JsonReader(in);
+        try {
+            return new JsonSceneLoader(reader).readScene();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IllegalArgumentException("Illegal scene description at " + reader.getPath(), e);
+        } catch (MalformedJsonException | EOFException e) {
+            // a syntax error or a truncated description - the message tells the line and the column
+            throw new IllegalArgumentException("Malformed scene description: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed reading scene description", e);
+        }
+    }
+
+    /**
+     * Reads the scene object
+     *
+     * @return the scene and the camera builder
+     * @throws IOException in case of I/O error
+     */
+    private LoadedScene readScene() throws IOException {
+        String name = DEFAULT_NAME;
+        Color background = Color.BLACK;
+        AmbientLight ambient = AmbientLight.NONE;
+        Geometries geometries = new Geometries();
+        List<LightSource> lights = new LinkedList<>();
+        boolean bvh = false;
+        CameraSettings camera = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String member = reader.nextName();
+            switch (member) {
+                case "name" -> name = reader.nextString();
+                case "background" -> background = readColor();
+                case "ambient" -> ambient = new AmbientLight(readColor());
+                case "materials" -> {
+                    reader.beginObject();
+                    while (reader.hasNext()) materials.put(reader.nextName(), readMaterial());
+                    reader.endObject();
+                }
+                case "lights" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) lights.add(readLight());
+                    reader.endArray();
+                }
+                case "geometries" -> readGeometries(geometries);
+                case "bvh" -> bvh = reader.nextBoolean();
+                case "camera" -> camera = readCamera();
+                default -> throw unknown(member);
+            }
+        }
+        reader.endObject();
+
+        Scene scene = new Scene(name).setBackground(background).setAmbientLight(ambient).setGeometries(geometries);
+        scene.lights.addAll(lights);
+        if (bvh) geometries.buildBVH();
+        return new LoadedScene(scene, camera == null ? null : camera.toBuilder(scene));
+    }
+
+    /**
+     * Reads an array of geometries into a composite geometry
+     *
+     * @param geometries the composite geometry
+     * @throws IOException in case of I/O error
+     */
+    private void readGeometries(Geometries geometries) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) geometries.add(readGeometry());
+        reader.endArray();
+    }
+
+    /**
+     * Reads a geometry object
+     *
+     * @return the geometry
+     * @throws IOException in case of I/O error
+     */
+    private Intersectable readGeometry() throws IOException {
+        String type = null;
+        Point center = null, point = null;
+        Vector normal = null;
+        Ray axis = null;
+        List<Point> vertices = null;
+        double radius = Double.NaN, height = Double.NaN;
+        Material material = null;
+        Color emission = null;
+        Geometries group = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String member = reader.nextName();
+            switch (member) {
+                case "type" -> type = reader.nextString();
+                case "center" -> center = readPoint();
+                case "point" -> point = readPoint();
+                case "normal" -> normal = readVector();
+                case "radius" -> radius = reader.nextDouble();
+                case "height" -> height = reader.nextDouble();
+                case "axis" -> axis = readRay();
+                case "vertices" -> {
+                    vertices = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) vertices.add(readPoint());
+                    reader.endArray();
+                }
+                case "material" -> material = reader.peek() == JsonToken.STRING ? namedMaterial() : readMaterial();
+                case "emission" -> emission = readColor();
+                case "geometries" -> readGeometries(group = new Geometries());
+                default -> throw unknown(member);
+            }
+        }
+        reader.endObject();
+
+        if (type == null) throw new IllegalArgumentException("Missing geometry type at " + reader.getPath());
+        if (type.equals("group")) return group == null ? new Geometries() : group;
+
+        Geometry geometry = switch (type) {
+            case "sphere" -> new Sphere(required(radius, "radius"), required(center, "center"));
+            case "plane" -> new Plane(required(point, "point"), required(normal, "normal"));
+            case "triangle" -> {
+                required(vertices, "vertices");
+                if (vertices.size() != 3) throw new IllegalArgumentException("A triangle must have 3 vertices");
+                yield new Triangle(vertices.get(0), vertices.get(1), vertices.get(2));
+            }
+            case "polygon" -> new Polygon(required(vertices, "vertices").toArray(new Point[0]));
+            case "tube" -> new Tube(required(radius, "radius"), required(axis, "axis"));
+            case "cylinder" -> new Cylinder(required(radius, "radius"), required(axis, "axis"), required(height, "height"));
+            default -> throw new IllegalArgumentException("Unknown geometry type '" + type + "' at " + reader.getPath());
+        };
+        if (material != null) geometry.setMaterial(material);
+        if (emission != null) geometry.setEmission(emission);
+        return geometry;
+    }
+
+    /**
+     * Reads a light object
+     *
+     * @return the light source
+     * @throws IOException in case of I/O error
+     */
+    private LightSource readLight() throws IOException {
+        String type = null;
+        Color intensity = null;
+        Point position = null;
+        Vector direction = null;
+        double kC = 1, kL = 0, kQ = 0, radius = 0, narrowBeam = 1;
+        int shadowRays = 1;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String member = reader.nextName();
+            switch (member) {
+                case "type" -> type = reader.nextString();
+                case "intensity" -> intensity = readColor();
+                case "position" -> position = readPoint();
+                case "direction" -> direction = readVector();
+                case "kC" -> kC = reader.nextDouble();
+                case "kL" -> kL = reader.nextDouble();
+                case "kQ" -> kQ = reader.nextDouble();
+                case "radius" -> radius = reader.nextDouble();
+                case "shadowRays" -> shadowRays = reader.nextInt();
+                case "narrowBeam" -> narrowBeam = reader.nextDouble();
+                default -> throw unknown(member);
+            }
+        }
+        reader.endObject();
+
+        if (type == null) throw new IllegalArgumentException("Missing light type at " + reader.getPath());
+        required(intensity, "intensity");
+        PointLight light = switch (type) {
+            case "directional" -> null;
+            case "point" -> new PointLight(intensity, required(position, "position"));
+            case "spot" -> new SpotLight(intensity, required(position, "position"), required(direction, "direction"))
+                    .setNarrowBeam(narrowBeam);
+            default -> throw new IllegalArgumentException("Unknown light type '" + type + "' at " + reader.getPath());
+        };
+        if (light == null) return new DirectionalLight(intensity, required(direction, "direction"));
+        return light.setKc(kC).setKl(kL).setKq(kQ).setAreaLightRadius(radius, shadowRays);
+    }
+
+    /**
+     * Reads a material object
+     *
+     * @return the material
+     * @throws IOException in case of I/O error
+     */
+    private Material readMaterial() throws IOException {
+        Material material = new Material();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String member = reader.nextName();
+            switch (member) {
+                case "kA" -> material.setKA(readDouble3());
+                case "kD" -> material.setKD(readDouble3());
+                case "kS" -> material.setKS(readDouble3());
+                case "kT" -> material.setKT(readDouble3());
+                case "kR" -> material.setKR(readDouble3());
+                case "shininess" -> material.setShininess(reader.nextInt());
+                case "maxDepth" -> material.setMaxDepth(reader.nextInt());
+                case "glossiness", "refractionGlossiness" -> {
+                    double radius = 0, distance = 1;
+                    int rays = 1;
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String parameter = reader.nextName();
+                        switch (parameter) {
+                            case "radius" -> radius = reader.nextDouble();
+                            case "distance" -> distance = reader.nextDouble();
+                            case "rays" -> rays = reader.nextInt();
+                            default -> throw unknown(parameter);
+                        }
+                    }
+                    reader.endObject();
+                    if (member.equals("glossiness")) material.setGlossinessReflacted(radius, distance, rays);
+                    else material.setGlossinessRefracted(radius, distance, rays);
+                }
+                default -> throw unknown(member);
+            }
+        }
+        reader.endObject();
+        return material;
+    }
+
+    /**
+     * Reads a reference to a named material
+     *
+     * @return the material
+     * @throws IOException in case of I/O error
+     */
+    private Material namedMaterial() throws IOException {
+        String name = reader.nextString();
+        Material material = materials.get(name);
+        if (material == null) throw new IllegalArgumentException("Undefined material '" + name + "' at " + reader.getPath());
+        return material;
+    }
+
+    /**
+     * Reads the camera object
+     *
+     * @return the camera settings
+     * @throws IOException in case of I/O error
+     */
+    private CameraSettings readCamera() throws IOException {
+        CameraSettings camera = new CameraSettings();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String member = reader.nextName();
+            switch (member) {
+                case "location" -> camera.location = readPoint();
+                case "lookAt" -> camera.lookAt = readPoint();
+                case "to" -> camera.to = readVector();
+                case "up" -> camera.up = readVector();
+                case "vpDistance" -> camera.vpDistance = reader.nextDouble();
+                case "vpSize" -> camera.vpSize = readNumbers(2);
+                case "resolution" -> camera.resolution = readNumbers(2);
+                case "multithreading" -> camera.threads = reader.nextInt();
+                case "debugPrint" -> camera.debugPrint = reader.nextDouble();
+                case "rayTracer" -> camera.rayTracer = RayTracerType.valueOf(reader.nextString());
+                case "maxLevel" -> camera.maxLevel = reader.nextInt();
+                case "russianRoulette" -> camera.russianRoulette = reader.nextDouble();
+                case "lightSamples" -> camera.lightSamples = reader.nextInt();
+                case "lightCulling" -> camera.lightCulling = reader.nextDouble();
+                case "shadowProbes" -> camera.shadowProbes = reader.nextInt();
+                case "shadingCache" -> camera.shadingCache = reader.nextDouble();
+                case "causticPhotons" -> camera.causticPhotons = reader.nextInt();
+                case "causticNearest" -> camera.causticNearest = reader.nextInt();
+                case "causticRadius" -> camera.causticRadius = reader.nextDouble();
+                case "samplesPerPixel" -> camera.samplesPerPixel = reader.nextInt();
+                case "denoise" -> camera.denoise = reader.nextInt();
+                default -> throw unknown(member);
+            }
+        }
+        reader.endObject();
+        return camera;
+    }
+
+    /**
+     * Camera parameters collected from the description - the builder is configured after
+     * the whole description has been read (the members may come in any order)
+     */
+    private static class CameraSettings {
+        /**
+         * Camera location
+         */
+        Point location = Point.ZERO;
+        /**
+         * Look-at point (or null)
+         */
+        Point lookAt = null;
+        /**
+         * Direction to (or null)
+         */
+        Vector to = null;
+        /**
+         * Direction up
+         */
+        Vector up = Vector.AXIS_Y;
+        /**
+         * View plane distance
+         */
+        double vpDistance = 0;
+        /**
+         * View plane width and height
+         */
+        double[] vpSize = null;
+        /**
+         * Resolution - columns and rows
+         */
+        double[] resolution = null;
+        /**
+         * Multithreading parameter
+         */
+        int threads = 0;
+        /**
+         * Debug print interval
+         */
+        double debugPrint = 0;
+        /**
+         * Ray tracer type
+         */
+        RayTracerType rayTracer = RayTracerType.SIMPLE;
+        /**
+         * Maximum recursion level of the ray tracer (0 - the default)
+         */
+        int maxLevel = 0;
+        /**
+         * Russian roulette threshold of the ray tracer (0 - disabled)
+         */
+        double russianRoulette = 0;
+        /**
+         * Amount of lights sampled per shading point (0 - all the lights are evaluated)
+         */
+        int lightSamples = 0;
+        /**
+         * Intensity threshold of the light culling (0 - no culling)
+         */
+        double lightCulling = 0;
+        /**
+         * Amount of probe rays of the adaptive soft shadows (0 - not adaptive)
+         */
+        int shadowProbes = 0;
+        /**
+         * Error radius of the irradiance cache (0 - no caching)
+         */
+        double shadingCache = 0;
+        /**
+         * Amount of photons emitted for the caustics (0 - no caustics)
+         */
+        int causticPhotons = 0;
+        /**
+         * Amount of nearest photons gathered for a caustics estimate
+         */
+        int causticNearest = 100;
+        /**
+         * Maximal distance of a gathered caustics photon
+         */
+        double causticRadius = 1;
+        /**
+         * Amount of samples traced through every pixel by a rendering
+         */
+        int samplesPerPixel = 1;
+        /**
+         * Amount of denoising iterations (0 - no denoising)
+         */
+        int denoise = 0;
+
+        /**
+         * Creates a camera builder configured by the settings
+         *
+         * @param scene the scene of the ray tracer
+         * @return the camera builder
+         */
+        Camera.Builder toBuilder(Scene scene) {
+            Camera.Builder builder = Camera.getBuilder().setLocation(location);
+            if (lookAt != null) builder.setDirection(lookAt, up);
+            else if (to != null) builder.setDirection(to, up);
+            if (vpDistance > 0) builder.setVpDistance(vpDistance);
+            if (vpSize != null) builder.setVpSize(vpSize[0], vpSize[1]);
+            if (resolution != null) builder.setResolution((int) resolution[0], (int) resolution[1]);
+            builder.setMultithreading(threads).setDebugPrint(debugPrint).setRayTracer(scene, rayTracer)
+                    .setSamplesPerPixel(samplesPerPixel);
+            if (denoise > 0) builder.setDenoiser(new Denoiser().setIterations(denoise));
+            if (maxLevel > 0) builder.setMaxRecursionLevel(maxLevel);
+            if (lightSamples > 0) builder.setLightSampling(lightSamples);
+            if (lightCulling > 0) builder.setLightCulling(lightCulling);
+            if (shadowProbes > 0) builder.setAdaptiveShadows(shadowProbes);
+            if (shadingCache > 0) builder.setShadingCache(shadingCache);
+            if (causticPhotons > 0) builder.setCaustics(causticPhotons, causticNearest, causticRadius);
+            return russianRoulette > 0 ? builder.setRussianRoulette(russianRoulette) : builder;
+        }
+    }
+
+    /**
+     * Reads a coefficient - a single number or a triad
+     *
+     * @return the coefficient triad
+     * @throws IOException in case of I/O error
+     */
+    private Double3 readDouble3() throws IOException {
+        if (reader.peek() == JsonToken.NUMBER) return new Double3(reader.nextDouble());
+        double[] d = readNumbers(3);
+        return new Double3(d[0], d[1], d[2]);
+    }
+
+    /**
+     * Reads a color triad
+     *
+     * @return the color
+     * @throws IOException in case of I/O error
+     */
+    private Color readColor() throws IOException {
+        double[] d = readNumbers(3);
+        return new Color(d[0], d[1], d[2]);
+    }
+
+    /**
+     * Reads a point triad
+     *
+     * @return the point
+     * @throws IOException in case of I/O error
+     */
+    private Point readPoint() throws IOException {
+        double[] d = readNumbers(3);
+        return new Point(d[0], d[1], d[2]);
+    }
+
+    /**
+     * Reads a vector triad
+     *
+     * @return the vector
+     * @throws IOException in case of I/O error
+     */
+    private Vector readVector() throws IOException {
+        double[] d = readNumbers(3);
+        return new Vector(d[0], d[1], d[2]);
+    }
+
+    /**
+     * Reads a ray object with "head" and "direction" members
+     *
+     * @return the ray
+     * @throws IOException in case of I/O error
+     */
+    private Ray readRay() throws IOException {
+        Point head = null;
+        Vector direction = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String member = reader.nextName();
+            switch (member) {
+                case "head" -> head = readPoint();
+                case "direction" -> direction = readVector();
+                default -> throw unknown(member);
+            }
+        }
+        reader.endObject();
+        return new Ray(required(head, "head"), required(direction, "direction"));
+    }
+
+    /**
+     * Reads an array of a given amount of numbers
+     *
+     * @param count the amount of numbers
+     * @return the numbers
+     * @throws IOException in case of I/O error
+     */
+    private double[] readNumbers(int count) throws IOException {
+        double[] numbers = new double[count];
+        reader.beginArray();
+        for (int i = 0; i < count; ++i) numbers[i] = reader.nextDouble();
+        if (reader.hasNext()) throw new IllegalArgumentException("Expected " + count + " numbers at " + reader.getPath());
+        reader.endArray();
+        return numbers;
+    }
+
+    /**
+     * Checks that a required member has been given
+     *
+     * @param value the value of the member
+     * @param name  the name of the member
+     * @param <T>   the type of the value
+     * @return the value
+     */
+    private <T> T required(T value, String name) {
+        if (value == null) throw new IllegalArgumentException("Missing '" + name + "' at " + reader.getPath());
+        return value;
+    }
+
+    /**
+     * Checks that a required numeric member has been given
+     *
+     * @param value the value of the member (NaN if missing)
+     * @param name  the name of the member
+     * @return the value
+     */
+    private double required(double value, String name) {
+        if (Double.isNaN(value)) throw new IllegalArgumentException("Missing '" + name + "' at " + reader.getPath());
+        return value;
+    }
+
+    /**
+     * Creates an exception for an unknown member
+     *
+     * @param member the member name
+     * @return the exception
+     */
+    private IllegalArgumentException unknown(String member) {
+        return new IllegalArgumentException("Unknown member '" + member + "' at " + reader.getPath());
+    }
+}
@@ -0,0 +1,13 @@
+package renderer;
+
+import scene.Scene;
+
+/**
+ * A scene loaded from a scene description file together with the camera settings of the file.
+ *
+ * @param scene         the loaded scene
+ * @param cameraBuilder camera builder initialized with the camera settings of the file and
+ *                      a simple ray tracer of the scene, or null if the file has no camera
+ */
+public record LoadedScene(Scene scene, Camera.Builder cameraBuilder) {
+}
@@ -0,0 +1,451 @@
+package renderer;
+
+import geometries.Intersectable.Intersection;
+import lighting.AreaLight;
+import lighting.LightSource;
+import lighting.PointLight;
+import primitives.*;
+import scene.Scene;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static primitives.Util.isZero;
+
+/**
+ * Monte Carlo path tracer.<br>
+ * Every traced ray follows a single random path through the scene, so a pixel converges to
+ * its color as samples are accumulated (see {@link Camera.Builder#setSamplesPerPixel(int)}).
+ * The materials are the ones of {@link SimpleRayTracer}: at every bounce a lobe is chosen by
+ * the average material coefficients - the diffuse lobe (kD, cosine-weighted directions), the
+ * Phong lobe (kS, directions around the mirror direction distributed by the shininess), the
+ * mirror (kR) or the transmission (kT), which are glossy if the material has glossiness.
+ * <p>
+ * The lights are sampled at every diffuse or glossy vertex (next-event estimation), with the
+ * lighting model and the shadow transparency of {@link SimpleRayTracer}. An area light (see
+ * {@link AreaLight}) is a disk facing the lit point: it is also hit by the diffuse and Phong
+ * rays, and the two estimates are combined by multiple importance sampling with the power
+ * heuristic. As in {@link SimpleRayTracer}, the lights are not visible to the camera, in mirrors
+ * or through glossy transmission, the background is seen by the camera rays and the mirror and
+ * transmission rays only, and the ambient light lights the first hit.
+ */
+public class PathTracer extends RayTracerBase {
+
+    /**
+     * Amount of bounces before the Russian roulette starts
+     */
+    private static final int ROULETTE_LEVEL = 3;
+
+    /**
+     * The sampler of the glossy directions
+     */
+    private static final RaySampler raySampler = new JitterDiskSampler();
+
+    /**
+     * The maximal amount of bounces of a path
+     */
+    private int maxLevel = SimpleRayTracer.MAX_CALC_COLOR_LEVEL;
+
+    /**
+     * Constructs a path tracer with the given scene.
+     *
+     * @param scene the scene to be rendered
+     */
+    public PathTracer(Scene scene) {
+        super(scene);
+    }
+
+    /**
+     * Sets the maximal amount of bounces of a path
+     *
+     * @param level the maximal amount of bounces - 1 traces the direct lighting only
+     * @return this path tracer (for chaining)
+     * @throws IllegalArgumentException if the level is not positive
+     */
+    public PathTracer setMaxLevel(int level) {
+        if (level < 1) throw new IllegalArgumentException("Maximum path level must be positive");
+        this.maxLevel = level;
+        return this;
+    }
+
+    /**
+     * Writes the options of the path tracer (the maximal amount of bounces) in binary form
+     *
+     * @param out the output
+     * @throws IOException in case of I/O error
+     */
+    @Override
+    void writeSettings(DataOutput out) throws IOException {
+        out.writeInt(maxLevel);
+    }
+
+    @Override
+    void readSettings(ByteBuffer in) {
+        setMaxLevel(in.getInt());
+    }
+
+    /**
+     * The state of a path - its throughput, the accumulated color and the last diffuse or
+     * glossy vertex (for the weights of the area lights hit by the path)
+     */
+    private static final class Path {
+        /**
+         * The throughput of the path (per color component)
+         */
+        double t1 = 1, t2 = 1, t3 = 1;
+        /**
+         * The accumulated color
+         */
+        double r = 0, g = 0, b = 0;
+        /**
+         * The last diffuse or glossy vertex
+         */
+        Point vertex;
+        /**
+         * The probability density (per solid angle) of the direction sampled at the vertex,
+         * 0 - the path can't hit a light (it has not left a diffuse or glossy vertex, or has
+         * changed its direction since)
+         */
+        double pdf = 0;
+        /**
+         * Whether the path sees the background - it is a camera ray or its last bounce is a
+         * mirror or a transmission
+         */
+        boolean seesBackground = true;
+
+        /**
+         * Adds a weighted color to the path color
+         *
+         * @param color  the color
+         * @param weight the weight (per color component)
+         */
+        void add(Color color, Double3 weight) {
+            Double3 rgb = color.getRgb();
+            r += t1 * weight.d1() * rgb.d1();
+            g += t2 * weight.d2() * rgb.d2();
+            b += t3 * weight.d3() * rgb.d3();
+        }
+
+        /**
+         * Scales the throughput
+         *
+         * @param k the factor (per color component)
+         * @param s a common factor
+         */
+        void scale(Double3 k, double s) {
+            t1 *= k.d1() * s;
+            t2 *= k.d2() * s;
+            t3 *= k.d3() * s;
+        }
+    }
+
+    @Override
+    public Color traceRay(Ray ray) {
+        Random random = ThreadLocalRandom.current();
+        Path path = new Path();
+        for (int level = 0; level < maxLevel; ++level) {
+            Intersection hit = ray.findClosestIntersection(scene.geometries.calculateIntersections(ray));
+            if (path.pdf > 0) addLightHits(path, ray, hit == null ? Double.POSITIVE_INFINITY : hit.point.distance(ray.getHead()));
+            if (hit == null) {
+                if (path.seesBackground) path.add(scene.background, Double3.ONE);
+                break;
+            }
+
+            Vector v = ray.getDirection();
+            Vector normal = hit.normal != null ? hit.normal : hit.geometry.getNormal(hit.point);
+            double vn = v.dotProduct(normal);
+            if (isZero(vn)) break;
+            Vector n = vn > 0 ? normal.scale(-1) : normal; // facing the ray origin
+            Material material = hit.material;
+            path.add(hit.geometry.getEmission(), Double3.ONE);
+            if (level == 0) path.add(scene.ambientLight.getIntensity(), material.kA);
+
+            // the lobe probabilities - the rest is absorbed
+            double pD = average(material.kD), pS = average(material.kS), pR = average(material.kR);
+            double pT = average(material.kT), total = Math.max(1, pD + pS + pR + pT);
+            pD /= total;
+            pS /= total;
+            pR /= total;
+            pT /= total;
+            Vector mirror = v.subtract(n.scale(2 * v.dotProduct(n)));
+            if (pD + pS > 0) sampleLights(path, hit.point, v, n, mirror, material, pD, pS, random);
+
+            double u = random.nextDouble();
+            Vector direction;
+            if (u < pD + pS) { // a diffuse or glossy bounce
+                direction = u < pD ? sampleCosine(n, random) : samplePhong(mirror, material.nSh, random);
+                double cos = direction.dotProduct(n);
+                if (cos <= 0) break; // a Phong direction below the surface
+                double pdf = lobePdf(direction, n, mirror, material.nSh, pD, pS);
+                // the estimate (1/PI) f cos / pdf of the diffuse and Phong terms of SimpleRayTracer
+                double specular = phong(direction, mirror, material.nSh);
+                path.t1 *= (material.kD.d1() * cos + material.kS.d1() * specular) / (Math.PI * pdf);
+                path.t2 *= (material.kD.d2() * cos + material.kS.d2() * specular) / (Math.PI * pdf);
+                path.t3 *= (material.kD.d3() * cos + material.kS.d3() * specular) / (Math.PI * pdf);
+                path.vertex = hit.point;
+                path.pdf = pdf;
+                path.seesBackground = false;
+                ray = new Ray(hit.point, direction, n);
+            } else if (u < pD + pS + pR) { // a mirror
+                ray = scatter(new Ray(hit.point, mirror, n), n, material.glossinessRadius, material.glossinessDistance);
+                if (ray == null) break;
+                path.scale(material.kR, 1 / pR);
+                path.pdf = 0;
+                path.seesBackground = true;
+            } else if (u < pD + pS + pR + pT) { // a transmission
+                Vector back = n.scale(-1);
+                ray = scatter(new Ray(hit.point, v, n), back, material.glossinessRefrerectedtRadius,
+                        material.glossinessRefrerectedtDistance);
+                if (ray == null) break;
+                path.scale(material.kT, 1 / pT);
+                // a straight transmission keeps the direction - and the weights of the lights it hits
+                if (material.glossinessRefrerectedtRadius > 0) path.pdf = 0;
+                path.seesBackground = true;
+            } else break; // absorbed
+
+            if (level + 1 >= ROULETTE_LEVEL) {
+                double survival = Math.min(1, Math.max(path.t1, Math.max(path.t2, path.t3)));
+                if (survival < SimpleRayTracer.MIN_CALC_COLOR_K) break;
+                if (random.nextDouble() >= survival) break;
+                path.t1 /= survival;
+                path.t2 /= survival;
+                path.t3 /= survival;
+            }
+        }
+        return new Color(path.r, path.g, path.b);
+    }
+
+    /**
+     * Adds the area lights hit by a path ray which has left a diffuse or glossy vertex,
+     * weighted by the power heuristic against their sampling by {@link #sampleLights}
+     *
+     * @param path     the path
+     * @param ray      the ray
+     * @param distance the distance of the closest geometry along the ray
+     */
+    private void addLightHits(Path path, Ray ray, double distance) {
+        for (LightSource light : scene.lights) {
+            if (!isAreaLight(light)) continue;
+            Point position = ((PointLight) light).getPosition();
+            double radius = ((AreaLight) light).getRadius();
+            Vector toLight;
+            try {
+                toLight = position.subtract(ray.getHead());
+            } catch (IllegalArgumentException ignored) { // the ray starts at the light center
+                continue;
+            }
+            double along = toLight.dotProduct(ray.getDirection());
+            if (along <= 0 || along >= distance) continue;
+            if (toLight.lengthSquared() - along * along >= radius * radius) continue;
+
+            double d2 = path.vertex.distanceSquared(position);
+            if (d2 <= radius * radius) continue;
+            double lightPdf = d2 / (Math.PI * radius * radius);
+            // the radiance of the disk - its solid angle times it is the lighting of the light
+            double weight = d2 / (radius * radius) * misWeight(path.pdf, lightPdf);
+            path.add(light.getIntensity(path.vertex), new Double3(weight));
+        }
+    }
+
+    /**
+     * Samples every light at a diffuse or glossy vertex (next-event estimation) - the lighting
+     * of {@link SimpleRayTracer} of a point on the light, weighted by the power heuristic
+     * against the hits of the bounce directions for area lights
+     *
+     * @param path     the path
+     * @param point    the vertex
+     * @param v        the direction of the path ray
+     * @param n        the normal facing the ray origin
+     * @param mirror   the mirror direction
+     * @param material the material
+     * @param pD       the probability of the diffuse lobe
+     * @param pS       the probability of the Phong lobe
+     * @param random   the random generator
+     */
+    private void sampleLights(Path path, Point point, Vector v, Vector n, Vector mirror, Material material,
+                              double pD, double pS, Random random) {
+        for (LightSource light : scene.lights) {
+            Vector l = light.getL(point); // from the light to the point
+            if (l.dotProduct(n) >= 0) continue; // the light is at the other side
+            double distance = light.getDistance(point);
+            double weight = 1;
+            Vector direction = l.scale(-1);
+            if (isAreaLight(light)) {
+                double radius = ((AreaLight) light).getRadius();
+                if (distance <= radius) continue;
+                direction = sampleDisk(direction, radius, distance, random);
+                if (direction.dotProduct(n) <= 0) continue;
+                double lightPdf = distance * distance / (Math.PI * radius * radius);
+                weight = misWeight(lightPdf, lobePdf(direction, n, mirror, material.nSh, pD, pS));
+            }
+
+            Ray shadowRay = new Ray(point, direction, n);
+            Double3 transparency = transparency(shadowRay, distance);
+            if (transparency.lowerThan(SimpleRayTracer.MIN_CALC_COLOR_K)) continue;
+            double cos = direction.dotProduct(n), specular = phong(direction, mirror, material.nSh);
+            Double3 f = material.kD.scale(cos).add(material.kS.scale(specular));
+            path.add(light.getIntensity(point), f.product(transparency).scale(weight));
+        }
+    }
+
+    /**
+     * Computes the transparency of the geometries along a shadow ray (as {@link SimpleRayTracer})
+     *
+     * @param shadowRay   the shadow ray
+     * @param maxDistance the distance of the light
+     * @return the transparency factor
+     */
+    private Double3 transparency(Ray shadowRay, double maxDistance) {
+        var intersections = scene.geometries.calculateIntersections(shadowRay, maxDistance);
+        Double3 ktr = Double3.ONE;
+        if (intersections == null) return ktr;
+        for (var intersection : intersections) {
+            ktr = ktr.product(intersection.material.kT);
+            if (ktr.lowerThan(SimpleRayTracer.MIN_CALC_COLOR_K)) return Double3.ZERO;
+        }
+        return ktr;
+    }
+
+    /**
+     * Checks whether a light is an area light - soft shadows of several rays, as
+     * {@link SimpleRayTracer} decides
+     *
+     * @param light the light
+     * @return true for an area light
+     */
+    private static boolean isAreaLight(LightSource light) {
+        return light instanceof PointLight && light instanceof AreaLight areaLight
+                && areaLight.getRadius() > 0 && areaLight.getShadowRayCount() > 1;
+    }
+
+    /**
+     * The power heuristic weight of a sampling technique
+     *
+     * @param pdf   the probability density of the technique
+     * @param other the probability density of the other technique
+     * @return the weight
+     */
+    private static double misWeight(double pdf, double other) {
+        double p2 = pdf * pdf;
+        return p2 / (p2 + other * other);
+    }
+
+    /**
+     * The Phong term of {@link SimpleRayTracer} - the cosine of the angle between a direction
+     * and the mirror direction, to the power of the shininess
+     *
+     * @param direction the direction
+     * @param mirror    the mirror direction
+     * @param nSh       the shininess
+     * @return the Phong term (0 beyond 90 degrees)
+     */
+    private static double phong(Vector direction, Vector mirror, int nSh) {
+        double cos = direction.dotProduct(mirror);
+        return cos > 0 ? Math.pow(cos, nSh) : 0;
+    }
+
+    /**
+     * The probability density (per solid angle) of a bounce direction sampled by the diffuse
+     * and Phong lobes
+     *
+     * @param direction the direction
+     * @param n         the normal facing the ray origin
+     * @param mirror    the mirror direction
+     * @param nSh       the shininess
+     * @param pD        the probability of the diffuse lobe
+     * @param pS        the probability of the Phong lobe
+     * @return the probability density
+     */
+    private static double lobePdf(Vector direction, Vector n, Vector mirror, int nSh, double pD, double pS) {
+        double cos = direction.dotProduct(n);
+        if (cos <= 0) return 0;
+        return pD * cos / Math.PI + pS * (nSh + 1) / (2 * Math.PI) * phong(direction, mirror, nSh);
+    }
+
+    /**
+     * Samples a cosine-weighted direction of a hemisphere
+     *
+     * @param n      the hemisphere axis
+     * @param random the random generator
+     * @return the direction
+     */
+    private static Vector sampleCosine(Vector n, Random random) {
+        double r = Math.sqrt(random.nextDouble()), phi = 2 * Math.PI * random.nextDouble();
+        return around(n, r * Math.cos(phi), r * Math.sin(phi), Math.sqrt(Math.max(0, 1 - r * r)));
+    }
+
+    /**
+     * Samples a direction towards a point distributed uniformly on the disk of an area light -
+     * the density of the light sampling weights
+     *
+     * @param axis     the direction of the disk center
+     * @param radius   the radius of the disk
+     * @param distance the distance of the disk center
+     * @param random   the random generator
+     * @return the direction
+     */
+    private static Vector sampleDisk(Vector axis, double radius, double distance, Random random) {
+        double r = radius * Math.sqrt(random.nextDouble()), phi = 2 * Math.PI * random.nextDouble();
+        return around(axis, r * Math.cos(phi), r * Math.sin(phi), distance);
+    }
+
+    /**
+     * Samples a direction of the Phong lobe - distributed by the cosine to the mirror
+     * direction to the power of the shininess
+     *
+     * @param mirror the mirror direction
+     * @param nSh    the shininess
+     * @param random the random generator
+     * @return the direction
+     */
+    private static Vector samplePhong(Vector mirror, int nSh, Random random) {
+        double cos = Math.pow(random.nextDouble(), 1.0 / (nSh + 1)), sin = Math.sqrt(Math.max(0, 1 - cos * cos));
+        double phi = 2 * Math.PI * random.nextDouble();
+        return around(mirror, sin * Math.cos(phi), sin * Math.sin(phi), cos);
+    }
+
+    /**
+     * Builds a unit direction of coordinates in a frame around an axis
+     *
+     * @param axis the axis (the third coordinate)
+     * @param x    the first coordinate
+     * @param y    the second coordinate
+     * @param z    the coordinate along the axis
+     * @return the direction
+     */
+    private static Vector around(Vector axis, double x, double y, double z) {
+        Vector u = axis.findAnyOrthogonal().normalize(), w = axis.crossProduct(u).normalize();
+        return new Vector(u.getX() * x + w.getX() * y + axis.getX() * z,
+                u.getY() * x + w.getY() * y + axis.getY() * z,
+                u.getZ() * x + w.getZ() * y + axis.getZ() * z).normalize();
+    }
+
+    /**
+     * Scatters a mirror or transmission ray into a glossy lobe - one ray sampled as the ray
+     * tracer samples the glossy beams
+     *
+     * @param ray        the mirror or transmission ray
+     * @param hemiNormal the normal of the hemisphere of the lobe
+     * @param radius     the radius of the sampling disk (0 - no scattering)
+     * @param distance   the distance of the sampling disk
+     * @return the scattered ray, or null if it leaves the surface on the wrong side
+     */
+    private static Ray scatter(Ray ray, Vector hemiNormal, double radius, double distance) {
+        if (radius <= 0) return ray;
+        Ray sampled = raySampler.sample(ray, hemiNormal, radius, distance, 1).getFirst();
+        return sampled.getDirection().dotProduct(hemiNormal) <= 0 ? null : sampled;
+    }
+
+    /**
+     * Returns the average of the components of a coefficient
+     *
+     * @param k the coefficient
+     * @return the average component
+     */
+    private static double average(Double3 k) {
+        return (k.d1() + k.d2() + k.d3()) / 3;
+    }
+}
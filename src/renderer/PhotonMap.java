@@ -0,0 +1,382 @@
+package renderer;
+
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+import java.io.Serial;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Photon map - the photons stored on the surfaces by a photon tracing pass, organized in a
+ * kd-tree for nearest neighbor lookups.<br>
+ * The photons are kept in primitive arrays (3 entries per photon for the positions, the
+ * incoming directions and the powers) which are reordered into an implicit balanced kd-tree:
+ * the node of a range of photons is its median photon, split along the longest axis of the
+ * range, and the two halves of the range are its subtrees. The halves of large ranges are
+ * built in parallel.
+ * <p>
+ * The irradiance at a surface point is estimated from the nearest photons as their total
+ * power divided by the area of the disk they were gathered from.
+ */
+public class PhotonMap {
+
+    /**
+     * Ranges of photons smaller than this size are built sequentially
+     */
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    /**
+     * The photon positions, 3 per photon
+     */
+    private final double[] position;
+    /**
+     * The photon directions of incidence, 3 per photon
+     */
+    private final double[] direction;
+    /**
+     * The photon powers (red, green and blue), 3 per photon
+     */
+    private final double[] power;
+    /**
+     * The split axis of the node of every photon
+     */
+    private final byte[] axis;
+    /**
+     * The amount of photons
+     */
+    private final int size;
+
+    /**
+     * Builds a photon map. The arrays are taken by the map (and reordered).
+     *
+     * @param position  the photon positions, 3 per photon
+     * @param direction the photon directions of incidence, 3 per photon
+     * @param power     the photon powers, 3 per photon
+     * @param size      the amount of photons
+     * @throws IllegalArgumentException if an array is shorter than the photons
+     */
+    public PhotonMap(double[] position, double[] direction, double[] power, int size) {
+        if (position.length < 3 * size || direction.length < 3 * size || power.length < 3 * size)
+            throw new IllegalArgumentException("Photon arrays are shorter than the amount of photons");
+        this.position = position;
+        this.direction = direction;
+        this.power = power;
+        this.size = size;
+        this.axis = new byte[size];
+        if (size > PARALLEL_THRESHOLD) ForkJoinPool.commonPool().invoke(new Build(0, size));
+        else build(0, size);
+    }
+
+    /**
+     * Returns the amount of photons in the map
+     *
+     * @return the amount of photons
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Estimates the irradiance at a surface point from the nearest photons which arrived at
+     * the side of the surface the normal faces
+     *
+     * @param p         the surface point
+     * @param normal    the normal at the point
+     * @param nearest   the maximal amount of photons to gather
+     * @param maxRadius the maximal distance of a gathered photon
+     * @return the irradiance (black if no photon is close enough)
+     */
+    public Color estimate(Point p, Vector normal, int nearest, double maxRadius) {
+        if (size == 0 || nearest <= 0) return Color.BLACK;
+        Gather gather = new Gather(p, normal, nearest, maxRadius);
+        gather.search(0, size);
+        if (gather.count == 0) return Color.BLACK;
+
+        double radius2 = gather.count == nearest ? gather.distance2[0] : maxRadius * maxRadius;
+        if (radius2 == 0) return Color.BLACK;
+        double r = 0, g = 0, b = 0;
+        for (int i = 0; i < gather.count; ++i) {
+            int photon = 3 * gather.photon[i];
+            r += power[photon];
+            g += power[photon + 1];
+            b += power[photon + 2];
+        }
+        double area = Math.PI * radius2;
+        return new Color(r / area, g / area, b / area);
+    }
+
+    /**
+     * Parallel build of a range of photons
+     */
+    private final class Build extends RecursiveAction {
+        /**
+         * Serialization version - the tasks are never serialized
+         */
+        @Serial
+        private static final long serialVersionUID = 1L;
+        /**
+         * The first photon of the range (inclusive)
+         */
+        private final int from;
+        /**
+         * The last photon of the range (exclusive)
+         */
+        private final int to;
+
+        /**
+         * Constructs a build task of a range of photons
+         *
+         * @param from the first photon (inclusive)
+         * @param to   the last photon (exclusive)
+         */
+        Build(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                build(from, to);
+                return;
+            }
+            int middle = split(from, to);
+            invokeAll(new Build(from, middle), new Build(middle + 1, to));
+        }
+    }
+
+    /**
+     * Builds the subtree of a range of photons
+     *
+     * @param from the first photon (inclusive)
+     * @param to   the last photon (exclusive)
+     */
+    private void build(int from, int to) {
+        if (to - from <= 1) return;
+        int middle = split(from, to);
+        build(from, middle);
+        build(middle + 1, to);
+    }
+
+    /**
+     * Splits a range of photons at the median of its longest axis - the median photon is
+     * moved to the middle of the range, the photons before it are not greater along the axis
+     * and the photons after it are not less
+     *
+     * @param from the first photon (inclusive)
+     * @param to   the last photon (exclusive)
+     * @return the middle of the range - the node of the range
+     */
+    private int split(int from, int to) {
+        double[] lo = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] hi = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int i = from; i < to; ++i)
+            for (int a = 0; a < 3; ++a) {
+                lo[a] = Math.min(lo[a], position[3 * i + a]);
+                hi[a] = Math.max(hi[a], position[3 * i + a]);
+            }
+        int a = 0;
+        for (int b = 1; b < 3; ++b) if (hi[b] - lo[b] > hi[a] - lo[a]) a = b;
+
+        int middle = (from + to) >>> 1;
+        select(from, to - 1, middle, a);
+        axis[middle] = (byte) a;
+        return middle;
+    }
+
+    /**
+     * Partially sorts a range of photons along an axis so the k-th photon is in its place
+     * (quickselect)
+     *
+     * @param left  the first photon (inclusive)
+     * @param right the last photon (inclusive)
+     * @param k     the photon to place
+     * @param a     the axis
+     */
+    private void select(int left, int right, int k, int a) {
+        while (left < right) {
+            double pivot = position[3 * ((left + right) >>> 1) + a];
+            int i = left, j = right;
+            while (i <= j) {
+                while (position[3 * i + a] < pivot) ++i;
+                while (position[3 * j + a] > pivot) --j;
+                if (i <= j) swap(i++, j--);
+            }
+            if (k <= j) right = j;
+            else if (k >= i) left = i;
+            else return;
+        }
+    }
+
+    /**
+     * Swaps two photons
+     *
+     * @param i the first photon
+     * @param j the second photon
+     */
+    private void swap(int i, int j) {
+        for (int c = 0; c < 3; ++c) {
+            swap(position, 3 * i + c, 3 * j + c);
+            swap(direction, 3 * i + c, 3 * j + c);
+            swap(power, 3 * i + c, 3 * j + c);
+        }
+    }
+
+    /**
+     * Swaps two entries of an array
+     *
+     * @param array the array
+     * @param i     the first entry
+     * @param j     the second entry
+     */
+    private static void swap(double[] array, int i, int j) {
+        double t = array[i];
+        array[i] = array[j];
+        array[j] = t;
+    }
+
+    /**
+     * A k-nearest photons search - the gathered photons are kept in a max-heap by distance
+     */
+    private final class Gather {
+        /**
+         * The search point coordinates
+         */
+        private final double x, y, z;
+        /**
+         * The normal at the search point
+         */
+        private final Vector normal;
+        /**
+         * The gathered photons
+         */
+        private final int[] photon;
+        /**
+         * The squared distances of the gathered photons (a max-heap)
+         */
+        private final double[] distance2;
+        /**
+         * The squared search radius - the distance of the farthest gathered photon once
+         * the heap is full
+         */
+        private double radius2;
+        /**
+         * The amount of gathered photons
+         */
+        private int count = 0;
+
+        /**
+         * Constructs a search
+         *
+         * @param p         the search point
+         * @param normal    the normal at the search point
+         * @param nearest   the maximal amount of photons to gather
+         * @param maxRadius the maximal distance of a gathered photon
+         */
+        Gather(Point p, Vector normal, int nearest, double maxRadius) {
+            x = p.getX();
+            y = p.getY();
+            z = p.getZ();
+            this.normal = normal;
+            photon = new int[nearest];
+            distance2 = new double[nearest];
+            radius2 = maxRadius * maxRadius;
+        }
+
+        /**
+         * Searches the subtree of a range of photons
+         *
+         * @param from the first photon (inclusive)
+         * @param to   the last photon (exclusive)
+         */
+        void search(int from, int to) {
+            if (from >= to) return;
+            int node = (from + to) >>> 1;
+            int a = axis[node];
+            double delta = (a == 0 ? x : a == 1 ? y : z) - position[3 * node + a];
+            // the side of the point first, the other side if the splitting plane is in the radius
+            if (delta < 0) {
+                search(from, node);
+                consider(node);
+                if (delta * delta < radius2) search(node + 1, to);
+            } else {
+                search(node + 1, to);
+                consider(node);
+                if (delta * delta < radius2) search(from, node);
+            }
+        }
+
+        /**
+         * Gathers a photon if it is within the search radius and arrived at the side of the normal
+         *
+         * @param i the photon
+         */
+        private void consider(int i) {
+            double dx = position[3 * i] - x, dy = position[3 * i + 1] - y, dz = position[3 * i + 2] - z;
+            double d2 = dx * dx + dy * dy + dz * dz;
+            if (d2 >= radius2) return;
+            double incidence = direction[3 * i] * normal.getX() + direction[3 * i + 1] * normal.getY()
+                    + direction[3 * i + 2] * normal.getZ();
+            if (incidence >= 0) return; // the photon arrived at the other side of the surface
+
+            if (count < photon.length) {
+                photon[count] = i;
+                distance2[count] = d2;
+                siftUp(count++);
+                if (count == photon.length) radius2 = distance2[0];
+            } else {
+                photon[0] = i;
+                distance2[0] = d2;
+                siftDown(0);
+                radius2 = distance2[0];
+            }
+        }
+
+        /**
+         * Restores the heap order upwards from an entry
+         *
+         * @param i the entry
+         */
+        private void siftUp(int i) {
+            while (i > 0) {
+                int up = (i - 1) >>> 1;
+                if (distance2[up] >= distance2[i]) return;
+                swapEntries(i, up);
+                i = up;
+            }
+        }
+
+        /**
+         * Restores the heap order downwards from an entry
+         *
+         * @param i the entry
+         */
+        private void siftDown(int i) {
+            while (true) {
+                int largest = i, l = 2 * i + 1, r = l + 1;
+                if (l < count && distance2[l] > distance2[largest]) largest = l;
+                if (r < count && distance2[r] > distance2[largest]) largest = r;
+                if (largest == i) return;
+                swapEntries(i, largest);
+                i = largest;
+            }
+        }
+
+        /**
+         * Swaps two heap entries
+         *
+         * @param i the first entry
+         * @param j the second entry
+         */
+        private void swapEntries(int i, int j) {
+            int p = photon[i];
+            photon[i] = photon[j];
+            photon[j] = p;
+            double d = distance2[i];
+            distance2[i] = distance2[j];
+            distance2[j] = d;
+        }
+    }
+}
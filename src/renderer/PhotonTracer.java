@@ -0,0 +1,269 @@
+package renderer;
+
+import geometries.Intersectable.Intersection;
+import lighting.LightSource;
+import lighting.PointLight;
+import primitives.*;
+import scene.Scene;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+import static primitives.Util.isZero;
+
+/**
+ * Photon tracing pass for caustics.<br>
+ * Photons are emitted from the point and spot lights of the scene (in proportion to the
+ * light powers, uniformly over the directions) and followed through the reflective and
+ * transparent geometries, choosing reflection, transmission or absorption at random by the
+ * material coefficients. A photon is stored on a diffuse surface (see {@link PhotonMap}) only
+ * after a specular bounce which the ray tracer doesn't cover by its shadow rays - a reflection
+ * or a glossy (scattered) transmission. A straight transmission keeps the direction of the
+ * photon, and the ray tracer already accounts for it by the transparency of the shadow rays.
+ * <p>
+ * The stored power follows the attenuation model of the lights: the power of a photon is
+ * scaled by d<sup>2</sup> / (kC + kL d + kQ d<sup>2</sup>) of its path length d, so the density
+ * estimate of the photons of a light equals the lighting of the ray tracer. The photons are
+ * traced in parallel.
+ */
+public class PhotonTracer {
+
+    /**
+     * Amount of photons traced by one task
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    /**
+     * The sampler of the glossy directions
+     */
+    private static final RaySampler raySampler = new JitterDiskSampler();
+
+    /**
+     * The scene
+     */
+    private final Scene scene;
+    /**
+     * The maximal amount of bounces of a photon
+     */
+    private int maxLevel = SimpleRayTracer.MAX_CALC_COLOR_LEVEL;
+
+    /**
+     * The stored photons of a task, 3 entries per photon
+     */
+    private static final class Photons {
+        /**
+         * The amount of photons
+         */
+        int size = 0;
+        /**
+         * The positions, directions of incidence and powers
+         */
+        double[] position = new double[3 * 64], direction = new double[3 * 64], power = new double[3 * 64];
+
+        /**
+         * Stores a photon
+         *
+         * @param p         the position
+         * @param incidence the direction of incidence
+         * @param r         the red power
+         * @param g         the green power
+         * @param b         the blue power
+         */
+        void add(Point p, Vector incidence, double r, double g, double b) {
+            if (3 * size == position.length) {
+                position = Arrays.copyOf(position, 2 * position.length);
+                direction = Arrays.copyOf(direction, 2 * direction.length);
+                power = Arrays.copyOf(power, 2 * power.length);
+            }
+            int i = 3 * size++;
+            position[i] = p.getX();
+            position[i + 1] = p.getY();
+            position[i + 2] = p.getZ();
+            direction[i] = incidence.getX();
+            direction[i + 1] = incidence.getY();
+            direction[i + 2] = incidence.getZ();
+            power[i] = r;
+            power[i + 1] = g;
+            power[i + 2] = b;
+        }
+    }
+
+    /**
+     * Constructs a photon tracer of a scene
+     *
+     * @param scene the scene
+     */
+    public PhotonTracer(Scene scene) {
+        this.scene = scene;
+    }
+
+    /**
+     * Sets the maximal amount of bounces of a photon
+     *
+     * @param level the maximal amount of bounces
+     * @return this photon tracer (for chaining)
+     * @throws IllegalArgumentException if the level is not positive
+     */
+    public PhotonTracer setMaxLevel(int level) {
+        if (level < 1) throw new IllegalArgumentException("Maximum photon level must be positive");
+        this.maxLevel = level;
+        return this;
+    }
+
+    /**
+     * Emits photons from the lights and builds the caustics photon map
+     *
+     * @param photons the amount of emitted photons
+     * @return the photon map
+     * @throws IllegalArgumentException if the amount is negative
+     */
+    public PhotonMap traceCaustics(int photons) {
+        if (photons < 0) throw new IllegalArgumentException("Amount of photons must not be negative");
+        List<PointLight> lights = new ArrayList<>();
+        List<Double> powers = new ArrayList<>();
+        double total = 0;
+        for (LightSource light : scene.lights)
+            if (light instanceof PointLight pointLight) { // a directional light has no position to emit from
+                Double3 rgb = pointLight.getIntensity().getRgb();
+                double power = (rgb.d1() + rgb.d2() + rgb.d3()) / 3;
+                if (power <= 0) continue;
+                lights.add(pointLight);
+                powers.add(power);
+                total += power;
+            }
+        if (lights.isEmpty() || photons == 0) return new PhotonMap(new double[0], new double[0], new double[0], 0);
+
+        // the photons of every light - the first photon of a light is the last of the previous one
+        int[] first = new int[lights.size() + 1];
+        double cumulative = 0;
+        for (int l = 0; l < lights.size(); ++l) {
+            cumulative += powers.get(l);
+            first[l + 1] = l == lights.size() - 1 ? photons : (int) Math.round(photons * cumulative / total);
+        }
+
+        int chunks = (photons + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        Photons[] stored = new Photons[chunks];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            Photons local = new Photons();
+            Random random = ThreadLocalRandom.current();
+            int light = 0;
+            for (int i = c * CHUNK_SIZE; i < Math.min(photons, (c + 1) * CHUNK_SIZE); ++i) {
+                while (i >= first[light + 1]) ++light;
+                emit(lights.get(light), first[light + 1] - first[light], random, local);
+            }
+            stored[c] = local;
+        });
+
+        int size = 0;
+        for (Photons local : stored) size += local.size;
+        double[] position = new double[3 * size], direction = new double[3 * size], power = new double[3 * size];
+        int offset = 0;
+        for (Photons local : stored) {
+            System.arraycopy(local.position, 0, position, offset, 3 * local.size);
+            System.arraycopy(local.direction, 0, direction, offset, 3 * local.size);
+            System.arraycopy(local.power, 0, power, offset, 3 * local.size);
+            offset += 3 * local.size;
+        }
+        return new PhotonMap(position, direction, power, size);
+    }
+
+    /**
+     * Emits a photon from a light and traces it through the scene
+     *
+     * @param light   the light
+     * @param photons the amount of photons emitted from the light
+     * @param random  the random generator
+     * @param stored  receives the stored photons
+     */
+    private void emit(PointLight light, int photons, Random random, Photons stored) {
+        // a uniform direction
+        double z = 2 * random.nextDouble() - 1, phi = 2 * Math.PI * random.nextDouble();
+        double s = Math.sqrt(Math.max(0, 1 - z * z));
+        Vector direction = new Vector(s * Math.cos(phi), s * Math.sin(phi), z);
+
+        // the intensity at a unit distance, less the attenuation - the emission of a spot light depends on the direction
+        Point origin = light.getPosition();
+        double unit = light.getKc() + light.getKl() + light.getKq();
+        Double3 emitted = light.getIntensity(origin.add(direction)).getRgb().scale(unit * 4 * Math.PI / photons);
+        double r = emitted.d1(), g = emitted.d2(), b = emitted.d3();
+        if (r <= 0 && g <= 0 && b <= 0) return;
+
+        Ray ray = new Ray(origin, direction);
+        double length = 0;
+        boolean caustic = false;
+        for (int level = 0; level < maxLevel; ++level) {
+            Intersection hit = ray.findClosestIntersection(scene.geometries.calculateIntersections(ray));
+            if (hit == null) return;
+            Vector normal = hit.normal != null ? hit.normal : hit.geometry.getNormal(hit.point);
+            Vector d = ray.getDirection();
+            double dn = d.dotProduct(normal);
+            if (isZero(dn)) return;
+            length += ray.getHead().distance(hit.point);
+
+            Material material = hit.material;
+            if (caustic && !material.kD.lowerThan(SimpleRayTracer.MIN_CALC_COLOR_K)) {
+                double falloff = light.getKc() + light.getKl() * length + light.getKq() * length * length;
+                double scale = length * length / falloff;
+                stored.add(hit.point, d, r * scale, g * scale, b * scale);
+            }
+
+            // reflection, transmission or absorption by the average coefficients
+            double pR = average(material.kR), pT = average(material.kT);
+            if (pR + pT > 1) {
+                pR /= pR + pT;
+                pT = 1 - pR;
+            }
+            double u = random.nextDouble();
+            Double3 k;
+            Ray next;
+            if (u < pR) {
+                k = material.kR.reduce(pR);
+                Ray reflected = new Ray(hit.point, d.subtract(normal.scale(2 * dn)), normal);
+                next = scatter(reflected, normal, dn, material.glossinessRadius, material.glossinessDistance);
+                caustic = true;
+            } else if (u < pR + pT) {
+                k = material.kT.reduce(pT);
+                Ray transmitted = new Ray(hit.point, d, normal);
+                double radius = material.glossinessRefrerectedtRadius;
+                next = scatter(transmitted, normal.scale(-1), dn, radius, material.glossinessRefrerectedtDistance);
+                caustic |= radius > 0;
+            } else return;
+            if (next == null) return;
+            r *= k.d1();
+            g *= k.d2();
+            b *= k.d3();
+            ray = next;
+        }
+    }
+
+    /**
+     * Scatters a reflected or transmitted photon into a glossy lobe - one ray sampled as the
+     * ray tracer samples the glossy beams
+     *
+     * @param ray        the specular ray
+     * @param hemiNormal the normal of the hemisphere of the lobe
+     * @param dn         the dot product of the incoming direction and the surface normal
+     * @param radius     the radius of the sampling disk (0 - no scattering)
+     * @param distance   the distance of the sampling disk
+     * @return the scattered ray, or null if it leaves the surface on the wrong side
+     */
+    private static Ray scatter(Ray ray, Vector hemiNormal, double dn, double radius, double distance) {
+        if (radius <= 0) return ray;
+        Ray sampled = raySampler.sample(ray, hemiNormal, radius, distance, 1).getFirst();
+        return sampled.getDirection().dotProduct(hemiNormal) * dn > 0 ? null : sampled;
+    }
+
+    /**
+     * Returns the average of the components of a coefficient
+     *
+     * @param k the coefficient
+     * @return the average component
+     */
+    private static double average(Double3 k) {
+        return (k.d1() + k.d2() + k.d3()) / 3;
+    }
+}
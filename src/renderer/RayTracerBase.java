@@ -4,6 +4,10 @@ import primitives.Color;
 import primitives.Ray;
 import scene.Scene;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 /**
  * Abstract base class for ray tracers.
  * A ray tracer is responsible for calculating the color of a ray
@@ -34,4 +38,46 @@ public abstract class RayTracerBase {
      * @return the color computed for the given ray
      */
     public abstract Color traceRay(Ray ray);
-}
\ No newline at end of file
+
+    /**
+     * Writes the options of the ray tracer in binary form. The default has no options.
+     *
+     * @param out the output
+     * @throws IOException in case of I/O error
+     */
+    void writeSettings(DataOutput out) throws IOException {
+    }
+
+    /**
+     * Sets the options of the ray tracer from options written by {@link #writeSettings(DataOutput)}
+     * (by a ray tracer of the same class)
+     *
+     * @param in the input buffer
+     * @throws IllegalArgumentException for invalid options
+     */
+    void readSettings(ByteBuffer in) {
+    }
+
+    /**
+     * Drops everything the ray tracer has derived from the scene so far (e.g. caches and light
+     * structures), so that the next rays see the current geometries and lights. Must be called
+     * after the scene is changed between renders (e.g. between the frames of an animation), and
+     * not while rendering. The default keeps nothing derived from the scene.
+     */
+    public void sceneChanged() {
+    }
+
+    /**
+     * Calculates the colors of a packet of coherent rays (e.g. the primary rays of a tile).
+     * The default traces every ray by {@link #traceRay(Ray)}; a ray tracer may find the
+     * intersections of the whole packet together.
+     *
+     * @param rays the rays of the packet
+     * @return the colors of the rays
+     */
+    public Color[] traceRays(Ray[] rays) {
+        Color[] colors = new Color[rays.length];
+        for (int k = 0; k < rays.length; ++k) colors[k] = traceRay(rays[k]);
+        return colors;
+    }
+}
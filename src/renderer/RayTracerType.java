@@ -8,6 +8,14 @@ public enum RayTracerType {
      * Simple (basic) ray tracer
      */
     SIMPLE,
+    /**
+     * Wavefront ray tracer - the rays of a batch are traced bounce by bounce
+     */
+    WAVEFRONT,
+    /**
+     * Monte Carlo path tracer - progressive, see {@link PathTracer}
+     */
+    PATH,
     /**
      * Ray tracer using regular grid
      */
@@ -0,0 +1,17 @@
+package renderer;
+
+/**
+ * A render job describes how to set up a scene and the camera viewing it.<br>
+ * It is used for distributed rendering: the coordinator and every worker JVM
+ * instantiate the same job class (by its name, through a public no-argument
+ * constructor) so that all of them load an identical scene.
+ */
+public interface RenderJob {
+
+    /**
+     * Builds the scene of the job and returns a camera ready for rendering it.
+     *
+     * @return the camera (with its ray tracer and scene)
+     */
+    Camera createCamera();
+}
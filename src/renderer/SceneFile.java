@@ -0,0 +1,193 @@
+package renderer;
+
+import geometries.Geometries;
+import geometries.GeometryCodec;
+import lighting.*;
+import primitives.Material;
+import scene.Scene;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact versioned binary scene format.<br>
+ * A scene file holds the geometries (with the BVH if it has been built), the materials,
+ * the lights, the ambient light, the background and, optionally, the camera settings.
+ * Loading memory-maps the file and reconstructs the scene without validating the polygons
+ * again and without rebuilding the BVH - so repeated renders of the same scene skip the
+ * scene construction cost.
+ * <p>
+ * Layout: magic, version, scene name, background, ambient light, lights, material table,
+ * geometries (see {@link GeometryCodec}), camera settings flag and settings.
+ */
+public final class SceneFile {
+
+    /**
+     * File signature ("RTSF")
+     */
+    private static final int MAGIC = 0x52545346;
+    /**
+     * Current format version
+     */
+    private static final int VERSION = 7;
+
+    /**
+     * Light type tags
+     */
+    private static final byte DIRECTIONAL_LIGHT = 1, POINT_LIGHT = 2, SPOT_LIGHT = 3;
+
+    /**
+     * Don't let anyone instantiate this class.
+     */
+    private SceneFile() {
+    }
+
+    /**
+     * Writes a scene (and optionally the camera settings) into a scene file.
+     * Build the BVH of the scene before writing it, so that loading restores the BVH.
+     *
+     * @param file   the scene file path
+     * @param scene  the scene
+     * @param camera the camera (may be null)
+     * @throws UncheckedIOException     in case of I/O error
+     * @throws IllegalArgumentException if the scene contains an unsupported geometry or light
+     */
+    public static void write(Path file, Scene scene, Camera camera) {
+        // the geometries are written first, for collecting the material table
+        var codec = new GeometryCodec();
+        var geometriesBytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            var geometriesOut = new DataOutputStream(geometriesBytes);
+            codec.write(geometriesOut, scene.geometries);
+            geometriesOut.flush();
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            byte[] name = scene.name.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(name.length);
+            out.write(name);
+            GeometryCodec.writeColor(out, scene.background);
+            GeometryCodec.writeColor(out, scene.ambientLight.getIntensity());
+
+            out.writeInt(scene.lights.size());
+            for (LightSource light : scene.lights) writeLight(out, light);
+
+            out.writeInt(codec.getMaterials().size());
+            for (Material material : codec.getMaterials()) GeometryCodec.writeMaterial(out, material);
+
+            geometriesBytes.writeTo(out);
+
+            out.writeBoolean(camera != null);
+            if (camera != null) camera.writeSettings(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed writing scene file " + file, e);
+        }
+    }
+
+    /**
+     * Loads a scene file by memory-mapping it.
+     *
+     * @param file the scene file path
+     * @return the scene, and the camera builder if the file has camera settings
+     * @throws UncheckedIOException     in case of I/O error
+     * @throws IllegalArgumentException if the file is not a scene file of a supported version
+     */
+    public static LoadedScene read(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed reading scene file " + file, e);
+        }
+    }
+
+    /**
+     * Reconstructs a scene from the content of a scene file.
+     *
+     * @param in the content of the file
+     * @return the scene, and the camera builder if the file has camera settings
+     */
+    private static LoadedScene read(ByteBuffer in) {
+        if (in.getInt() != MAGIC) throw new IllegalArgumentException("Not a scene file");
+        int version = in.getInt();
+        if (version != VERSION) throw new IllegalArgumentException("Unsupported scene file version " + version);
+
+        byte[] name = new byte[in.getInt()];
+        in.get(name);
+        Scene scene = new Scene(new String(name, StandardCharsets.UTF_8))
+                .setBackground(GeometryCodec.readColor(in))
+                .setAmbientLight(new AmbientLight(GeometryCodec.readColor(in)));
+
+        int lights = in.getInt();
+        for (int i = 0; i < lights; ++i) scene.lights.add(readLight(in));
+
+        int materialCount = in.getInt();
+        List<Material> materials = new ArrayList<>(materialCount);
+        for (int i = 0; i < materialCount; ++i) materials.add(GeometryCodec.readMaterial(in));
+        scene.setGeometries((Geometries) new GeometryCodec(materials).read(in));
+
+        Camera.Builder cameraBuilder = in.get() == 0 ? null : Camera.readSettings(in, scene);
+        return new LoadedScene(scene, cameraBuilder);
+    }
+
+    /**
+     * Writes a light source
+     *
+     * @param out   the output
+     * @param light the light source
+     * @throws IOException in case of I/O error
+     */
+    private static void writeLight(DataOutput out, LightSource light) throws IOException {
+        switch (light) {
+            case DirectionalLight directional -> {
+                out.writeByte(DIRECTIONAL_LIGHT);
+                GeometryCodec.writeColor(out, directional.getIntensity());
+                GeometryCodec.writePoint(out, directional.getDirection());
+            }
+            case PointLight point -> {
+                out.writeByte(point instanceof SpotLight ? SPOT_LIGHT : POINT_LIGHT);
+                GeometryCodec.writeColor(out, point.getIntensity());
+                GeometryCodec.writePoint(out, point.getPosition());
+                out.writeDouble(point.getKc());
+                out.writeDouble(point.getKl());
+                out.writeDouble(point.getKq());
+                out.writeDouble(point.getRadius());
+                out.writeInt(point.getShadowRayCount());
+                if (point instanceof SpotLight spot) {
+                    GeometryCodec.writePoint(out, spot.getDirection());
+                    out.writeDouble(spot.getNarrowBeam());
+                }
+            }
+            default -> throw new IllegalArgumentException("Unsupported light type: " + light.getClass().getName());
+        }
+    }
+
+    /**
+     * Reads a light source written by {@link #writeLight(DataOutput, LightSource)}
+     *
+     * @param in the input buffer
+     * @return the light source
+     */
+    private static LightSource readLight(ByteBuffer in) {
+        byte tag = in.get();
+        if (tag == DIRECTIONAL_LIGHT)
+            return new DirectionalLight(GeometryCodec.readColor(in), GeometryCodec.readVector(in));
+        if (tag != POINT_LIGHT && tag != SPOT_LIGHT)
+            throw new IllegalArgumentException("Unknown light type tag: " + tag);
+
+        var intensity = GeometryCodec.readColor(in);
+        var position = GeometryCodec.readPoint(in);
+        double kC = in.getDouble(), kL = in.getDouble(), kQ = in.getDouble();
+        double radius = in.getDouble();
+        int shadowRays = in.getInt();
+        PointLight light = tag == POINT_LIGHT ? new PointLight(intensity, position)
+                : new SpotLight(intensity, position, GeometryCodec.readVector(in)).setNarrowBeam(in.getDouble());
+        return light.setKc(kC).setKl(kL).setKq(kQ).setAreaLightRadius(radius, shadowRays);
+    }
+}
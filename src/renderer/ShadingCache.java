@@ -0,0 +1,161 @@
+package renderer;
+
+import primitives.Color;
+import primitives.Double3;
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Spatial cache of the irradiance at surface points, for diffuse surfaces.<br>
+ * The irradiance (the light arriving at a point, weighted by the cosine of its incidence
+ * and by the shadows) of a diffuse surface changes slowly along the surface, so it is
+ * computed at some points only: a lookup interpolates the cached irradiance of the points
+ * within the error radius whose normals are close to the normal of the looked-up point,
+ * and a miss is computed by the ray tracer and added to the cache. The cached points are
+ * kept in a hash grid of cells of the error radius; a cell is an immutable array replaced
+ * on insertion, so lookups need no locking and the cache is safe for concurrent renders.
+ */
+public class ShadingCache {
+
+    /**
+     * Minimal cosine of the angle between the normals of a cached point and a looked-up point
+     */
+    private static final double NORMAL_COS = 0.95;
+    /**
+     * Bits of a cell coordinate in a cell key
+     */
+    private static final int KEY_BITS = 21;
+    /**
+     * Mask of a cell coordinate in a cell key
+     */
+    private static final long KEY_MASK = (1L << KEY_BITS) - 1;
+
+    /**
+     * A cached irradiance
+     *
+     * @param point      the surface point
+     * @param normal     the normal at the point (facing the viewer)
+     * @param irradiance the irradiance at the point
+     */
+    private record Entry(Point point, Vector normal, Double3 irradiance) {
+    }
+
+    /**
+     * The error radius - the largest distance of interpolation (and the cell size)
+     */
+    private final double radius;
+    /**
+     * The cached points of the cells
+     */
+    private final ConcurrentHashMap<Long, Entry[]> cells = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs an empty shading cache
+     *
+     * @param radius the error radius
+     * @throws IllegalArgumentException if the radius is not positive
+     */
+    public ShadingCache(double radius) {
+        if (!(radius > 0)) throw new IllegalArgumentException("Shading cache radius must be positive");
+        this.radius = radius;
+    }
+
+    /**
+     * Returns the error radius of the cache
+     *
+     * @return the radius
+     */
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * Interpolates the cached irradiance at a surface point. Every cached point within the
+     * error radius whose normal is close to the normal is weighted by its closeness.
+     *
+     * @param point  the surface point
+     * @param normal the normal at the point (facing the viewer)
+     * @return the interpolated irradiance, or null if no cached point is close enough
+     */
+    public Color lookup(Point point, Vector normal) {
+        int cx = cell(point.getX()), cy = cell(point.getY()), cz = cell(point.getZ());
+        double r = 0, g = 0, b = 0, total = 0;
+        for (int x = cx - 1; x <= cx + 1; ++x)
+            for (int y = cy - 1; y <= cy + 1; ++y)
+                for (int z = cz - 1; z <= cz + 1; ++z) {
+                    Entry[] entries = cells.get(key(x, y, z));
+                    if (entries == null) continue;
+                    for (Entry entry : entries) {
+                        double distance = entry.point.distance(point);
+                        if (distance >= radius || entry.normal.dotProduct(normal) < NORMAL_COS) continue;
+                        double weight = 1 - distance / radius;
+                        r += weight * entry.irradiance.d1();
+                        g += weight * entry.irradiance.d2();
+                        b += weight * entry.irradiance.d3();
+                        total += weight;
+                    }
+                }
+        return total == 0 ? null : new Color(r / total, g / total, b / total);
+    }
+
+    /**
+     * Adds an irradiance to the cache
+     *
+     * @param point      the surface point
+     * @param normal     the normal at the point (facing the viewer)
+     * @param irradiance the irradiance at the point
+     */
+    public void add(Point point, Vector normal, Color irradiance) {
+        Entry entry = new Entry(point, normal, irradiance.getRgb());
+        cells.merge(key(cell(point.getX()), cell(point.getY()), cell(point.getZ())), new Entry[]{entry},
+                (entries, added) -> {
+                    Entry[] merged = Arrays.copyOf(entries, entries.length + 1);
+                    merged[entries.length] = entry;
+                    return merged;
+                });
+    }
+
+    /**
+     * Removes all the cached points - the irradiance changes when the scene changes
+     */
+    public void clear() {
+        cells.clear();
+    }
+
+    /**
+     * Returns the amount of cached points
+     *
+     * @return the size of the cache
+     */
+    public int size() {
+        int size = 0;
+        for (Entry[] entries : cells.values()) size += entries.length;
+        return size;
+    }
+
+    /**
+     * Returns the cell of a coordinate
+     *
+     * @param coordinate the coordinate
+     * @return the cell index
+     */
+    private int cell(double coordinate) {
+        return (int) Math.floor(coordinate / radius);
+    }
+
+    /**
+     * Packs the indices of a cell into a key. Far cells may share a key - the cached points
+     * are checked by their distance anyway.
+     *
+     * @param x the cell index along the x axis
+     * @param y the cell index along the y axis
+     * @param z the cell index along the z axis
+     * @return the key
+     */
+    private static Long key(int x, int y, int z) {
+        return (x & KEY_MASK) << 2 * KEY_BITS | (y & KEY_MASK) << KEY_BITS | z & KEY_MASK;
+    }
+}
@@ -0,0 +1,110 @@
+package renderer;
+
+import geometries.Geometry;
+import lighting.LightSource;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of the last opaque occluder of every light, per rendering thread.<br>
+ * Neighboring shading points are usually shadowed by the same geometry, so a shadow ray
+ * is first tested against the geometry which blocked the previous shadow ray of the same
+ * light in the same thread - a hit proves the point is in shadow without a traversal of
+ * the scene. Every thread keeps its own occluders, so the cache needs no locking; the
+ * hit counters are shared and can be read at any time.
+ */
+public class ShadowCache {
+
+    /**
+     * The last opaque occluder of every light, per thread
+     */
+    private volatile ThreadLocal<Map<LightSource, Geometry>> occluders = ThreadLocal.withInitial(IdentityHashMap::new);
+    /**
+     * Amount of shadow rays resolved by the cached occluder
+     */
+    private final LongAdder hits = new LongAdder();
+    /**
+     * Amount of shadow rays which needed a traversal of the scene
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Returns the last opaque occluder of a light in the current thread
+     *
+     * @param light the light
+     * @return the occluder, or null if none is cached
+     */
+    public Geometry get(LightSource light) {
+        return occluders.get().get(light);
+    }
+
+    /**
+     * Caches the opaque occluder of a light in the current thread
+     *
+     * @param light    the light
+     * @param occluder the geometry which blocked a shadow ray towards the light
+     */
+    public void put(LightSource light, Geometry occluder) {
+        occluders.get().put(light, occluder);
+    }
+
+    /**
+     * Counts a shadow ray resolved by the cached occluder
+     */
+    public void hit() {
+        hits.increment();
+    }
+
+    /**
+     * Counts a shadow ray which needed a traversal of the scene
+     */
+    public void miss() {
+        misses.increment();
+    }
+
+    /**
+     * Returns the amount of shadow rays resolved by the cached occluders
+     *
+     * @return the amount of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the amount of shadow rays which needed a traversal of the scene
+     *
+     * @return the amount of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the fraction of the shadow rays resolved by the cached occluders
+     *
+     * @return the hit rate (0 if no shadow ray has been traced)
+     */
+    public double getHitRate() {
+        long h = hits.sum(), total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Forgets the cached occluders of all the threads (the hit counters are kept) - an occluder
+     * may have been removed from the scene
+     */
+    public void clear() {
+        occluders = ThreadLocal.withInitial(IdentityHashMap::new);
+    }
+
+    /**
+     * Resets the hit counters (the cached occluders are kept)
+     */
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+    }
+}
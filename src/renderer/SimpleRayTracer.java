@@ -1,12 +1,20 @@
 package renderer;
 
+import geometries.Geometry;
 import geometries.Intersectable.Intersection;
 import lighting.AreaLight;
+import lighting.LightIndex;
 import lighting.LightSource;
+import lighting.LightTree;
 import primitives.*;
 import scene.Scene;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.function.BiFunction;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static primitives.Util.*;
 
@@ -20,19 +28,19 @@ public class SimpleRayTracer extends RayTracerBase {
      * RaySampler instance used for generating rays with jittered disk sampling.
      * This sampler is used for glossy reflections and refractions.
      */
-    private static final RaySampler raySampler = new JitterDiskSampler();
+    protected static final RaySampler raySampler = new JitterDiskSampler();
 
     /**
-     * Maximum recursion level for color calculation.
+     * Default maximum recursion level for color calculation.
      * Limits the depth of recursive calls to prevent infinite recursion.
      */
-    private static final int MAX_CALC_COLOR_LEVEL = 10;
+    protected static final int MAX_CALC_COLOR_LEVEL = 10;
 
     /**
      * Minimum value for color components to be considered significant.
      * If the attenuation factor is lower than this value, the color is considered negligible.
      */
-    private static final double MIN_CALC_COLOR_K = 0.001;
+    protected static final double MIN_CALC_COLOR_K = 0.001;
 
     /**
      * Initial attenuation factor for color components.
@@ -40,6 +48,74 @@ public class SimpleRayTracer extends RayTracerBase {
      */
     private static final Double3 INITIAL_K = Double3.ONE;
 
+    /**
+     * Maximum recursion level - the primary ray is level {@code maxLevel}, every reflection or
+     * refraction bounce decreases the level by one, and no secondary rays are traced at level 1.
+     */
+    protected int maxLevel = MAX_CALC_COLOR_LEVEL;
+
+    /**
+     * Russian roulette threshold (0 - disabled): a secondary ray whose path attenuation is below
+     * the threshold is traced with probability attenuation / threshold, and its contribution is
+     * divided by that probability.
+     */
+    protected double rouletteThreshold = 0;
+
+    /**
+     * Amount of lights sampled per shading point from the light tree (0 - all the lights are evaluated)
+     */
+    private int lightSamples = 0;
+
+    /**
+     * The light tree of the scene lights, built on first use
+     */
+    private volatile LightTree lightTree = null;
+
+    /**
+     * Intensity threshold of the light culling (0 - no culling)
+     */
+    private double cullingThreshold = 0;
+
+    /**
+     * The spatial index of the scene lights for the culling, built on first use
+     */
+    private volatile LightIndex lightIndex = null;
+
+    /**
+     * The cache of the last occluders of the lights (null - disabled)
+     */
+    private ShadowCache shadowCache = new ShadowCache();
+
+    /**
+     * Amount of probe rays of the adaptive soft shadows (0 - all the shadow rays are always traced)
+     */
+    private int shadowProbes = 0;
+
+    /**
+     * The irradiance cache of the diffuse surfaces (null - disabled)
+     */
+    private ShadingCache shadingCache = null;
+
+    /**
+     * Amount of photons emitted for the caustics (0 - no caustics)
+     */
+    private int causticPhotons = 0;
+
+    /**
+     * Amount of nearest photons gathered for a caustics estimate
+     */
+    private int causticNearest = 0;
+
+    /**
+     * Maximal distance of a gathered caustics photon
+     */
+    private double causticRadius = 0;
+
+    /**
+     * The caustics photon map, traced on first use
+     */
+    private volatile PhotonMap causticMap = null;
+
     /**
      * Constructs a SimpleRayTracer with the given scene.
      *
@@ -49,6 +125,255 @@ public class SimpleRayTracer extends RayTracerBase {
         super(scene);
     }
 
+    /**
+     * Sets the maximum recursion level (the primary ray level)
+     *
+     * @param level the maximum level - 1 traces no reflections and refractions
+     * @return this ray tracer (for chaining)
+     * @throws IllegalArgumentException if the level is not positive
+     */
+    public SimpleRayTracer setMaxLevel(int level) {
+        if (level < 1) throw new IllegalArgumentException("Maximum recursion level must be positive");
+        this.maxLevel = level;
+        return this;
+    }
+
+    /**
+     * Sets Russian roulette termination of the reflection and refraction paths. A path whose
+     * attenuation (the largest color component) falls below the threshold is terminated at
+     * random with probability 1 - attenuation / threshold, and the surviving paths are weighted
+     * up by the inverse probability, so the expected color doesn't change.
+     * The deterministic cutoff of negligible attenuation still applies.
+     *
+     * @param threshold the attenuation threshold (0 to 1), 0 - no Russian roulette
+     * @return this ray tracer (for chaining)
+     * @throws IllegalArgumentException if the threshold is not within 0 to 1
+     */
+    public SimpleRayTracer setRussianRoulette(double threshold) {
+        if (threshold < 0 || threshold > 1)
+            throw new IllegalArgumentException("Russian roulette threshold must be between 0 and 1");
+        this.rouletteThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * Sets stochastic many-light sampling: at every shading point the given amount of point and
+     * spot lights is sampled from a light tree (see {@link LightTree}) in proportion to their
+     * estimated contributions, and the contributions are divided by the sampling probabilities;
+     * the directional lights are always evaluated. If the scene has no more point and spot lights
+     * than samples, all the lights are evaluated deterministically.
+     * The lights of the scene must be set before the rendering starts, or
+     * {@link #sceneChanged()} must be called after they are changed.
+     *
+     * @param samples the amount of sampled lights per shading point (0 - evaluate all the lights)
+     * @return this ray tracer (for chaining)
+     * @throws IllegalArgumentException if the amount is negative
+     */
+    public SimpleRayTracer setLightSampling(int samples) {
+        if (samples < 0) throw new IllegalArgumentException("Amount of light samples must not be negative");
+        this.lightSamples = samples;
+        return this;
+    }
+
+    /**
+     * Sets culling of the lights by their regions of influence: a point or spot light whose
+     * attenuated intensity at a shading point is below the threshold (see {@link LightIndex})
+     * is skipped without casting shadow rays. The lights reaching a point are found by a
+     * spatial index of the lights. The lights of the scene must be set before the rendering starts,
+     * or {@link #sceneChanged()} must be called after they are changed.
+     *
+     * @param threshold the intensity (color component) threshold, 0 - no culling
+     * @return this ray tracer (for chaining)
+     * @throws IllegalArgumentException if the threshold is negative
+     */
+    public SimpleRayTracer setLightCulling(double threshold) {
+        if (threshold < 0) throw new IllegalArgumentException("Light culling threshold must not be negative");
+        this.cullingThreshold = threshold;
+        this.lightIndex = null;
+        return this;
+    }
+
+    /**
+     * Enables or disables the shadow occluder cache (see {@link ShadowCache}) - a shadow ray is
+     * first tested against the last opaque geometry that blocked a shadow ray of the same light
+     * in the same thread. The cache doesn't change the image; it is enabled by default.
+     *
+     * @param enabled whether to cache the occluders
+     * @return this ray tracer (for chaining)
+     */
+    public SimpleRayTracer setShadowCache(boolean enabled) {
+        this.shadowCache = enabled ? new ShadowCache() : null;
+        return this;
+    }
+
+    /**
+     * Sets adaptive soft shadow sampling: a few stratified probe rays are cast towards the disk
+     * of an area light first, and the rest of its shadow rays are cast only if the probes
+     * disagree - the point is in the penumbra. A point whose probes agree is fully lit or fully
+     * in the umbra and gets the transparency of the probes.
+     *
+     * @param probes the amount of probe rays (at least 2), 0 - always cast all the shadow rays
+     * @return this ray tracer (for chaining)
+     * @throws IllegalArgumentException if the amount is negative or 1
+     */
+    public SimpleRayTracer setAdaptiveShadows(int probes) {
+        if (probes < 0 || probes == 1)
+            throw new IllegalArgumentException("Amount of shadow probes must be 0 or at least 2");
+        this.shadowProbes = probes;
+        return this;
+    }
+
+    /**
+     * Sets caching of the irradiance of the diffuse surfaces (see {@link ShadingCache}) - the
+     * lighting of a surface of no specular reflection is interpolated from the lighting computed
+     * at the points within the error radius, so neighboring pixels and secondary rays hitting
+     * a diffuse surface don't cast their shadow rays again. The emission and the diffuse
+     * coefficients are applied per point, so surfaces of different materials share the cache.
+     *
+     * @param radius the error radius of the cache, 0 - no caching
+     * @return this ray tracer (for chaining)
+     * @throws IllegalArgumentException if the radius is negative
+     */
+    public SimpleRayTracer setShadingCache(double radius) {
+        if (radius < 0) throw new IllegalArgumentException("Shading cache radius must not be negative");
+        this.shadingCache = radius == 0 ? null : new ShadingCache(radius);
+        return this;
+    }
+
+    /**
+     * Sets caustics by photon mapping: before the rendering, photons are emitted from the
+     * lights and traced through the reflective and transparent geometries (see
+     * {@link PhotonTracer}), and the diffuse lighting of the caustics at a point is estimated
+     * from the nearest photons. The scene must be set before the rendering starts, or
+     * {@link #sceneChanged()} must be called after it is changed.
+     *
+     * @param photons the amount of emitted photons, 0 - no caustics
+     * @param nearest the amount of nearest photons gathered for an estimate
+     * @param radius  the maximal distance of a gathered photon
+     * @return this ray tracer (for chaining)
+     * @throws IllegalArgumentException if the amount of photons is negative, or caustics are
+     *                                  set with a non-positive amount of nearest photons or radius
+     */
+    public SimpleRayTracer setCaustics(int photons, int nearest, double radius) {
+        if (photons < 0) throw new IllegalArgumentException("Amount of photons must not be negative");
+        if (photons > 0 && (nearest < 1 || !(radius > 0)))
+            throw new IllegalArgumentException("Caustics gathering needs positive amount of photons and radius");
+        this.causticPhotons = photons;
+        this.causticNearest = nearest;
+        this.causticRadius = radius;
+        this.causticMap = null;
+        return this;
+    }
+
+    /**
+     * Writes the options of the ray tracer (the recursion, the lights, the shadows, the shading
+     * cache and the caustics) in binary form
+     *
+     * @param out the output
+     * @throws IOException in case of I/O error
+     */
+    @Override
+    void writeSettings(DataOutput out) throws IOException {
+        out.writeInt(maxLevel);
+        out.writeDouble(rouletteThreshold);
+        out.writeInt(lightSamples);
+        out.writeDouble(cullingThreshold);
+        out.writeBoolean(shadowCache != null);
+        out.writeInt(shadowProbes);
+        out.writeDouble(shadingCache == null ? 0 : shadingCache.getRadius());
+        out.writeInt(causticPhotons);
+        out.writeInt(causticNearest);
+        out.writeDouble(causticRadius);
+    }
+
+    @Override
+    void readSettings(ByteBuffer in) {
+        setMaxLevel(in.getInt());
+        setRussianRoulette(in.getDouble());
+        setLightSampling(in.getInt());
+        setLightCulling(in.getDouble());
+        setShadowCache(in.get() != 0);
+        setAdaptiveShadows(in.getInt());
+        setShadingCache(in.getDouble());
+        setCaustics(in.getInt(), in.getInt(), in.getDouble());
+    }
+
+    /**
+     * Returns the caustics photon map, tracing the photons on first use
+     *
+     * @return the photon map
+     */
+    protected PhotonMap getCausticMap() {
+        PhotonMap map = causticMap;
+        if (map == null)
+            synchronized (this) {
+                if ((map = causticMap) == null)
+                    causticMap = map = new PhotonTracer(scene).setMaxLevel(maxLevel).traceCaustics(causticPhotons);
+            }
+        return map;
+    }
+
+    /**
+     * Returns the irradiance cache of the diffuse surfaces
+     *
+     * @return the cache, or null if it is disabled
+     */
+    public ShadingCache getShadingCache() {
+        return shadingCache;
+    }
+
+    /**
+     * Returns the shadow occluder cache (for its hit statistics)
+     *
+     * @return the cache, or null if it is disabled
+     */
+    public ShadowCache getShadowCache() {
+        return shadowCache;
+    }
+
+    /**
+     * Returns the spatial light index of the scene lights, building it on first use
+     *
+     * @return the light index
+     */
+    protected LightIndex getLightIndex() {
+        LightIndex index = lightIndex;
+        if (index == null)
+            synchronized (this) {
+                if ((index = lightIndex) == null) lightIndex = index = new LightIndex(scene.lights, cullingThreshold);
+            }
+        return index;
+    }
+
+    /**
+     * Returns the light tree of the scene lights, building it on first use
+     *
+     * @return the light tree
+     */
+    protected LightTree getLightTree() {
+        LightTree tree = lightTree;
+        if (tree == null)
+            synchronized (this) {
+                if ((tree = lightTree) == null) lightTree = tree = new LightTree(scene.lights);
+            }
+        return tree;
+    }
+
+    /**
+     * Clears the shading and shadow caches, and drops the light tree, the light index and the
+     * caustics photon map - they are built again on their next use
+     */
+    @Override
+    public void sceneChanged() {
+        if (shadingCache != null) shadingCache.clear();
+        if (shadowCache != null) shadowCache.clear();
+        synchronized (this) {
+            lightTree = null;
+            lightIndex = null;
+            causticMap = null;
+        }
+    }
+
     @Override
     public Color traceRay(Ray ray) {
         // Find the closest intersections with the geometries in the scene
@@ -56,13 +381,25 @@ public class SimpleRayTracer extends RayTracerBase {
         return intersection == null ? scene.background : calcColor(intersection, ray);
     }
 
+    @Override
+    public Color[] traceRays(Ray[] rays) {
+        // the packet traverses the BVH together, the shading is done per ray
+        var intersections = scene.geometries.calculatePacketIntersections(rays, Double.POSITIVE_INFINITY);
+        Color[] colors = new Color[rays.length];
+        for (int k = 0; k < rays.length; ++k) {
+            var intersection = rays[k].findClosestIntersection(intersections.get(k));
+            colors[k] = intersection == null ? scene.background : calcColor(intersection, rays[k]);
+        }
+        return colors;
+    }
+
     /**
      * Finds the closest intersection between a ray and the scene geometries.
      *
      * @param ray the ray to find intersections with
      * @return the closest intersection or null if none found
      */
-    private Intersection findClosestIntersection(Ray ray) {
+    protected Intersection findClosestIntersection(Ray ray) {
         var intersections = scene.geometries.calculateIntersections(ray);
         return ray.findClosestIntersection(intersections);
     }
@@ -77,7 +414,7 @@ public class SimpleRayTracer extends RayTracerBase {
     private Color calcColor(Intersection intersection, Ray ray) {
         // Preprocess data: set normal, ray direction, dot product
         return preprocessIntersection(intersection, ray.getDirection()) ?
-                (calcColor(intersection, MAX_CALC_COLOR_LEVEL, INITIAL_K))
+                (calcColor(intersection, maxLevel, INITIAL_K))
                         .add(scene.ambientLight.getIntensity().scale(intersection.material.kA)) : // Start with ambient light + emission
                 Color.BLACK; // No local effects → return black
     }
@@ -92,7 +429,44 @@ public class SimpleRayTracer extends RayTracerBase {
      */
     private Color calcColor(Intersection intersection, int level, Double3 k) {
         Color color = calcColorLocalEffects(intersection);
-        return level == 1 || k.lowerThan(MIN_CALC_COLOR_K) ? color : color.add(calcGlobalEffects(intersection, level - 1, k));
+        return hasGlobalEffects(intersection, level, k) ? color.add(calcGlobalEffects(intersection, level - 1, k)) : color;
+    }
+
+    /**
+     * Checks whether reflection and refraction rays are traced from an intersection: the
+     * recursion level is not exhausted, the path attenuation is not negligible, and the path
+     * is shallower than the maximum depth of the material
+     *
+     * @param intersection the intersection object
+     * @param level        the recursive level of the intersection
+     * @param k            attenuation factor of the path
+     * @return true if the global effects are traced
+     */
+    protected boolean hasGlobalEffects(Intersection intersection, int level, Double3 k) {
+        int maxDepth = intersection.material.maxDepth;
+        return level > 1 && !k.lowerThan(MIN_CALC_COLOR_K) && (maxDepth == 0 || maxLevel - level < maxDepth);
+    }
+
+    /**
+     * Returns the Russian roulette survival probability of a secondary ray
+     *
+     * @param kkx the attenuation of the path of the ray
+     * @return the probability to trace the ray (1 - always)
+     */
+    protected double survivalProbability(Double3 kkx) {
+        if (rouletteThreshold <= 0) return 1;
+        double attenuation = Math.max(kkx.d1(), Math.max(kkx.d2(), kkx.d3()));
+        return attenuation >= rouletteThreshold ? 1 : attenuation / rouletteThreshold;
+    }
+
+    /**
+     * Plays the Russian roulette of a secondary ray
+     *
+     * @param survival the survival probability of the ray
+     * @return true if the ray is traced
+     */
+    protected static boolean survives(double survival) {
+        return survival >= 1 || ThreadLocalRandom.current().nextDouble() < survival;
     }
 
     /**
@@ -146,7 +520,7 @@ public class SimpleRayTracer extends RayTracerBase {
      * @param intersection the intersection object
      * @return the reflected ray
      */
-    private Ray constructReflectedRay(Intersection intersection) {
+    protected Ray constructReflectedRay(Intersection intersection) {
         Vector r = intersection.rayDirection.subtract(intersection.normal.scale(2 * intersection.dotProductRayNormal));
         return new Ray(intersection.point, r, intersection.normal);
     }
@@ -157,7 +531,7 @@ public class SimpleRayTracer extends RayTracerBase {
      * @param intersection the intersection object
      * @return the refracted ray
      */
-    private Ray constructRefractedRay(Intersection intersection) {
+    protected Ray constructRefractedRay(Intersection intersection) {
         return new Ray(intersection.point, intersection.rayDirection, intersection.normal);
     }
 
@@ -173,12 +547,18 @@ public class SimpleRayTracer extends RayTracerBase {
     private Color calcGlobalEffect(Ray ray, int level, Double3 k, Double3 kx) {
         var kkx = k.product(kx);
         if (kkx.lowerThan(MIN_CALC_COLOR_K)) return Color.BLACK;
+        double survival = survivalProbability(kkx);
+        if (!survives(survival)) return Color.BLACK;
+        if (survival < 1) { // the surviving rays are weighted up - the expected color is kept
+            kx = kx.reduce(survival);
+            kkx = kkx.reduce(survival);
+        }
 
         var intersection = findClosestIntersection(ray);
         if (intersection == null) return scene.background.scale(kx);
 
         return preprocessIntersection(intersection, ray.getDirection())
-                ? calcColor(intersection, level - 1, kkx).scale(kx)
+                ? calcColor(intersection, level, kkx).scale(kx)
                 : Color.BLACK;
     }
 
@@ -189,9 +569,10 @@ public class SimpleRayTracer extends RayTracerBase {
      * @param RayIntersection the ray direction vector
      * @return true if local effects can be calculated, false otherwise
      */
-    private boolean preprocessIntersection(Intersection intersection, Vector RayIntersection) {
+    protected boolean preprocessIntersection(Intersection intersection, Vector RayIntersection) {
         intersection.rayDirection = RayIntersection.normalize();    // Save ray direction
-        intersection.normal = intersection.geometry.getNormal(intersection.point);  // Calculate normal at intersection point
+        if (intersection.normal == null) // an instance intersection comes with its transformed normal
+            intersection.normal = intersection.geometry.getNormal(intersection.point);  // Calculate normal at intersection point
         intersection.dotProductRayNormal = intersection.rayDirection.dotProduct(intersection.normal); // Compute dot product between ray direction and normal
         return !isZero(intersection.dotProductRayNormal);
     }
@@ -217,17 +598,102 @@ public class SimpleRayTracer extends RayTracerBase {
      * @param intersection the intersection object
      * @return the local lighting color contribution
      */
-    private Color calcColorLocalEffects(Intersection intersection) {
-        Color result = intersection.geometry.getEmission();
-        for (var light : scene.lights) {
-            if (!setLightSource(intersection, light)) continue; // No contribution from this light source
+    protected Color calcColorLocalEffects(Intersection intersection) {
+        Color color = intersection.geometry.getEmission();
+        ShadingCache cache = shadingCache;
+        if (cache == null || !intersection.material.kS.lowerThan(MIN_CALC_COLOR_K))
+            color = sumLights(intersection, color, this::calcLightContribution);
+        else {
+            // a diffuse surface - its lighting doesn't depend on the view direction
+            Vector normal = facingNormal(intersection);
+            Color irradiance = cache.lookup(intersection.point, normal);
+            if (irradiance == null) {
+                irradiance = sumLights(intersection, Color.BLACK, this::calcIrradiance);
+                cache.add(intersection.point, normal, irradiance);
+            }
+            color = color.add(irradiance.scale(intersection.material.kD));
+        }
+        return causticPhotons == 0 ? color : color.add(calcCaustics(intersection));
+    }
 
-            result = result.add(light.getIntensity(intersection.point).scale(calcDiffusive(intersection)
-                    .add(calcSpecular(intersection))).scale(transparency(intersection)));
+    /**
+     * Returns the normal at the intersection point on the side of the viewer
+     *
+     * @param intersection the intersection object
+     * @return the normal facing the ray origin
+     */
+    private static Vector facingNormal(Intersection intersection) {
+        return intersection.dotProductRayNormal > 0 ? intersection.normal.scale(-1) : intersection.normal;
+    }
+
+    /**
+     * Calculates the diffuse lighting of the caustics at the intersection point - estimated
+     * from the nearest photons of the caustics photon map
+     *
+     * @param intersection the intersection object
+     * @return the caustics color contribution
+     */
+    private Color calcCaustics(Intersection intersection) {
+        if (intersection.material.kD.lowerThan(MIN_CALC_COLOR_K)) return Color.BLACK;
+        return getCausticMap().estimate(intersection.point, facingNormal(intersection), causticNearest, causticRadius)
+                .scale(intersection.material.kD);
+    }
+
+    /**
+     * Sums a lighting term of the lights at the intersection point - of all the lights,
+     * or of the lights sampled from the light tree, less the culled lights
+     *
+     * @param intersection the intersection object
+     * @param result       the initial sum
+     * @param term         the lighting term of a light
+     * @return the sum of the terms
+     */
+    private Color sumLights(Intersection intersection, Color result, BiFunction<Intersection, LightSource, Color> term) {
+        LightIndex index = cullingThreshold == 0 ? null : getLightIndex();
+        LightTree tree = lightSamples == 0 ? null : getLightTree();
+        if (tree == null || tree.size() <= lightSamples) {
+            for (var light : index == null ? scene.lights : index.lightsAt(intersection.point))
+                result = result.add(term.apply(intersection, light));
+            return result;
+        }
+
+        for (var light : tree.getUnbounded()) result = result.add(term.apply(intersection, light));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < lightSamples; ++i) {
+            LightTree.Sample sample = tree.sample(intersection.point, random.nextDouble());
+            if (sample == null) break; // no light can light the point
+            if (index != null && !index.reaches(sample.light(), intersection.point)) continue;
+            result = result.add(term.apply(intersection, sample.light()).scale(1 / (sample.pdf() * lightSamples)));
         }
         return result;
     }
 
+    /**
+     * Calculates the local lighting effects (diffusive + specular) of a light at the intersection point.
+     *
+     * @param intersection the intersection object
+     * @param light        the light source
+     * @return the lighting color contribution of the light
+     */
+    protected Color calcLightContribution(Intersection intersection, LightSource light) {
+        if (!setLightSource(intersection, light)) return Color.BLACK; // No contribution from this light source
+        return light.getIntensity(intersection.point).scale(calcDiffusive(intersection)
+                .add(calcSpecular(intersection))).scale(transparency(intersection));
+    }
+
+    /**
+     * Calculates the irradiance of a light at the intersection point - its intensity
+     * scaled by the cosine of the incidence angle and by the shadow transparency.
+     *
+     * @param intersection the intersection object
+     * @param light        the light source
+     * @return the irradiance of the light
+     */
+    private Color calcIrradiance(Intersection intersection, LightSource light) {
+        if (!setLightSource(intersection, light)) return Color.BLACK; // No contribution from this light source
+        return light.getIntensity(intersection.point).scale(Math.abs(intersection.nl)).scale(transparency(intersection));
+    }
+
     /**
      * Calculates the specular component of the light at the intersection point.
      *
@@ -314,12 +780,14 @@ public class SimpleRayTracer extends RayTracerBase {
                 intersection.lightSource.getL(intersection.point).scale(-1),
                 intersection.normal
         );
-        return calculateRayTransparency(shadowRay, intersection.lightSource.getDistance(intersection.point));
+        return calculateRayTransparency(shadowRay, intersection.lightSource.getDistance(intersection.point),
+                intersection.lightSource);
     }
 
     /**
      * Soft shadow transparency calculation using beam sampling.
      * Samples multiple rays toward the light's disk area and averages the results.
+     * With adaptive shadows the probe rays are cast first, and the rest of the rays only in the penumbra.
      *
      * @param intersection the intersection data
      * @return the transparency factor as Double3
@@ -336,38 +804,93 @@ public class SimpleRayTracer extends RayTracerBase {
                 light.getL(intersection.point).scale(-1),
                 intersection.normal);
 
+        int count = areaLight.getShadowRayCount();
+        Double3 totalTransparency = Double3.ZERO;
+        int traced = 0;
+        if (shadowProbes > 0 && shadowProbes < count) {
+            var probes = sampleShadowRays(intersection, baseShadowRay, areaLight, shadowProbes);
+            Double3 first = null;
+            boolean penumbra = false;
+            for (Ray probe : probes) {
+                Double3 transparency = calculateRayTransparency(probe, light.getDistance(intersection.point), light);
+                if (first == null) first = transparency;
+                else penumbra |= !first.equals(transparency);
+                totalTransparency = totalTransparency.add(transparency);
+            }
+            if (first != null && !penumbra) return first; // fully lit or fully in the umbra
+            traced = probes.size();
+            count -= shadowProbes;
+        }
+
         // Sample rays toward the light's disk area
+        var shadowRays = sampleShadowRays(intersection, baseShadowRay, areaLight, count);
+        // Average transparency across all shadow rays
+        for (Ray shadowRay : shadowRays) {
+            totalTransparency = totalTransparency.add(
+                    calculateRayTransparency(shadowRay, light.getDistance(intersection.point), light)
+            );
+        }
+        return totalTransparency.reduce(traced + shadowRays.size());
+    }
+
+    /**
+     * Samples shadow rays toward the disk of an area light, leaving out the rays which leave
+     * the surface on the other side
+     *
+     * @param intersection  the intersection data
+     * @param baseShadowRay the shadow ray toward the light center
+     * @param areaLight     the area light
+     * @param count         the amount of rays
+     * @return the shadow rays
+     */
+    private List<Ray> sampleShadowRays(Intersection intersection, Ray baseShadowRay, AreaLight areaLight, int count) {
         var shadowRays = raySampler.sample(
                 baseShadowRay,
                 intersection.normal,
                 areaLight.getRadius(),
-                light.getDistance(intersection.point),
-                areaLight.getShadowRayCount()
+                intersection.lightSource.getDistance(intersection.point),
+                count
         );
         shadowRays.removeIf(g -> g.getDirection().dotProduct(intersection.normal) * intersection.dotProductRayNormal > 0);
-        // Average transparency across all shadow rays
-        Double3 totalTransparency = Double3.ZERO;
-        for (Ray shadowRay : shadowRays) {
-            totalTransparency = totalTransparency.add(
-                    calculateRayTransparency(shadowRay, light.getDistance(intersection.point))
-            );
-        }
-        return totalTransparency.reduce(shadowRays.size());
+        return shadowRays;
     }
 
     /**
      * Calculates transparency for a single shadow ray.
      * Extracted helper method to eliminate code duplication between hard and soft methods.
+     * The cached occluder of the light is tested first - if it blocks the ray, the ray is
+     * opaque without a traversal of the scene.
      *
      * @param shadowRay   the shadow ray to test
      * @param maxDistance the maximum distance to test for intersections
+     * @param light       the light the ray is cast towards
      * @return the transparency factor as Double3
      */
-    private Double3 calculateRayTransparency(Ray shadowRay, double maxDistance) {
+    private Double3 calculateRayTransparency(Ray shadowRay, double maxDistance, LightSource light) {
+        ShadowCache cache = shadowCache;
+        if (cache != null) {
+            Geometry occluder = cache.get(light);
+            if (occluder != null) {
+                var blocked = occluder.calculateIntersections(shadowRay, maxDistance);
+                if (blocked != null && !blocked.isEmpty()) {
+                    cache.hit();
+                    return Double3.ZERO;
+                }
+            }
+            cache.miss();
+        }
+
         var shadowIntersections = scene.geometries.calculateIntersections(
                 shadowRay,
                 maxDistance
         );
+        if (cache != null && shadowIntersections != null)
+            for (var shadowI : shadowIntersections)
+                // a geometry hit through an instance is not in the scene space - it cannot be retested
+                if (!shadowI.instanced && shadowI.material.kT.lowerThan(MIN_CALC_COLOR_K)) {
+                    cache.put(light, shadowI.geometry);
+                    break;
+                }
         return calculateTransparencyFromIntersections(shadowIntersections);
     }
 
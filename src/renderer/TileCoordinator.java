@@ -0,0 +1,431 @@
+package renderer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coordinator side of distributed frame rendering.<br>
+ * The coordinator splits the frame into tiles and hands them out to worker JVMs
+ * ({@link TileWorker}) connected through loopback sockets. Each worker loads the same
+ * scene by instantiating the same {@link RenderJob} class, renders the tiles it is
+ * assigned and streams the tile pixels back. A tile whose worker fails (dies, disconnects
+ * or exceeds the tile timeout) is re-issued to another worker. If all the spawned workers
+ * are gone, the coordinator finishes the remaining tiles by itself.<br>
+ * The tiles of a camera with a denoiser are sent as the average colors and the variances of the
+ * pixels (see {@link Camera#renderDenoisingTile(int, int, int, int)}), and the coordinator
+ * denoises the assembled image when all the tiles are finished - the denoiser filters across
+ * the tile borders, so it cannot run per tile.<br>
+ * Everything runs on the local machine - no external services are involved.
+ */
+public class TileCoordinator {
+    /**
+     * Handshake value sent by a worker when it is ready for work
+     */
+    static final int HELLO = 0x52545731;
+    /**
+     * Command - render a tile
+     */
+    static final byte TILE = 1;
+    /**
+     * Command - no more work, the worker should exit
+     */
+    static final byte SHUTDOWN = 0;
+
+    /**
+     * Interval for checking the progress of the rendering (in milliseconds)
+     */
+    private static final long POLL_INTERVAL = 200;
+
+    /**
+     * Immutable description of a tile of the image
+     *
+     * @param id     tile number
+     * @param x      first column of the tile
+     * @param y      first row of the tile
+     * @param width  number of columns in the tile
+     * @param height number of rows in the tile
+     */
+    record Tile(int id, int x, int y, int width, int height) {
+    }
+
+    /**
+     * The render job - its class is instantiated by every worker
+     */
+    private final RenderJob job;
+    /**
+     * The camera of the coordinator - holds the resolution and the resulting image
+     */
+    private final Camera camera;
+    /**
+     * Tile side length in pixels
+     */
+    private int tileSize = 32;
+    /**
+     * Amount of worker JVMs to spawn locally
+     */
+    private int localWorkers = 2;
+    /**
+     * Port to listen on (0 - any free port)
+     */
+    private int port = 0;
+    /**
+     * Maximum time for a single tile in milliseconds (0 - unlimited)
+     */
+    private int tileTimeout = 0;
+    /**
+     * Additional JVM options for the spawned workers
+     */
+    private List<String> workerJvmOptions = List.of();
+
+    /**
+     * Whether the tiles are rendered for denoising - the job camera has a denoiser
+     */
+    private final boolean denoising;
+    /**
+     * The average colors of the pixels for denoising, 3 per pixel (null - no denoising)
+     */
+    private double[] colors;
+    /**
+     * The variances of the average luminances of the pixels for denoising, 1 per pixel
+     */
+    private double[] variance;
+
+    /**
+     * Tiles waiting for a worker (including re-issued tiles)
+     */
+    private final BlockingQueue<Tile> pending = new LinkedBlockingQueue<>();
+    /**
+     * Numbers of the tiles that have been written into the image
+     */
+    private final Set<Integer> finished = ConcurrentHashMap.newKeySet();
+    /**
+     * Amount of currently connected workers
+     */
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    /**
+     * Spawned worker processes
+     */
+    private final List<Process> processes = new LinkedList<>();
+    /**
+     * Amounts of the tiles delivered by the workers, in the order of their connection
+     */
+    private final List<AtomicInteger> workerTiles = new CopyOnWriteArrayList<>();
+    /**
+     * Amount of the tiles rendered by the coordinator itself
+     */
+    private final AtomicInteger localTiles = new AtomicInteger();
+    /**
+     * Countdown of the tiles that have not been finished yet
+     */
+    private CountDownLatch remaining;
+
+    /**
+     * Constructs a coordinator for the given job. The job is created in the coordinator as well
+     * for the resolution of the image and for the resulting image itself.
+     *
+     * @param job the render job (its class must be public with a public no-argument constructor)
+     */
+    public TileCoordinator(RenderJob job) {
+        this.job = job;
+        this.camera = job.createCamera();
+        this.denoising = camera.getDenoiser() != null;
+    }
+
+    /**
+     * Sets the tile side length
+     *
+     * @param tileSize tile side length in pixels
+     * @return the coordinator itself
+     */
+    public TileCoordinator setTileSize(int tileSize) {
+        if (tileSize <= 0) throw new IllegalArgumentException("Tile size must be positive");
+        this.tileSize = tileSize;
+        return this;
+    }
+
+    /**
+     * Sets the amount of worker JVMs spawned locally. If it is zero, the coordinator waits
+     * for workers started manually.
+     *
+     * @param workers amount of worker JVMs
+     * @return the coordinator itself
+     */
+    public TileCoordinator setLocalWorkers(int workers) {
+        if (workers < 0) throw new IllegalArgumentException("Amount of workers must be non-negative");
+        this.localWorkers = workers;
+        return this;
+    }
+
+    /**
+     * Sets the loopback port to listen on for the workers
+     *
+     * @param port the port number (0 - any free port)
+     * @return the coordinator itself
+     */
+    public TileCoordinator setPort(int port) {
+        if (port < 0) throw new IllegalArgumentException("Port must be non-negative");
+        this.port = port;
+        return this;
+    }
+
+    /**
+     * Sets the maximum time a worker may spend on a single tile. A worker exceeding
+     * it is considered failed and its tile is re-issued.
+     *
+     * @param seconds tile timeout in seconds (0 - unlimited)
+     * @return the coordinator itself
+     */
+    public TileCoordinator setTileTimeout(double seconds) {
+        if (seconds < 0) throw new IllegalArgumentException("Timeout must be non-negative");
+        this.tileTimeout = (int) (seconds * 1000);
+        return this;
+    }
+
+    /**
+     * Sets additional JVM options for the spawned workers (e.g. -Xmx)
+     *
+     * @param options the JVM options
+     * @return the coordinator itself
+     */
+    public TileCoordinator setWorkerJvmOptions(String... options) {
+        this.workerJvmOptions = List.of(options);
+        return this;
+    }
+
+    /**
+     * Returns the amounts of the tiles of the last rendering delivered by the workers - a tile
+     * delivered again (after it was re-issued) is not counted
+     *
+     * @return the amounts of the tiles, per worker in the order of their connection
+     */
+    public List<Integer> getWorkerTiles() {
+        return workerTiles.stream().map(AtomicInteger::get).toList();
+    }
+
+    /**
+     * Returns the amount of the tiles of the last rendering that the coordinator rendered by
+     * itself, since all the spawned workers were gone
+     *
+     * @return the amount of the tiles
+     */
+    public int getLocalTiles() {
+        return localTiles.get();
+    }
+
+    /**
+     * Renders the image by the workers
+     *
+     * @return the camera holding the rendered image (ready for writing)
+     */
+    public Camera render() {
+        splitToTiles();
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout((int) POLL_INTERVAL);
+            Thread acceptor = new Thread(() -> acceptWorkers(server));
+            acceptor.setDaemon(true);
+            acceptor.start();
+            spawnWorkers(server.getLocalPort());
+
+            while (!remaining.await(POLL_INTERVAL, TimeUnit.MILLISECONDS))
+                if (localWorkers > 0 && activeWorkers.get() == 0 && processes.stream().noneMatch(Process::isAlive))
+                    renderLocally();
+            if (denoising) camera.writeDenoised(colors, variance);
+        } catch (IOException e) {
+            throw new IllegalStateException("Distributed rendering failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Distributed rendering interrupted", e);
+        } finally {
+            for (Process process : processes) process.destroy();
+            processes.clear();
+        }
+        return camera;
+    }
+
+    /**
+     * Splits the image into tiles and queues them
+     */
+    private void splitToTiles() {
+        pending.clear();
+        finished.clear();
+        workerTiles.clear();
+        localTiles.set(0);
+        if (denoising) {
+            colors = new double[3 * camera.nX * camera.nY];
+            variance = new double[camera.nX * camera.nY];
+        }
+        int id = 0;
+        for (int y = 0; y < camera.nY; y += tileSize)
+            for (int x = 0; x < camera.nX; x += tileSize)
+                pending.add(new Tile(id++, x, y, Math.min(tileSize, camera.nX - x), Math.min(tileSize, camera.nY - y)));
+        remaining = new CountDownLatch(id);
+    }
+
+    /**
+     * Starts the local worker JVMs with the classpath of the current JVM
+     *
+     * @param serverPort the port the coordinator listens on
+     * @throws IOException if a worker process cannot be started
+     */
+    private void spawnWorkers(int serverPort) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        for (int i = 0; i < localWorkers; ++i) {
+            List<String> command = new LinkedList<>();
+            command.add(java);
+            command.addAll(workerJvmOptions);
+            command.addAll(List.of("-cp", System.getProperty("java.class.path"), TileWorker.class.getName(),
+                    InetAddress.getLoopbackAddress().getHostAddress(), String.valueOf(serverPort),
+                    job.getClass().getName()));
+            processes.add(new ProcessBuilder(command).inheritIO().start());
+        }
+    }
+
+    /**
+     * Accepts worker connections until the image is finished, serving each worker in its own thread
+     *
+     * @param server the server socket
+     */
+    private void acceptWorkers(ServerSocket server) {
+        while (remaining.getCount() > 0) {
+            try {
+                Socket socket = server.accept();
+                activeWorkers.incrementAndGet();
+                Thread handler = new Thread(() -> serveWorker(socket));
+                handler.setDaemon(true);
+                handler.start();
+            } catch (SocketTimeoutException ignored) {
+                // check whether the image is finished
+            } catch (IOException e) {
+                return; // the server socket has been closed
+            }
+        }
+    }
+
+    /**
+     * Hands out tiles to a single worker and collects its results.
+     * The tile being rendered is re-issued if the worker fails.
+     *
+     * @param socket the connection to the worker
+     */
+    private void serveWorker(Socket socket) {
+        Tile tile = null;
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readInt() != HELLO || in.readInt() != camera.nX || in.readInt() != camera.nY)
+                return; // not a worker of this job
+            socket.setSoTimeout(tileTimeout);
+            AtomicInteger delivered = new AtomicInteger();
+            workerTiles.add(delivered);
+
+            while ((tile = nextTile()) != null) {
+                out.writeByte(TILE);
+                out.writeInt(tile.id());
+                out.writeInt(tile.x());
+                out.writeInt(tile.y());
+                out.writeInt(tile.width());
+                out.writeInt(tile.height());
+                out.flush();
+
+                if (in.readInt() != tile.id()) throw new IOException("Unexpected tile from worker");
+                boolean written;
+                if (denoising) {
+                    double[] samples = new double[4 * tile.width() * tile.height()];
+                    for (int i = 0; i < samples.length; ++i) samples[i] = in.readDouble();
+                    written = complete(tile, samples);
+                } else {
+                    int[] rgb = new int[tile.width() * tile.height()];
+                    for (int i = 0; i < rgb.length; ++i) rgb[i] = in.readInt();
+                    written = complete(tile, rgb);
+                }
+                if (written) delivered.incrementAndGet();
+                tile = null;
+            }
+            out.writeByte(SHUTDOWN);
+            out.flush();
+        } catch (IOException e) {
+            if (tile != null) pending.add(tile); // re-issue the tile of the failed worker
+        } catch (InterruptedException e) {
+            if (tile != null) pending.add(tile);
+            Thread.currentThread().interrupt();
+        } finally {
+            activeWorkers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Waits for the next tile that has not been finished yet
+     *
+     * @return the tile or null if the image is finished
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    private Tile nextTile() throws InterruptedException {
+        while (remaining.getCount() > 0) {
+            Tile tile = pending.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            if (tile != null && !finished.contains(tile.id())) return tile;
+        }
+        return null;
+    }
+
+    /**
+     * Renders all the pending tiles in the coordinator itself, in parallel by the local threads
+     * (when no worker is available)
+     */
+    private void renderLocally() {
+        List<Tile> tiles = new ArrayList<>();
+        pending.drainTo(tiles);
+        tiles.parallelStream().filter(tile -> !finished.contains(tile.id()))
+                .forEach(tile -> {
+                    boolean written = denoising
+                            ? complete(tile, camera.renderDenoisingTile(tile.x(), tile.y(), tile.width(), tile.height()))
+                            : complete(tile, camera.renderTile(tile.x(), tile.y(), tile.width(), tile.height()));
+                    if (written) localTiles.incrementAndGet();
+                });
+    }
+
+    /**
+     * Writes a finished tile into the image (only once per tile)
+     *
+     * @param tile the tile
+     * @param rgb  packed RGB values of the tile pixels
+     * @return true if the tile has been written, false if it had been finished already
+     */
+    private boolean complete(Tile tile, int[] rgb) {
+        if (!finished.add(tile.id())) return false;
+        synchronized (camera) {
+            camera.writeTile(tile.x(), tile.y(), tile.width(), tile.height(), rgb);
+        }
+        remaining.countDown();
+        return true;
+    }
+
+    /**
+     * Stores a finished tile for denoising (only once per tile)
+     *
+     * @param tile    the tile
+     * @param samples the average colors and the variances of the tile pixels, 4 per pixel
+     * @return true if the tile has been stored, false if it had been finished already
+     */
+    private boolean complete(Tile tile, double[] samples) {
+        if (!finished.add(tile.id())) return false;
+        // the tiles don't overlap, and the latch publishes the values to the coordinator thread
+        for (int i = 0; i < tile.height(); ++i)
+            for (int j = 0; j < tile.width(); ++j) {
+                int p = (tile.y() + i) * camera.nX + tile.x() + j, q = i * tile.width() + j;
+                System.arraycopy(samples, 4 * q, colors, 3 * p, 3);
+                variance[p] = samples[4 * q + 3];
+            }
+        remaining.countDown();
+        return true;
+    }
+}
@@ -0,0 +1,72 @@
+package renderer;
+
+import java.io.*;
+import java.net.Socket;
+
+/**
+ * Worker side of distributed frame rendering.<br>
+ * A worker connects to a {@link TileCoordinator} through a loopback socket, builds the scene
+ * of the render job and renders every tile it is assigned, streaming the pixels back - the
+ * packed RGB values, or the average colors and the variances of a camera with a denoiser.
+ * It is normally spawned by the coordinator, but can be also started manually:
+ * <pre>java -cp &lt;classpath&gt; renderer.TileWorker &lt;host&gt; &lt;port&gt; &lt;job class name&gt;</pre>
+ */
+public final class TileWorker {
+
+    /**
+     * Don't let anyone instantiate this class.
+     */
+    private TileWorker() {
+    }
+
+    /**
+     * Worker entry point
+     *
+     * @param args host, port and the fully qualified name of the {@link RenderJob} class
+     * @throws Exception if the job cannot be created or the connection fails
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3)
+            throw new IllegalArgumentException("Usage: TileWorker <host> <port> <job class name>");
+        RenderJob job = (RenderJob) Class.forName(args[2]).getDeclaredConstructor().newInstance();
+        Camera camera = job.createCamera();
+
+        try (Socket socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+            socket.setTcpNoDelay(true);
+            var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(TileCoordinator.HELLO);
+            out.writeInt(camera.nX);
+            out.writeInt(camera.nY);
+            out.flush();
+            serve(camera, in, out);
+        } catch (EOFException ignored) {
+            // the coordinator has gone - nothing left to do
+        }
+    }
+
+    /**
+     * Renders the tiles sent by the coordinator until it asks to stop.
+     *
+     * @param camera the camera of the render job
+     * @param in     the stream of the commands from the coordinator
+     * @param out    the stream of the results to the coordinator
+     * @throws IOException in case of communication failure
+     */
+    private static void serve(Camera camera, DataInputStream in, DataOutputStream out) throws IOException {
+        while (in.readByte() == TileCoordinator.TILE) {
+            int id = in.readInt();
+            int x0 = in.readInt();
+            int y0 = in.readInt();
+            int width = in.readInt();
+            int height = in.readInt();
+
+            out.writeInt(id);
+            if (camera.getDenoiser() != null)
+                for (double value : camera.renderDenoisingTile(x0, y0, width, height)) out.writeDouble(value);
+            else
+                for (int value : camera.renderTile(x0, y0, width, height)) out.writeInt(value);
+            out.flush();
+        }
+    }
+}
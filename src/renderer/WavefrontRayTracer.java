@@ -0,0 +1,383 @@
+package renderer;
+
+import geometries.Intersectable.Intersection;
+import primitives.*;
+import scene.Scene;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Wavefront (breadth-first) ray tracer.<br>
+ * Instead of recursing depth-first into the reflection and refraction rays of every pixel,
+ * the rays of a whole batch (see {@link #traceRays(Ray[])}) are processed bounce by bounce:
+ * all the rays of a wave are intersected, then all the hits are shaded, and the shading emits
+ * the reflected and refracted rays of the next wave. Every stage runs over chunks of the wave
+ * in parallel, the waves are kept in primitive arrays, and the primary wave is intersected as
+ * a packet. A wave larger than {@link #WAVE_LIMIT} rays (e.g. the fan-out of glossy surfaces)
+ * is split and its sub-batches are traced one after another down to the last bounce, so the
+ * memory of a batch is bounded by the recursion depth rather than by the growth of its waves. The colors are the ones of {@link SimpleRayTracer} - the same local effects, global
+ * effects attenuation and cutoffs - accumulated per ray with the weights of their paths.
+ * <p>
+ * The batches come from the packets of the camera (see {@link Camera.Builder#setPacketSize(int)});
+ * a single traced ray is a batch of one.
+ */
+public class WavefrontRayTracer extends SimpleRayTracer {
+
+    /**
+     * Amount of rays of a wave processed by one task of a stage
+     */
+    private static final int CHUNK_SIZE = 64;
+
+    /**
+     * The maximal amount of rays of a wave processed at once - larger waves are split into sub-batches
+     */
+    static final int WAVE_LIMIT = 16 * CHUNK_SIZE;
+
+    /**
+     * The largest wave emitted by the shading of a (sub-)batch so far - for the tests
+     */
+    private final AtomicInteger peakWaveSize = new AtomicInteger();
+
+    /**
+     * A wave of rays - structure of arrays, an entry per ray
+     */
+    private static final class Wave {
+        /**
+         * The amount of rays in the wave
+         */
+        int size = 0;
+        /**
+         * The index of the primary ray (in the batch) the ray contributes to
+         */
+        int[] origin;
+        /**
+         * The rays
+         */
+        Ray[] rays;
+        /**
+         * The weights of the ray contributions (per color component)
+         */
+        double[] w1, w2, w3;
+        /**
+         * The attenuation factors of the paths (per color component) - the cutoff criteria
+         */
+        double[] k1, k2, k3;
+        /**
+         * The recursion levels of the rays
+         */
+        int[] level;
+
+        /**
+         * Constructs an empty wave
+         *
+         * @param capacity the initial capacity
+         */
+        Wave(int capacity) {
+            capacity = Math.max(capacity, 1);
+            origin = new int[capacity];
+            rays = new Ray[capacity];
+            w1 = new double[capacity];
+            w2 = new double[capacity];
+            w3 = new double[capacity];
+            k1 = new double[capacity];
+            k2 = new double[capacity];
+            k3 = new double[capacity];
+            level = new int[capacity];
+        }
+
+        /**
+         * Adds a ray to the wave
+         *
+         * @param origin the index of the primary ray
+         * @param ray    the ray
+         * @param w      the weight of the ray contribution
+         * @param k      the attenuation factor of the path
+         * @param level  the recursion level
+         */
+        void add(int origin, Ray ray, Double3 w, Double3 k, int level) {
+            if (size == rays.length) grow(2 * size);
+            this.origin[size] = origin;
+            rays[size] = ray;
+            w1[size] = w.d1();
+            w2[size] = w.d2();
+            w3[size] = w.d3();
+            k1[size] = k.d1();
+            k2[size] = k.d2();
+            k3[size] = k.d3();
+            this.level[size++] = level;
+        }
+
+        /**
+         * Appends the rays of another wave
+         *
+         * @param other the other wave
+         */
+        void addAll(Wave other) {
+            if (size + other.size > rays.length) grow(Math.max(2 * rays.length, size + other.size));
+            System.arraycopy(other.origin, 0, origin, size, other.size);
+            System.arraycopy(other.rays, 0, rays, size, other.size);
+            System.arraycopy(other.w1, 0, w1, size, other.size);
+            System.arraycopy(other.w2, 0, w2, size, other.size);
+            System.arraycopy(other.w3, 0, w3, size, other.size);
+            System.arraycopy(other.k1, 0, k1, size, other.size);
+            System.arraycopy(other.k2, 0, k2, size, other.size);
+            System.arraycopy(other.k3, 0, k3, size, other.size);
+            System.arraycopy(other.level, 0, level, size, other.size);
+            size += other.size;
+        }
+
+        /**
+         * Copies a range of the rays of the wave
+         *
+         * @param from the index of the first ray (inclusive)
+         * @param to   the index of the last ray (exclusive)
+         * @return the sub-batch of the rays
+         */
+        Wave slice(int from, int to) {
+            Wave wave = new Wave(0);
+            wave.origin = Arrays.copyOfRange(origin, from, to);
+            wave.rays = Arrays.copyOfRange(rays, from, to);
+            wave.w1 = Arrays.copyOfRange(w1, from, to);
+            wave.w2 = Arrays.copyOfRange(w2, from, to);
+            wave.w3 = Arrays.copyOfRange(w3, from, to);
+            wave.k1 = Arrays.copyOfRange(k1, from, to);
+            wave.k2 = Arrays.copyOfRange(k2, from, to);
+            wave.k3 = Arrays.copyOfRange(k3, from, to);
+            wave.level = Arrays.copyOfRange(level, from, to);
+            wave.size = to - from;
+            return wave;
+        }
+
+        /**
+         * Grows the arrays of the wave
+         *
+         * @param capacity the new capacity
+         */
+        private void grow(int capacity) {
+            origin = Arrays.copyOf(origin, capacity);
+            rays = Arrays.copyOf(rays, capacity);
+            w1 = Arrays.copyOf(w1, capacity);
+            w2 = Arrays.copyOf(w2, capacity);
+            w3 = Arrays.copyOf(w3, capacity);
+            k1 = Arrays.copyOf(k1, capacity);
+            k2 = Arrays.copyOf(k2, capacity);
+            k3 = Arrays.copyOf(k3, capacity);
+            level = Arrays.copyOf(level, capacity);
+        }
+    }
+
+    /**
+     * Constructs a wavefront ray tracer with the given scene.
+     *
+     * @param scene the scene to be rendered
+     */
+    public WavefrontRayTracer(Scene scene) {
+        super(scene);
+    }
+
+    @Override
+    public Color traceRay(Ray ray) {
+        return traceRays(new Ray[]{ray})[0];
+    }
+
+    @Override
+    public Color[] traceRays(Ray[] rays) {
+        double[] r = new double[rays.length], g = new double[rays.length], b = new double[rays.length];
+        Wave wave = new Wave(rays.length);
+        for (int i = 0; i < rays.length; ++i) wave.add(i, rays[i], Double3.ONE, Double3.ONE, maxLevel);
+
+        traceWave(wave, true, r, g, b);
+
+        Color[] colors = new Color[rays.length];
+        for (int i = 0; i < rays.length; ++i) colors[i] = new Color(r[i], g[i], b[i]);
+        return colors;
+    }
+
+    /**
+     * Traces a wave and the waves emitted by its shading, in sub-batches of at most
+     * {@link #WAVE_LIMIT} rays, and accumulates the contributions of the rays
+     *
+     * @param wave    the wave
+     * @param primary whether it is the wave of the primary rays
+     * @param r       the accumulated red components of the primary rays
+     * @param g       the accumulated green components of the primary rays
+     * @param b       the accumulated blue components of the primary rays
+     */
+    private void traceWave(Wave wave, boolean primary, double[] r, double[] g, double[] b) {
+        for (int from = 0; from < wave.size; from += WAVE_LIMIT) {
+            Wave batch = wave.size <= WAVE_LIMIT ? wave : wave.slice(from, Math.min(from + WAVE_LIMIT, wave.size));
+            Intersection[] hits = intersect(batch, primary);
+            Color[] contributions = new Color[batch.size];
+            Wave next = shade(batch, hits, contributions, primary);
+            peakWaveSize.accumulateAndGet(next.size, Math::max);
+            // the contributions of a wave are accumulated in order - several rays may share a pixel
+            for (int i = 0; i < batch.size; ++i) {
+                Double3 rgb = contributions[i].getRgb();
+                int o = batch.origin[i];
+                r[o] += batch.w1[i] * rgb.d1();
+                g[o] += batch.w2[i] * rgb.d2();
+                b[o] += batch.w3[i] * rgb.d3();
+            }
+            traceWave(next, false, r, g, b);
+        }
+    }
+
+    /**
+     * Returns the largest wave emitted by the shading of a (sub-)batch so far
+     *
+     * @return the amount of rays of the largest emitted wave
+     */
+    int getPeakWaveSize() {
+        return peakWaveSize.get();
+    }
+
+    /**
+     * Intersection stage: finds the closest intersections of all the rays of a wave
+     *
+     * @param wave    the wave
+     * @param primary whether it is the wave of the primary rays (intersected as packets)
+     * @return the closest intersection of every ray (null - a miss)
+     */
+    private Intersection[] intersect(Wave wave, boolean primary) {
+        Intersection[] hits = new Intersection[wave.size];
+        forEachChunk(wave.size, (from, to) -> {
+            if (primary) {
+                Ray[] packet = Arrays.copyOfRange(wave.rays, from, to);
+                var intersections = scene.geometries.calculatePacketIntersections(packet, Double.POSITIVE_INFINITY);
+                for (int i = from; i < to; ++i)
+                    hits[i] = wave.rays[i].findClosestIntersection(intersections.get(i - from));
+            } else
+                for (int i = from; i < to; ++i) hits[i] = findClosestIntersection(wave.rays[i]);
+        });
+        return hits;
+    }
+
+    /**
+     * Shading stage: computes the local contribution of every ray of a wave and emits the
+     * reflected and refracted rays of the next wave
+     *
+     * @param wave          the wave
+     * @param hits          the closest intersections of the rays
+     * @param contributions receives the unweighted contribution of every ray
+     * @param primary       whether it is the wave of the primary rays (which add the ambient light)
+     * @return the next wave
+     */
+    private Wave shade(Wave wave, Intersection[] hits, Color[] contributions, boolean primary) {
+        int chunks = (wave.size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        Wave[] emitted = new Wave[chunks];
+        forEachChunk(wave.size, (from, to) -> {
+            Wave local = new Wave(2 * (to - from));
+            for (int i = from; i < to; ++i)
+                contributions[i] = shade(wave, i, hits[i], primary, local);
+            emitted[from / CHUNK_SIZE] = local;
+        });
+
+        int total = 0;
+        for (Wave local : emitted) total += local.size;
+        Wave next = new Wave(total);
+        for (Wave local : emitted) next.addAll(local); // in chunk order - deterministic accumulation
+        return next;
+    }
+
+    /**
+     * Shades a ray of a wave
+     *
+     * @param wave    the wave
+     * @param i       the index of the ray
+     * @param hit     the closest intersection of the ray (or null)
+     * @param primary whether the ray is primary
+     * @param next    receives the reflected and refracted rays
+     * @return the unweighted contribution of the ray
+     */
+    private Color shade(Wave wave, int i, Intersection hit, boolean primary, Wave next) {
+        Ray ray = wave.rays[i];
+        if (hit == null) return scene.background;
+        if (!preprocessIntersection(hit, ray.getDirection())) return Color.BLACK;
+
+        Color color = calcColorLocalEffects(hit);
+        if (primary) color = color.add(scene.ambientLight.getIntensity().scale(hit.material.kA));
+
+        Double3 k = new Double3(wave.k1[i], wave.k2[i], wave.k3[i]);
+        int level = wave.level[i];
+        if (!hasGlobalEffects(hit, level, k)) return color;
+
+        Double3 w = new Double3(wave.w1[i], wave.w2[i], wave.w3[i]);
+        Material material = hit.material;
+        emit(next, wave.origin[i], constructReflectedRay(hit), hit.normal, material.glossinessRadius,
+                material.glossinessDistance, material.glossinessRays, material.kR, level, k, w, hit);
+        emit(next, wave.origin[i], constructRefractedRay(hit), hit.normal.scale(-1), material.glossinessRefrerectedtRadius,
+                material.glossinessRefrerectedtDistance, material.glossinessRefrerectedtRays, material.kT, level, k, w, hit);
+        return color;
+    }
+
+    /**
+     * Emits the rays of a reflection or refraction beam into the next wave - as
+     * {@link SimpleRayTracer} traces them: a single ray, or rays sampled around it whose
+     * contributions are averaged
+     *
+     * @param next       the next wave
+     * @param origin     the index of the primary ray
+     * @param baseRay    the reflected or refracted ray
+     * @param hemiNormal the normal of the hemisphere of the beam
+     * @param radius     the radius of the sampling disk
+     * @param distance   the distance of the sampling disk
+     * @param rays       the amount of sampled rays
+     * @param kX         the reflection or transparency coefficient
+     * @param level      the recursion level of the shaded ray
+     * @param k          the attenuation factor of the shaded path
+     * @param w          the weight of the shaded ray
+     * @param hit        the shaded intersection
+     */
+    private void emit(Wave next, int origin, Ray baseRay, Vector hemiNormal, double radius, double distance, int rays,
+                      Double3 kX, int level, Double3 k, Double3 w, Intersection hit) {
+        Double3 kkx = k.product(kX);
+        if (kkx.lowerThan(MIN_CALC_COLOR_K)) return;
+        Double3 weight = w.product(kX);
+        double survival = survivalProbability(kkx);
+        if (survival < 1) { // the surviving rays are weighted up - the expected color is kept
+            weight = weight.reduce(survival);
+            kkx = kkx.reduce(survival);
+        }
+        if (radius <= 0 && rays <= 1) {
+            if (survives(survival)) next.add(origin, baseRay, weight, kkx, level - 1);
+            return;
+        }
+
+        List<Ray> rayList = raySampler.sample(baseRay, hemiNormal, radius, distance, rays);
+        rayList.removeIf(r -> r.getDirection().dotProduct(hemiNormal) * hit.dotProductRayNormal > 0);
+        if (rayList.isEmpty()) return;
+        Double3 sampleWeight = weight.reduce(rayList.size());
+        for (Ray r : rayList)
+            if (survives(survival)) next.add(origin, r, sampleWeight, kkx, level - 1);
+    }
+
+    /**
+     * Stage task of a range of a wave
+     */
+    @FunctionalInterface
+    private interface ChunkTask {
+        /**
+         * Processes a range of rays of a wave
+         *
+         * @param from the first ray (inclusive)
+         * @param to   the last ray (exclusive)
+         */
+        void run(int from, int to);
+    }
+
+    /**
+     * Runs a stage over a wave - the chunks of the wave are processed in parallel
+     *
+     * @param size the amount of rays in the wave
+     * @param task the stage task
+     */
+    private static void forEachChunk(int size, ChunkTask task) {
+        int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (chunks == 1) task.run(0, size);
+        else IntStream.range(0, chunks).parallel()
+                .forEach(c -> task.run(c * CHUNK_SIZE, Math.min(size, (c + 1) * CHUNK_SIZE)));
+    }
+}
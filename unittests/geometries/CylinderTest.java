@@ -3,6 +3,8 @@ package geometries;
 import org.junit.jupiter.api.Test;
 import primitives.*;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -245,4 +247,60 @@ class CylinderTest {
         var result05 = cylinder.calculateIntersections(ray05, maxDistance);
         assertNull(result05, "Expected no intersection points");
     }
+
+    /**
+     * Creates a point in the frame of the tilted cylinder of {@link #testIntersectionsOrder()} -
+     * its axis starts at (1,1,1) in the direction (1,2,2)
+     *
+     * @param t the distance along the axis
+     * @param a the distance along the first orthogonal direction (2,1,-2)
+     * @param b the distance along the second orthogonal direction (-2,2,-1)
+     * @return the point
+     */
+    private static Point at(double t, double a, double b) {
+        return new Point(1 + (t + 2 * a - 2 * b) / 3, 1 + (2 * t + a + 2 * b) / 3, 1 + (2 * t - 2 * a - b) / 3);
+    }
+
+    /**
+     * Test method for {@link geometries.Cylinder#calculateIntersections(primitives.Ray)}.
+     * The intersections of a tilted cylinder must be ordered by the distance from the ray head.
+     */
+    @Test
+    void testIntersectionsOrder() {
+        Cylinder cylinder = new Cylinder(2, new Ray(new Point(1, 1, 1), new Vector(1, 2, 2)), 6);
+        Vector axis = new Vector(1, 2, 2), across = new Vector(2, 1, -2);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a ray along the axis through both caps, and in the opposite direction
+        assertEquals(List.of(at(0, 0, 0), at(6, 0, 0)), cylinder.findIntersections(new Ray(at(-3, 0, 0), axis)),
+                "wrong intersections through the caps");
+        assertEquals(List.of(at(6, 0, 0), at(0, 0, 0)),
+                cylinder.findIntersections(new Ray(at(9, 0, 0), axis.scale(-1))),
+                "wrong intersections through the caps in the opposite direction");
+        // TC02: a ray through the side and then the top cap, and in the opposite direction
+        assertEquals(List.of(at(3, -2, 0), at(6, 1, 0)),
+                cylinder.findIntersections(new Ray(at(0, -5, 0), at(3, -2, 0).subtract(at(0, -5, 0)))),
+                "wrong intersections through the side and the cap");
+        assertEquals(List.of(at(6, 1, 0), at(3, -2, 0)),
+                cylinder.findIntersections(new Ray(at(9, 4, 0), at(3, -2, 0).subtract(at(9, 4, 0)))),
+                "wrong intersections through the cap and the side");
+        // TC03: a ray across the side through the axis
+        assertEquals(List.of(at(3, -2, 0), at(3, 2, 0)), cylinder.findIntersections(new Ray(at(3, -5, 0), across)),
+                "wrong intersections through the side");
+        // TC04: a ray starting inside hits the side, or the top cap, once
+        assertEquals(List.of(at(3, 2, 0)), cylinder.findIntersections(new Ray(at(3, 0, 0), across)),
+                "wrong intersection from inside through the side");
+        assertEquals(List.of(at(6, 0, 0)), cylinder.findIntersections(new Ray(at(3, 0, 0), axis)),
+                "wrong intersection from inside through the cap");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a ray tangent to the side
+        assertNull(cylinder.findIntersections(new Ray(at(3, -5, 2), across)), "intersection of a tangent ray");
+        // TC11: a ray entering through the rim of the top cap
+        assertEquals(List.of(at(6, 2, 0), at(2, -2, 0)),
+                cylinder.findIntersections(new Ray(at(8, 4, 0), at(2, -2, 0).subtract(at(8, 4, 0)))),
+                "wrong intersections through the rim");
+        // TC12: a ray parallel to the axis outside the radius
+        assertNull(cylinder.findIntersections(new Ray(at(-1, 3, 0), axis)), "intersection of a ray outside");
+    }
 }
@@ -3,6 +3,14 @@ package geometries;
 import org.junit.jupiter.api.Test;
 import primitives.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -67,4 +75,414 @@ class GeometriesTest {
         geo.add(plane, triangle, sphere);
         assertEquals(4, geo.findIntersections(ray).size(), "all the shapes should be intersected");
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates a grid of spheres and triangles
+     *
+     * @return the geometries
+     */
+    private static Geometries createGrid() {
+        Geometries geometries = new Geometries(new Plane(new Point(0, 0, -50), new Vector(0, 0, 1)));
+        for (int i = 0; i < 10; ++i)
+            for (int j = 0; j < 10; ++j)
+                geometries.add(new Sphere(2, new Point(i * 10, j * 10, 0)),
+                        new Triangle(new Point(i * 10, j * 10, -10), new Point(i * 10 + 5, j * 10, -10),
+                                new Point(i * 10, j * 10 + 5, -10)));
+        return geometries;
+    }
+
+    /**
+     * Test method for {@link geometries.Geometries#buildBVH()} with the persistent BVH cache.
+     *
+     * @throws IOException if the temporary directory cannot be created
+     */
+    @Test
+    void testBvhCache() throws IOException {
+        Path directory = Files.createTempDirectory("bvh");
+        Geometries.setBvhCacheDirectory(directory);
+        try {
+            Geometries built = createGrid();
+            built.buildBVH();
+            // TC01: the built BVH is stored in the cache
+            try (var files = Files.list(directory)) {
+                assertEquals(1, files.count(), "the BVH was not stored");
+            }
+
+            // TC02: a BVH restored from the cache gives the same intersections
+            Geometries restored = createGrid();
+            restored.buildBVH();
+            Geometries plain = createGrid();
+            for (int i = 0; i < 100; i += 3)
+                for (int j = 0; j < 100; j += 3) {
+                    Ray ray = new Ray(new Point(i, j, 20), new Vector(0.1, 0.2, -1));
+                    int expected = plain.calculateIntersections(ray).size();
+                    assertEquals(expected, restored.calculateIntersections(ray).size(), "wrong restored BVH");
+                    assertEquals(expected, built.calculateIntersections(ray).size(), "wrong built BVH");
+                }
+
+            // TC03: a cache entry which can't be written is skipped - the BVH is built anyway
+            Path notDirectory = directory.resolve("file");
+            Files.createFile(notDirectory);
+            Geometries.setBvhCacheDirectory(notDirectory.resolve("cache"));
+            Geometries uncached = createGrid();
+            assertDoesNotThrow(uncached::buildBVH, "failed storing the cache entry");
+            Ray ray = new Ray(new Point(0, 0, 20), new Vector(0, 0, -1));
+            assertEquals(plain.calculateIntersections(ray).size(), uncached.calculateIntersections(ray).size(),
+                    "wrong BVH without the cache");
+        } finally {
+            Geometries.setBvhCacheDirectory(null);
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Test method for {@link geometries.Geometries#setPolygonTriangulation(boolean)}.
+     *
+     * @throws IOException never - the fan is written to memory
+     */
+    @Test
+    void testPolygonTriangulation() throws IOException {
+        Geometries triangulated = new Geometries().setPolygonTriangulation(true);
+        Geometries plain = new Geometries();
+        Material material = new Material().setKD(0.3).setShininess(7);
+        Color emission = new Color(10, 20, 30);
+        for (int i = 0; i < 10; ++i) {
+            Point[] hexagon = new Point[6];
+            for (int k = 0; k < 6; ++k)
+                hexagon[k] = new Point(i * 7 + 3 * Math.cos(k * Math.PI / 3), 3 * Math.sin(k * Math.PI / 3), -i);
+            triangulated.add(new Geometries(new Polygon(hexagon).setMaterial(material).setEmission(emission)));
+            plain.add(new Polygon(hexagon));
+        }
+        triangulated.buildBVH();
+        plain.buildBVH();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the triangles are hit where the polygons are, with the polygon material and emission
+        for (double x = -4; x < 72; x += 0.37)
+            for (double y = -4; y < 4; y += 0.53) {
+                Ray ray = new Ray(new Point(x, y, 20), new Vector(0.01, 0.02, -1));
+                var expected = plain.calculateIntersections(ray);
+                var actual = triangulated.calculateIntersections(ray);
+                if (expected == null) assertNull(actual, "unexpected intersection");
+                else {
+                    assertNotNull(actual, "missing intersection");
+                    assertEquals(expected.size(), actual.size(), "wrong amount of intersections");
+                    var hit = actual.getFirst();
+                    assertInstanceOf(Triangle.class, hit.geometry, "polygon was not triangulated");
+                    assertSame(material, hit.material, "wrong triangle material");
+                    assertEquals(emission.getRgb(), hit.geometry.getEmission().getRgb(), "wrong triangle emission");
+                }
+            }
+
+        Polygon square = new Polygon(new Point(-1, -1, 0), new Point(1, -1, 0), new Point(1, 1, 0), new Point(-1, 1, 0));
+        Geometries fan = new Geometries(square).setPolygonTriangulation(true);
+        fan.buildBVH();
+        Vector down = new Vector(0, 0, -1);
+        // =============== Boundary Values Tests ==================
+        // TC10: a ray through the diagonal shared by the triangles hits exactly one of them
+        for (Point head : new Point[]{new Point(0, 0, 5), new Point(0.5, 0.5, 5), new Point(-0.9, -0.9, 5)}) {
+            var hits = fan.calculateIntersections(new Ray(head, down));
+            assertNotNull(hits, "a ray through the diagonal missed the triangles");
+            assertEquals(1, hits.size(), "a ray through the diagonal hit both triangles");
+        }
+        // TC11: a ray through every diagonal of a hexagon fan hits exactly one triangle
+        for (int k = 2; k < 5; ++k) {
+            Point head = new Point(0.5 * 3 * Math.cos(k * Math.PI / 3) + 1.5, 0.5 * 3 * Math.sin(k * Math.PI / 3), 20);
+            var hits = triangulated.calculateIntersections(new Ray(head, down));
+            assertNotNull(hits, "a ray through a hexagon diagonal missed the triangles");
+            assertEquals(1, hits.size(), "a ray through a hexagon diagonal hit two triangles");
+        }
+        // TC12: a ray through the fan vertex misses, as it misses the polygon
+        assertNull(square.calculateIntersections(new Ray(new Point(-1, -1, 5), down)), "polygon vertex hit");
+        assertNull(fan.calculateIntersections(new Ray(new Point(-1, -1, 5), down)), "fan vertex hit");
+        // TC13: a ray through the outer edge of the last triangle misses, as it misses the polygon
+        assertNull(fan.calculateIntersections(new Ray(new Point(-1, 0, 5), down)), "polygon edge hit");
+
+        // TC14: the fan written and read by the codec keeps its closed diagonal
+        var hits = roundTrip(fan).calculateIntersections(new Ray(new Point(0, 0, 5), down));
+        assertNotNull(hits, "a ray through the restored diagonal missed the triangles");
+        assertEquals(1, hits.size(), "a ray through the restored diagonal hit both triangles");
+    }
+
+    /**
+     * Creates the geometries of {@link #testClipBounds()} - a few of them are unbounded, and two
+     * of these are entirely out of the bounds (-50,-50,-50) - (50,50,50)
+     *
+     * @return new geometries
+     */
+    private static Intersectable[] clipTestItems() {
+        return new Intersectable[]{
+                new Sphere(5, new Point(0, 0, 0)),
+                new Sphere(5, new Point(20, 10, -30)),
+                new Plane(new Point(0, -20, 0), new Vector(0, 1, 0)),
+                new Plane(new Point(0, 0, -40), new Vector(1, 1, 3)),
+                new Tube(2, new Ray(new Point(0, 30, 0), new Vector(1, 0, 0))),
+                new Tube(3, new Ray(new Point(-10, 0, 10), new Vector(1, 2, -2))),
+                new Cylinder(3, new Ray(new Point(10, -20, 0), new Vector(0, 1, 0)), 15),
+                new Plane(new Point(0, 200, 0), new Vector(0, 1, 0)),                   // out of bounds
+                new Tube(2, new Ray(new Point(0, 0, 300), new Vector(1, 0, 0)))        // out of bounds
+        };
+    }
+
+    /**
+     * Test method for {@link geometries.Geometries#setClipBounds(AABB)}.
+     */
+    @Test
+    void testClipBounds() {
+        AABB bounds = new AABB(new Point(-50, -50, -50), new Point(50, 50, 50));
+        Geometries clipped = new Geometries(clipTestItems()).setClipBounds(bounds);
+        clipped.buildBVH();
+        Geometries plain = new Geometries(clipTestItems());
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: all the unbounded geometries are clipped or culled
+        assertTrue(clipped.getInfinite().isEmpty(), "unbounded geometries are not clipped");
+
+        // TC02: a ray hits the clipped plane
+        Vector down = new Vector(0, -1, 0);
+        assertEquals(List.of(new Point(0, -20, 10)), clipped.findIntersections(new Ray(new Point(0, -10, 10), down)),
+                "wrong intersection of the clipped plane");
+        // TC03: a ray hits the clipped tube twice - and nothing else within the distance
+        Ray throughTube = new Ray(new Point(10, 40, 0), down);
+        var tubeHits = clipped.calculateIntersections(throughTube, 15);
+        assertNotNull(tubeHits, "missing intersections of the clipped tube");
+        assertEquals(2, tubeHits.size(), "wrong amount of intersections of the clipped tube");
+        assertEquals(new Point(10, 32, 0), throughTube.findClosestIntersection(tubeHits).point,
+                "wrong intersection of the clipped tube");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a grazing ray - along the clipped plane
+        assertNull(clipped.findIntersections(new Ray(new Point(0, -20, 10), new Vector(1, 0, 0))),
+                "intersection of a ray in the clipped plane");
+        // TC11: hits on a face and on a corner of the bounds are kept
+        assertEquals(List.of(new Point(50, -20, 0)), clipped.findIntersections(new Ray(new Point(50, 0, 0), down)),
+                "hit on a face of the bounds is clipped");
+        assertEquals(List.of(new Point(50, -20, 50)), clipped.findIntersections(new Ray(new Point(50, 0, 50), down)),
+                "hit on a corner of the bounds is clipped");
+        // TC12: a hit just beyond the bounds is clipped
+        Ray beyond = new Ray(new Point(50.5, 0, 0), down);
+        assertNotNull(plain.findIntersections(beyond), "missing intersection of the unclipped plane");
+        assertNull(clipped.findIntersections(beyond), "hit beyond the bounds is not clipped");
+
+        // TC13: segments within the bounds hit the same points with and without clipping
+        int hits = IntersectionCrossCheck.assertSameIntersections(plain, clipped,
+                new AABB(new Point(-45, -45, -45), new Point(45, 45, 45)), 11, 3000);
+        assertTrue(hits > 100, "too few segments hit the geometries");
+    }
+
+    /**
+     * Writes a geometry by the codec and reads it back
+     *
+     * @param item the geometry
+     * @return the restored geometry
+     * @throws IOException never - the geometry is written to memory
+     */
+    private static Intersectable roundTrip(Intersectable item) throws IOException {
+        GeometryCodec codec = new GeometryCodec();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        codec.write(new DataOutputStream(bytes), item);
+        return new GeometryCodec(codec.getMaterials()).read(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    /**
+     * Test method for {@link geometries.GeometryCodec#read(ByteBuffer)} of the geometries clipped by
+     * {@link geometries.Geometries#setClipBounds(AABB)}.
+     *
+     * @throws IOException never - the geometries are written to memory
+     */
+    @Test
+    void testClipBoundsCodec() throws IOException {
+        AABB bounds = new AABB(new Point(-50, -50, -50), new Point(50, 50, 50));
+        Plane plane = new Plane(new Point(0, -20, 0), new Vector(0, 1, 0));
+        Tube tube = new Tube(2, new Ray(new Point(0, 30, 0), new Vector(1, 0, 0)));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a clipped plane and a clipped tube keep their clipped boxes
+        for (Intersectable item : new Intersectable[]{plane, tube}) {
+            assertTrue(item.clipBoundingBox(bounds), "geometry within the bounds culled");
+            AABB restored = roundTrip(item).getBoundingBox();
+            assertNotNull(restored, "the clipped box was lost");
+            assertEquals(item.getBoundingBox().getMin(), restored.getMin(), "wrong clipped box");
+            assertEquals(item.getBoundingBox().getMax(), restored.getMax(), "wrong clipped box");
+        }
+
+        // TC02: a restored BVH holds the clipped geometries and finds their intersections
+        Geometries scene = new Geometries(new Sphere(5, Point.ZERO),
+                new Plane(new Point(0, -20, 0), new Vector(0, 1, 0)),
+                new Tube(2, new Ray(new Point(0, 30, 0), new Vector(1, 0, 0)))).setClipBounds(bounds);
+        scene.buildBVH();
+        Geometries restored = (Geometries) roundTrip(scene);
+        assertTrue(restored.getInfinite().isEmpty(), "the clipped geometries are not in the BVH");
+        Ray ray = new Ray(new Point(10, 0, 0), new Vector(0, 1, 0));
+        assertEquals(List.of(new Point(10, 28, 0), new Point(10, 32, 0)),
+                restored.findIntersections(ray), "wrong intersections of the clipped tube");
+        assertEquals(List.of(new Point(10, -20, 0)), restored.findIntersections(new Ray(new Point(10, 0, 0),
+                new Vector(0, -1, 0))), "wrong intersection of the clipped plane");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: an unclipped plane stays unbounded
+        assertNull(roundTrip(new Plane(new Point(0, -20, 0), new Vector(0, 1, 0))).getBoundingBox(),
+                "an unclipped plane got a box");
+    }
+
+    /**
+     * Test method for {@link geometries.Geometries#refit()}.
+     */
+    @Test
+    void testRefit() {
+        Geometries prototype = new Geometries(new Sphere(1, new Point(0, 0, 0)),
+                new Triangle(new Point(-1, -1, 0), new Point(1, -1, 0), new Point(0, 2, 0)));
+        prototype.buildBVH();
+        Instance[] instances = new Instance[100];
+        Geometries scene = new Geometries();
+        for (int i = 0; i < instances.length; ++i)
+            scene.add(instances[i] = new Instance(prototype, Transform.translation(i % 10 * 5, i / 10 * 5, 0)));
+        scene.add(new Plane(new Point(0, 0, -10), new Vector(0, 0, 1)));
+
+        // =============== Boundary Values Tests ==================
+        // TC10: refit before the BVH is built
+        assertThrows(IllegalStateException.class, scene::refit, "refit before building the BVH");
+        scene.buildBVH();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a small motion is refitted, the moved instances are hit
+        for (int i = 0; i < instances.length; ++i)
+            instances[i].setTransform(Transform.translation(i % 10 * 5 + 0.5, i / 10 * 5, 1));
+        assertFalse(scene.refit(), "small motion should be refitted");
+        assertRefitted(scene, 0.5, 1);
+
+        // TC02: a shuffle degrades the tree and makes it rebuilt, the moved instances are hit
+        for (int i = 0; i < instances.length; ++i) {
+            int j = (i * 37) % instances.length; // a permutation
+            instances[i].setTransform(Transform.translation(j % 10 * 5, j / 10 * 5, 2));
+        }
+        assertTrue(scene.refit(), "shuffled instances should be rebuilt");
+        assertRefitted(scene, 0, 2);
+
+        // TC03: a huge motion of an instance degrades the tree and makes it rebuilt
+        instances[55].setTransform(Transform.translation(1000, 1000, 1000));
+        assertTrue(scene.refit(), "degraded tree should be rebuilt");
+
+        // TC04: without motion the rebuilt tree is refitted
+        assertFalse(scene.refit(), "unchanged tree should be refitted");
+    }
+
+    /**
+     * Checks that rays through the centers of the (moved) grid of instances hit them
+     *
+     * @param scene the geometries of the instances
+     * @param dx    the x offset of the grid
+     * @param z     the z offset of the grid
+     */
+    private static void assertRefitted(Geometries scene, double dx, double z) {
+        for (int i = 0; i < 10; ++i)
+            for (int j = 0; j < 10; ++j) {
+                Ray ray = new Ray(new Point(i * 5 + dx, j * 5, 20), new Vector(0, 0, -1));
+                var hit = ray.findClosestIntersection(scene.calculateIntersections(ray));
+                assertNotNull(hit, "missing intersection");
+                assertEquals(z + 1, hit.point.getZ(), 1e-9, "wrong intersection of a moved instance");
+            }
+    }
+
+    /**
+     * Test method for {@link geometries.Geometries#setBvhWidth(int)}.
+     */
+    @Test
+    void testBvhWidth() {
+        Geometries binary = createGrid();
+        binary.buildBVH();
+
+        // =============== Boundary Values Tests ==================
+        // TC10: unsupported widths
+        assertThrows(IllegalArgumentException.class, () -> new Geometries().setBvhWidth(3), "width 3");
+        assertThrows(IllegalArgumentException.class, () -> new Geometries().setBvhWidth(16), "width 16");
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the wide trees find the intersections of the binary tree
+        for (int width : new int[]{4, 8}) {
+            Geometries wide = createGrid().setBvhWidth(width);
+            wide.buildBVH();
+            for (int i = 0; i < 400; ++i) {
+                Ray ray = new Ray(new Point(i % 20 * 5 - 3, i / 20 * 5 - 3, 30),
+                        new Vector(0.01 * (i % 7 - 3), 0.01 * (i % 5 - 2), -1));
+                var expected = binary.calculateIntersections(ray, 60);
+                var actual = wide.calculateIntersections(ray, 60);
+                assertEquals(expected == null ? 0 : expected.size(), actual == null ? 0 : actual.size(),
+                        "wrong amount of intersections of width " + width);
+                if (expected != null)
+                    assertEquals(ray.findClosestIntersection(expected).point,
+                            ray.findClosestIntersection(actual).point, "wrong closest intersection of width " + width);
+            }
+        }
+
+        // TC02: a refitted wide tree finds the moved geometries
+        Geometries prototype = new Geometries(new Sphere(1, new Point(0, 0, 0)));
+        prototype.buildBVH();
+        Instance[] instances = new Instance[100];
+        Geometries scene = new Geometries().setBvhWidth(4);
+        for (int i = 0; i < instances.length; ++i)
+            scene.add(instances[i] = new Instance(prototype, Transform.translation(i % 10 * 5, i / 10 * 5, 0)));
+        scene.buildBVH();
+        for (int i = 0; i < instances.length; ++i)
+            instances[i].setTransform(Transform.translation(i % 10 * 5 + 0.5, i / 10 * 5, 1));
+        assertFalse(scene.refit(), "small motion should be refitted");
+        assertRefitted(scene, 0.5, 1);
+
+        // TC03: nested wide trees (of an instanced wide prototype) traced by several threads at once
+        Geometries[] nested = new Geometries[2];
+        for (int n = 0; n < 2; ++n) {
+            Geometries spheres = new Geometries().setBvhWidth(n == 0 ? 2 : 8);
+            for (int i = 0; i < 100; ++i) spheres.add(new Sphere(2, new Point(i % 10 * 10, i / 10 * 10, 0)));
+            spheres.buildBVH();
+            nested[n] = new Geometries().setBvhWidth(n == 0 ? 2 : 4);
+            for (int i = 0; i < 8; ++i) nested[n].add(new Instance(spheres, Transform.translation(i * 200, 0, 0)));
+            nested[n].buildBVH();
+        }
+        java.util.stream.IntStream.range(0, 4000).parallel().forEach(i -> {
+            Ray ray = new Ray(new Point(i % 400 * 4 - 3, i / 400 * 10 + 1, 30), new Vector(0, 0, -1));
+            var expected = nested[0].calculateIntersections(ray);
+            var actual = nested[1].calculateIntersections(ray);
+            assertEquals(expected == null ? 0 : expected.size(), actual == null ? 0 : actual.size(),
+                    "wrong amount of intersections of nested wide trees");
+        });
+    }
+
+    /**
+     * Test method for {@link geometries.Geometries#calculatePacketIntersections(Ray[], double)}.
+     */
+    @Test
+    void testPacketIntersections() {
+        Geometries geometries = createGrid();
+        geometries.buildBVH();
+        Point eye = new Point(45, 45, 100);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: coherent packets (common origin) find the intersections of the single rays
+        // TC02: a packet of diverging rays (the directions change sign within the packet)
+        for (double spread : new double[]{0.2, 3}) {
+            Ray[] rays = new Ray[64];
+            for (int k = 0; k < rays.length; ++k)
+                rays[k] = new Ray(eye, new Vector((k % 8 - 3.5) * spread, (k / 8 - 3.5) * spread, -10));
+            var packet = geometries.calculatePacketIntersections(rays, Double.POSITIVE_INFINITY);
+            for (int k = 0; k < rays.length; ++k) {
+                var single = geometries.calculateIntersections(rays[k]);
+                assertEquals(single == null ? 0 : single.size(), packet.get(k) == null ? 0 : packet.get(k).size(),
+                        "wrong amount of packet intersections");
+                if (single != null)
+                    assertEquals(rays[k].findClosestIntersection(single).point,
+                            rays[k].findClosestIntersection(packet.get(k)).point, "wrong closest packet intersection");
+            }
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a packet limited by a distance which reaches only the spheres
+        Ray[] rays = {new Ray(eye, new Vector(0, 0, -1)), new Ray(eye, new Vector(0.01, 0, -1))};
+        var packet = geometries.calculatePacketIntersections(rays, 101);
+        for (int k = 0; k < rays.length; ++k)
+            assertEquals(geometries.calculateIntersections(rays[k], 101) == null, packet.get(k) == null,
+                    "wrong packet intersections within a distance");
+    }
+}
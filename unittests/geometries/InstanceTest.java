@@ -0,0 +1,123 @@
+package geometries;
+
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for geometries.Instance class.
+ */
+class InstanceTest {
+
+    /**
+     * Default constructor to satisfy JavaDoc generator
+     */
+    InstanceTest() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * Creates the shared geometry - a sphere and a triangle, with a built BVH
+     *
+     * @return the shared geometry
+     */
+    private static Geometries createPrototype() {
+        Geometries prototype = new Geometries(
+                new Sphere(1, new Point(0, 1, 0)),
+                new Triangle(new Point(-2, 0, -2), new Point(2, 0, -2), new Point(0, 3, -2)));
+        prototype.buildBVH();
+        return prototype;
+    }
+
+    /**
+     * Creates the geometry of an instance explicitly
+     *
+     * @param transform a transformation with a uniform scaling
+     * @param scale     the scaling factor of the transformation
+     * @return the transformed geometry
+     */
+    private static Geometries createTransformed(Transform transform, double scale) {
+        return new Geometries(
+                new Sphere(scale, transform.transform(new Point(0, 1, 0))),
+                new Triangle(transform.transform(new Point(-2, 0, -2)), transform.transform(new Point(2, 0, -2)),
+                        transform.transform(new Point(0, 3, -2))));
+    }
+
+    /**
+     * Test method for {@link geometries.Instance#calculateIntersections(primitives.Ray, double)}.
+     */
+    @Test
+    void testCalculateIntersections() {
+        Transform transform = Transform.scaling(2).then(Transform.rotation(Vector.AXIS_Y, 45))
+                .then(Transform.translation(10, 0, -5));
+        Instance instance = new Instance(createPrototype(), transform);
+        instance.setBoundingBox();
+        Geometries expected = createTransformed(transform, 2);
+        Random random = new Random(17);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: random rays hit the instance where they hit the transformed geometry,
+        // with the transformed normals
+        int hits = 0;
+        for (int i = 0; i < 2000; ++i) {
+            Point head = new Point(random.nextDouble(0, 20), random.nextDouble(-5, 10), random.nextDouble(-15, 5));
+            Point target = new Point(random.nextDouble(6, 14), random.nextDouble(-1, 6), random.nextDouble(-9, -1));
+            if (head.equals(target)) continue;
+            Ray ray = new Ray(head, target.subtract(head));
+            double maxDistance = random.nextBoolean() ? Double.POSITIVE_INFINITY : random.nextDouble(1, 20);
+            var expectedHit = ray.findClosestIntersection(expected.calculateIntersections(ray, maxDistance));
+            var actualHit = ray.findClosestIntersection(instance.calculateIntersections(ray, maxDistance));
+            if (expectedHit == null) {
+                assertNull(actualHit, "unexpected intersection");
+                continue;
+            }
+            ++hits;
+            assertNotNull(actualHit, "missing intersection");
+            assertEquals(0, expectedHit.point.distance(actualHit.point), 1e-9, "wrong intersection point");
+            assertEquals(1, expectedHit.geometry.getNormal(expectedHit.point).dotProduct(actualHit.normal), 1e-9, "wrong normal");
+        }
+        assertTrue(hits > 100, "too few rays hit the instance");
+
+        // TC02: the instance bounding box contains the transformed geometry
+        AABB box = instance.getBoundingBox();
+        expected.setBoundingBox();
+        AABB expectedBox = expected.getBoundingBox();
+        for (int axis = 0; axis < 3; ++axis) {
+            assertTrue(box.getMin().get(axis) <= expectedBox.getMin().get(axis) + 1e-9, "wrong bounding box");
+            assertTrue(box.getMax().get(axis) >= expectedBox.getMax().get(axis) - 1e-9, "wrong bounding box");
+        }
+    }
+
+    /**
+     * Test method for {@link geometries.Instance} in a two-level BVH.
+     */
+    @Test
+    void testTwoLevelBvh() {
+        Geometries prototype = createPrototype();
+        Geometries instances = new Geometries();
+        Geometries plain = new Geometries();
+        for (int i = 0; i < 10; ++i)
+            for (int j = 0; j < 10; ++j) {
+                Transform transform = Transform.rotation(Vector.AXIS_Y, 17 * i + 5 * j)
+                        .then(Transform.translation(i * 8, 0, -j * 8));
+                instances.add(new Instance(prototype, transform));
+                plain.add(createTransformed(transform, 1));
+            }
+        instances.buildBVH();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the instances BVH gives the same intersections as the explicit geometries
+        for (double x = -4; x < 80; x += 1.3)
+            for (double y = -1; y < 4; y += 0.7) {
+                Ray ray = new Ray(new Point(x, y, 20), new Vector(0.1, -0.05, -1));
+                var expected = ray.findClosestIntersection(plain.calculateIntersections(ray));
+                var actual = ray.findClosestIntersection(instances.calculateIntersections(ray));
+                if (expected == null) assertNull(actual, "unexpected intersection");
+                else {
+                    assertNotNull(actual, "missing intersection");
+                    assertEquals(0, expected.point.distance(actual.point), 1e-9, "wrong intersection point");
+                }
+            }
+    }
+}
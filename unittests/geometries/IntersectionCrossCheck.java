@@ -0,0 +1,70 @@
+package geometries;
+
+import primitives.Point;
+import primitives.Ray;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Randomized cross-check of two implementations of intersections - a safety net for the
+ * optimized intersection tests, on top of their equivalence partitions and boundary values
+ * tests. The rays are segments between two random points of a region, so they may start and
+ * end anywhere around the geometries.
+ */
+final class IntersectionCrossCheck {
+
+    /**
+     * Don't let anyone instantiate this class.
+     */
+    private IntersectionCrossCheck() {
+    }
+
+    /**
+     * Checks that two geometries have the same intersections with random segments - the same
+     * amount and the same closest point
+     *
+     * @param expected the reference geometry
+     * @param actual   the tested geometry
+     * @param region   the region of the ends of the segments
+     * @param seed     the seed of the random segments
+     * @param count    the amount of the segments
+     * @return the amount of the segments which intersect the geometries
+     */
+    static int assertSameIntersections(Intersectable expected, Intersectable actual, AABB region, long seed, int count) {
+        Random random = new Random(seed);
+        int hits = 0;
+        for (int i = 0; i < count; ++i) {
+            Point head = randomPoint(region, random), end = randomPoint(region, random);
+            if (head.equals(end)) continue;
+            Ray ray = new Ray(head, end.subtract(head));
+            double length = head.distance(end);
+            var expectedHits = expected.calculateIntersections(ray, length);
+            var actualHits = actual.calculateIntersections(ray, length);
+            if (expectedHits == null) {
+                assertNull(actualHits, "unexpected intersection of " + ray);
+                continue;
+            }
+            ++hits;
+            assertNotNull(actualHits, "missing intersection of " + ray);
+            assertEquals(expectedHits.size(), actualHits.size(), "wrong amount of intersections of " + ray);
+            assertEquals(ray.findClosestIntersection(expectedHits).point, ray.findClosestIntersection(actualHits).point,
+                    "wrong closest intersection of " + ray);
+        }
+        return hits;
+    }
+
+    /**
+     * Creates a random point of a region
+     *
+     * @param region the region
+     * @param random the random generator
+     * @return the point
+     */
+    private static Point randomPoint(AABB region, Random random) {
+        Point min = region.getMin(), max = region.getMax();
+        return new Point(random.nextDouble(min.getX(), max.getX()), random.nextDouble(min.getY(), max.getY()),
+                random.nextDouble(min.getZ(), max.getZ()));
+    }
+}
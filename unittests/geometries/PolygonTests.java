@@ -171,4 +171,64 @@ class PolygonTests {
         var result03 = polygon.calculateIntersections(ray03, maxDistance);
         assertNull(result03, "Expected no intersection points");
     }
+
+    /**
+     * Test method for {@link geometries.Polygon#calculateIntersections(primitives.Ray, double)}.
+     * The edge planes test of a tilted convex hexagon - its plane is z = 1 + x / 6.
+     */
+    @Test
+    void testEdgePlanesIntersections() {
+        Point[] hexagon = new Point[6];
+        for (int i = 0; i < 6; ++i)
+            hexagon[i] = new Point(3 * Math.cos(i * Math.PI / 3), 2 * Math.sin(i * Math.PI / 3), 1 + 0.5 * Math.cos(i * Math.PI / 3));
+        Polygon polygon = new Polygon(hexagon);
+        Point center = new Point(0, 0, 1);
+        Point above = new Point(0, 0, 5);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a ray from above hits inside the hexagon
+        assertEquals(List.of(center), polygon.findIntersections(new Ray(above, new Vector(0, 0, -1))),
+                "wrong intersection from above");
+        // TC02: a ray from below hits as well
+        assertEquals(List.of(new Point(1.2, -0.5, 1.2)),
+                polygon.findIntersections(new Ray(new Point(1.2, -0.5, -4), new Vector(0, 0, 1))),
+                "wrong intersection from below");
+        // TC03: an oblique ray hits near a vertex, inside both of its edges
+        Point nearVertex = new Point(2.7, 0.1, 1.45);
+        assertEquals(List.of(nearVertex), polygon.findIntersections(new Ray(above, nearVertex.subtract(above))),
+                "wrong oblique intersection");
+        // TC04: the plane is crossed outside the hexagon, beyond an edge
+        assertNull(polygon.findIntersections(new Ray(above, new Point(0, 2.5, 1).subtract(above))),
+                "intersection beyond an edge");
+        // TC05: the plane is crossed outside the hexagon, beyond a vertex
+        assertNull(polygon.findIntersections(new Ray(above, new Point(3.6, 0, 1.6).subtract(above))),
+                "intersection beyond a vertex");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a ray through a vertex
+        assertNull(polygon.findIntersections(new Ray(above, hexagon[0].subtract(above))), "intersection on a vertex");
+        // TC11: a ray through the middle of an edge
+        assertNull(polygon.findIntersections(new Ray(above, new Point(0, Math.sqrt(3), 1).subtract(above))),
+                "intersection on an edge");
+        // TC12: a ray through the extension of an edge
+        assertNull(polygon.findIntersections(new Ray(above, new Point(3, Math.sqrt(3), 1.5).subtract(above))),
+                "intersection on an edge extension");
+        // TC13: a grazing ray - in the hexagon plane, across the hexagon
+        assertNull(polygon.findIntersections(new Ray(new Point(-4, 0, 1 - 4.0 / 6), new Vector(6, 0, 1))),
+                "intersection of a ray in the plane");
+        // TC14: a ray starting on the hexagon
+        assertNull(polygon.findIntersections(new Ray(center, new Vector(0, 0, 1))), "intersection at the ray head");
+        // TC15: the hexagon at the maximal distance, and just within it
+        assertNull(polygon.calculateIntersections(new Ray(above, new Vector(0, 0, -1)), 4),
+                "intersection at the maximal distance");
+        assertNotNull(polygon.calculateIntersections(new Ray(above, new Vector(0, 0, -1)), 4.5),
+                "missing intersection within the maximal distance");
+
+        // TC16: the edge planes test agrees with the fan of triangles of the hexagon
+        Geometries fan = new Geometries();
+        for (int i = 1; i < 5; ++i) fan.add(new Triangle(hexagon[0], hexagon[i], hexagon[i + 1]));
+        int hits = IntersectionCrossCheck.assertSameIntersections(fan, polygon,
+                new AABB(new Point(-4, -3, -1), new Point(4, 3, 3)), 7, 2000);
+        assertTrue(hits > 100, "too few segments hit the hexagon");
+    }
 }
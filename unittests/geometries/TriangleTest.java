@@ -112,4 +112,55 @@ class TriangleTest {
         var result03 = triangle.calculateIntersections(ray03, 0.5);
         assertNull(result03, "Expected no intersection points");
     }
+
+    /**
+     * Test method for {@link geometries.Triangle#calculateIntersections(primitives.Ray, double)}
+     * of the precomputed Möller–Trumbore test.
+     */
+    @Test
+    void testPrecomputedIntersections() {
+        Triangle triangle = new Triangle(new Point(0, 0, 0), new Point(4, 0, 0), new Point(0, 4, 0));
+        Vector down = new Vector(0, 0, -1);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a ray from the front side hits
+        assertEquals(List.of(new Point(1, 1, 0)), triangle.findIntersections(new Ray(new Point(1, 1, 1), down)),
+                "wrong intersection from the front side");
+        // TC02: a ray from the back side hits as well - no back face culling
+        assertEquals(List.of(new Point(1, 1, 0)),
+                triangle.findIntersections(new Ray(new Point(1, 1, -1), new Vector(0, 0, 1))),
+                "wrong intersection from the back side");
+        // TC03: an oblique ray hits
+        assertEquals(List.of(new Point(1, 1, 0)),
+                triangle.findIntersections(new Ray(new Point(3, 3, 2), new Vector(-1, -1, -1))),
+                "wrong oblique intersection");
+        // TC04: a ray pointing away from the triangle
+        assertNull(triangle.findIntersections(new Ray(new Point(1, 1, 1), new Vector(0, 0, 1))),
+                "intersection behind the ray head");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a grazing ray - in the triangle plane, across the triangle
+        assertNull(triangle.findIntersections(new Ray(new Point(-1, 1, 0), new Vector(1, 0, 0))),
+                "intersection of a ray in the plane");
+        // TC11: a nearly grazing ray still hits
+        assertEquals(List.of(new Point(1, 1, 0)),
+                triangle.findIntersections(new Ray(new Point(-1, 1, 0.01), new Vector(200, 0, -1))),
+                "wrong intersection of a nearly grazing ray");
+        // TC12: a ray through the edge opposite to the first vertex
+        assertNull(triangle.findIntersections(new Ray(new Point(2, 2, 1), down)), "intersection on the edge");
+        // TC13: a ray starting on the triangle
+        assertNull(triangle.findIntersections(new Ray(new Point(1, 1, 0), new Vector(0, 0, 1))),
+                "intersection at the ray head");
+        // TC14: the triangle at the maximal distance, and just within it
+        assertNull(triangle.calculateIntersections(new Ray(new Point(1, 1, 1), down), 1),
+                "intersection at the maximal distance");
+        assertNotNull(triangle.calculateIntersections(new Ray(new Point(1, 1, 1), down), 1.5),
+                "missing intersection within the maximal distance");
+
+        // TC15: the precomputed test agrees with the general polygon test
+        Point p1 = new Point(-1, -2, -3), p2 = new Point(4, 0, -2), p3 = new Point(0, 3, 1);
+        int hits = IntersectionCrossCheck.assertSameIntersections(new Polygon(p1, p2, p3), new Triangle(p1, p2, p3),
+                new AABB(new Point(-6, -6, -6), new Point(6, 6, 6)), 5, 2000);
+        assertTrue(hits > 100, "too few segments hit the triangle");
+    }
 }
@@ -0,0 +1,118 @@
+package lighting;
+
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Double3;
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for lighting.LightIndex class.
+ */
+class LightIndexTest {
+
+    /**
+     * Default constructor to satisfy JavaDoc generator
+     */
+    LightIndexTest() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * Returns the largest color component of the intensity of a light at a point
+     *
+     * @param light the light
+     * @param p     the point
+     * @return the largest intensity component
+     */
+    private static double peak(LightSource light, Point p) {
+        Double3 rgb = light.getIntensity(p).getRgb();
+        return Math.max(rgb.d1(), Math.max(rgb.d2(), rgb.d3()));
+    }
+
+    /**
+     * Test method for {@link lighting.PointLight#getInfluenceRadius(double)} and
+     * {@link lighting.SpotLight#getInfluenceAngle(double)}.
+     */
+    @Test
+    void testInfluence() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the intensity at the influence radius is the threshold
+        PointLight quadratic = new PointLight(new Color(100, 300, 200), Point.ZERO).setKl(0.1).setKq(0.01);
+        double r = quadratic.getInfluenceRadius(2);
+        assertEquals(2, peak(quadratic, new Point(r, 0, 0)), 1e-9, "wrong quadratic influence radius");
+        // TC02: linear attenuation only
+        PointLight linear = new PointLight(new Color(100, 300, 200), Point.ZERO).setKl(0.5);
+        r = linear.getInfluenceRadius(3);
+        assertEquals(3, peak(linear, new Point(0, r, 0)), 1e-9, "wrong linear influence radius");
+        // TC03: the intensity at the edge of the influence cone is the threshold
+        SpotLight spot = new SpotLight(new Color(400, 100, 100), Point.ZERO, new Vector(0, 0, -1))
+                .setKq(0.001).setNarrowBeam(4);
+        double angle = spot.getInfluenceAngle(100);
+        assertEquals(100, peak(spot, new Point(Math.sin(angle) * 1e-3, 0, -Math.cos(angle) * 1e-3)), 1e-6,
+                "wrong influence angle");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a light without attenuation reaches every distance
+        assertEquals(Double.POSITIVE_INFINITY, new PointLight(new Color(100, 100, 100), Point.ZERO)
+                .getInfluenceRadius(1), "unattenuated light has a finite radius");
+        // TC11: a light dimmer than the threshold reaches nothing
+        assertEquals(0, quadratic.getInfluenceRadius(500), "dim light has an influence radius");
+        // TC12: no threshold
+        assertEquals(Double.POSITIVE_INFINITY, quadratic.getInfluenceRadius(0), "zero threshold culls");
+        assertEquals(Math.PI / 2, spot.getInfluenceAngle(0), 1e-12, "zero threshold narrows the cone");
+    }
+
+    /**
+     * Test method for {@link lighting.LightIndex#lightsAt(Point)} and
+     * {@link lighting.LightIndex#reaches(LightSource, Point)}.
+     */
+    @Test
+    void testLightsAt() {
+        double threshold = 1;
+        List<LightSource> lights = new ArrayList<>();
+        for (int i = 0; i < 8; ++i)
+            for (int j = 0; j < 8; ++j) {
+                Point position = new Point(i * 20, j * 20, 10);
+                Color intensity = new Color(20 + 10 * i, 50, 20 + 5 * j);
+                lights.add((i + j) % 3 == 0
+                        ? new SpotLight(intensity, position, new Vector(i - 4, j - 4, -8)).setKq(0.01).setNarrowBeam(3)
+                        : new PointLight(intensity, position).setKl(0.05).setKq(0.005));
+            }
+        DirectionalLight sun = new DirectionalLight(new Color(50, 50, 50), new Vector(0, 0, -1));
+        PointLight unattenuated = new PointLight(new Color(5, 5, 5), new Point(500, 500, 500));
+        PointLight dim = new PointLight(new Color(0.5, 0.5, 0.5), new Point(50, 50, 0));
+        lights.addAll(List.of(sun, unattenuated, dim));
+        LightIndex index = new LightIndex(lights, threshold);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the lights reaching a point are the ones of intensity above the threshold
+        // (the sphere and cone bound of a spot light is conservative)
+        Random random = new Random(7);
+        for (int n = 0; n < 500; ++n) {
+            Point p = new Point(random.nextDouble() * 220 - 30, random.nextDouble() * 220 - 30,
+                    random.nextDouble() * 40 - 30);
+            List<LightSource> found = index.lightsAt(p);
+            for (LightSource light : lights) {
+                double intensity = peak(light, p);
+                if (intensity > threshold * (1 + 1e-9))
+                    assertTrue(found.contains(light), "light of intensity " + intensity + " culled");
+                else if (intensity < threshold * (1 - 1e-9) && !(light instanceof SpotLight))
+                    assertFalse(found.contains(light), "light of intensity " + intensity + " not culled");
+                assertEquals(found.contains(light), index.reaches(light, p), "lookup and test disagree");
+            }
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC10: the lights without finite influence reach every point, the dim light none
+        Point far = new Point(-1000, 2000, 0);
+        assertEquals(List.of(sun, unattenuated), index.lightsAt(far), "wrong lights far from the grid");
+        assertFalse(index.reaches(dim, new Point(50, 50, 0)), "dim light reaches its own position");
+        // TC11: no lights
+        assertTrue(new LightIndex(List.of(), threshold).lightsAt(Point.ZERO).isEmpty(), "lights in an empty index");
+    }
+}
@@ -0,0 +1,84 @@
+package lighting;
+
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for lighting.LightTree class.
+ */
+class LightTreeTest {
+
+    /**
+     * Default constructor to satisfy JavaDoc generator
+     */
+    LightTreeTest() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * Creates a grid of point and spot lights of different powers
+     *
+     * @return the lights
+     */
+    private static List<LightSource> createLights() {
+        List<LightSource> lights = new ArrayList<>();
+        for (int i = 0; i < 10; ++i)
+            for (int j = 0; j < 10; ++j) {
+                Point position = new Point(i * 10, j * 10, 50);
+                Color intensity = new Color(10 + i * j, 20, 10 + i);
+                lights.add((i + j) % 3 == 0
+                        ? new SpotLight(intensity, position, new Vector(i - 5, j - 5, -10)).setKl(0.01)
+                        : new PointLight(intensity, position).setKq(0.001));
+            }
+        lights.add(new DirectionalLight(new Color(50, 50, 50), new Vector(0, 0, -1)));
+        return lights;
+    }
+
+    /**
+     * Test method for {@link lighting.LightTree#sample(Point, double)} and
+     * {@link lighting.LightTree#pdf(Point, LightSource)}.
+     */
+    @Test
+    void testSample() {
+        List<LightSource> lights = createLights();
+        LightTree tree = new LightTree(lights);
+        assertEquals(100, tree.size(), "wrong amount of lights in the tree");
+        assertEquals(List.of(lights.getLast()), tree.getUnbounded(), "directional light should be unbounded");
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the probabilities of the lights sum to 1
+        for (Point p : new Point[]{new Point(45, 45, 0), new Point(-30, 80, 10), new Point(5, 5, 49)}) {
+            double sum = 0;
+            for (LightSource light : lights) sum += tree.pdf(p, light);
+            assertEquals(1, sum, 1e-9, "probabilities don't sum to 1");
+        }
+
+        // TC02: a sampled light comes with its probability
+        Point p = new Point(45, 45, 0);
+        for (double u = 0; u < 1; u += 0.0137) {
+            LightTree.Sample sample = tree.sample(p, u);
+            assertNotNull(sample, "no light sampled");
+            assertEquals(tree.pdf(p, sample.light()), sample.pdf(), 1e-12, "wrong probability of the sampled light");
+        }
+
+        // TC03: a closer light is more probable than an equal farther one
+        PointLight near = new PointLight(new Color(100, 100, 100), new Point(0, 0, 10)).setKq(0.01);
+        PointLight far = new PointLight(new Color(100, 100, 100), new Point(0, 0, 100)).setKq(0.01);
+        LightTree pair = new LightTree(List.of(near, far));
+        assertTrue(pair.pdf(Point.ZERO, near) > pair.pdf(Point.ZERO, far), "farther light is more probable");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a spot light facing away from the point is never sampled
+        SpotLight away = new SpotLight(new Color(100, 100, 100), new Point(0, 0, 10), new Vector(0, 0, 1));
+        LightTree spots = new LightTree(List.of(away, far));
+        assertEquals(0, spots.pdf(Point.ZERO, away), "spot light behind the point has a probability");
+        assertSame(far, spots.sample(Point.ZERO, 0).light(), "spot light behind the point was sampled");
+        // TC11: an empty tree
+        assertNull(new LightTree(List.of()).sample(Point.ZERO, 0.5), "light sampled from an empty tree");
+    }
+}
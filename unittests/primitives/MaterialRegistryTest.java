@@ -0,0 +1,92 @@
+package primitives;
+
+import geometries.Geometries;
+import geometries.Geometry;
+import geometries.Sphere;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for primitives.MaterialRegistry class.
+ */
+class MaterialRegistryTest {
+
+    /**
+     * Default constructor to satisfy JavaDoc generator
+     */
+    MaterialRegistryTest() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * Test method for {@link primitives.MaterialRegistry#intern(primitives.Material)}.
+     */
+    @Test
+    void testIntern() {
+        MaterialRegistry registry = new MaterialRegistry();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: materials of equal values are interned into the same material
+        Material original = new Material().setKD(0.5).setKS(0.25).setShininess(40);
+        Material first = registry.intern(original);
+        Material second = registry.intern(new Material().setKD(0.5).setKS(0.25).setShininess(40));
+        assertSame(first, second, "equal materials were not interned into one material");
+        assertSame(first, registry.intern(first), "an interned material was interned again");
+        assertEquals(1, registry.size(), "wrong amount of materials");
+
+        // TC02: the registry keeps a copy - changing the given material doesn't change the shared one
+        assertNotSame(original, first, "the given material is shared");
+        original.setKR(1.0);
+        assertEquals(Double3.ZERO, first.kR, "the shared material changed with the given one");
+        assertSame(first, registry.intern(new Material().setKD(0.5).setKS(0.25).setShininess(40)),
+                "the key of the shared material changed");
+
+        // TC03: materials of different values are different
+        Material other = registry.intern(new Material().setKD(0.5).setKS(0.25).setShininess(41));
+        assertNotSame(first, other, "different materials were interned into one material");
+        Material shallow = registry.intern(new Material().setKD(0.5).setKS(0.25).setShininess(40).setMaxDepth(2));
+        assertNotSame(first, shallow, "materials of different depths were interned into one material");
+        assertEquals(2, shallow.maxDepth, "the depth was not copied");
+
+        // TC04: registries are independent
+        MaterialRegistry another = new MaterialRegistry();
+        assertNotSame(first, another.intern(new Material().setKD(0.5).setKS(0.25).setShininess(40)),
+                "registries share materials");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: coefficients within the tolerance of the triad equality are still different materials
+        Material near = registry.intern(new Material().setKD(0.5 + 1e-12).setKS(0.25).setShininess(40));
+        assertNotSame(first, near, "nearly equal materials were interned into one material");
+    }
+
+    /**
+     * Test method for {@link geometries.Geometries#internMaterials()}.
+     */
+    @Test
+    void testInternMaterials() {
+        Material material = new Material().setKD(0.5).setKS(0.25).setShininess(40);
+        Geometry sphere1 = new Sphere(1, Point.ZERO).setMaterial(material);
+        Geometry sphere2 = new Sphere(2, Point.ZERO).setMaterial(new Material().setKD(0.5).setKS(0.25).setShininess(40));
+        Geometry sphere3 = new Sphere(3, Point.ZERO);
+        Geometries scene = new Geometries(sphere1, new Geometries(sphere2, sphere3));
+
+        // =============== Boundary Values Tests ==================
+        // TC10: the materials are not interned unless requested
+        assertNotSame(sphere1.getMaterial(), sphere2.getMaterial(), "materials interned by default");
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the geometries (of the nested collections too) share the interned material
+        MaterialRegistry registry = scene.internMaterials();
+        assertSame(sphere1.getMaterial(), sphere2.getMaterial(), "geometries do not share the material");
+        assertEquals(2, registry.size(), "wrong amount of materials");
+        assertNotSame(sphere1.getMaterial(), sphere3.getMaterial(), "the default material is shared");
+        // TC02: the given material is not shared
+        material.setKR(1.0);
+        assertEquals(Double3.ZERO, sphere2.getMaterial().kR, "the shared material changed with the given one");
+        // TC03: a new material of a geometry is not interned until the next pass
+        Material fresh = new Material().setKD(0.9);
+        sphere1.setMaterial(fresh);
+        assertSame(fresh, sphere1.getMaterial(), "a new material was interned");
+        assertSame(registry, scene.internMaterials(), "the collection has a new registry");
+        assertEquals(3, registry.size(), "the new material was not interned");
+    }
+}
@@ -0,0 +1,67 @@
+package primitives;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for primitives.Transform class.
+ */
+class TransformTest {
+
+    /**
+     * Default constructor to satisfy JavaDoc generator
+     */
+    TransformTest() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * A composed transformation: scaling, rotation and translation
+     */
+    private final Transform transform = Transform.scaling(2, 3, 4)
+            .then(Transform.rotation(new Vector(1, 1, 0), 30))
+            .then(Transform.translation(5, -2, 7));
+
+    /**
+     * Test method for {@link primitives.Transform#transform(primitives.Point)}.
+     */
+    @Test
+    void testTransformPoint() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: translation
+        assertEquals(new Point(6, 0, 3), Transform.translation(5, -2, 0).transform(new Point(1, 2, 3)),
+                "wrong translated point");
+        // TC02: rotation by 90 degrees around z
+        assertEquals(new Point(-2, 1, 3), Transform.rotation(Vector.AXIS_Z, 90).transform(new Point(1, 2, 3)),
+                "wrong rotated point");
+        // TC03: composition - scaling then translation
+        assertEquals(new Point(3, 2, 3), Transform.scaling(2).then(Transform.translation(1, -2, 0))
+                .transform(new Point(1, 2, 1.5)), "wrong composed transformation");
+        // TC04: inverse
+        Point p = new Point(-3, 4, 1.5);
+        assertEquals(p, transform.inverseTransform(transform.transform(p)), "wrong inverse transformation");
+        assertEquals(p, transform.inverse().transform(transform.transform(p)), "wrong inverse");
+        Transform general = Transform.of(1, 2, 0, 1, 0, 1, 3, 2, 4, 0, 1, 3);
+        assertEquals(p, general.inverseTransform(general.transform(p)), "wrong inverse of a general matrix");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: singular matrix
+        assertThrows(IllegalArgumentException.class, () -> Transform.of(1, 2, 3, 0, 2, 4, 6, 0, 0, 0, 1, 0),
+                "singular matrix accepted");
+        assertThrows(IllegalArgumentException.class, () -> Transform.scaling(1, 0, 1), "zero scaling accepted");
+    }
+
+    /**
+     * Test method for {@link primitives.Transform#transformNormal(primitives.Vector)}.
+     */
+    @Test
+    void testTransformNormal() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a transformed normal is orthogonal to the transformed tangents of a surface
+        Vector normal = new Vector(1, 2, 2).normalize();
+        Vector tangent1 = new Vector(2, -1, 0), tangent2 = new Vector(0, 1, -1);
+        Vector transformed = transform.transformNormal(normal);
+        assertEquals(1, transformed.length(), 1e-10, "transformed normal is not normalized");
+        assertEquals(0, transformed.dotProduct(transform.transform(tangent1)), 1e-10, "wrong transformed normal");
+        assertEquals(0, transformed.dotProduct(transform.transform(tangent2)), 1e-10, "wrong transformed normal");
+    }
+}
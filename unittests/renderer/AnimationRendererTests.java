@@ -0,0 +1,123 @@
+package renderer;
+
+import geometries.*;
+import lighting.*;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the animation sequence renderer
+ */
+class AnimationRendererTests {
+    /**
+     * Default constructor to satisfy JavaDoc generator
+     */
+    AnimationRendererTests() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * Test method for {@link AnimationRenderer#render()}.
+     */
+    @Test
+    void testRender() {
+        Scene scene = new Scene("Animation").setAmbientLight(new AmbientLight(new Color(20, 20, 20)));
+        Geometries ball = new Geometries(new Sphere(20, Point.ZERO)
+                .setEmission(new Color(100, 30, 30)).setMaterial(new Material().setKD(0.5).setKS(0.5).setShininess(30)));
+        ball.buildBVH();
+        Instance moving = new Instance(ball, Transform.IDENTITY);
+        scene.geometries.add(moving, new Plane(new Point(0, -20, 0), Vector.AXIS_Y)
+                .setMaterial(new Material().setKD(0.6)));
+        scene.geometries.buildBVH();
+        scene.lights.add(new PointLight(new Color(600, 600, 600), new Point(50, 100, 100)).setKl(0.001));
+
+        Point start = new Point(0, 20, 300);
+        Camera template = Camera.getBuilder()
+                .setLocation(start).setDirection(Point.ZERO, Vector.AXIS_Y)
+                .setVpDistance(300).setVpSize(150, 150).setResolution(60, 60)
+                .setMultithreading(-1)
+                .setRayTracer(scene, RayTracerType.SIMPLE)
+                .build();
+
+        AnimationRenderer animation = new AnimationRenderer(template)
+                .addKeyframe(0, start, Point.ZERO, 0)
+                .addKeyframe(2, new Point(300, 20, 0), Point.ZERO, 20)
+                .setFrames(5)
+                .setName("animationTest")
+                .setSceneUpdate((frame, time) -> {
+                    moving.setTransform(Transform.translation(0, 10 * time, 0));
+                    scene.geometries.refit();
+                });
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the first frame camera is the template camera
+        assertEquals(template.constructRay(60, 60, 7, 11), animation.cameraAt(0).constructRay(60, 60, 7, 11),
+                "wrong first frame camera");
+        // TC02: a middle frame camera is between the keyframes, and looks at the target
+        Camera middle = animation.cameraAt(1);
+        Ray center = middle.constructRay(61, 61, 30, 30);
+        assertEquals(new Point(150, 20, 150), center.getHead(), "wrong interpolated location");
+        // TC03: all the frames are rendered and written, with timing statistics
+        var stats = animation.render();
+        assertEquals(5, stats.size(), "wrong amount of frame statistics");
+        for (int frame = 0; frame < 5; ++frame) {
+            assertEquals(frame, stats.get(frame).frame(), "wrong frame order");
+            assertTrue(stats.get(frame).render() > 0, "missing render time");
+            assertTrue(Files.exists(Path.of(System.getProperty("user.dir"), "images",
+                    String.format("animationTest_%04d.png", frame))), "missing frame image");
+        }
+
+        // =============== Boundary Values Tests ==================
+        // TC10: no keyframes
+        assertThrows(IllegalStateException.class, () -> new AnimationRenderer(template).render(), "no keyframes");
+        // TC11: no frames
+        assertThrows(IllegalArgumentException.class, () -> new AnimationRenderer(template).setFrames(0),
+                "zero frames accepted");
+    }
+
+    /**
+     * Test method for {@link AnimationRenderer#render()} - the ray tracer data derived from the
+     * scene is dropped after every scene update.
+     *
+     * @throws IOException if reading a frame image failed
+     */
+    @Test
+    void testSceneChanged() throws IOException {
+        Scene scene = new Scene("Moving light");
+        scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Y).setMaterial(new Material().setKD(0.8)));
+        Point location = new Point(0, 50, 100);
+        Camera template = Camera.getBuilder()
+                .setLocation(location).setDirection(Point.ZERO, Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(100, 100).setResolution(20, 20)
+                .setRayTracer(scene, RayTracerType.SIMPLE).setShadingCache(5).setLightSampling(1)
+                .build();
+        AnimationRenderer animation = new AnimationRenderer(template)
+                .addKeyframe(0, location, Point.ZERO, 0)
+                .addKeyframe(1, location, Point.ZERO, 0)
+                .setFrames(2)
+                .setName("movingLightTest")
+                .setSceneUpdate((frame, time) -> {
+                    scene.lights.clear();
+                    scene.lights.add(new PointLight(new Color(800, 800, 800), new Point(frame == 0 ? -40 : 40, 30, 0))
+                            .setKl(0.01));
+                });
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a light moved between the frames (with the shading cache and the light tree) changes the image
+        animation.render();
+        BufferedImage first = ImageIO.read(Path.of(System.getProperty("user.dir"), "images",
+                "movingLightTest_0000.png").toFile());
+        BufferedImage second = ImageIO.read(Path.of(System.getProperty("user.dir"), "images",
+                "movingLightTest_0001.png").toFile());
+        // the light moved from the left to the right - the left edge gets darker
+        assertTrue((second.getRGB(0, 10) & 0xFF) < (first.getRGB(0, 10) & 0xFF), "stale lighting in the second frame");
+        assertTrue((second.getRGB(19, 10) & 0xFF) > (first.getRGB(19, 10) & 0xFF), "stale lighting in the second frame");
+    }
+}
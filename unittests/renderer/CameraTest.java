@@ -1,7 +1,13 @@
 package renderer;
 
+import geometries.Sphere;
+import geometries.Triangle;
+import lighting.PointLight;
 import org.junit.jupiter.api.Test;
 import primitives.*;
+import scene.Scene;
+
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -95,5 +101,117 @@ class CameraTest {
         // BV01: set to a target on Y-axis without up
         assertThrows(IllegalArgumentException.class, () -> cameraBuilder.setDirection(new Point(0, 10, 0)).build());
     }
-}
 
+    /**
+     * Test method for
+     * {@link renderer.Camera.Builder#setPacketSize(int)} - packet tracing of the primary rays.
+     */
+    @Test
+    void testPacketTracing() {
+        Scene scene = new Scene("Packet scene");
+        for (int i = 0; i < 8; ++i)
+            for (int j = 0; j < 8; ++j)
+                scene.geometries.add(new Sphere(4, new Point(i * 12 - 42, j * 12 - 42, -100))
+                                .setEmission(new Color(20 * i, 20 * j, 100))
+                                .setMaterial(new Material().setKD(0.5).setKS(0.3).setShininess(20)),
+                        new Triangle(new Point(i * 12 - 48, j * 12 - 48, -120), new Point(i * 12 - 38, j * 12 - 48, -120),
+                                new Point(i * 12 - 48, j * 12 - 38, -120)).setEmission(new Color(60, 60, 60)));
+        scene.lights.add(new PointLight(new Color(300, 300, 300), new Point(0, 0, 50)));
+        scene.geometries.buildBVH();
+        // a resolution which is not a multiple of the packet size
+        Camera.Builder builder = Camera.getBuilder().setLocation(Point.ZERO).setDirection(new Point(0, 0, -1), Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(100, 100).setResolution(45, 37).setRayTracer(scene, RayTracerType.SIMPLE);
+        int[] expected = builder.build().renderTile(0, 0, 45, 37);
+
+        // =============== Boundary Values Tests ==================
+        // BV01: unsupported packet sizes
+        assertThrows(IllegalArgumentException.class, () -> Camera.getBuilder().setPacketSize(1), "packet size 1");
+        assertThrows(IllegalArgumentException.class, () -> Camera.getBuilder().setPacketSize(17), "packet size 17");
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: the packets render the image of the single rays
+        for (int size : new int[]{2, 4, 8})
+            assertArrayEquals(expected, builder.setPacketSize(size).build().renderTile(0, 0, 45, 37),
+                    "packet tracing changed the image, packet size " + size);
+    }
+
+    /**
+     * Test method for
+     * {@link renderer.Camera.Builder#setSamplesPerPixel(int)} - the progressive rendering.
+     */
+    @Test
+    void testProgressiveRendering() {
+        Scene scene = new Scene("Progressive scene");
+        scene.geometries.add(new Sphere(40, new Point(0, 0, -100)).setEmission(new Color(100, 50, 0)));
+        Camera.Builder builder = Camera.getBuilder().setLocation(Point.ZERO).setDirection(new Point(0, 0, -1), Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(100, 100).setResolution(8, 8);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a single sample of a simple ray tracer is not accumulated
+        assertEquals(0, builder.setRayTracer(scene, RayTracerType.SIMPLE).build().renderImage().getAccumulatedSamples(),
+                "single sample accumulated");
+        // TC02: the samples of the renderings are accumulated
+        Camera camera = builder.setSamplesPerPixel(3).setMultithreading(2).build();
+        assertEquals(6, camera.renderImage().renderImage().getAccumulatedSamples(), "wrong amount of samples");
+        assertEquals(0, camera.resetAccumulation().getAccumulatedSamples(), "accumulation not reset");
+        // TC03: a path tracer renders progressively
+        assertEquals(1, builder.setSamplesPerPixel(1).setRayTracer(scene, RayTracerType.PATH).build()
+                .renderImage().getAccumulatedSamples(), "path tracer samples not accumulated");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: no samples
+        assertThrows(IllegalArgumentException.class, () -> Camera.getBuilder().setSamplesPerPixel(0), "zero samples");
+    }
+
+    /**
+     * Test method for
+     * {@link renderer.Camera#renderTile(int, int, int, int)} - the tiles of a progressive rendering.
+     */
+    @Test
+    void testProgressiveTile() {
+        Scene scene = new Scene("Progressive tile scene");
+        scene.geometries.add(new Sphere(40, new Point(0, 0, -100)).setEmission(new Color(100, 50, 0)));
+        Camera.Builder builder = Camera.getBuilder().setLocation(Point.ZERO).setDirection(new Point(0, 0, -1), Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(100, 100).setResolution(8, 8).setRayTracer(scene, RayTracerType.SIMPLE);
+        int[] centers = builder.build().renderTile(0, 0, 8, 8);
+        int[] image = builder.setSamplesPerPixel(400).build().renderImage().readTile(0, 0, 8, 8);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a tile averages the samples per pixel as the image does - single rays and packets
+        for (int size : new int[]{0, 4}) {
+            int[] tile = builder.setPacketSize(size).build().renderTile(0, 0, 8, 8);
+            for (int p = 0; p < tile.length; ++p)
+                assertEquals(image[p] >> 16 & 0xFF, tile[p] >> 16 & 0xFF, 12, "wrong sampled pixel " + p);
+            // TC02: the samples are jittered - the edge pixels of the sphere are partially covered
+            assertFalse(Arrays.equals(centers, tile), "tile traced through the pixel centers");
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link renderer.Camera#getAuxiliaryBuffers()}.
+     */
+    @Test
+    void testAuxiliaryBuffers() {
+        Scene scene = new Scene("AOV scene").setBackground(new Color(51, 102, 255));
+        scene.geometries.add(new Sphere(40, new Point(0, 0, -100)).setEmission(new Color(51, 0, 0))
+                .setMaterial(new Material().setKD(new Double3(0.5, 0.5, 0.2))));
+        Camera camera = Camera.getBuilder().setLocation(Point.ZERO).setDirection(new Point(0, 0, -1), Vector.AXIS_Y)
+                .setVpDistance(100).setVpSize(100, 100).setResolution(9, 9).setRayTracer(scene, RayTracerType.SIMPLE)
+                .build();
+        AuxiliaryBuffers buffers = camera.writeAuxiliaryImages("aov").getAuxiliaryBuffers();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the center pixel hits the sphere in front of the camera
+        int center = 4 * 9 + 4;
+        assertArrayEquals(new double[]{0, 0, 1}, Arrays.copyOfRange(buffers.normal(), 3 * center, 3 * center + 3),
+                1e-9, "wrong normal");
+        assertArrayEquals(new double[]{0.7, 0.5, 0.2}, Arrays.copyOfRange(buffers.albedo(), 3 * center, 3 * center + 3),
+                1e-9, "wrong albedo");
+        assertEquals(60, buffers.depth()[center], 1e-9, "wrong depth");
+        // TC02: the corner pixel misses
+        assertEquals(Double.POSITIVE_INFINITY, buffers.depth()[0], "hit in the corner");
+        assertArrayEquals(new double[]{0.2, 0.4, 1}, Arrays.copyOfRange(buffers.albedo(), 0, 3),
+                1e-9, "wrong background albedo");
+    }
+}
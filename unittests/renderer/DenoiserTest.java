@@ -0,0 +1,134 @@
+package renderer;
+
+import geometries.Plane;
+import geometries.Sphere;
+import lighting.PointLight;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for renderer.Denoiser class.
+ */
+class DenoiserTest {
+
+    /**
+     * Default constructor to satisfy JavaDoc generator
+     */
+    DenoiserTest() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * Side of the test images
+     */
+    private static final int SIZE = 40;
+
+    /**
+     * Creates the auxiliary buffers of a flat image - the left and the right halves may differ
+     * in their albedo and depth
+     *
+     * @param leftAlbedo the albedo of the left half
+     * @param leftDepth  the depth of the left half
+     * @return the auxiliary buffers
+     */
+    private static AuxiliaryBuffers halves(double leftAlbedo, double leftDepth) {
+        double[] normal = new double[3 * SIZE * SIZE], albedo = new double[3 * SIZE * SIZE];
+        double[] depth = new double[SIZE * SIZE];
+        for (int p = 0; p < SIZE * SIZE; ++p) {
+            boolean left = p % SIZE < SIZE / 2;
+            normal[3 * p + 2] = 1;
+            Arrays.fill(albedo, 3 * p, 3 * p + 3, left ? leftAlbedo : 0.5);
+            depth[p] = left ? leftDepth : 10;
+        }
+        return new AuxiliaryBuffers(SIZE, SIZE, normal, albedo, depth);
+    }
+
+    /**
+     * Computes the mean squared error of the colors of an image (clamped to the full intensity)
+     *
+     * @param image     the image
+     * @param reference the reference image
+     * @return the mean squared error
+     */
+    private static double error(double[] image, double[] reference) {
+        double sum = 0;
+        for (int i = 0; i < image.length; ++i) {
+            double d = Math.min(255, image[i]) - Math.min(255, reference[i]);
+            sum += d * d;
+        }
+        return sum / image.length;
+    }
+
+    /**
+     * Test method for {@link renderer.Denoiser#denoise(double[], double[], AuxiliaryBuffers)}.
+     */
+    @Test
+    void testDenoise() {
+        Random random = new Random(7);
+        AuxiliaryBuffers flat = halves(0.5, 10);
+        double[] clean = new double[3 * SIZE * SIZE], noisy = new double[3 * SIZE * SIZE];
+        double[] variance = new double[SIZE * SIZE];
+        Arrays.fill(clean, 100);
+        for (int i = 0; i < noisy.length; ++i) noisy[i] = 100 + 20 * random.nextGaussian();
+        Arrays.fill(variance, 400);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the noise of a flat surface is smoothed
+        double[] denoised = new Denoiser().denoise(noisy, variance, flat);
+        assertTrue(error(denoised, clean) < error(noisy, clean) / 10, "noise not smoothed");
+        assertEquals(100, Arrays.stream(denoised).average().orElseThrow(), 2, "brightness changed");
+
+        // TC02: the albedo edges are kept
+        double[] edge = new double[3 * SIZE * SIZE];
+        for (int p = 0; p < SIZE * SIZE; ++p) Arrays.fill(edge, 3 * p, 3 * p + 3, p % SIZE < SIZE / 2 ? 50 : 200);
+        assertArrayEquals(edge, new Denoiser().denoise(edge, variance, halves(0.1, 10)), 1e-6, "albedo edge blurred");
+        // TC03: the depth edges and the silhouettes are kept
+        assertArrayEquals(edge, new Denoiser().denoise(edge, variance, halves(0.5, 1000)), 1e-6, "depth edge blurred");
+        assertArrayEquals(edge, new Denoiser().denoise(edge, variance, halves(0.5, Double.POSITIVE_INFINITY)), 1e-6,
+                "silhouette blurred");
+        // TC04: a shadow edge which is larger than the noise is kept
+        double[] converged = new double[SIZE * SIZE];
+        assertArrayEquals(edge, new Denoiser().denoise(edge, converged, flat), 1e-6, "shading edge blurred");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: buffers which don't fit
+        assertThrows(IllegalArgumentException.class, () -> new Denoiser().denoise(new double[3], variance, flat),
+                "wrong image size");
+        assertThrows(IllegalArgumentException.class, () -> new Denoiser().denoise(noisy, new double[1], flat),
+                "wrong variance size");
+        // TC11: bad parameters
+        assertThrows(IllegalArgumentException.class, () -> new Denoiser().setIterations(0), "no iterations");
+        assertThrows(IllegalArgumentException.class, () -> new Denoiser().setColorSigma(0), "zero color tolerance");
+        assertThrows(IllegalArgumentException.class, () -> new Denoiser().setGuideSigmas(0.1, 0, 0.1),
+                "zero depth tolerance");
+    }
+
+    /**
+     * Test method for {@link renderer.Camera.Builder#setDenoiser(Denoiser)} - a denoised path
+     * traced image of a few samples per pixel is closer to the converged image than the image
+     * of the samples. The image is a small crop of the scene, at the pixel size of a full view.
+     */
+    @Test
+    void testDenoisedRendering() {
+        Scene scene = new Scene("Soft shadows").setBackground(new Color(20, 20, 40));
+        scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(new Material().setKD(0.6)),
+                new Sphere(2, new Point(0, 0, 2)).setMaterial(new Material().setKD(0.4).setKS(0.3).setShininess(30)),
+                new Sphere(1, new Point(3, -2, 1)).setMaterial(new Material().setKD(new Double3(0.1, 0.6, 0.2))));
+        scene.lights.add(new PointLight(new Color(1500, 1500, 1500), new Point(4, -3, 8)).setKq(0.01)
+                .setAreaLightRadius(3, 16));
+        Camera.Builder builder = Camera.getBuilder().setLocation(new Point(0, -14, 7))
+                .setDirection(new Point(0, 0, 1), Vector.AXIS_Z).setVpDistance(10).setVpSize(3.2, 3.2)
+                .setResolution(32, 32).setRayTracer(scene, RayTracerType.PATH).setMultithreading(-1);
+        double[] reference = builder.setSamplesPerPixel(128).build().renderImage().getFramebuffer();
+        double[] noisy = builder.setSamplesPerPixel(4).build().renderImage().getFramebuffer();
+        double[] denoised = builder.setDenoiser(new Denoiser()).build().renderImage().getFramebuffer();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the denoised image is much closer to the converged image
+        assertTrue(error(denoised, reference) < error(noisy, reference) / 2, "denoising did not reduce the error");
+    }
+}
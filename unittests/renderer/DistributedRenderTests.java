@@ -0,0 +1,232 @@
+package renderer;
+
+import geometries.Plane;
+import geometries.Sphere;
+import geometries.Triangle;
+import lighting.AmbientLight;
+import lighting.PointLight;
+import lighting.SpotLight;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for distributed rendering of a single frame by several worker JVMs
+ */
+class DistributedRenderTests {
+    /**
+     * Default constructor to satisfy JavaDoc generator
+     */
+    DistributedRenderTests() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * Render job of the tests - a sphere over two triangles lit by a spot light
+     */
+    public static class SphereJob implements RenderJob {
+        /**
+         * Default constructor (required for instantiating the job by the workers)
+         */
+        public SphereJob() { /* required by the workers */ }
+
+        @Override
+        public Camera createCamera() {
+            Scene scene = new Scene("Distributed scene").setAmbientLight(new AmbientLight(new Color(38, 38, 38)));
+            scene.geometries.add(
+                    new Sphere(60, new Point(0, 0, -200)).setEmission(new Color(java.awt.Color.BLUE))
+                            .setMaterial(new Material().setKD(0.5).setKS(0.5).setShininess(30)),
+                    new Triangle(new Point(-150, -150, -115), new Point(150, -150, -135), new Point(75, 75, -150))
+                            .setMaterial(new Material().setKS(0.8).setShininess(60)),
+                    new Triangle(new Point(-150, -150, -115), new Point(-70, 70, -140), new Point(75, 75, -150))
+                            .setMaterial(new Material().setKS(0.8).setShininess(60)));
+            scene.lights.add(new SpotLight(new Color(700, 400, 400), new Point(40, 40, 115), new Vector(-1, -1, -4))
+                    .setKl(4E-4).setKq(2E-5));
+
+            return Camera.getBuilder()
+                    .setLocation(new Point(0, 0, 1000)).setDirection(Point.ZERO, Vector.AXIS_Y)
+                    .setVpDistance(1000).setVpSize(200, 200)
+                    .setResolution(400, 400)
+                    .setRayTracer(scene, RayTracerType.SIMPLE)
+                    .build();
+        }
+    }
+
+    /**
+     * Render job of the denoising test - a path traced soft shadow of a few samples per pixel, denoised
+     */
+    public static class DenoisedJob implements RenderJob {
+        /**
+         * Default constructor (required for instantiating the job by the workers)
+         */
+        public DenoisedJob() { /* required by the workers */ }
+
+        /**
+         * Creates a camera of the scene of the job
+         *
+         * @param samples  the amount of samples per pixel
+         * @param denoiser the denoiser (null - no denoising)
+         * @return the camera
+         */
+        static Camera createCamera(int samples, Denoiser denoiser) {
+            Scene scene = new Scene("Distributed soft shadows").setBackground(new Color(20, 20, 40));
+            scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(new Material().setKD(0.6)),
+                    new Sphere(2, new Point(0, 0, 2)).setMaterial(new Material().setKD(0.4).setKS(0.3).setShininess(30)));
+            scene.lights.add(new PointLight(new Color(1500, 1500, 1500), new Point(4, -3, 8)).setKq(0.01)
+                    .setAreaLightRadius(3, 16));
+            return Camera.getBuilder().setLocation(new Point(0, -14, 7))
+                    .setDirection(new Point(0, 0, 1), Vector.AXIS_Z).setVpDistance(10).setVpSize(3.2, 3.2)
+                    .setResolution(32, 32).setRayTracer(scene, RayTracerType.PATH).setMultithreading(-1)
+                    .setSamplesPerPixel(samples).setDenoiser(denoiser).build();
+        }
+
+        @Override
+        public Camera createCamera() {
+            return createCamera(4, new Denoiser());
+        }
+    }
+
+    /**
+     * Computes the mean squared error of the color components of an image
+     *
+     * @param image     the packed RGB values of the image
+     * @param reference the packed RGB values of the reference image
+     * @return the mean squared error
+     */
+    private static double error(int[] image, int[] reference) {
+        double sum = 0;
+        for (int p = 0; p < image.length; ++p)
+            for (int shift = 0; shift < 24; shift += 8) {
+                int d = (image[p] >> shift & 0xFF) - (reference[p] >> shift & 0xFF);
+                sum += d * d;
+            }
+        return sum / (3 * image.length);
+    }
+
+    /**
+     * Checks that a distributed image is the image rendered by a single camera
+     *
+     * @param camera the camera holding the distributed image
+     */
+    private static void assertWholeImage(Camera camera) {
+        int[] expected = new SphereJob().createCamera().renderTile(0, 0, camera.nX, camera.nY);
+        assertArrayEquals(expected, camera.readTile(0, 0, camera.nX, camera.nY), "wrong distributed image");
+    }
+
+    /**
+     * Finds a free loopback port
+     *
+     * @return the port number
+     * @throws IOException if no port can be opened
+     */
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Connects to the coordinator, waiting until it listens
+     *
+     * @param port the coordinator port
+     * @return the connection
+     * @throws InterruptedException if the waiting is interrupted
+     */
+    private static Socket connect(int port) throws InterruptedException {
+        while (true)
+            try {
+                return new Socket(InetAddress.getLoopbackAddress(), port);
+            } catch (IOException e) {
+                Thread.sleep(50); // the coordinator is not listening yet
+            }
+    }
+
+    /**
+     * Render the frame by two local worker JVMs
+     */
+    @Test
+    void distributedTwoWorkers() {
+        TileCoordinator coordinator = new TileCoordinator(new SphereJob())
+                .setLocalWorkers(2)
+                .setTileSize(25);
+        Camera camera = coordinator.render();
+        camera.writeToImage("distributedTwoWorkers");
+        // TC01: the tiles of the workers make the whole image
+        assertWholeImage(camera);
+        // TC02: both workers rendered tiles - the coordinator rendered none
+        var tiles = coordinator.getWorkerTiles();
+        assertEquals(2, tiles.size(), "wrong amount of connected workers");
+        assertTrue(tiles.get(0) > 0 && tiles.get(1) > 0, "a worker rendered no tile: " + tiles);
+        assertEquals(256, tiles.get(0) + tiles.get(1), "tiles rendered out of the workers");
+        assertEquals(0, coordinator.getLocalTiles(), "tiles rendered by the coordinator");
+    }
+
+    /**
+     * Render the frame by the coordinator when the workers cannot start
+     */
+    @Test
+    void distributedWithoutWorkers() {
+        // TC10: all the workers are dead - the coordinator renders all the tiles by itself
+        TileCoordinator coordinator = new TileCoordinator(new SphereJob())
+                .setLocalWorkers(1)
+                .setWorkerJvmOptions("-XX:+NoSuchWorkerOption")
+                .setTileSize(50);
+        assertWholeImage(coordinator.render());
+        assertEquals(List.of(), coordinator.getWorkerTiles(), "tiles from a dead worker");
+        assertEquals(64, coordinator.getLocalTiles(), "wrong amount of tiles rendered by the coordinator");
+    }
+
+    /**
+     * Render the frame by a worker which dies after it got a tile and by a worker started manually
+     *
+     * @throws Exception if the workers cannot connect
+     */
+    @Test
+    void distributedWorkerFailure() throws Exception {
+        int port = freePort();
+        TileCoordinator coordinator = new TileCoordinator(new SphereJob()).setLocalWorkers(0).setPort(port).setTileSize(50);
+        CompletableFuture<Camera> result = CompletableFuture.supplyAsync(coordinator::render);
+        Camera job = new SphereJob().createCamera();
+
+        // the failing worker takes a tile and disconnects without rendering it
+        try (Socket socket = connect(port)) {
+            var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            var out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(TileCoordinator.HELLO);
+            out.writeInt(job.nX);
+            out.writeInt(job.nY);
+            out.flush();
+            assertEquals(TileCoordinator.TILE, in.readByte(), "no tile for the worker");
+            for (int i = 0; i < 5; ++i) in.readInt();
+        }
+        TileWorker.main(new String[]{InetAddress.getLoopbackAddress().getHostAddress(), String.valueOf(port),
+                SphereJob.class.getName()});
+
+        // TC11: the tile of the failed worker is re-issued to the other worker
+        assertWholeImage(result.get());
+        assertEquals(List.of(0, 64), coordinator.getWorkerTiles(), "wrong tiles of the workers");
+    }
+
+    /**
+     * Render the frame of a camera with a denoiser by a worker - the coordinator denoises the whole image
+     */
+    @Test
+    void distributedDenoising() {
+        TileCoordinator coordinator = new TileCoordinator(new DenoisedJob()).setLocalWorkers(1).setTileSize(16);
+        Camera camera = coordinator.render();
+        int[] reference = DenoisedJob.createCamera(128, null).renderImage().readTile(0, 0, 32, 32);
+        int[] noisy = DenoisedJob.createCamera(4, null).renderImage().readTile(0, 0, 32, 32);
+
+        // TC03: the sampled tiles of the worker are denoised as a single image
+        assertEquals(List.of(4), coordinator.getWorkerTiles(), "the worker rendered no tile");
+        assertTrue(error(camera.readTile(0, 0, 32, 32), reference) < error(noisy, reference) / 2,
+                "the distributed image is not denoised");
+    }
+}
@@ -0,0 +1,113 @@
+package renderer;
+
+import geometries.*;
+import lighting.*;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the JSON scene description loader
+ */
+class JsonSceneLoaderTests {
+    /**
+     * Default constructor to satisfy JavaDoc generator
+     */
+    JsonSceneLoaderTests() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * Scene description with all kinds of geometries and lights
+     */
+    private static final String SCENE = """
+            {
+              "name": "JSON test",
+              "background": [0, 0, 30],
+              "ambient": [25, 25, 25],
+              "materials": { "shiny": { "kD": 0.5, "kS": [0.2, 0.3, 0.4], "shininess": 40,
+                                        "glossiness": { "radius": 1, "distance": 10, "rays": 4 } } },
+              "lights": [
+                { "type": "directional", "intensity": [200, 200, 200], "direction": [1, -1, -1] },
+                { "type": "point", "intensity": [500, 300, 0], "position": [0, 50, 0], "kL": 0.001, "radius": 5, "shadowRays": 9 },
+                { "type": "spot", "intensity": [800, 800, 800], "position": [0, 100, 0], "direction": [0, -1, 0], "narrowBeam": 8 }
+              ],
+              "geometries": [
+                { "type": "sphere", "center": [0, 0, -100], "radius": 50, "material": "shiny", "emission": [40, 0, 0] },
+                { "type": "triangle", "vertices": [[-200, -60, -300], [200, -60, -300], [0, 200, -300]], "material": { "kD": 0.8 } },
+                { "type": "group", "geometries": [
+                  { "type": "polygon", "vertices": [[-300, -70, 0], [300, -70, 0], [300, -70, -400], [-300, -70, -400]] },
+                  { "type": "cylinder", "radius": 10, "height": 40, "axis": { "head": [100, -70, -100], "direction": [0, 1, 0] } },
+                  { "type": "tube", "radius": 5, "axis": { "head": [0, 150, -200], "direction": [1, 0, 0] } }
+                ] },
+                { "type": "plane", "point": [0, -100, 0], "normal": [0, 1, 0] }
+              ],
+              "bvh": true,
+              "camera": { "rayTracer": "SIMPLE", "resolution": [61, 61], "vpSize": [200, 200], "vpDistance": 500,
+                          "up": [0, 1, 0], "lookAt": [0, 0, -100], "location": [0, 0, 500] }
+            }
+            """;
+
+    /**
+     * Test method for {@link JsonSceneLoader#load(java.io.Reader)}.
+     */
+    @Test
+    void testLoad() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: all the scene members are loaded
+        LoadedScene loaded = JsonSceneLoader.load(new StringReader(SCENE));
+        var scene = loaded.scene();
+        assertEquals("JSON test", scene.name, "wrong scene name");
+        assertEquals(new Color(0, 0, 30).getRgb(), scene.background.getRgb(), "wrong background");
+        assertEquals(3, scene.lights.size(), "wrong amount of lights");
+        assertInstanceOf(DirectionalLight.class, scene.lights.get(0), "wrong light type");
+        assertInstanceOf(SpotLight.class, scene.lights.get(2), "wrong light type");
+        assertEquals(9, ((PointLight) scene.lights.get(1)).getShadowRayCount(), "wrong shadow rays");
+
+        // TC02: geometries are constructed with their materials and emission
+        Ray ray = new Ray(new Point(0, 0, 500), new Vector(0, 0, -1));
+        var hit = ray.findClosestIntersection(scene.geometries.calculateIntersections(ray));
+        assertNotNull(hit, "missing sphere intersection");
+        assertEquals(new Point(0, 0, -50), hit.point, "wrong sphere intersection");
+        assertEquals(new Double3(0.2, 0.3, 0.4), hit.material.kS, "wrong named material");
+        assertEquals(40, hit.material.nSh, "wrong shininess");
+        assertEquals(new Color(40, 0, 0).getRgb(), hit.geometry.getEmission().getRgb(), "wrong emission");
+
+        // TC03: the camera is configured regardless of the member order and renders
+        assertNotNull(loaded.cameraBuilder(), "camera was not loaded");
+        Camera camera = loaded.cameraBuilder().build();
+        assertEquals(ray, camera.constructRay(61, 61, 30, 30), "wrong camera direction");
+        camera.renderImage().writeToImage("jsonSceneLoaded");
+
+        // TC04: a description without a camera
+        assertNull(JsonSceneLoader.load(new StringReader("{ \"name\": \"empty\" }")).cameraBuilder(),
+                "unexpected camera");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: unknown member
+        assertThrows(IllegalArgumentException.class,
+                () -> JsonSceneLoader.load(new StringReader("{ \"nmae\": \"typo\" }")), "unknown member accepted");
+        // TC11: undefined material
+        assertThrows(IllegalArgumentException.class,
+                () -> JsonSceneLoader.load(new StringReader(
+                        "{ \"geometries\": [ { \"type\": \"sphere\", \"center\": [0,0,0], \"radius\": 1, \"material\": \"x\" } ] }")),
+                "undefined material accepted");
+        // TC12: missing required member
+        assertThrows(IllegalArgumentException.class,
+                () -> JsonSceneLoader.load(new StringReader("{ \"geometries\": [ { \"type\": \"sphere\", \"radius\": 1 } ] }")),
+                "missing center accepted");
+        // TC13: wrong value type
+        assertThrows(IllegalArgumentException.class,
+                () -> JsonSceneLoader.load(new StringReader("{ \"background\": 5 }")), "wrong value type accepted");
+        // TC14: a syntax error is reported with its position
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> JsonSceneLoader.load(new StringReader("{\n  \"name\": \"a\"\n  \"bvh\": true }")),
+                "syntax error accepted");
+        assertTrue(e.getMessage().contains("line 3"), "syntax error position missing: " + e.getMessage());
+        // TC15: a truncated description
+        assertThrows(IllegalArgumentException.class,
+                () -> JsonSceneLoader.load(new StringReader("{ \"name\": \"a\", \"geometries\": [")),
+                "truncated description accepted");
+    }
+}
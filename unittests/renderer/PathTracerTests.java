@@ -0,0 +1,110 @@
+package renderer;
+
+import geometries.Plane;
+import lighting.PointLight;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the Monte Carlo path tracer - its direct lighting against the simple ray tracer,
+ * the multiple importance sampling of the area lights, the indirect lighting and the mirrors
+ */
+class PathTracerTests {
+    /**
+     * Default constructor to satisfy JavaDoc generator
+     */
+    PathTracerTests() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * A ray hitting the floor of the test scenes
+     */
+    private static final Ray RAY = new Ray(new Point(0, -3, 4), new Vector(0, 3, -4));
+
+    /**
+     * Creates a scene of a diffuse and glossy floor lit by a point light
+     *
+     * @param light the light
+     * @return the scene
+     */
+    private static Scene createFloor(PointLight light) {
+        Scene scene = new Scene("Floor").setBackground(new Color(10, 20, 30));
+        scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setEmission(new Color(5, 5, 5))
+                .setMaterial(new Material().setKD(0.5).setKS(0.3).setShininess(20)));
+        scene.lights.add(light);
+        return scene;
+    }
+
+    /**
+     * Averages the colors traced along a ray
+     *
+     * @param tracer  the ray tracer
+     * @param ray     the ray
+     * @param samples the amount of samples
+     * @return the average color
+     */
+    private static Double3 average(RayTracerBase tracer, Ray ray, int samples) {
+        double r = 0, g = 0, b = 0;
+        for (int i = 0; i < samples; ++i) {
+            Double3 rgb = tracer.traceRay(ray).getRgb();
+            r += rgb.d1();
+            g += rgb.d2();
+            b += rgb.d3();
+        }
+        return new Double3(r / samples, g / samples, b / samples);
+    }
+
+    /**
+     * Test method for {@link renderer.PathTracer#traceRay(Ray)} - the direct lighting.
+     */
+    @Test
+    void testDirectLighting() {
+        Scene scene = createFloor(new PointLight(new Color(400, 200, 100), new Point(2, 1, 6)).setKq(0.01));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the direct lighting of a point light is the lighting of the simple ray tracer
+        Double3 expected = new SimpleRayTracer(scene).traceRay(RAY).getRgb();
+        Double3 actual = new PathTracer(scene).setMaxLevel(1).traceRay(RAY).getRgb();
+        assertEquals(expected.d1(), actual.d1(), 1e-9, "wrong direct lighting");
+        assertEquals(expected.d3(), actual.d3(), 1e-9, "wrong direct lighting");
+
+        // TC02: the lighting of an area light - sampled and hit by the bounces - converges to the simple ray tracer
+        Scene area = createFloor(new PointLight(new Color(400, 200, 100), new Point(2, 1, 6))
+                .setKq(0.01).setAreaLightRadius(1, 16));
+        expected = new SimpleRayTracer(area).traceRay(RAY).getRgb();
+        actual = average(new PathTracer(area).setMaxLevel(2), RAY, 200000);
+        assertEquals(expected.d1(), actual.d1(), expected.d1() * 0.03, "wrong area lighting");
+        assertEquals(expected.d3(), actual.d3(), expected.d3() * 0.03, "wrong area lighting");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a path of no bounces
+        assertThrows(IllegalArgumentException.class, () -> new PathTracer(scene).setMaxLevel(0), "zero level");
+    }
+
+    /**
+     * Test method for {@link renderer.PathTracer#traceRay(Ray)} - the bounces.
+     */
+    @Test
+    void testBounces() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a mirror reflects the lit floor and the background as the simple ray tracer
+        Scene mirror = createFloor(new PointLight(new Color(400, 200, 100), new Point(2, 1, 6)).setKq(0.01));
+        mirror.geometries.add(new Plane(new Point(0, 5, 0), new Vector(0, -1, 0)).setMaterial(new Material().setKR(1.0)));
+        for (Ray ray : new Ray[]{new Ray(new Point(0, 0, 4), new Vector(0, 5, -1)),
+                new Ray(new Point(0, 0, 4), new Vector(0, 5, 1))}) {
+            Double3 expected = new SimpleRayTracer(mirror).traceRay(ray).getRgb();
+            Double3 actual = new PathTracer(mirror).setMaxLevel(2).traceRay(ray).getRgb();
+            assertEquals(expected.d1(), actual.d1(), 1e-9, "wrong mirror reflection");
+            assertEquals(expected.d3(), actual.d3(), 1e-9, "wrong mirror reflection");
+        }
+
+        // TC02: a lit wall reflects light onto the floor
+        Scene room = createFloor(new PointLight(new Color(400, 400, 400), new Point(0, 3, 2)).setKq(0.01));
+        room.geometries.add(new Plane(new Point(0, 4, 0), new Vector(0, -1, 0)).setMaterial(new Material().setKD(0.8)));
+        Double3 direct = average(new PathTracer(room).setMaxLevel(1), RAY, 20000);
+        Double3 indirect = average(new PathTracer(room).setMaxLevel(5), RAY, 20000);
+        assertTrue(indirect.d1() > direct.d1() * 1.05, "no indirect lighting");
+    }
+}
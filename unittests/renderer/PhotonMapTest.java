@@ -0,0 +1,80 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+import primitives.Double3;
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for renderer.PhotonMap class.
+ */
+class PhotonMapTest {
+
+    /**
+     * Default constructor to satisfy JavaDoc generator
+     */
+    PhotonMapTest() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * Test method for {@link renderer.PhotonMap#estimate(Point, Vector, int, double)}.
+     */
+    @Test
+    void testEstimate() {
+        // photons on the plane z = 0 arriving from above, and some from below
+        int size = 20000; // larger than the sequential build threshold
+        Random random = new Random(3);
+        double[] position = new double[3 * size], direction = new double[3 * size], power = new double[3 * size];
+        for (int i = 0; i < size; ++i) {
+            position[3 * i] = random.nextDouble() * 100;
+            position[3 * i + 1] = random.nextDouble() * 100;
+            direction[3 * i + 2] = i % 10 == 0 ? 1 : -1;
+            power[3 * i] = random.nextDouble();
+            power[3 * i + 1] = 1;
+            power[3 * i + 2] = 2;
+        }
+        double[] originalPosition = position.clone(), originalDirection = direction.clone(), originalPower = power.clone();
+        PhotonMap map = new PhotonMap(position, direction, power, size);
+        assertEquals(size, map.size(), "wrong amount of photons");
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the estimate is the power of the nearest photons from the side of the normal over their disk
+        for (int n = 0; n < 20; ++n) {
+            Point p = new Point(random.nextDouble() * 100, random.nextDouble() * 100, 0);
+            double[] distance2 = new double[size];
+            for (int i = 0; i < size; ++i) {
+                double dx = originalPosition[3 * i] - p.getX(), dy = originalPosition[3 * i + 1] - p.getY();
+                distance2[i] = originalDirection[3 * i + 2] < 0 ? dx * dx + dy * dy : Double.POSITIVE_INFINITY;
+            }
+            double[] sorted = distance2.clone();
+            Arrays.sort(sorted);
+            double radius2 = sorted[49], red = 0;
+            for (int i = 0; i < size; ++i) if (distance2[i] <= radius2) red += originalPower[3 * i];
+            Double3 estimate = map.estimate(p, Vector.AXIS_Z, 50, 10).getRgb();
+            double area = Math.PI * radius2;
+            assertEquals(red / area, estimate.d1(), 1e-9, "wrong red estimate");
+            assertEquals(50 / area, estimate.d2(), 1e-9, "wrong green estimate");
+        }
+        // TC02: fewer photons than the nearest amount within the radius - the disk of the radius
+        Double3 sparse = map.estimate(new Point(0.5, 0.5, 0), Vector.AXIS_Z, 1000, 3).getRgb();
+        double gathered = sparse.d2() * Math.PI * 9; // the photons of unit green power
+        assertTrue(gathered >= 1 && gathered < 1000, "wrong amount of photons gathered");
+        assertEquals(Math.rint(gathered), gathered, 1e-9, "estimate not over the disk of the radius");
+        // TC03: photons arriving at the other side are not gathered
+        Double3 below = map.estimate(new Point(50, 50, 0), new Vector(0, 0, -1), 50, 10).getRgb();
+        Double3 above = map.estimate(new Point(50, 50, 0), Vector.AXIS_Z, 50, 10).getRgb();
+        assertTrue(below.d2() < above.d2() / 2, "photons of the other side gathered");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: no photon within the radius
+        assertEquals(Double3.ZERO, map.estimate(new Point(500, 500, 0), Vector.AXIS_Z, 50, 10).getRgb(),
+                "photons gathered beyond the radius");
+        // TC11: an empty map
+        assertEquals(Double3.ZERO, new PhotonMap(new double[0], new double[0], new double[0], 0)
+                .estimate(Point.ZERO, Vector.AXIS_Z, 10, 1).getRgb(), "photons in an empty map");
+    }
+}
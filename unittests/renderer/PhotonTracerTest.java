@@ -0,0 +1,75 @@
+package renderer;
+
+import geometries.Plane;
+import geometries.Sphere;
+import lighting.PointLight;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for renderer.PhotonTracer class.
+ */
+class PhotonTracerTest {
+
+    /**
+     * Default constructor to satisfy JavaDoc generator
+     */
+    PhotonTracerTest() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * Creates a scene of a diffuse floor, a mirror wall and a point light between them
+     *
+     * @return the scene
+     */
+    static Scene createMirrorScene() {
+        Scene scene = new Scene("Mirror caustics");
+        scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(new Material().setKD(1)),
+                new Plane(new Point(10, 0, 0), Vector.AXIS_X).setMaterial(new Material().setKR(1.0)));
+        scene.lights.add(new PointLight(new Color(100, 200, 300), new Point(0, 0, 5)).setKq(0.01));
+        return scene;
+    }
+
+    /**
+     * Test method for {@link renderer.PhotonTracer#traceCaustics(int)}.
+     */
+    @Test
+    void testTraceCaustics() {
+        Scene scene = createMirrorScene();
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the photons reflected by the mirror light the floor as the mirror image of the light
+        PhotonMap map = new PhotonTracer(scene).traceCaustics(250000);
+        Point p = new Point(3, 0, 0);
+        Vector toImage = new Point(20, 0, 5).subtract(p);
+        double d = toImage.length();
+        double expected = 100 * (5 / d) / (1 + 0.01 * d * d);
+        Double3 estimate = map.estimate(p, Vector.AXIS_Z, 20000, 3).getRgb();
+        assertEquals(expected, estimate.d1(), expected * 0.15, "wrong caustics irradiance");
+        assertEquals(2 * estimate.d1(), estimate.d2(), 1e-9, "wrong caustics color");
+        // TC02: the floor is not lit by the direct photons
+        assertEquals(Double3.ZERO, map.estimate(new Point(30, 0, 0), Vector.AXIS_Z, 100, 1).getRgb(),
+                "photons stored behind the mirror");
+
+        // TC03: straight transmission is not stored - the shadow rays account for it
+        Scene glass = new Scene("Glass");
+        glass.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(new Material().setKD(1)),
+                new Sphere(2d, new Point(0, 0, 5)).setMaterial(new Material().setKT(0.9)));
+        glass.lights.add(new PointLight(new Color(100, 100, 100), new Point(0, 0, 10)));
+        assertEquals(0, new PhotonTracer(glass).traceCaustics(10000).size(), "transmitted photons stored");
+        // TC04: glossy transmission scatters the photons - they are stored
+        Scene frosted = new Scene("Frosted glass");
+        frosted.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(new Material().setKD(1)),
+                new Sphere(2d, new Point(0, 0, 5)).setMaterial(new Material().setKT(0.9).setGlossinessRefracted(1, 5, 9)));
+        frosted.lights.add(new PointLight(new Color(100, 100, 100), new Point(0, 0, 10)));
+        assertTrue(new PhotonTracer(frosted).traceCaustics(10000).size() > 0, "scattered photons not stored");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: no photons
+        assertEquals(0, new PhotonTracer(scene).traceCaustics(0).size(), "photons of no emission");
+        assertThrows(IllegalArgumentException.class, () -> new PhotonTracer(scene).traceCaustics(-1),
+                "negative amount of photons");
+    }
+}
@@ -0,0 +1,207 @@
+package renderer;
+
+import geometries.*;
+import lighting.*;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the binary scene file format
+ */
+class SceneFileTests {
+    /**
+     * Default constructor to satisfy JavaDoc generator
+     */
+    SceneFileTests() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * Creates a small forest scene with all kinds of geometries and lights
+     *
+     * @return the scene
+     */
+    private static Scene createScene() {
+        Scene scene = new Scene("Scene file forest")
+                .setBackground(new Color(20, 30, 60))
+                .setAmbientLight(new AmbientLight(new Color(30, 30, 30)));
+        for (int i = 0; i < 3; ++i)
+            scene.geometries.add(BvhTests.createTreeAt(new Point(i * 400 - 400, -100, -1500)));
+        scene.geometries.add(
+                new Plane(new Point(0, -100, 0), new Vector(0, 1, 0))
+                        .setMaterial(new Material().setKD(0.6).setKR(0.2)),
+                new Sphere(80, new Point(0, 100, -1000)).setEmission(new Color(120, 20, 20))
+                        .setMaterial(new Material().setKD(0.3).setKS(0.7).setShininess(80).setKT(0.4)),
+                new Cylinder(30, new Ray(new Point(300, -100, -900), new Vector(0, 1, 0)), 200)
+                        .setMaterial(new Material().setKD(0.5).setGlossinessReflacted(2, 50, 9)),
+                new Tube(10, new Ray(new Point(-600, 0, -2000), new Vector(1, 0, 0)))
+                        .setEmission(new Color(10, 60, 10)));
+        scene.lights.add(new DirectionalLight(new Color(200, 200, 150), new Vector(1, -1, -1)));
+        scene.lights.add(new PointLight(new Color(500, 300, 200), new Point(0, 500, -800))
+                .setKl(0.0005).setKq(0.00001).setAreaLightRadius(20, 9));
+        scene.lights.add(new SpotLight(new Color(800, 800, 800), new Point(-300, 400, -600), new Vector(1, -2, -2))
+                .setNarrowBeam(4).setKl(0.0001));
+        return scene;
+    }
+
+    /**
+     * Test method for {@link SceneFile#write(Path, Scene, Camera)} and {@link SceneFile#read(Path)}.
+     * The loaded scene must produce the same intersections as the original one.
+     *
+     * @throws IOException if the temporary file cannot be created
+     */
+    @Test
+    void testWriteRead() throws IOException {
+        Scene scene = createScene();
+        scene.geometries.buildBVH();
+        Camera camera = Camera.getBuilder()
+                .setLocation(new Point(0, 200, 500)).setDirection(new Point(0, 0, -1500), Vector.AXIS_Y)
+                .setVpDistance(500).setVpSize(400, 300).setResolution(80, 60)
+                .setRayTracer(scene, RayTracerType.SIMPLE)
+                .build();
+
+        Path file = Files.createTempFile("scene", ".rtsf");
+        try {
+            SceneFile.write(file, scene, camera);
+            LoadedScene loaded = SceneFile.read(file);
+
+            assertEquals(scene.name, loaded.scene().name, "wrong scene name");
+            assertEquals(scene.lights.size(), loaded.scene().lights.size(), "wrong amount of lights");
+            assertNotNull(loaded.cameraBuilder(), "camera settings were not loaded");
+
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: the loaded camera constructs the same rays, which hit the same points
+            Camera loadedCamera = loaded.cameraBuilder().build();
+            for (int i = 0; i < 60; i += 3)
+                for (int j = 0; j < 80; j += 3) {
+                    Ray ray = camera.constructRay(80, 60, j, i);
+                    assertEquals(ray, loadedCamera.constructRay(80, 60, j, i), "wrong loaded camera");
+                    var expected = ray.findClosestIntersection(scene.geometries.calculateIntersections(ray));
+                    var actual = ray.findClosestIntersection(loaded.scene().geometries.calculateIntersections(ray));
+                    if (expected == null) assertNull(actual, "unexpected intersection of the loaded scene");
+                    else {
+                        assertNotNull(actual, "missing intersection of the loaded scene");
+                        assertEquals(expected.point, actual.point, "wrong intersection of the loaded scene");
+                        assertEquals(expected.material.kD, actual.material.kD, "wrong material of the loaded scene");
+                        assertEquals(expected.geometry.getEmission().getRgb(), actual.geometry.getEmission().getRgb(),
+                                "wrong emission of the loaded scene");
+                    }
+                }
+
+            // TC02: the loaded scene renders
+            loadedCamera.renderImage().writeToImage("sceneFileLoaded");
+            assertInstanceOf(SimpleRayTracer.class, loadedCamera.getRayTracer(), "wrong loaded ray tracer");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Test method for {@link SceneFile#write(Path, Scene, Camera)} and {@link SceneFile#read(Path)}
+     * of the ray tracer type of the camera.
+     *
+     * @throws IOException if the temporary file cannot be created
+     */
+    @Test
+    void testRayTracerType() throws IOException {
+        Scene scene = new Scene("Ray tracer type");
+        scene.geometries.add(new Sphere(1, new Point(0, 0, -5)));
+        Path file = Files.createTempFile("scene", ".rtsf");
+        try {
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: the loaded camera traces by a ray tracer of the written type
+            for (var entry : java.util.Map.of(RayTracerType.SIMPLE, SimpleRayTracer.class,
+                    RayTracerType.WAVEFRONT, WavefrontRayTracer.class, RayTracerType.PATH, PathTracer.class).entrySet()) {
+                Camera camera = Camera.getBuilder().setLocation(Point.ZERO).setDirection(new Point(0, 0, -5), Vector.AXIS_Y)
+                        .setVpDistance(1).setVpSize(1, 1).setResolution(4, 4)
+                        .setRayTracer(scene, entry.getKey()).build();
+                SceneFile.write(file, scene, camera);
+                Camera loaded = SceneFile.read(file).cameraBuilder().build();
+                assertEquals(entry.getValue(), loaded.getRayTracer().getClass(), "wrong loaded ray tracer type");
+            }
+
+            // TC02: the loaded ray tracer has the written options
+            for (RayTracerType type : new RayTracerType[]{RayTracerType.SIMPLE, RayTracerType.WAVEFRONT, RayTracerType.PATH}) {
+                Camera.Builder builder = Camera.getBuilder().setLocation(Point.ZERO)
+                        .setDirection(new Point(0, 0, -5), Vector.AXIS_Y).setVpDistance(1).setVpSize(1, 1)
+                        .setResolution(4, 4).setRayTracer(scene, type).setMaxRecursionLevel(3);
+                if (type != RayTracerType.PATH)
+                    builder.setRussianRoulette(0.2).setLightSampling(2).setLightCulling(0.5).setAdaptiveShadows(4)
+                            .setShadingCache(0.7).setCaustics(1000, 50, 1.5);
+                Camera camera = builder.build();
+                if (camera.getRayTracer() instanceof SimpleRayTracer simple) simple.setShadowCache(false);
+                SceneFile.write(file, scene, camera);
+                Camera loaded = SceneFile.read(file).cameraBuilder().build();
+                byte[] written = tracerSettings(camera.getRayTracer());
+                RayTracerBase defaults = switch (type) {
+                    case PATH -> new PathTracer(scene);
+                    case WAVEFRONT -> new WavefrontRayTracer(scene);
+                    default -> new SimpleRayTracer(scene);
+                };
+                assertFalse(java.util.Arrays.equals(tracerSettings(defaults), written), "default options of " + type);
+                assertArrayEquals(written, tracerSettings(loaded.getRayTracer()), "wrong loaded options of " + type);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Writes the options of a ray tracer
+     *
+     * @param rayTracer the ray tracer
+     * @return the written options
+     * @throws IOException never - the options are written to memory
+     */
+    private static byte[] tracerSettings(RayTracerBase rayTracer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        rayTracer.writeSettings(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Test method for {@link SceneFile#write(Path, Scene, Camera)} and {@link SceneFile#read(Path)}
+     * of the denoiser of the camera.
+     *
+     * @throws IOException if the temporary file cannot be created
+     */
+    @Test
+    void testDenoiser() throws IOException {
+        Scene scene = new Scene("Denoiser");
+        scene.geometries.add(new Sphere(1, new Point(0, 0, -5)));
+        Camera.Builder builder = Camera.getBuilder().setLocation(Point.ZERO)
+                .setDirection(new Point(0, 0, -5), Vector.AXIS_Y).setVpDistance(1).setVpSize(1, 1)
+                .setResolution(8, 8).setRayTracer(scene, RayTracerType.PATH).setSamplesPerPixel(4);
+        Path file = Files.createTempFile("scene", ".rtsf");
+        try {
+            // ============ Equivalence Partitions Tests ==============
+            // TC01: the loaded camera denoises by the written settings
+            Denoiser denoiser = new Denoiser().setIterations(2).setColorSigma(3).setGuideSigmas(0.2, 0.3, 0.4);
+            Camera camera = builder.setDenoiser(denoiser).build().renderImage();
+            SceneFile.write(file, scene, camera);
+            Denoiser loaded = SceneFile.read(file).cameraBuilder().build().getDenoiser();
+            assertNotNull(loaded, "the denoiser was not loaded");
+            double[] variance = new double[64];
+            java.util.Arrays.fill(variance, 100);
+            for (int p = 0; p < 64; p += 3) variance[p] = 400;
+            double[] color = camera.getFramebuffer();
+            AuxiliaryBuffers auxiliary = camera.getAuxiliaryBuffers();
+            assertArrayEquals(denoiser.denoise(color, variance, auxiliary), loaded.denoise(color, variance, auxiliary),
+                    1e-12, "wrong loaded denoiser settings");
+
+            // =============== Boundary Values Tests ==================
+            // TC10: a camera without a denoiser is loaded without a denoiser
+            SceneFile.write(file, scene, builder.setDenoiser(null).build());
+            assertNull(SceneFile.read(file).cameraBuilder().build().getDenoiser(), "unexpected loaded denoiser");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
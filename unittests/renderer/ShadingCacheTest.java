@@ -0,0 +1,69 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+import primitives.Double3;
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for renderer.ShadingCache class.
+ */
+class ShadingCacheTest {
+
+    /**
+     * Default constructor to satisfy JavaDoc generator
+     */
+    ShadingCacheTest() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * Test method for {@link renderer.ShadingCache#lookup(Point, Vector)} and
+     * {@link renderer.ShadingCache#add(Point, Vector, Color)}.
+     */
+    @Test
+    void testLookup() {
+        ShadingCache cache = new ShadingCache(1);
+        cache.add(new Point(0.9, 0, 0), Vector.AXIS_Z, new Color(10, 20, 30));
+        cache.add(new Point(1.5, 0, 0), Vector.AXIS_Z, new Color(30, 20, 10));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: a point close to a single cached point (across a cell boundary)
+        assertEquals(new Double3(10, 20, 30), cache.lookup(new Point(0.2, 0, 0), Vector.AXIS_Z).getRgb(),
+                "wrong irradiance near a cached point");
+        // TC02: a point between two cached points - weighted by the closeness
+        assertEquals(new Double3(20, 20, 20), cache.lookup(new Point(1.2, 0, 0), Vector.AXIS_Z).getRgb(),
+                "wrong interpolated irradiance");
+        // TC03: a far point
+        assertNull(cache.lookup(new Point(5, 0, 0), Vector.AXIS_Z), "irradiance found far from the cached points");
+        // TC04: a point of a different normal
+        assertNull(cache.lookup(new Point(1, 0, 0), Vector.AXIS_X), "irradiance found for a different normal");
+        assertNull(cache.lookup(new Point(1, 0, 0), new Vector(0, 0, -1)), "irradiance found for the back side");
+        // TC05: negative coordinates
+        cache.add(new Point(-7.5, -3.2, -0.1), Vector.AXIS_Z, new Color(1, 2, 3));
+        assertEquals(new Double3(1, 2, 3), cache.lookup(new Point(-7, -3, 0), Vector.AXIS_Z).getRgb(),
+                "wrong irradiance at negative coordinates");
+
+        // =============== Boundary Values Tests ==================
+        // TC10: a point at the error radius is not interpolated
+        assertNull(cache.lookup(new Point(2.5, 0, 0), Vector.AXIS_Z), "irradiance found at the error radius");
+        // TC11: illegal radius
+        assertThrows(IllegalArgumentException.class, () -> new ShadingCache(0), "zero radius");
+    }
+
+    /**
+     * Test method for {@link renderer.ShadingCache#add(Point, Vector, Color)} from concurrent threads.
+     */
+    @Test
+    void testConcurrentAdd() {
+        ShadingCache cache = new ShadingCache(0.5);
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: all the points added concurrently (many to the same cells) are cached
+        IntStream.range(0, 10000).parallel().forEach(i ->
+                cache.add(new Point(i % 10 * 0.1, i / 10 % 10 * 0.1, i / 100 * 0.1), Vector.AXIS_Z, new Color(i, i, i)));
+        assertEquals(10000, cache.size(), "points lost in concurrent insertion");
+    }
+}
@@ -0,0 +1,324 @@
+package renderer;
+
+import geometries.Plane;
+import geometries.Sphere;
+import lighting.PointLight;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the simple ray tracer - the recursion control (the maximum level, the maximum
+ * depth of materials and the Russian roulette), the many-light sampling and culling, the
+ * shadow occluder cache, the adaptive soft shadows, the shading cache and the caustics
+ */
+class SimpleRayTracerTests {
+    /**
+     * Default constructor to satisfy JavaDoc generator
+     */
+    SimpleRayTracerTests() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * A ray between the mirrors of the mirror box
+     */
+    private static final Ray RAY = new Ray(new Point(0, 0, 0.5), new Vector(0, 0.6, -1));
+
+    /**
+     * Creates a box of two parallel glowing mirrors with a sphere between them
+     *
+     * @param mirror the material of the mirrors
+     * @return the scene
+     */
+    private static Scene createMirrorBox(Material mirror) {
+        Scene scene = new Scene("Mirror box").setBackground(new Color(10, 10, 10));
+        scene.geometries.add(
+                new Plane(new Point(0, 0, -1), Vector.AXIS_Z).setEmission(new Color(40, 20, 10)).setMaterial(mirror),
+                new Plane(new Point(0, 0, 1), Vector.AXIS_Z).setEmission(new Color(10, 20, 40)).setMaterial(mirror),
+                new Sphere(0.2, new Point(0, 3, 0)).setEmission(new Color(100, 0, 0)));
+        return scene;
+    }
+
+    /**
+     * Test method for {@link renderer.SimpleRayTracer#setMaxLevel(int)} and the maximum depth
+     * of materials ({@link primitives.Material#setMaxDepth(int)}).
+     */
+    @Test
+    void testMaxLevel() {
+        Scene scene = createMirrorBox(new Material().setKR(0.9));
+
+        // =============== Boundary Values Tests ==================
+        // BV01: bad levels
+        assertThrows(IllegalArgumentException.class, () -> new SimpleRayTracer(scene).setMaxLevel(0), "level 0");
+        // BV02: level 1 - only the local effects of the first mirror (and the ambient light)
+        Color local = new SimpleRayTracer(scene).setMaxLevel(1).traceRay(RAY);
+        assertEquals(new Color(40, 20, 10).add(scene.ambientLight.getIntensity()).getRgb(), local.getRgb(),
+                "level 1 traced secondary rays");
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: every level adds a bounce
+        Color twoLevels = new SimpleRayTracer(scene).setMaxLevel(2).traceRay(RAY);
+        Color threeLevels = new SimpleRayTracer(scene).setMaxLevel(3).traceRay(RAY);
+        assertNotEquals(local.getRgb(), twoLevels.getRgb(), "level 2 traced no reflection");
+        assertNotEquals(twoLevels.getRgb(), threeLevels.getRgb(), "level 3 traced no second reflection");
+        // EP02: a material depth limits the bounces like the level does
+        Scene shallow = createMirrorBox(new Material().setKR(0.9).setMaxDepth(1));
+        assertEquals(twoLevels.getRgb(), new SimpleRayTracer(shallow).traceRay(RAY).getRgb(),
+                "material depth 1 should trace a single reflection");
+    }
+
+    /**
+     * Test method for {@link renderer.SimpleRayTracer#setRussianRoulette(double)}.
+     */
+    @Test
+    void testRussianRoulette() {
+        Scene scene = createMirrorBox(new Material().setKR(0.7));
+        SimpleRayTracer exact = new SimpleRayTracer(scene);
+        SimpleRayTracer roulette = new SimpleRayTracer(scene).setRussianRoulette(0.5);
+
+        // =============== Boundary Values Tests ==================
+        // BV01: bad thresholds
+        assertThrows(IllegalArgumentException.class, () -> exact.setRussianRoulette(-0.1), "negative threshold");
+        assertThrows(IllegalArgumentException.class, () -> exact.setRussianRoulette(1.5), "threshold above 1");
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: the roulette keeps the expected color
+        Double3 expected = exact.traceRay(RAY).getRgb();
+        Double3 sum = Double3.ZERO;
+        int samples = 20000;
+        for (int i = 0; i < samples; ++i) sum = sum.add(roulette.traceRay(RAY).getRgb());
+        Double3 mean = sum.reduce(samples);
+        assertEquals(expected.d1(), mean.d1(), expected.d1() * 0.02, "biased red component");
+        assertEquals(expected.d2(), mean.d2(), expected.d2() * 0.02, "biased green component");
+        assertEquals(expected.d3(), mean.d3(), expected.d3() * 0.02, "biased blue component");
+    }
+
+    /**
+     * Test method for {@link renderer.SimpleRayTracer#setLightSampling(int)}.
+     */
+    @Test
+    void testLightSampling() {
+        Scene scene = new Scene("Many lights");
+        scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z)
+                .setMaterial(new Material().setKD(0.6).setKS(0.2).setShininess(10)));
+        for (int i = 0; i < 12; ++i)
+            for (int j = 0; j < 12; ++j)
+                scene.lights.add(new PointLight(new Color(20 + 5 * i, 30, 20 + 5 * j), new Point(i * 8 - 44, j * 8 - 44, 20))
+                        .setKq(0.002));
+        Ray ray = new Ray(new Point(3, -2, 50), new Vector(0.1, 0.05, -1));
+        Double3 expected = new SimpleRayTracer(scene).traceRay(ray).getRgb();
+
+        // =============== Boundary Values Tests ==================
+        // BV01: negative amount of samples
+        assertThrows(IllegalArgumentException.class, () -> new SimpleRayTracer(scene).setLightSampling(-1),
+                "negative light samples");
+        // BV02: more samples than lights - all the lights are evaluated
+        assertEquals(expected, new SimpleRayTracer(scene).setLightSampling(200).traceRay(ray).getRgb(),
+                "sampling more than all the lights should be exhaustive");
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: the sampled lighting keeps the expected color
+        SimpleRayTracer sampled = new SimpleRayTracer(scene).setLightSampling(4);
+        Double3 sum = Double3.ZERO;
+        int samples = 5000;
+        for (int i = 0; i < samples; ++i) sum = sum.add(sampled.traceRay(ray).getRgb());
+        Double3 mean = sum.reduce(samples);
+        assertEquals(expected.d1(), mean.d1(), expected.d1() * 0.03, "biased red component");
+        assertEquals(expected.d2(), mean.d2(), expected.d2() * 0.03, "biased green component");
+        assertEquals(expected.d3(), mean.d3(), expected.d3() * 0.03, "biased blue component");
+    }
+
+    /**
+     * Test method for {@link renderer.SimpleRayTracer#setLightCulling(double)}
+     */
+    @Test
+    void testLightCulling() {
+        Scene scene = new Scene("Many local lights");
+        scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z)
+                .setMaterial(new Material().setKD(0.6).setKS(0.2).setShininess(10)));
+        for (int i = 0; i < 12; ++i)
+            for (int j = 0; j < 12; ++j)
+                scene.lights.add(new PointLight(new Color(20 + 5 * i, 30, 20 + 5 * j), new Point(i * 8 - 44, j * 8 - 44, 5))
+                        .setKl(0.1).setKq(0.05));
+        Ray ray = new Ray(new Point(3, -2, 50), new Vector(0.1, 0.05, -1));
+        Double3 expected = new SimpleRayTracer(scene).traceRay(ray).getRgb();
+
+        // =============== Boundary Values Tests ==================
+        // BV01: negative threshold
+        assertThrows(IllegalArgumentException.class, () -> new SimpleRayTracer(scene).setLightCulling(-1),
+                "negative culling threshold");
+        // BV02: no culling
+        assertEquals(expected, new SimpleRayTracer(scene).setLightCulling(0).traceRay(ray).getRgb(),
+                "zero threshold should not cull");
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: every culled light is below the threshold - the color changes by less than
+        // the threshold per light (the diffuse and specular factors sum to less than 1)
+        double threshold = 0.05;
+        Double3 culled = new SimpleRayTracer(scene).setLightCulling(threshold).traceRay(ray).getRgb();
+        double bound = threshold * scene.lights.size();
+        assertEquals(expected.d1(), culled.d1(), bound, "culling changed the red component too much");
+        assertEquals(expected.d2(), culled.d2(), bound, "culling changed the green component too much");
+        assertEquals(expected.d3(), culled.d3(), bound, "culling changed the blue component too much");
+        assertTrue(culled.d1() <= expected.d1() && culled.d1() > 0, "culling added light");
+    }
+
+    /**
+     * Test method for {@link renderer.SimpleRayTracer#setShadowCache(boolean)}
+     */
+    @Test
+    void testShadowCache() {
+        Scene scene = new Scene("Shadows");
+        scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(new Material().setKD(0.8)),
+                new Sphere(3d, new Point(-6, 0, 8)).setMaterial(new Material().setKD(0.5)),
+                new Sphere(3d, new Point(6, 0, 8)).setMaterial(new Material().setKD(0.5).setKT(0.5)));
+        scene.lights.add(new PointLight(new Color(300, 300, 300), new Point(0, 0, 20)).setKl(0.01));
+        scene.lights.add(new PointLight(new Color(100, 200, 100), new Point(-8, 0, 25)).setKl(0.01));
+        scene.geometries.buildBVH();
+        SimpleRayTracer cached = new SimpleRayTracer(scene);
+        SimpleRayTracer uncached = new SimpleRayTracer(scene).setShadowCache(false);
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: the cache doesn't change the colors, and resolves most of the shadow rays
+        // of the opaque sphere
+        for (int i = 0; i < 40; ++i)
+            for (int j = 0; j < 40; ++j) {
+                Ray ray = new Ray(new Point(i - 20, j - 20, 50), new Vector(0, 0, -1));
+                assertEquals(uncached.traceRay(ray).getRgb(), cached.traceRay(ray).getRgb(), "cache changed the color");
+            }
+        ShadowCache cache = cached.getShadowCache();
+        assertTrue(cache.getHits() > 0, "no shadow ray resolved by the cache");
+        assertTrue(cache.getHitRate() > 0 && cache.getHitRate() < 1, "wrong hit rate");
+
+        // =============== Boundary Values Tests ==================
+        // BV01: the statistics are reset
+        cache.resetStatistics();
+        assertEquals(0, cache.getHitRate(), "hit rate without shadow rays");
+        // BV02: disabled cache
+        assertNull(uncached.getShadowCache(), "disabled cache exists");
+    }
+
+    /**
+     * Test method for {@link renderer.SimpleRayTracer#setAdaptiveShadows(int)}
+     */
+    @Test
+    void testAdaptiveShadows() {
+        Scene scene = new Scene("Soft shadows");
+        scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(new Material().setKD(0.8)),
+                new Sphere(3d, new Point(0, 0, 8)).setMaterial(new Material().setKD(0.5)));
+        scene.lights.add(new PointLight(new Color(300, 300, 300), new Point(0, 0, 20)).setKl(0.01)
+                .setAreaLightRadius(3, 81));
+        SimpleRayTracer full = new SimpleRayTracer(scene);
+        SimpleRayTracer adaptive = new SimpleRayTracer(scene).setAdaptiveShadows(8);
+
+        // =============== Boundary Values Tests ==================
+        // BV01: a single probe cannot detect a penumbra
+        assertThrows(IllegalArgumentException.class, () -> new SimpleRayTracer(scene).setAdaptiveShadows(1),
+                "single shadow probe");
+        // BV02: negative amount of probes
+        assertThrows(IllegalArgumentException.class, () -> new SimpleRayTracer(scene).setAdaptiveShadows(-1),
+                "negative amount of shadow probes");
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: fully lit and umbra points get the color of all the shadow rays
+        Ray lit = new Ray(new Point(30, 5, 50), new Vector(0, 0, -1));
+        assertEquals(full.traceRay(lit).getRgb(), adaptive.traceRay(lit).getRgb(), "wrong color of a lit point");
+        Ray umbra = new Ray(new Point(40, 0, 2), new Vector(-39, 0, -2)); // below the sphere
+        assertEquals(Double3.ZERO, full.traceRay(umbra).getRgb(), "the point is not in the umbra");
+        assertEquals(Double3.ZERO, adaptive.traceRay(umbra).getRgb(), "wrong color of an umbra point");
+        // EP02: the color of a penumbra point is kept on average
+        Ray penumbra = new Ray(new Point(4.5, 0, 50), new Vector(0, 0, -1));
+        double expected = 0, actual = 0, min = Double.POSITIVE_INFINITY, max = 0;
+        for (int i = 0; i < 200; ++i) {
+            double color = full.traceRay(penumbra).getRgb().d1();
+            min = Math.min(min, color);
+            max = Math.max(max, color);
+            expected += color;
+            actual += adaptive.traceRay(penumbra).getRgb().d1();
+        }
+        assertTrue(min < max, "the point is not in the penumbra");
+        assertEquals(expected, actual, expected * 0.05, "wrong penumbra color");
+        // EP03: most of the shadow rays of an image are saved
+        full.getShadowCache().resetStatistics();
+        adaptive.getShadowCache().resetStatistics();
+        for (int i = -20; i < 20; ++i)
+            for (int j = -20; j < 20; ++j) {
+                Ray ray = new Ray(new Point(i, j, 50), new Vector(0, 0, -1));
+                full.traceRay(ray);
+                adaptive.traceRay(ray);
+            }
+        long fullRays = full.getShadowCache().getHits() + full.getShadowCache().getMisses();
+        long adaptiveRays = adaptive.getShadowCache().getHits() + adaptive.getShadowCache().getMisses();
+        assertTrue(adaptiveRays * 3 < fullRays, "adaptive shadows cast " + adaptiveRays + " of " + fullRays + " rays");
+    }
+
+    /**
+     * Test method for {@link renderer.SimpleRayTracer#setShadingCache(double)}
+     */
+    @Test
+    void testShadingCache() {
+        Scene scene = new Scene("Diffuse floor");
+        scene.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setEmission(new Color(5, 0, 0))
+                        .setMaterial(new Material().setKD(0.8)),
+                new Sphere(3d, new Point(0, 0, 8)).setMaterial(new Material().setKD(0.5).setKS(0.5).setShininess(20)));
+        scene.lights.add(new PointLight(new Color(300, 300, 300), new Point(0, 0, 20)).setKl(0.01));
+        scene.lights.add(new PointLight(new Color(100, 200, 100), new Point(-8, 4, 25)).setKl(0.01));
+        SimpleRayTracer exact = new SimpleRayTracer(scene);
+        SimpleRayTracer cached = new SimpleRayTracer(scene).setShadingCache(0.3);
+
+        // =============== Boundary Values Tests ==================
+        // BV01: negative radius
+        assertThrows(IllegalArgumentException.class, () -> new SimpleRayTracer(scene).setShadingCache(-1),
+                "negative shading cache radius");
+        // BV02: no cache
+        assertNull(new SimpleRayTracer(scene).setShadingCache(0).getShadingCache(), "zero radius cache exists");
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: the specular sphere is not cached
+        Ray sphereRay = new Ray(new Point(1, 1, 50), new Vector(0, 0, -1));
+        assertEquals(exact.traceRay(sphereRay).getRgb(), cached.traceRay(sphereRay).getRgb(), "specular surface cached");
+        assertEquals(0, cached.getShadingCache().size(), "specular surface cached");
+        // EP02: the diffuse floor is interpolated from fewer points, close to the exact lighting
+        double error = 0, total = 0;
+        int rays = 0;
+        for (double x = 4; x < 14; x += 0.1)
+            for (double y = -5; y < 5; y += 0.1, ++rays) {
+                Ray ray = new Ray(new Point(x, y, 50), new Vector(0, 0, -1));
+                Double3 expected = exact.traceRay(ray).getRgb(), actual = cached.traceRay(ray).getRgb();
+                error += Math.abs(expected.d1() - actual.d1()) + Math.abs(expected.d2() - actual.d2());
+                total += expected.d1() + expected.d2();
+            }
+        assertTrue(cached.getShadingCache().size() < rays / 4, "too many points cached");
+        assertTrue(error < total * 0.03, "shading cache error is too large");
+    }
+
+    /**
+     * Test method for {@link renderer.SimpleRayTracer#setCaustics(int, int, double)}
+     */
+    @Test
+    void testCaustics() {
+        Scene scene = PhotonTracerTest.createMirrorScene();
+        Ray ray = new Ray(new Point(3, 0, 10), new Vector(0, 0, -1));
+        Double3 direct = new SimpleRayTracer(scene).traceRay(ray).getRgb();
+
+        // =============== Boundary Values Tests ==================
+        // BV01: illegal settings
+        assertThrows(IllegalArgumentException.class, () -> new SimpleRayTracer(scene).setCaustics(-1, 10, 1),
+                "negative amount of photons");
+        assertThrows(IllegalArgumentException.class, () -> new SimpleRayTracer(scene).setCaustics(100, 0, 1),
+                "no nearest photons");
+        assertThrows(IllegalArgumentException.class, () -> new SimpleRayTracer(scene).setCaustics(100, 10, 0),
+                "zero gathering radius");
+        // BV02: no caustics
+        assertEquals(direct, new SimpleRayTracer(scene).setCaustics(0, 0, 0).traceRay(ray).getRgb(),
+                "caustics without photons");
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: the floor is lit by the mirror image of the light as well
+        Double3 lit = new SimpleRayTracer(scene).setCaustics(250000, 20000, 3).traceRay(ray).getRgb();
+        double d = new Point(20, 0, 5).subtract(new Point(3, 0, 0)).length();
+        double expected = 100 * (5 / d) / (1 + 0.01 * d * d);
+        assertEquals(expected, lit.d1() - direct.d1(), expected * 0.15, "wrong caustics color");
+    }
+}
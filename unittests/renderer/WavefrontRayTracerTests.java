@@ -0,0 +1,121 @@
+package renderer;
+
+import geometries.Plane;
+import geometries.Sphere;
+import geometries.Triangle;
+import lighting.AmbientLight;
+import lighting.SpotLight;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the wavefront ray tracer
+ */
+class WavefrontRayTracerTests {
+    /**
+     * Default constructor to satisfy JavaDoc generator
+     */
+    WavefrontRayTracerTests() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * Creates a scene of transparent spheres and mirrors
+     *
+     * @return the scene
+     */
+    private static Scene createScene() {
+        Scene scene = new Scene("Wavefront scene").setAmbientLight(new AmbientLight(new Color(26, 26, 26)));
+        scene.geometries.add(
+                new Sphere(400d, new Point(-950, -900, -1000)).setEmission(new Color(0, 50, 100))
+                        .setMaterial(new Material().setKD(0.25).setKS(0.25).setShininess(20)
+                                .setKT(new Double3(0.5, 0, 0))),
+                new Sphere(200d, new Point(-950, -900, -1000)).setEmission(new Color(100, 50, 20))
+                        .setMaterial(new Material().setKD(0.25).setKS(0.25).setShininess(20)),
+                new Triangle(new Point(1500, -1500, -1500), new Point(-1500, 1500, -1500),
+                        new Point(670, 670, 3000))
+                        .setEmission(new Color(20, 20, 20))
+                        .setMaterial(new Material().setKR(1.0)),
+                new Triangle(new Point(1500, -1500, -1500), new Point(-1500, 1500, -1500),
+                        new Point(-1500, -1500, -2000))
+                        .setEmission(new Color(20, 20, 20))
+                        .setMaterial(new Material().setKR(new Double3(0.5, 0, 0.4))));
+        scene.lights.add(new SpotLight(new Color(1020, 400, 400), new Point(-750, -750, -150), new Vector(-1, -1, -4))
+                .setKl(0.00001).setKq(0.000005));
+        scene.geometries.buildBVH();
+        return scene;
+    }
+
+    /**
+     * Test method for {@link renderer.WavefrontRayTracer#traceRays(Ray[])} - the wavefront
+     * ray tracer renders the image of the simple ray tracer
+     */
+    @Test
+    void testSameAsSimple() {
+        Scene scene = createScene();
+        Camera.Builder builder = Camera.getBuilder()
+                .setLocation(new Point(0, 0, 10000)).setDirection(Point.ZERO, Vector.AXIS_Y)
+                .setVpDistance(10000).setVpSize(2500, 2500).setResolution(60, 60);
+        int[] expected = builder.setRayTracer(scene, RayTracerType.SIMPLE).build().renderTile(0, 0, 60, 60);
+
+        // ============ Equivalence Partitions Tests ==============
+        // EP01: batches of packets
+        assertSameImage(expected, builder.setRayTracer(scene, RayTracerType.WAVEFRONT).setPacketSize(16)
+                .build().renderTile(0, 0, 60, 60));
+
+        // =============== Boundary Values Tests ==================
+        // BV01: batches of a single ray
+        assertSameImage(expected, builder.setRayTracer(scene, RayTracerType.WAVEFRONT).setPacketSize(0)
+                .build().renderTile(0, 0, 60, 60));
+    }
+
+    /**
+     * Test method for {@link renderer.WavefrontRayTracer#traceRays(Ray[])} - the waves of glossy
+     * reflections are traced in bounded sub-batches
+     */
+    @Test
+    void testGlossyFanOut() {
+        // two glossy emitting mirrors facing each other - every glossy ray hits a mirror, so the
+        // colors do not depend on the random directions of the glossy rays
+        Scene scene = new Scene("Glossy mirrors");
+        Material glossy = new Material().setKR(0.5).setGlossinessReflacted(0.1, 1, 9);
+        scene.geometries.add(
+                new Plane(Point.ZERO, Vector.AXIS_Z).setEmission(new Color(40, 20, 10)).setMaterial(glossy),
+                new Plane(new Point(0, 0, 10), Vector.AXIS_Z).setEmission(new Color(10, 20, 40)).setMaterial(glossy));
+        Ray[] rays = new Ray[256];
+        for (int i = 0; i < rays.length; ++i)
+            rays[i] = new Ray(new Point(0, 0, 5), new Vector((i % 16 - 7.5) / 8, (i / 16 - 7.5) / 8, -1));
+        // 4 levels - waves of 256, 2304, 20736 and 186624 rays without the sub-batches
+        SimpleRayTracer simple = new SimpleRayTracer(scene).setMaxLevel(4);
+        WavefrontRayTracer wavefront = (WavefrontRayTracer) new WavefrontRayTracer(scene).setMaxLevel(4);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: the colors of the simple ray tracer
+        Color[] colors = wavefront.traceRays(rays);
+        for (int i = 0; i < rays.length; ++i) {
+            Double3 expected = simple.traceRay(rays[i]).getRgb(), actual = colors[i].getRgb();
+            assertEquals(expected.d1(), actual.d1(), 1e-6, "wrong red of ray " + i);
+            assertEquals(expected.d2(), actual.d2(), 1e-6, "wrong green of ray " + i);
+            assertEquals(expected.d3(), actual.d3(), 1e-6, "wrong blue of ray " + i);
+        }
+        // TC02: no emitted wave is larger than the fan-out of a sub-batch
+        assertTrue(wavefront.getPeakWaveSize() <= 9 * WavefrontRayTracer.WAVE_LIMIT,
+                "the waves are not traced in bounded sub-batches");
+        assertTrue(wavefront.getPeakWaveSize() > WavefrontRayTracer.WAVE_LIMIT, "no wave was split");
+    }
+
+    /**
+     * Asserts that two images are the same up to the rounding of the color components
+     *
+     * @param expected the expected packed RGB values
+     * @param actual   the actual packed RGB values
+     */
+    private static void assertSameImage(int[] expected, int[] actual) {
+        assertEquals(expected.length, actual.length, "wrong image size");
+        for (int p = 0; p < expected.length; ++p)
+            for (int shift = 0; shift < 24; shift += 8)
+                assertEquals(expected[p] >> shift & 0xFF, actual[p] >> shift & 0xFF, 1,
+                        "wrong color of pixel " + p);
+    }
+}